@@ -0,0 +1,22 @@
+package com.delivery_management_service.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Sequenced drops of the orders a driver carries
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeliveryRouteDTO {
+    private Long driverId;
+    private Long pickupEtaSeconds;   // To the restaurant, null once everything is picked up
+    private List<DeliveryStopDTO> stops;
+    private long totalSeconds;       // Until the last sequenced drop
+}
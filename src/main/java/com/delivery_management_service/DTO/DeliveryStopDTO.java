@@ -0,0 +1,20 @@
+package com.delivery_management_service.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One drop of a driver's route
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeliveryStopDTO {
+    private Long orderId;
+    private String deliveryAddress;
+    private String customerName;
+    private Long etaSeconds;   // From now, null if the order has no drop-off coordinates
+}
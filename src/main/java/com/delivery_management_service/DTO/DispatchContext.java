@@ -0,0 +1,46 @@
+package com.delivery_management_service.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.locationtech.jts.geom.Point;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Detached snapshot of everything a dispatch needs about an order and its restaurant
+ *
+ * Loaded once in a short read-only transaction so the dispatcher never holds
+ * a managed entity (or a database connection) while it waits for drivers.
+ *
+ * For a stacked bundle (see OrderStacker) orderId is the lead order, which the
+ * drivers are offered and accept, and totalAmount covers the whole bundle.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DispatchContext {
+    private Long orderId;
+    private Long restaurantId;
+    private String restaurantName;
+    private String restaurantAddress;
+    private Point restaurantLocation;
+    private String deliveryAddress;
+    private Point deliveryLocation;   // Optional drop-off coordinates of the lead order
+    private BigDecimal totalAmount;
+    private LocalDateTime acceptedAt; // When the restaurant accepted the lead order
+    @Builder.Default
+    private List<Long> bundledOrderIds = List.of();   // Members besides the lead order
+
+    public double getLatitude() {
+        return restaurantLocation.getY();
+    }
+
+    public double getLongitude() {
+        return restaurantLocation.getX();
+    }
+}
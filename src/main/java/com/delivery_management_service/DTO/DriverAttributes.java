@@ -0,0 +1,13 @@
+package com.delivery_management_service.DTO;
+
+/**
+ * Slim projection of the driver attributes matched on in memory (see
+ * DriverAttributeIndex)
+ */
+public interface DriverAttributes {
+    Long getId();
+    String getVehicleType();
+    Boolean getActive();
+    String getStatus();
+    Integer getFreeSlots();
+}
@@ -0,0 +1,16 @@
+package com.delivery_management_service.DTO;
+
+/**
+ * Slim projection of a driver that can be offered an order
+ *
+ * Returned by the candidate queries in DriverRepository instead of full Driver
+ * entities; the distance to the restaurant comes straight from PostGIS.
+ * distanceMeters is the exact value keyset cursors continue from.
+ */
+public interface DriverCandidate {
+    Long getId();
+    String getPhone();
+    String getName();
+    Double getDistanceKm();
+    Double getDistanceMeters();
+}
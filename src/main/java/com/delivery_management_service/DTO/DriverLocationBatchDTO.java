@@ -0,0 +1,23 @@
+package com.delivery_management_service.DTO;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Batch of GPS fixes, e.g. forwarded by a gateway or buffered by an app while offline
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DriverLocationBatchDTO {
+    @NotEmpty(message = "Pings are required")
+    @Size(max = 10000, message = "At most 10000 pings per batch")
+    @Valid
+    private List<DriverLocationPingDTO> pings;
+}
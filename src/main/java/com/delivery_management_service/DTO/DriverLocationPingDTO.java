@@ -0,0 +1,32 @@
+package com.delivery_management_service.DTO;
+
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One GPS fix sent by a driver's app
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DriverLocationPingDTO {
+    // Only used in batches; the single-ping endpoint takes it from the path
+    private Long driverId;
+
+    @NotNull(message = "Latitude is required")
+    @DecimalMin(value = "-90.0", message = "Latitude must be between -90 and 90")
+    @DecimalMax(value = "90.0", message = "Latitude must be between -90 and 90")
+    private Double latitude;
+
+    @NotNull(message = "Longitude is required")
+    @DecimalMin(value = "-180.0", message = "Longitude must be between -180 and 180")
+    @DecimalMax(value = "180.0", message = "Longitude must be between -180 and 180")
+    private Double longitude;
+
+    // When the fix was taken (epoch millis); defaults to the time it was received
+    private Long recordedAt;
+}
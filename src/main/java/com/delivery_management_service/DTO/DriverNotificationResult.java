@@ -0,0 +1,24 @@
+package com.delivery_management_service.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Outcome of notifying one driver in a dispatch wave
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DriverNotificationResult {
+    private Long driverId;
+    private String messageSid;   // Twilio message SID, null on failure
+    private String failure;      // Failure reason, null on success
+    private long latencyMs;      // Time spent in the Twilio call
+
+    public boolean isSuccess() {
+        return messageSid != null;
+    }
+}
@@ -1,6 +1,8 @@
 package com.delivery_management_service.DTO;
 
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
@@ -26,6 +28,15 @@ public class OrderRequestDTO {
     @NotBlank(message = "Delivery address is required")
     private String deliveryAddress;
 
+    // Optional drop-off coordinates, used to sequence stacked deliveries
+    @DecimalMin(value = "-90.0", message = "Latitude must be between -90 and 90")
+    @DecimalMax(value = "90.0", message = "Latitude must be between -90 and 90")
+    private Double deliveryLatitude;
+
+    @DecimalMin(value = "-180.0", message = "Longitude must be between -180 and 180")
+    @DecimalMax(value = "180.0", message = "Longitude must be between -180 and 180")
+    private Double deliveryLongitude;
+
     @NotEmpty(message = "Order must contain at least one item")
     @Valid
     private List<OrderItemRequestDTO> items;
@@ -0,0 +1,20 @@
+package com.delivery_management_service.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Estimated time for the assigned driver to reach the restaurant
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PickupEtaDTO {
+    private Long orderId;
+    private Long driverId;
+    private long etaSeconds;
+    private String source;   // MATRIX, ROUTED or STRAIGHT_LINE
+}
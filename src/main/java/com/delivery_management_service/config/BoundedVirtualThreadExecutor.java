@@ -0,0 +1,140 @@
+package com.delivery_management_service.config;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Executor that runs each task on a (virtual) thread with bounded concurrency
+ *
+ * - At most maxConcurrency tasks run at once
+ * - Up to queueCapacity further tasks wait in a FIFO queue
+ * - Anything beyond that is rejected with RejectedExecutionException
+ *
+ * A thread that finishes its task keeps draining the queue before it exits, so
+ * queued tasks start as soon as a slot frees up.
+ */
+@Slf4j
+public class BoundedVirtualThreadExecutor implements Executor {
+
+    private final ThreadFactory threadFactory;
+    private final int queueCapacity;
+    private final Semaphore permits;
+    private final Queue<Runnable> queue = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public BoundedVirtualThreadExecutor(ThreadFactory threadFactory, int maxConcurrency, int queueCapacity) {
+        this.threadFactory = threadFactory;
+        this.queueCapacity = queueCapacity;
+        this.permits = new Semaphore(maxConcurrency);
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (permits.tryAcquire()) {
+            start(task);
+            return;
+        }
+
+        if (queued.incrementAndGet() > queueCapacity) {
+            queued.decrementAndGet();
+            rejected.incrementAndGet();
+            throw new RejectedExecutionException("Executor capacity exhausted: "
+                    + active.get() + " running, " + queueCapacity + " queued");
+        }
+        queue.offer(task);
+
+        // A running task may have finished between tryAcquire and offer
+        drainIfIdle();
+    }
+
+    /**
+     * @return number of tasks currently running
+     */
+    public int getActiveCount() {
+        return active.get();
+    }
+
+    /**
+     * @return number of tasks waiting for a free slot
+     */
+    public int getQueuedCount() {
+        return queued.get();
+    }
+
+    /**
+     * @return total number of tasks rejected since startup
+     */
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    private void start(Runnable task) {
+        active.incrementAndGet();
+        try {
+            threadFactory.newThread(() -> runAndDrain(task)).start();
+        } catch (RuntimeException | Error e) {
+            active.decrementAndGet();
+            permits.release();
+            throw e;
+        }
+    }
+
+    private void runAndDrain(Runnable first) {
+        Runnable task = first;
+        while (true) {
+            while (task != null) {
+                try {
+                    task.run();
+                } catch (Throwable t) {
+                    log.error("Dispatch task failed: {}", t.getMessage(), t);
+                }
+                task = poll();
+            }
+
+            active.decrementAndGet();
+            permits.release();
+
+            // Re-check: a task may have been queued after our last poll
+            if (queue.isEmpty() || !permits.tryAcquire()) {
+                return;
+            }
+            task = poll();
+            if (task == null) {
+                permits.release();
+                return;
+            }
+            active.incrementAndGet();
+        }
+    }
+
+    private void drainIfIdle() {
+        if (!permits.tryAcquire()) {
+            return;
+        }
+        Runnable task = poll();
+        if (task == null) {
+            permits.release();
+            return;
+        }
+        start(task);
+    }
+
+    private Runnable poll() {
+        Runnable task = queue.poll();
+        if (task != null) {
+            queued.decrementAndGet();
+        }
+        return task;
+    }
+}
@@ -0,0 +1,130 @@
+package com.delivery_management_service.config;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dedicated executor for driver dispatch
+ *
+ * Each dispatch spends most of its life waiting for drivers, so it runs on a
+ * virtual thread instead of blocking a platform thread of Spring's default
+ * async executor. Concurrency and queue depth are capped so a burst of
+ * accepted orders cannot grow without bound.
+ *
+ * Exposed metrics:
+ * - dispatch.executor.active   (gauge)
+ * - dispatch.executor.queued   (gauge)
+ * - dispatch.executor.rejected (counter)
+ *
+ * SMS notifications of a wave fan out on a separate bounded executor (sms.executor.*),
+ * which also caps concurrent Twilio calls across all dispatches.
+ *
+ * Also provides the timing wheel that schedules dispatch timeouts (offer expiry,
+ * delay between waves); expired timeouts run on the dispatch executor.
+ *
+ * Usage: inject the executor by qualifier and hand it short tasks, e.g.
+ *   public ZoneDispatchWorkers(@Qualifier(DispatchExecutorConfig.DISPATCH_EXECUTOR) Executor dispatchExecutor, ...)
+ *   dispatchExecutor.execute(task);
+ * execute throws RejectedExecutionException once the queue is full.
+ */
+@Configuration
+@Slf4j
+public class DispatchExecutorConfig {
+
+    public static final String DISPATCH_EXECUTOR = "dispatchExecutor";
+    public static final String SMS_EXECUTOR = "smsExecutor";
+
+    @Value("${app.delivery.dispatch-executor.max-concurrency:10000}")
+    private int maxConcurrency;
+
+    @Value("${app.delivery.dispatch-executor.queue-capacity:50000}")
+    private int queueCapacity;
+
+    @Value("${app.delivery.sms.max-parallelism:50}")
+    private int smsMaxParallelism;
+
+    @Value("${app.delivery.sms.queue-capacity:10000}")
+    private int smsQueueCapacity;
+
+    @Value("${app.delivery.timing-wheel.tick-ms:100}")
+    private long timingWheelTickMs;
+
+    @Value("${app.delivery.timing-wheel.ticks-per-wheel:512}")
+    private int timingWheelTicksPerWheel;
+
+    @Bean(name = DISPATCH_EXECUTOR)
+    public BoundedVirtualThreadExecutor dispatchExecutor(MeterRegistry meterRegistry) {
+        BoundedVirtualThreadExecutor executor = new BoundedVirtualThreadExecutor(
+                Thread.ofVirtual().name("dispatch-", 0).factory(),
+                maxConcurrency,
+                queueCapacity
+        );
+
+        Gauge.builder("dispatch.executor.active", executor, BoundedVirtualThreadExecutor::getActiveCount)
+                .description("Dispatches currently running")
+                .register(meterRegistry);
+        Gauge.builder("dispatch.executor.queued", executor, BoundedVirtualThreadExecutor::getQueuedCount)
+                .description("Dispatches waiting for a free slot")
+                .register(meterRegistry);
+        FunctionCounter.builder("dispatch.executor.rejected", executor, BoundedVirtualThreadExecutor::getRejectedCount)
+                .description("Dispatches rejected because the queue was full")
+                .register(meterRegistry);
+
+        log.info("Dispatch executor: virtual threads, max concurrency {}, queue capacity {}",
+                maxConcurrency, queueCapacity);
+        return executor;
+    }
+
+    @Bean(name = SMS_EXECUTOR)
+    public BoundedVirtualThreadExecutor smsExecutor(MeterRegistry meterRegistry) {
+        BoundedVirtualThreadExecutor executor = new BoundedVirtualThreadExecutor(
+                Thread.ofVirtual().name("sms-", 0).factory(),
+                smsMaxParallelism,
+                smsQueueCapacity
+        );
+
+        Gauge.builder("sms.executor.active", executor, BoundedVirtualThreadExecutor::getActiveCount)
+                .description("SMS notifications currently in flight")
+                .register(meterRegistry);
+        Gauge.builder("sms.executor.queued", executor, BoundedVirtualThreadExecutor::getQueuedCount)
+                .description("SMS notifications waiting for a free slot")
+                .register(meterRegistry);
+        FunctionCounter.builder("sms.executor.rejected", executor, BoundedVirtualThreadExecutor::getRejectedCount)
+                .description("SMS notifications rejected because the queue was full")
+                .register(meterRegistry);
+
+        log.info("SMS executor: virtual threads, max parallelism {}, queue capacity {}",
+                smsMaxParallelism, smsQueueCapacity);
+        return executor;
+    }
+
+    @Bean(destroyMethod = "stop")
+    public HashedTimingWheel dispatchTimingWheel(@Qualifier(DISPATCH_EXECUTOR) Executor dispatchExecutor,
+                                                 MeterRegistry meterRegistry) {
+        HashedTimingWheel timingWheel = new HashedTimingWheel(
+                runnable -> {
+                    Thread thread = new Thread(runnable, "dispatch-timer");
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                dispatchExecutor,
+                timingWheelTickMs,
+                TimeUnit.MILLISECONDS,
+                timingWheelTicksPerWheel
+        );
+
+        Gauge.builder("dispatch.timer.pending", timingWheel, HashedTimingWheel::pendingTimeouts)
+                .description("Dispatch timeouts scheduled and not yet fired")
+                .register(meterRegistry);
+        return timingWheel;
+    }
+}
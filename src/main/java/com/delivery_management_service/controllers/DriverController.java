@@ -2,9 +2,16 @@ package com.delivery_management_service.controllers;
 
 
 import com.delivery_management_service.DTO.ApiResponse;
+import com.delivery_management_service.DTO.DeliveryRouteDTO;
+import com.delivery_management_service.DTO.DriverLocationBatchDTO;
+import com.delivery_management_service.DTO.DriverLocationPingDTO;
+import com.delivery_management_service.DTO.PickupEtaDTO;
 import com.delivery_management_service.services.DeliveryManagementService;
+import com.delivery_management_service.services.DriverLocationIngestService;
+import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -16,6 +23,9 @@ import org.springframework.web.bind.annotation.*;
  * - Accept order (THIS IS THE SMS URL ENDPOINT!)
  * - Mark order as picked up
  * - Mark order as delivered
+ * - Report current location (single and batched pings)
+ * - Estimate time to reach the restaurant
+ * - Sequence the drops of the orders the driver carries
  */
 @RestController
 @RequestMapping("/api/drivers")
@@ -24,6 +34,75 @@ import org.springframework.web.bind.annotation.*;
 public class DriverController {
 
     private final DeliveryManagementService deliveryManagementService;
+    private final DriverLocationIngestService locationIngestService;
+
+    /**
+     * Driver app reports its current location
+     *
+     * POST /api/drivers/{driverId}/location
+     *
+     * Request Body:
+     * {
+     *   "latitude": 40.7306,
+     *   "longitude": -73.935,
+     *   "recordedAt": 1700000000000   (optional, epoch millis)
+     * }
+     *
+     * The fix is buffered and written with the next periodic flush, so the
+     * response is 202 Accepted.
+     *
+     * @param driverId Driver ID from URL path
+     * @param ping Location fix
+     * @return Accepted
+     */
+    @PostMapping("/{driverId}/location")
+    public ResponseEntity<ApiResponse<Void>> reportLocation(
+            @PathVariable Long driverId,
+            @Valid @RequestBody DriverLocationPingDTO ping) {
+
+        locationIngestService.record(driverId, ping.getLatitude(), ping.getLongitude(), ping.getRecordedAt());
+
+        return ResponseEntity
+                .status(HttpStatus.ACCEPTED)
+                .body(ApiResponse.success("Location received", null));
+    }
+
+    /**
+     * Batch of location fixes, possibly for many drivers
+     *
+     * POST /api/drivers/locations
+     *
+     * Request Body:
+     * {
+     *   "pings": [
+     *     { "driverId": 5, "latitude": 40.7306, "longitude": -73.935, "recordedAt": 1700000000000 },
+     *     { "driverId": 6, "latitude": 40.7411, "longitude": -73.989 }
+     *   ]
+     * }
+     *
+     * Pings without driverId are skipped.
+     *
+     * @param batch Location fixes
+     * @return Number of pings accepted
+     */
+    @PostMapping("/locations")
+    public ResponseEntity<ApiResponse<Integer>> reportLocations(@Valid @RequestBody DriverLocationBatchDTO batch) {
+        int accepted = 0;
+        for (DriverLocationPingDTO ping : batch.getPings()) {
+            if (ping.getDriverId() == null) {
+                continue;
+            }
+            locationIngestService.record(ping.getDriverId(), ping.getLatitude(), ping.getLongitude(), ping.getRecordedAt());
+            accepted++;
+        }
+
+        if (accepted < batch.getPings().size()) {
+            log.warn("POST /api/drivers/locations - skipped {} pings without driverId", batch.getPings().size() - accepted);
+        }
+        return ResponseEntity
+                .status(HttpStatus.ACCEPTED)
+                .body(ApiResponse.success("Locations received", accepted));
+    }
 
     /**
      * ⭐ THIS IS THE ENDPOINT THAT DRIVERS CLICK FROM SMS! ⭐
@@ -49,6 +128,8 @@ public class DriverController {
      * Race Condition Handling:
      * - First driver to call this endpoint wins
      * - Other drivers get "Order already assigned" error
+     * - Losing, expired and never-offered drivers are rejected in memory,
+     *   without a database round trip
      *
      * @param driverId Driver ID from URL path
      * @param orderId Order ID from URL path
@@ -188,6 +269,37 @@ public class DriverController {
         return ResponseEntity.ok(ApiResponse.success("Order marked as picked up", null));
     }
 
+    /**
+     * Estimated time for the driver to reach the restaurant of an order
+     *
+     * GET /api/drivers/{driverId}/pickup-eta/{orderId}
+     *
+     * @param driverId Driver ID
+     * @param orderId Order ID
+     * @return ETA in seconds and its source (MATRIX, ROUTED or STRAIGHT_LINE)
+     */
+    @GetMapping("/{driverId}/pickup-eta/{orderId}")
+    public ResponseEntity<ApiResponse<PickupEtaDTO>> estimatePickupEta(
+            @PathVariable Long driverId,
+            @PathVariable Long orderId) {
+        return ResponseEntity.ok(ApiResponse.success("Pickup ETA estimated",
+                deliveryManagementService.estimatePickupEta(orderId, driverId)));
+    }
+
+    /**
+     * Visiting order and ETAs of the drops of the driver's current orders
+     *
+     * GET /api/drivers/{driverId}/route
+     *
+     * @param driverId Driver ID
+     * @return Pickup ETA, then the drops in the order to visit them
+     */
+    @GetMapping("/{driverId}/route")
+    public ResponseEntity<ApiResponse<DeliveryRouteDTO>> planRoute(@PathVariable Long driverId) {
+        return ResponseEntity.ok(ApiResponse.success("Route planned",
+                deliveryManagementService.planDeliveryRoute(driverId)));
+    }
+
     /**
      * Driver marks order as delivered to customer
      *
@@ -45,6 +45,26 @@ public class RestaurantOrderController {
         );
     }
 
+    /**
+     * Restaurant cancels an accepted order that has not been assigned to a driver yet
+     *
+     * POST /api/restaurant/orders/{orderId}/cancel
+     *
+     * Stops the running driver search for the order.
+     *
+     * @param orderId Order ID to cancel
+     * @return Success message
+     */
+    @PostMapping("/{orderId}/cancel")
+    public ResponseEntity<ApiResponse<String>> cancelOrder(@PathVariable Long orderId) {
+        log.info("POST /api/restaurant/orders/{}/cancel - Restaurant cancelling order", orderId);
+
+        restaurantOrderService.cancelOrder(orderId);
+
+        log.info("Order {} cancelled", orderId);
+        return ResponseEntity.ok(ApiResponse.success("Order cancelled successfully", null));
+    }
+
     /**
      * Restaurant rejects an order
      *
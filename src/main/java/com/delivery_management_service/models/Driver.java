@@ -35,6 +35,13 @@ public class Driver {
     @Column(nullable = false, length = 50)
     private String status = "AVAILABLE"; // AVAILABLE, BUSY, OFFLINE
 
+    // Written by the database only: trigger on vehicle_type, and DriverCapacityWriter
+    @Column(name = "max_orders", nullable = false, insertable = false, updatable = false)
+    private Integer maxOrders = 1;
+
+    @Column(name = "active_orders", nullable = false, insertable = false, updatable = false)
+    private Integer activeOrders = 0;
+
     @Column(name = "is_active", nullable = false)
     private Boolean isActive = true;
 
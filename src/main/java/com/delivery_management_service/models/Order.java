@@ -4,6 +4,7 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.locationtech.jts.geom.Point;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -32,6 +33,9 @@ public class Order {
     @Column(name = "delivery_address", nullable = false, length = 500)
     private String deliveryAddress;
 
+    @Column(name = "delivery_location", columnDefinition = "geometry(Point,4326)")
+    private Point deliveryLocation; // Optional drop-off coordinates
+
     @Column(name = "total_amount", nullable = false, precision = 10, scale = 2)
     private BigDecimal totalAmount;
 
@@ -50,6 +54,9 @@ public class Order {
     @Column(name = "assigned_driver_id")
     private Long assignedDriverId;
 
+    @Column(name = "bundle_id")
+    private Long bundleId; // Lead order of the bundle this order is stacked into, null if not stacked
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "restaurant_id", insertable = false, updatable = false)
     private Restaurant restaurant;
@@ -0,0 +1,48 @@
+package com.delivery_management_service.models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * An order offered to a driver in a dispatch wave
+ *
+ * One row per (order, driver) notification. Recorded before the SMS goes out
+ * and resolved when the order is assigned or the wave expires.
+ */
+@Entity
+@Table(name = "order_offers")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderOffer {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "order_id", nullable = false)
+    private Long orderId;
+
+    @Column(name = "driver_id", nullable = false)
+    private Long driverId;
+
+    @Column(nullable = false)
+    private Integer wave;
+
+    @Column(nullable = false, length = 50)
+    private String status = "OFFERED"; // OFFERED, ACCEPTED, EXPIRED
+
+    @Column(name = "offered_at", nullable = false, updatable = false)
+    private LocalDateTime offeredAt;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    @PrePersist
+    protected void onCreate() {
+        offeredAt = LocalDateTime.now();
+    }
+}
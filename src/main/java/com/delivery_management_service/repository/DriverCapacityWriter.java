@@ -0,0 +1,93 @@
+package com.delivery_management_service.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Atomic changes to a driver's load (orders carried) against their capacity
+ *
+ * drivers.max_orders follows the vehicle type (vehicle_capacities, kept in
+ * sync by a trigger) and drivers.active_orders counts the orders carried.
+ * Every change is one conditional UPDATE that also keeps status in step:
+ * AVAILABLE while a slot is free, BUSY when full. Plain JDBC with RETURNING,
+ * so callers get the resulting load for their in-memory state.
+ *
+ * Runs in the caller's transaction.
+ */
+@Repository
+@RequiredArgsConstructor
+public class DriverCapacityWriter {
+
+    /**
+     * Load of one driver after a change
+     *
+     * @param status AVAILABLE, BUSY or OFFLINE
+     */
+    public record DriverLoad(long driverId, int activeOrders, int maxOrders, String status) {
+
+        public int freeSlots() {
+            return Math.max(0, maxOrders - activeOrders);
+        }
+    }
+
+    // Compare-and-set: only an active, AVAILABLE driver with enough free slots
+    private static final String CLAIM_SQL = "UPDATE drivers " +
+            "SET active_orders = active_orders + :slots, " +
+            "    status = CASE WHEN active_orders + :slots >= max_orders THEN 'BUSY' ELSE status END " +
+            "WHERE id = :driverId AND is_active = true AND status = 'AVAILABLE' " +
+            "AND active_orders + :slots <= max_orders " +
+            "RETURNING id, active_orders, max_orders, status";
+
+    // A full driver gets a slot back; an OFFLINE driver stays OFFLINE
+    private static final String RELEASE_SQL = "UPDATE drivers " +
+            "SET active_orders = GREATEST(active_orders - 1, 0), " +
+            "    status = CASE WHEN status = 'BUSY' THEN 'AVAILABLE' ELSE status END " +
+            "WHERE id = :driverId " +
+            "RETURNING id, active_orders, max_orders, status";
+
+    private static final String AVAILABLE_LOADS_SQL = "SELECT id, active_orders, max_orders, status FROM drivers " +
+            "WHERE is_active = true AND status = 'AVAILABLE'";
+
+    private static final RowMapper<DriverLoad> LOAD_MAPPER = (rs, row) -> new DriverLoad(
+            rs.getLong("id"), rs.getInt("active_orders"), rs.getInt("max_orders"), rs.getString("status"));
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * Takes slots on a driver for the orders they just accepted
+     *
+     * @param driverId Driver ID
+     * @param slots Orders accepted at once (a bundle takes one slot per order)
+     * @return Resulting load, empty if the driver is not AVAILABLE, inactive or lacks the slots
+     */
+    public Optional<DriverLoad> claimSlots(long driverId, int slots) {
+        return jdbcTemplate.query(CLAIM_SQL, new MapSqlParameterSource()
+                        .addValue("driverId", driverId)
+                        .addValue("slots", slots), LOAD_MAPPER)
+                .stream().findFirst();
+    }
+
+    /**
+     * Gives back the slot of a delivered order
+     *
+     * @param driverId Driver ID
+     * @return Resulting load, empty if the driver does not exist
+     */
+    public Optional<DriverLoad> releaseSlot(long driverId) {
+        return jdbcTemplate.query(RELEASE_SQL, new MapSqlParameterSource("driverId", driverId), LOAD_MAPPER)
+                .stream().findFirst();
+    }
+
+    /**
+     * @return Load of every active, AVAILABLE driver
+     */
+    public List<DriverLoad> findAvailableLoads() {
+        return jdbcTemplate.query(AVAILABLE_LOADS_SQL, LOAD_MAPPER);
+    }
+}
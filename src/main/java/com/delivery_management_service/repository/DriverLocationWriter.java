@@ -0,0 +1,67 @@
+package com.delivery_management_service.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+/**
+ * Writes coalesced driver locations with JDBC batch updates
+ *
+ * Bypasses JPA on purpose: no entity is loaded or dirty-checked, every row
+ * is one parameter set in a batched prepared statement.
+ */
+@Repository
+@RequiredArgsConstructor
+public class DriverLocationWriter {
+
+    /**
+     * Older fixes never overwrite newer ones, e.g. a delayed batch from a gateway
+     */
+    private static final String UPDATE_LOCATION_SQL = "UPDATE drivers " +
+            "SET current_location = ST_SetSRID(ST_MakePoint(?, ?), 4326), last_location_update = ? " +
+            "WHERE id = ? AND (last_location_update IS NULL OR last_location_update <= ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Updates current_location and last_location_update of many drivers in one transaction
+     *
+     * @param driverIds Driver IDs
+     * @param latitudes Latitudes, parallel to driverIds
+     * @param longitudes Longitudes, parallel to driverIds
+     * @param recordedAt Fix timestamps (epoch millis), parallel to driverIds
+     * @param count Number of entries to write
+     * @param batchSize Rows per JDBC batch
+     */
+    @Transactional
+    public void updateLocations(long[] driverIds, double[] latitudes, double[] longitudes, long[] recordedAt,
+                                int count, int batchSize) {
+        for (int offset = 0; offset < count; offset += batchSize) {
+            int start = offset;
+            int size = Math.min(batchSize, count - offset);
+            jdbcTemplate.batchUpdate(UPDATE_LOCATION_SQL, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    int row = start + i;
+                    Timestamp timestamp = new Timestamp(recordedAt[row]);
+                    ps.setDouble(1, longitudes[row]);
+                    ps.setDouble(2, latitudes[row]);
+                    ps.setTimestamp(3, timestamp);
+                    ps.setLong(4, driverIds[row]);
+                    ps.setTimestamp(5, timestamp);
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return size;
+                }
+            });
+        }
+    }
+}
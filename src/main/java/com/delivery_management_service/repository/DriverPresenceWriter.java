@@ -0,0 +1,69 @@
+package com.delivery_management_service.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Bulk driver status changes driven by presence (heartbeat) tracking
+ *
+ * Plain JDBC with RETURNING, so callers learn which drivers actually changed
+ * status and can update in-memory state for exactly those.
+ */
+@Repository
+@RequiredArgsConstructor
+public class DriverPresenceWriter {
+
+    private static final int CHUNK_SIZE = 1000;
+
+    // Only drivers with a free slot go offline, keeping the orders they carry;
+    // a full (BUSY) driver with a dead phone is left alone
+    private static final String MARK_OFFLINE_SQL = "UPDATE drivers SET status = 'OFFLINE' " +
+            "WHERE id IN (:driverIds) AND status = 'AVAILABLE' " +
+            "RETURNING id";
+
+    private static final String MARK_AVAILABLE_SQL = "UPDATE drivers SET status = 'AVAILABLE' " +
+            "WHERE id IN (:driverIds) AND status = 'OFFLINE' AND is_active = true " +
+            "RETURNING id";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * Marks AVAILABLE drivers OFFLINE
+     *
+     * @param driverIds Drivers whose heartbeat expired
+     * @return Drivers that were AVAILABLE and are now OFFLINE
+     */
+    @Transactional
+    public List<Long> markOffline(Collection<Long> driverIds) {
+        return updateInChunks(MARK_OFFLINE_SQL, driverIds);
+    }
+
+    /**
+     * Brings OFFLINE drivers back to AVAILABLE
+     *
+     * @param driverIds Drivers that pinged again
+     * @return Drivers that were OFFLINE and are now AVAILABLE
+     */
+    @Transactional
+    public List<Long> markAvailable(Collection<Long> driverIds) {
+        return updateInChunks(MARK_AVAILABLE_SQL, driverIds);
+    }
+
+    private List<Long> updateInChunks(String sql, Collection<Long> driverIds) {
+        List<Long> ids = new ArrayList<>(driverIds);
+        List<Long> changed = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += CHUNK_SIZE) {
+            List<Long> chunk = ids.subList(from, Math.min(ids.size(), from + CHUNK_SIZE));
+            changed.addAll(jdbcTemplate.queryForList(sql,
+                    new MapSqlParameterSource("driverIds", chunk), Long.class));
+        }
+        return changed;
+    }
+}
@@ -1,5 +1,7 @@
 package com.delivery_management_service.repository;
 
+import com.delivery_management_service.DTO.DriverAttributes;
+import com.delivery_management_service.DTO.DriverCandidate;
 import com.delivery_management_service.models.Driver;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
@@ -7,11 +9,133 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface DriverRepository extends JpaRepository<Driver,Long> {
 
+    /**
+     * Next-nearest available drivers within a radius, as DriverCandidate rows
+     *
+     * - ORDER BY location::geography <-> point::geography: KNN operator,
+     *   answered by walking the GiST index on (current_location::geography)
+     *   nearest-first, so only about :limit rows are visited. Geography rather
+     *   than geometry: degrees of longitude shrink with latitude, so a planar
+     *   order would rank drivers wrongly
+     * - ST_DWithin(... ::geography, :radiusMeters): radius in meters, checked
+     *   against the same index
+     * - (distance, id) > (:afterMeters, :afterId): keyset cursor, a wave starts
+     *   after the previous one instead of re-reading it. ORDER BY breaks
+     *   distance ties on id, so pages agree with the keyset; the id key is an
+     *   incremental sort over the index order, within ties only
+     * - id NOT IN (:excludedIds): drivers already offered the order
+     * - open offers < :maxOffersPerDriver: drivers holding that many unexpired
+     *   offers of other orders are skipped (see DriverOfferLeases)
+     * - active_orders + :slots <= max_orders: the driver has room for the
+     *   order, :slots orders for a stacked bundle (see DriverCapacityWriter)
+     * - distanceMeters: sphere distance, the metric <-> orders by, so the cursor
+     *   agrees with the index order; passed back as :afterMeters exactly as
+     *   returned, so the equality branch of the keyset matches
+     * - distanceKm: the same distance in kilometers, for display and ranking
+     *
+     * Kept as a constant so the EXPLAIN tests check the exact SQL in use.
+     */
+    String NEAREST_CANDIDATES_SQL = "SELECT d.id AS id, d.phone AS phone, d.name AS name, " +
+            "ST_Distance(d.current_location::geography, " +
+            "            ST_SetSRID(ST_MakePoint(:lng, :lat), 4326)::geography, false) AS \"distanceMeters\", " +
+            "ST_Distance(d.current_location::geography, " +
+            "            ST_SetSRID(ST_MakePoint(:lng, :lat), 4326)::geography, false) / 1000 AS \"distanceKm\" " +
+            "FROM drivers d " +
+            "WHERE d.is_active = true " +
+            "AND d.status = 'AVAILABLE' " +
+            "AND d.current_location IS NOT NULL " +
+            "AND ST_DWithin(d.current_location::geography, " +
+            "              ST_SetSRID(ST_MakePoint(:lng, :lat), 4326)::geography, :radiusMeters) " +
+            "AND (ST_Distance(d.current_location::geography, " +
+            "                 ST_SetSRID(ST_MakePoint(:lng, :lat), 4326)::geography, false) > :afterMeters " +
+            "     OR (ST_Distance(d.current_location::geography, " +
+            "                     ST_SetSRID(ST_MakePoint(:lng, :lat), 4326)::geography, false) = :afterMeters " +
+            "         AND d.id > :afterId)) " +
+            "AND d.id NOT IN (:excludedIds) " +
+            "AND d.active_orders + :slots <= d.max_orders " +
+            "AND (:anyVehicleType OR upper(d.vehicle_type) IN (:vehicleTypes)) " +
+            "AND (SELECT count(*) FROM order_offers o " +
+            "     WHERE o.driver_id = d.id AND o.status = 'OFFERED' AND o.expires_at > LOCALTIMESTAMP) " +
+            "    < :maxOffersPerDriver " +
+            "ORDER BY d.current_location::geography <-> ST_SetSRID(ST_MakePoint(:lng, :lat), 4326)::geography, d.id " +
+            "LIMIT :limit";
+
+    /**
+     * Find the next-nearest available drivers within a radius
+     *
+     * See NEAREST_CANDIDATES_SQL. The first wave passes afterMeters = -1.
+     *
+     * @param longitude Restaurant longitude (X coordinate)
+     * @param latitude Restaurant latitude (Y coordinate)
+     * @param radiusMeters Maximum distance from the restaurant in meters
+     * @param afterMeters distanceMeters of the last driver of the previous wave, as returned
+     * @param afterId ID of the last driver of the previous wave
+     * @param excludedIds Drivers already offered the order (never empty, use a sentinel like -1)
+     * @param maxOffersPerDriver Open offers at which a driver is skipped
+     * @param slots Free order slots a driver needs
+     * @param anyVehicleType true if any vehicle will do, false to require one of vehicleTypes
+     * @param vehicleTypes Accepted vehicle types, upper case (never empty, use a sentinel like "")
+     * @param limit Number of drivers to return
+     * @return Candidates ordered by distance, nearest first
+     */
+    @Query(value = NEAREST_CANDIDATES_SQL, nativeQuery = true)
+    List<DriverCandidate> findNearestCandidates(
+            @Param("lng") double longitude,
+            @Param("lat") double latitude,
+            @Param("radiusMeters") double radiusMeters,
+            @Param("afterMeters") double afterMeters,
+            @Param("afterId") long afterId,
+            @Param("excludedIds") Collection<Long> excludedIds,
+            @Param("maxOffersPerDriver") int maxOffersPerDriver,
+            @Param("slots") int slots,
+            @Param("anyVehicleType") boolean anyVehicleType,
+            @Param("vehicleTypes") Collection<String> vehicleTypes,
+            @Param("limit") int limit
+    );
+
+    /**
+     * Loads the given drivers as candidates, if they are still available
+     *
+     * Used to confirm drivers picked from the in-memory spatial index;
+     * drivers that went BUSY/OFFLINE or lack the free slots in the meantime,
+     * or drive the wrong vehicle type, are left out.
+     *
+     * @param driverIds Driver IDs
+     * @param longitude Restaurant longitude
+     * @param latitude Restaurant latitude
+     * @param slots Free order slots a driver needs
+     * @param anyVehicleType true if any vehicle will do, false to require one of vehicleTypes
+     * @param vehicleTypes Accepted vehicle types, upper case (never empty, use a sentinel like "")
+     * @return Available candidates among driverIds, in no particular order
+     */
+    @Query(value = "SELECT d.id AS id, d.phone AS phone, d.name AS name, " +
+            "ST_Distance(d.current_location::geography, " +
+            "            ST_SetSRID(ST_MakePoint(:lng, :lat), 4326)::geography, false) AS \"distanceMeters\", " +
+            "ST_Distance(d.current_location::geography, " +
+            "            ST_SetSRID(ST_MakePoint(:lng, :lat), 4326)::geography, false) / 1000 AS \"distanceKm\" " +
+            "FROM drivers d " +
+            "WHERE d.id IN (:driverIds) " +
+            "AND d.is_active = true " +
+            "AND d.status = 'AVAILABLE' " +
+            "AND d.active_orders + :slots <= d.max_orders " +
+            "AND (:anyVehicleType OR upper(d.vehicle_type) IN (:vehicleTypes)) " +
+            "AND d.current_location IS NOT NULL",
+            nativeQuery = true)
+    List<DriverCandidate> findAvailableCandidatesByIds(
+            @Param("driverIds") Collection<Long> driverIds,
+            @Param("lng") double longitude,
+            @Param("lat") double latitude,
+            @Param("slots") int slots,
+            @Param("anyVehicleType") boolean anyVehicleType,
+            @Param("vehicleTypes") Collection<String> vehicleTypes
+    );
+
     /**
      * CRITICAL POSTGIS QUERY: Find nearest available drivers
      *
@@ -84,6 +208,30 @@ public interface DriverRepository extends JpaRepository<Driver,Long> {
     @Query("UPDATE Driver d SET d.status = :status WHERE d.id = :driverId")
     void updateDriverStatus(@Param("driverId") Long driverId, @Param("status") String status);
 
+    /**
+     * Attributes of every driver, for the in-memory DriverAttributeIndex
+     *
+     * @return One row per driver, in no particular order
+     */
+    @Query(value = "SELECT d.id AS id, d.vehicle_type AS \"vehicleType\", d.is_active AS active, d.status AS status, " +
+            "GREATEST(d.max_orders - d.active_orders, 0) AS \"freeSlots\" " +
+            "FROM drivers d",
+            nativeQuery = true)
+    List<DriverAttributes> findAllAttributes();
+
+    /**
+     * Attributes of some drivers, for drivers the DriverAttributeIndex does
+     * not know yet
+     *
+     * @param driverIds Driver IDs
+     * @return One row per existing driver, in no particular order
+     */
+    @Query(value = "SELECT d.id AS id, d.vehicle_type AS \"vehicleType\", d.is_active AS active, d.status AS status, " +
+            "GREATEST(d.max_orders - d.active_orders, 0) AS \"freeSlots\" " +
+            "FROM drivers d WHERE d.id IN (:driverIds)",
+            nativeQuery = true)
+    List<DriverAttributes> findAttributesByIds(@Param("driverIds") Collection<Long> driverIds);
+
     /**
      * Find all active drivers by status
      */
@@ -0,0 +1,52 @@
+package com.delivery_management_service.repository;
+
+import com.delivery_management_service.models.OrderOffer;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface OrderOfferRepository extends JpaRepository<OrderOffer, Long> {
+
+    /**
+     * Find all offers made for an order
+     */
+    List<OrderOffer> findByOrderId(Long orderId);
+
+    /**
+     * Find the offers still open, i.e. the drivers' outstanding offer leases
+     *
+     * @param status Offer status, OFFERED
+     * @param now Offers expiring before this are ignored
+     */
+    List<OrderOffer> findByStatusAndExpiresAtAfter(String status, LocalDateTime now);
+
+    /**
+     * Resolve the open offers of an assigned order
+     * The winning driver's offer becomes ACCEPTED, every other open offer EXPIRED
+     *
+     * @param orderId Order ID
+     * @param driverId Winning driver ID
+     * @return Number of offers resolved
+     */
+    @Modifying
+    @Query("UPDATE OrderOffer o " +
+            "SET o.status = CASE WHEN o.driverId = :driverId THEN 'ACCEPTED' ELSE 'EXPIRED' END " +
+            "WHERE o.orderId = :orderId AND o.status = 'OFFERED'")
+    int resolveOffers(@Param("orderId") Long orderId, @Param("driverId") Long driverId);
+
+    /**
+     * Expire all open offers of an order (no driver accepted / dispatch failed)
+     *
+     * @param orderId Order ID
+     * @return Number of offers expired
+     */
+    @Modifying
+    @Query("UPDATE OrderOffer o SET o.status = 'EXPIRED' WHERE o.orderId = :orderId AND o.status = 'OFFERED'")
+    int expireOffers(@Param("orderId") Long orderId);
+}
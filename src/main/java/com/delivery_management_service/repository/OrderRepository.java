@@ -2,10 +2,12 @@ package com.delivery_management_service.repository;
 
 import com.delivery_management_service.models.Order;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -28,6 +30,108 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
      */
     List<Order> findByAssignedDriverId(Long driverId);
 
+    /**
+     * Compare-and-set assignment of a driver to an order
+     *
+     * Succeeds only while the order is ACCEPTED and unassigned. Concurrent
+     * acceptances serialize on the row lock and re-check the condition, so
+     * exactly one of them updates the row.
+     *
+     * @param orderId Order ID
+     * @param driverId Accepting driver ID
+     * @return 1 if this driver won the order, 0 otherwise
+     */
+    @Modifying
+    @Query(value = "UPDATE orders SET assigned_driver_id = :driverId, status = 'ASSIGNED' " +
+            "WHERE id = :orderId AND assigned_driver_id IS NULL AND status = 'ACCEPTED'",
+            nativeQuery = true)
+    int assignDriverIfUnassigned(@Param("orderId") Long orderId, @Param("driverId") Long driverId);
+
+    /**
+     * Compare-and-set cancellation of an order that no driver has claimed
+     *
+     * Races with assignDriverIfUnassigned on the row lock: whichever commits
+     * first wins, and the other sees the changed row and updates nothing. A
+     * claimed order is never reset to CANCELLED with its driver slot taken.
+     *
+     * @param orderId Order ID
+     * @return 1 if the order was cancelled, 0 if it is assigned or in another status
+     */
+    @Modifying
+    @Query(value = "UPDATE orders SET status = 'CANCELLED' " +
+            "WHERE id = :orderId AND status IN ('ACCEPTED', 'UNASSIGNED') AND assigned_driver_id IS NULL",
+            nativeQuery = true)
+    int cancelIfUnassigned(@Param("orderId") Long orderId);
+
+    /**
+     * Compare-and-set of the status of an order whose dispatch ended without
+     * a driver (UNASSIGNED, ASSIGNMENT_FAILED)
+     *
+     * Races with assignDriverIfUnassigned on the row lock like
+     * cancelIfUnassigned: an order a driver claimed meanwhile keeps its
+     * assignment, and a cancelled one stays cancelled.
+     *
+     * @param orderId Order ID
+     * @param status New status
+     * @return 1 if the status was set, 0 if the order is assigned or in another status
+     */
+    @Modifying
+    @Query(value = "UPDATE orders SET status = :status " +
+            "WHERE id = :orderId AND status IN ('ACCEPTED', 'UNASSIGNED') AND assigned_driver_id IS NULL",
+            nativeQuery = true)
+    int markIfUnassigned(@Param("orderId") Long orderId, @Param("status") String status);
+
+    /**
+     * Assigns the open members of a bundle to the driver who won its lead order
+     *
+     * Runs in the lead's claim transaction, after assignDriverIfUnassigned
+     * succeeded for the lead, so the bundle is assigned all at once or not at
+     * all. Members cancelled meanwhile are no longer ACCEPTED and stay out.
+     *
+     * @param bundleId Lead order ID
+     * @param driverId Accepting driver ID
+     * @return Number of members assigned, 0 for an order that is not a bundle
+     */
+    @Modifying
+    @Query(value = "UPDATE orders SET assigned_driver_id = :driverId, status = 'ASSIGNED' " +
+            "WHERE bundle_id = :bundleId AND id <> :bundleId " +
+            "AND assigned_driver_id IS NULL AND status = 'ACCEPTED'",
+            nativeQuery = true)
+    int assignBundleMembersIfUnassigned(@Param("bundleId") Long bundleId, @Param("driverId") Long driverId);
+
+    /**
+     * Dissolves a bundle, e.g. because its lead order was cancelled
+     *
+     * @param bundleId Lead order ID
+     * @return Number of orders taken out of the bundle
+     */
+    @Modifying
+    @Query(value = "UPDATE orders SET bundle_id = NULL WHERE bundle_id = :bundleId", nativeQuery = true)
+    int clearBundle(@Param("bundleId") Long bundleId);
+
+    /**
+     * Compare-and-set delivery of a picked-up order by its driver
+     *
+     * Succeeds only while the order is PICKED_UP and assigned to this driver,
+     * so a repeated or concurrent delivery of the same order updates no row.
+     *
+     * @param orderId Order ID
+     * @param driverId Delivering driver ID
+     * @param deliveredAt Delivery time
+     * @return 1 if this call delivered the order, 0 otherwise
+     */
+    @Modifying
+    @Query(value = "UPDATE orders SET status = 'DELIVERED', delivered_at = :deliveredAt " +
+            "WHERE id = :orderId AND assigned_driver_id = :driverId AND status = 'PICKED_UP'",
+            nativeQuery = true)
+    int markDeliveredIfPickedUp(@Param("orderId") Long orderId, @Param("driverId") Long driverId,
+                                @Param("deliveredAt") LocalDateTime deliveredAt);
+
+    /**
+     * Find a driver's orders in the given statuses, e.g. the ones still to deliver
+     */
+    List<Order> findByAssignedDriverIdAndStatusIn(Long driverId, List<String> statuses);
+
     /**
      * Find order with order items eagerly loaded using JOIN FETCH
      * Prevents N+1 query problem when accessing order items
@@ -0,0 +1,247 @@
+package com.delivery_management_service.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Streaming acceptance statistics per zone and hour of day, used to size waves
+ * and time out offers
+ *
+ * Zones are cells of adaptive-waves.zone-size-deg around the restaurant. The
+ * unit is one offer to one driver, resolved by OfferOutcomes: accepted after
+ * some latency (every driver tapping accept, the winner and the losers), or
+ * timed out. For each (zone, hour) bucket this keeps:
+ * - offers:    resolved offers
+ * - accepted:  histogram of offer-to-acceptance latency, one-second buckets
+ * - timed out: histogram of the timeouts of offers nobody accepted
+ *
+ * A timed-out offer says nothing about what the driver would have done
+ * later, so it is right-censored at its timeout: the probability F(t) that an
+ * offer is accepted within t seconds is a Kaplan-Meier estimate, not a
+ * histogram of the acceptances alone (which can never reach past the current
+ * timeout and would ratchet it down to min-timeout).
+ *
+ * From F a wave is planned so that it is accepted with probability
+ * adaptive-waves.target-acceptance-probability, treating drivers as independent:
+ *   timeout = first t where F(t) reaches adaptive-waves.timeout-percentile of
+ *             F(max-timeout), within [min-timeout, max-timeout]
+ *   p       = F(timeout)
+ *   size    = ceil(log(1 - target) / log(1 - p)), within [min-wave-size, driver-batch-size]
+ * So quiet hours send fewer SMS and busy hours give up on a dead wave sooner.
+ * A fraction adaptive-waves.explore-fraction of waves waits the full
+ * max-timeout, so F stays known up to max-timeout.
+ *
+ * Until a bucket has adaptive-waves.min-samples offers (or acceptances, for
+ * the timeout) the fixed driver-batch-size and max-timeout apply. All counts
+ * are halved every adaptive-waves.decay-ms so the statistics follow drift.
+ */
+@Component
+@Slf4j
+public class AcceptanceStatistics {
+
+    /**
+     * Size and offer timeout of the next wave
+     *
+     * @param size Number of drivers to notify
+     * @param timeout How long to wait for an acceptance
+     */
+    public record WavePlan(int size, Duration timeout) {
+    }
+
+    private static final int OFFERS = 0;
+    private static final int ACCEPTED_OFFSET = 1;
+
+    private final boolean enabled;
+    private final ZoneGrid grid;
+    private final double targetProbability;
+    private final double timeoutPercentile;
+    private final int minWaveSize;
+    private final int maxWaveSize;
+    private final long minTimeoutSeconds;
+    private final long maxTimeoutSeconds;
+    private final long minSamples;
+    private final double exploreFraction;
+    private final int timedOutOffset;
+
+    // (zone, hour) -> [offers, accepted (1 s buckets 0..max-timeout), timed out (1 s buckets 0..max-timeout + 1)]
+    private final Map<Long, AtomicLongArray> buckets = new ConcurrentHashMap<>();
+
+    public AcceptanceStatistics(@Value("${app.delivery.adaptive-waves.enabled:true}") boolean enabled,
+                                @Value("${app.delivery.adaptive-waves.zone-size-deg:0.05}") double zoneSizeDeg,
+                                @Value("${app.delivery.adaptive-waves.target-acceptance-probability:0.9}") double targetProbability,
+                                @Value("${app.delivery.adaptive-waves.timeout-percentile:0.9}") double timeoutPercentile,
+                                @Value("${app.delivery.adaptive-waves.min-wave-size:3}") int minWaveSize,
+                                @Value("${app.delivery.driver-batch-size:20}") int maxWaveSize,
+                                @Value("${app.delivery.adaptive-waves.min-timeout-seconds:30}") long minTimeoutSeconds,
+                                @Value("${app.delivery.adaptive-waves.max-timeout-seconds:120}") long maxTimeoutSeconds,
+                                @Value("${app.delivery.adaptive-waves.min-samples:30}") long minSamples,
+                                @Value("${app.delivery.adaptive-waves.explore-fraction:0.05}") double exploreFraction) {
+        this.enabled = enabled;
+        this.grid = new ZoneGrid(zoneSizeDeg);
+        this.targetProbability = targetProbability;
+        this.timeoutPercentile = timeoutPercentile;
+        this.minWaveSize = Math.min(minWaveSize, maxWaveSize);
+        this.maxWaveSize = maxWaveSize;
+        this.minTimeoutSeconds = Math.min(minTimeoutSeconds, maxTimeoutSeconds);
+        this.maxTimeoutSeconds = maxTimeoutSeconds;
+        this.minSamples = minSamples;
+        this.exploreFraction = exploreFraction;
+        this.timedOutOffset = ACCEPTED_OFFSET + (int) maxTimeoutSeconds + 1;
+    }
+
+    /**
+     * Plans the next wave of an order
+     *
+     * @param latitude Restaurant latitude
+     * @param longitude Restaurant longitude
+     * @return Wave size and offer timeout for the current hour in the restaurant's zone
+     */
+    public WavePlan plan(double latitude, double longitude) {
+        WavePlan fixed = new WavePlan(maxWaveSize, Duration.ofSeconds(maxTimeoutSeconds));
+        if (!enabled) {
+            return fixed;
+        }
+        AtomicLongArray bucket = buckets.get(key(latitude, longitude));
+        if (bucket == null) {
+            return fixed;
+        }
+
+        long offers = bucket.get(OFFERS);
+        if (offers < minSamples) {
+            return fixed;
+        }
+        double[] acceptedWithin = acceptedWithin(bucket);
+
+        long timeoutSeconds = maxTimeoutSeconds;
+        if (acceptances(bucket) >= minSamples && ThreadLocalRandom.current().nextDouble() >= exploreFraction) {
+            timeoutSeconds = Math.max(minTimeoutSeconds,
+                    Math.min(maxTimeoutSeconds, timeoutSeconds(acceptedWithin)));
+        }
+
+        double p = acceptedWithin[(int) timeoutSeconds];
+        int size = maxWaveSize;
+        if (p >= 1.0) {
+            size = minWaveSize;
+        } else if (p > 0) {
+            size = (int) Math.ceil(Math.log(1 - targetProbability) / Math.log(1 - p));
+        }
+        size = Math.max(minWaveSize, Math.min(maxWaveSize, size));
+        return new WavePlan(size, Duration.ofSeconds(timeoutSeconds));
+    }
+
+    /**
+     * Records an offer the driver accepted, whether or not it won the order
+     *
+     * @param latitude Restaurant latitude
+     * @param longitude Restaurant longitude
+     * @param latency Time from sending the offer to the driver's acceptance
+     */
+    public void recordAccepted(double latitude, double longitude, Duration latency) {
+        if (!enabled) {
+            return;
+        }
+        AtomicLongArray bucket = bucket(latitude, longitude);
+        int slot = (int) Math.min(maxTimeoutSeconds, Math.max(0, latency.toSeconds()));
+        bucket.incrementAndGet(ACCEPTED_OFFSET + slot);
+        bucket.incrementAndGet(OFFERS);
+    }
+
+    /**
+     * Records an offer that expired without the driver accepting it
+     *
+     * @param latitude Restaurant latitude
+     * @param longitude Restaurant longitude
+     * @param timeout Offer timeout: the driver was observed this long
+     */
+    public void recordTimedOut(double latitude, double longitude, Duration timeout) {
+        if (!enabled) {
+            return;
+        }
+        AtomicLongArray bucket = bucket(latitude, longitude);
+        int slot = (int) Math.min(maxTimeoutSeconds + 1, Math.max(0, timeout.toSeconds()));
+        bucket.incrementAndGet(timedOutOffset + slot);
+        bucket.incrementAndGet(OFFERS);
+    }
+
+    /**
+     * Halves every count, so older days weigh less than recent ones
+     */
+    @Scheduled(fixedDelayString = "${app.delivery.adaptive-waves.decay-ms:86400000}",
+            initialDelayString = "${app.delivery.adaptive-waves.decay-ms:86400000}")
+    public void decay() {
+        for (AtomicLongArray bucket : buckets.values()) {
+            for (int i = 0; i < bucket.length(); i++) {
+                bucket.getAndUpdate(i, count -> count / 2);
+            }
+        }
+        log.debug("Decayed acceptance statistics of {} zone-hours", buckets.size());
+    }
+
+    /**
+     * Kaplan-Meier estimate of F(t), the probability that an offer is accepted
+     * within t seconds, for t in [0, max-timeout + 1]
+     *
+     * An offer timed out after T seconds is at risk in seconds 0..T-1 only.
+     */
+    private double[] acceptedWithin(AtomicLongArray bucket) {
+        double[] accepted = new double[(int) maxTimeoutSeconds + 2];
+        long atRisk = bucket.get(OFFERS);
+        double notYetAccepted = 1;
+        for (int second = 0; second <= maxTimeoutSeconds; second++) {
+            atRisk -= bucket.get(timedOutOffset + second);
+            long acceptedNow = bucket.get(ACCEPTED_OFFSET + second);
+            if (atRisk > 0 && acceptedNow > 0) {
+                notYetAccepted *= 1 - Math.min(1.0, (double) acceptedNow / atRisk);
+            }
+            atRisk -= acceptedNow;
+            accepted[second + 1] = 1 - notYetAccepted;
+        }
+        return accepted;
+    }
+
+    /**
+     * @return First t at which F(t) reaches timeout-percentile of F(max-timeout)
+     */
+    private long timeoutSeconds(double[] acceptedWithin) {
+        double eventually = acceptedWithin[acceptedWithin.length - 1];
+        if (eventually <= 0) {
+            return maxTimeoutSeconds;
+        }
+        for (int second = 1; second < acceptedWithin.length; second++) {
+            if (acceptedWithin[second] >= timeoutPercentile * eventually) {
+                return second;
+            }
+        }
+        return maxTimeoutSeconds;
+    }
+
+    private long acceptances(AtomicLongArray bucket) {
+        long total = 0;
+        for (int i = ACCEPTED_OFFSET; i < timedOutOffset; i++) {
+            total += bucket.get(i);
+        }
+        return total;
+    }
+
+    private AtomicLongArray bucket(double latitude, double longitude) {
+        return buckets.computeIfAbsent(key(latitude, longitude),
+                key -> new AtomicLongArray(timedOutOffset + (int) maxTimeoutSeconds + 2));
+    }
+
+    /**
+     * Packs (zone, hour of day) into one key
+     */
+    private long key(double latitude, double longitude) {
+        int hour = LocalDateTime.now().getHour();
+        return grid.key(latitude, longitude) << 5 | hour;
+    }
+}
@@ -0,0 +1,21 @@
+package com.delivery_management_service.services;
+
+/**
+ * Ranks driver candidates of an order; higher scores are offered first
+ *
+ * Called for every candidate in the search pool (hundreds per order), so
+ * implementations must be allocation-free arithmetic on the given inputs.
+ * The default is WeightedCandidateRanker; declare a @Primary CandidateRanker
+ * bean to replace it.
+ */
+public interface CandidateRanker {
+
+    /**
+     * @param distanceKm Distance from the driver to the restaurant
+     * @param acceptanceRate Decayed share of offers the driver accepted, smoothed towards a prior
+     * @param meanAcceptSeconds Decayed mean time the driver took to accept
+     * @param idleSeconds Time since the driver last finished a delivery; the idle horizon if not known
+     * @return Score, higher is better
+     */
+    double score(double distanceKm, double acceptanceRate, double meanAcceptSeconds, double idleSeconds);
+}
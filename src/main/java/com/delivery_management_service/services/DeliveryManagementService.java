@@ -676,35 +676,36 @@
 
 package com.delivery_management_service.services;
 
-import com.delivery_management_service.DTO.DriverNotificationDTO;
+import com.delivery_management_service.DTO.DeliveryRouteDTO;
+import com.delivery_management_service.DTO.DeliveryStopDTO;
+import com.delivery_management_service.DTO.PickupEtaDTO;
 import com.delivery_management_service.models.Driver;
 import com.delivery_management_service.models.Order;
-import com.delivery_management_service.models.Restaurant;
+import com.delivery_management_service.repository.DriverCapacityWriter;
 import com.delivery_management_service.repository.DriverRepository;
 import com.delivery_management_service.repository.OrderRepository;
-import com.delivery_management_service.repository.RestaurantRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.locationtech.jts.geom.Point;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Optional;
 
 /**
  * DeliveryManagementService
  *
  * Core service responsible for:
- * 1. Finding nearest available drivers using PostGIS spatial queries
- * 2. Notifying drivers in batches of 20
- * 3. Assigning drivers to orders
- * 4. Managing driver status (AVAILABLE/BUSY)
- * 5. Handling order lifecycle (ASSIGNED -> PICKED_UP -> DELIVERED)
+ * 1. Starting driver dispatch for accepted orders (DispatchStateMachine)
+ * 2. Assigning drivers to orders
+ * 3. Managing driver capacity (active_orders/max_orders, BUSY when full)
+ * 4. Handling order lifecycle (ASSIGNED -> PICKED_UP -> DELIVERED)
+ * 5. Estimating pickup times (TravelTimeEstimator)
+ * 6. Sequencing the drops of stacked orders (DeliveryRoutePlanner)
  */
 @Service
 @RequiredArgsConstructor
@@ -712,482 +713,265 @@ import java.util.Optional;
 public class DeliveryManagementService {
 
     private final DriverRepository driverRepository;
-    private final RestaurantRepository restaurantRepository;
     private final OrderRepository orderRepository;
-    private final TwilioSmsService twilioSmsService;
-
-    @Value("${app.delivery.driver-batch-size:20}")
-    private int driverBatchSize;
-
-    @Value("${app.delivery.max-driver-distance-km:10}")
-    private double maxDriverDistanceKm;
-
-    @Value("${app.delivery.base-url}")
-    private String baseUrl;
+    private final DriverSpatialIndex driverSpatialIndex;
+    private final OrderAcceptanceRegistry acceptanceRegistry;
+    private final OpenOfferRegistry openOfferRegistry;
+    private final OfferOutcomes offerOutcomes;
+    private final DispatchTransactions dispatchTransactions;
+    private final DispatchStateMachine dispatchStateMachine;
+    private final OrderStacker orderStacker;
+    private final DriverScoreBoard driverScoreBoard;
+    private final TravelTimeEstimator travelTimeEstimator;
+    private final DeliveryRoutePlanner deliveryRoutePlanner;
+    private final DriverCapacityWriter driverCapacityWriter;
+    private final DriverAttributeIndex driverAttributeIndex;
 
     /**
      * MAIN METHOD: Assigns a driver to an order
      *
-     * Process:
-     * 1. Fetch restaurant location (lat/lng)
-     * 2. Use PostGIS to find nearest 20 available drivers
-     * 3. Notify drivers (simulated)
-     * 4. If none accepts, fetch next 20 drivers
-     * 5. Once accepted, update order and driver status
+     * Process (see DispatchStateMachine):
+     * 0. With stacking enabled, hold the order briefly so further orders of the
+     *    same restaurant can join it as one bundle (OrderStacker)
+     * 1. Load order + restaurant location into a detached DispatchContext
+     * 2. Find nearest 20 available drivers (in-memory index, PostGIS fallback)
+     * 3. Record the offers and notify drivers via SMS
+     * 4. If none accepts before the offer times out, fetch next 20 drivers
+     * 5. Once accepted, resolve the offers
+     *
+     * Returns immediately: the dispatch progresses as events on the dispatch
+     * executor, and waiting for drivers costs a timing-wheel entry, not a thread.
+     * No transaction or connection is held between the steps.
      *
-     * Runs asynchronously to avoid blocking restaurant acceptance response
+     * Starts after the caller's transaction commits, so the dispatch sees the
+     * committed ACCEPTED order.
      *
      * @param orderId Order ID to assign driver to
      * @param restaurantId Restaurant ID (to get location)
+     * @param restaurantLocation Restaurant coordinates for the stacking detour check, null if unknown
+     * @param deliveryLocation Drop-off coordinates for the stacking detour check, null if unknown
      */
-    @Async
-    @Transactional
-    public void assignDriverToOrder(Long orderId, Long restaurantId) {
+    public void assignDriverToOrder(Long orderId, Long restaurantId, Point restaurantLocation, Point deliveryLocation) {
         log.info("========================================");
         log.info("Starting driver assignment for order: {} from restaurant: {}", orderId, restaurantId);
         log.info("========================================");
 
-        try {
-            // Step 1: Fetch restaurant with coordinates
-            Restaurant restaurant = restaurantRepository.findById(restaurantId)
-                    .orElseThrow(() -> new RuntimeException("Restaurant not found: " + restaurantId));
-
-            Point restaurantLocation = restaurant.getLocation();
-            if (restaurantLocation == null) {
-                log.error("Restaurant {} has no location coordinates", restaurantId);
-                throw new RuntimeException("Restaurant location not available");
-            }
-
-            double longitude = restaurantLocation.getX();
-            double latitude = restaurantLocation.getY();
-
-            log.info("Restaurant location: lat={}, lng={}", latitude, longitude);
-
-            // Step 2: Fetch order details
-            Order order = orderRepository.findById(orderId)
-                    .orElseThrow(() -> new RuntimeException("Order not found: " + orderId));
-
-            // Step 3: Find and notify drivers in batches
-            boolean driverAssigned = findAndNotifyDrivers(order, restaurant, longitude, latitude);
-
-            if (!driverAssigned) {
-                log.warn("No driver accepted order: {}. Marking as UNASSIGNED", orderId);
-                order.setStatus("UNASSIGNED");
-                orderRepository.save(order);
-//                orderRepository.flush(); // Force immediate write
-            }
-
-        } catch (Exception e) {
-            log.error("Error assigning driver to order {}: {}", orderId, e.getMessage(), e);
-            // Update order status to indicate assignment failure
-            orderRepository.findById(orderId).ifPresent(order -> {
-                order.setStatus("ASSIGNMENT_FAILED");
-                orderRepository.save(order);
-            });
-        }
+        afterCommit(() -> orderStacker.submit(orderId, restaurantId, restaurantLocation, deliveryLocation));
     }
 
     /**
-     * Finds nearest drivers and notifies them in batches until one accepts
+     * Stops looking for a driver for an order, e.g. because it was cancelled
      *
-     * Uses PostGIS ST_Distance to find drivers ordered by proximity
-     * Notifies in batches of 20 (configurable)
-     * If no driver accepts, moves to next batch
+     * Runs after the current transaction commits so the dispatch is not stopped
+     * for a cancellation that rolls back.
      *
-     * @param order Order to assign
-     * @param restaurant Restaurant details
-     * @param longitude Restaurant longitude
-     * @param latitude Restaurant latitude
-     * @return true if driver was assigned, false otherwise
+     * @param orderId Order ID
      */
-    private boolean findAndNotifyDrivers(Order order, Restaurant restaurant,
-                                         double longitude, double latitude) {
-        int maxAttempts = 1; // Maximum 10 batches (200 drivers)
-        int attempt = 0;
-
-        while (attempt < maxAttempts) {
-            attempt++;
-            log.info("========================================");
-            log.info("Driver search attempt {} for order {}", attempt, order.getId());
-            log.info("========================================");
-
-            // CRITICAL: PostGIS query to find nearest available drivers
-            // This uses ST_Distance to order drivers by proximity
-            List<Driver> nearestDrivers = driverRepository.findNearestAvailableDrivers(
-                    longitude,
-                    latitude,
-                    driverBatchSize
-            );
-
-            if (nearestDrivers.isEmpty()) {
-                log.warn("No more available drivers found for order: {}", order.getId());
-                return false;
-            }
-
-            log.info("Found {} available drivers in batch {}", nearestDrivers.size(), attempt);
-
-            // Log driver details
-            for (int i = 0; i < nearestDrivers.size(); i++) {
-                Driver driver = nearestDrivers.get(i);
-                double distance = calculateDistance(driver.getCurrentLocation(), restaurant.getLocation());
-                log.debug("  {}. Driver {} ({}) - {}km away",
-                        i + 1, driver.getId(), driver.getName(), String.format("%.2f", distance));
-            }
-
-            // Notify drivers and wait for acceptance
-            Optional<Driver> acceptedDriver = notifyDriversAndWaitForAcceptance(
-                    nearestDrivers, order, restaurant
-            );
-
-            if (acceptedDriver.isPresent()) {
-                Driver driver = acceptedDriver.get();
-                assignDriverToOrderFinal(order.getId(), driver.getId());
-                log.info("✓ Driver {} assigned to order {}", driver.getId(), order.getId());
-                return true;
+    public void cancelDriverAssignment(Long orderId) {
+        afterCommit(() -> {
+            if (orderStacker.cancel(orderId) || dispatchStateMachine.cancel(orderId)) {
+                log.info("Driver assignment for order {} cancelled", orderId);
             }
-
-            log.info("No driver accepted in batch {}. Trying next batch...", attempt);
-
-            // In a real system, you might want to add a delay here
-            // to avoid overwhelming the system
-            try {
-                Thread.sleep(2000); // 2 second delay between batches
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                log.error("Thread interrupted during driver search", e);
-                return false;
-            }
-        }
-
-        log.error("Exhausted all {} attempts. No driver found for order {}", maxAttempts, order.getId());
-        return false;
+        });
     }
 
     /**
-     * Notifies a batch of drivers via SMS with acceptance URL
+     * Called when driver accepts an order via SMS URL
+     * POST /api/drivers/{driverId}/accept-order/{orderId}
      *
-     * Sends SMS to each driver containing:
-     * - Order details (restaurant, distance, amount)
-     * - Direct acceptance URL
+     * Handles concurrent acceptance attempts - first driver wins
+     * Other drivers get "Order already assigned" error
      *
-     * The URL format: {baseUrl}/api/drivers/{driverId}/accept-order/{orderId}
+     * 1. Claim the order in OpenOfferRegistry: losers, expired offers and
+     *    drivers never offered the order are rejected here, without a
+     *    database connection
+     * 2. The claimant runs the conditional updates (DispatchTransactions.claimOrder),
+     *    which decide the winner in the database
      *
-     * When driver clicks the URL, it automatically accepts the order.
-     * First driver to click gets the order.
+     * Not @Transactional itself, so rejected drivers never check out a connection.
      *
-     * @param drivers List of drivers to notify
-     * @param order Order details
-     * @param restaurant Restaurant details
-     * @return Optional containing accepting driver, or empty if none accepted
+     * @param orderId Order ID
+     * @param driverId Driver ID
      */
-//    private Optional<Driver> notifyDriversAndWaitForAcceptance(
-//            List<Driver> drivers, Order order, Restaurant restaurant) {
-//
-//        log.info("========================================");
-//        log.info("Sending SMS notifications to {} drivers", drivers.size());
-//        log.info("========================================");
-//
-//        List<DriverNotificationDTO> notifications = new ArrayList<>();
-//        int successCount = 0;
-//        int failCount = 0;
-//
-//        for (Driver driver : drivers) {
-//            try {
-//                // Calculate distance from driver to restaurant
-//                double distance = calculateDistance(
-//                        driver.getCurrentLocation(),
-//                        restaurant.getLocation()
-//                );
-//
-//                // Build acceptance URL
-//                String acceptanceUrl = String.format(
-//                        "%s/api/drivers/%d/accept-order/%d",
-//                        baseUrl,
-//                        driver.getId(),
-//                        order.getId()
-//                );
-//
-//                // Prepare notification DTO for logging/tracking
-//                DriverNotificationDTO notification = DriverNotificationDTO.builder()
-//                        .orderId(order.getId())
-//                        .driverId(driver.getId())
-//                        .restaurantName(restaurant.getName())
-//                        .restaurantAddress(restaurant.getAddress())
-//                        .deliveryAddress(order.getDeliveryAddress())
-//                        .totalAmount(order.getTotalAmount())
-//                        .distanceKm(distance)
-//                        .estimatedPickupTime("15-20 minutes")
-//                        .build();
-//
-//                notifications.add(notification);
-//
-//                log.info("Sending SMS to driver {}: {} ({}km away)",
-//                        driver.getId(),
-//                        driver.getName(),
-//                        String.format("%.2f", distance));
-//
-//                // SEND SMS VIA TWILIO
-//                String messageSid = twilioSmsService.sendOrderNotification(
-//                        driver.getPhone(),
-//                        driver.getId(),
-//                        order.getId(),
-//                        restaurant.getName(),
-//                        distance,
-//                        order.getTotalAmount(),
-//                        acceptanceUrl
-//                );
-//
-//                if (messageSid != null) {
-//                    successCount++;
-//                    log.info("  ✓ SMS sent successfully to {} - SID: {}", driver.getPhone(), messageSid);
-//                    log.info("  Acceptance URL: {}", acceptanceUrl);
-//                } else {
-//                    failCount++;
-//                    log.error("  ✗ Failed to send SMS to {}", driver.getPhone());
-//                }
-//
-//            } catch (Exception e) {
-//                failCount++;
-//                log.error("  ✗ Error notifying driver {}: {}", driver.getId(), e.getMessage(), e);
-//            }
-//        }
-//
-//        log.info("========================================");
-//        log.info("SMS Notification Summary:");
-//        log.info("  Total drivers: {}", drivers.size());
-//        log.info("  Successful: {}", successCount);
-//        log.info("  Failed: {}", failCount);
-//        log.info("========================================");
-//        log.info("Waiting for driver to accept via URL...");
-//
-//        // In production, you would:
-//        // 1. Wait for driver to click URL (calls driverAcceptOrder)
-//        // 2. Use a timeout mechanism (e.g., 60 seconds)
-//        // 3. Move to next batch if no acceptance
-//        // 4. Use Redis/Database to track which drivers were notified
-//
-//        // For now, simulate waiting and return empty
-//        // The actual acceptance happens when driver clicks the URL
-//        // which calls: POST /api/drivers/{driverId}/accept-order/{orderId}
-//
-//        return Optional.empty(); // Driver will accept via URL callback
-//    }
-
-    private Optional<Driver> notifyDriversAndWaitForAcceptance(
-            List<Driver> drivers, Order order, Restaurant restaurant) {
-
+    public void driverAcceptOrder(Long orderId, Long driverId) {
         log.info("========================================");
-        log.info("Sending SMS notifications to {} drivers", drivers.size());
+        log.info("Driver {} attempting to accept order {}", driverId, orderId);
         log.info("========================================");
 
-        List<DriverNotificationDTO> notifications = new ArrayList<>();
-        int successCount = 0;
-        int failCount = 0;
-
-        for (Driver driver : drivers) {
-            try {
-                double distance = calculateDistance(
-                        driver.getCurrentLocation(),
-                        restaurant.getLocation()
-                );
-
-                String acceptanceUrl = String.format(
-                        "%s/api/drivers/%d/accept-order/%d",
-                        baseUrl,
-                        driver.getId(),
-                        order.getId()
-                );
-
-                DriverNotificationDTO notification = DriverNotificationDTO.builder()
-                        .orderId(order.getId())
-                        .driverId(driver.getId())
-                        .restaurantName(restaurant.getName())
-                        .restaurantAddress(restaurant.getAddress())
-                        .deliveryAddress(order.getDeliveryAddress())
-                        .totalAmount(order.getTotalAmount())
-                        .distanceKm(distance)
-                        .estimatedPickupTime("15-20 minutes")
-                        .build();
-
-                notifications.add(notification);
-
-                log.info("Sending SMS to driver {}: {} ({}km away)",
-                        driver.getId(),
-                        driver.getName(),
-                        String.format("%.2f", distance));
-
-                String messageSid = twilioSmsService.sendOrderNotification(
-                        driver.getPhone(),
-                        driver.getId(),
-                        order.getId(),
-                        restaurant.getName(),
-                        distance,
-                        order.getTotalAmount(),
-                        acceptanceUrl
-                );
-
-                if (messageSid != null) {
-                    successCount++;
-                    log.info("  ✓ SMS sent successfully to {} - SID: {}", driver.getPhone(), messageSid);
-                } else {
-                    failCount++;
-                    log.error("  ✗ Failed to send SMS to {}", driver.getPhone());
-                }
-
-            } catch (Exception e) {
-                failCount++;
-                log.error("  ✗ Error notifying driver {}: {}", driver.getId(), e.getMessage(), e);
+        // Every accept counts for the acceptance statistics, including the ones that lose below
+        offerOutcomes.accepted(orderId, driverId);
+        OpenOfferRegistry.ClaimResult claim = openOfferRegistry.tryClaim(orderId, driverId);
+        switch (claim) {
+            case ALREADY_CLAIMED -> {
+                log.warn("Order {} already claimed. Driver {} was too slow.", orderId, driverId);
+                throw new RuntimeException("Order already assigned to another driver. Better luck next time!");
+            }
+            case EXPIRED -> {
+                log.warn("Offer of order {} to driver {} has expired", orderId, driverId);
+                throw new RuntimeException("This offer has expired");
+            }
+            case NOT_OFFERED -> {
+                log.warn("Order {} was never offered to driver {}", orderId, driverId);
+                throw new RuntimeException("Order was not offered to this driver");
+            }
+            default -> {
+                // CLAIMED, or dispatched elsewhere: the database decides
             }
         }
 
-        log.info("========================================");
-        log.info("SMS Notification Summary:");
-        log.info("  Total drivers: {}", drivers.size());
-        log.info("  Successful: {}", successCount);
-        log.info("  Failed: {}", failCount);
-        log.info("========================================");
-        log.info("Waiting up to 2 minutes for driver acceptance...");
-
-        // ---------------------------------------------
-        // WAIT FOR DRIVER ACCEPTANCE (max 2 minutes)
-        // ---------------------------------------------
-        long waitUntil = System.currentTimeMillis() + (2 * 60 * 1000); // 2 minutes
-
-        while (System.currentTimeMillis() < waitUntil) {
-            // Reload order to check if assigned
-            Order refreshedOrder = orderRepository.findById(order.getId()).orElse(null);
-
-            if (refreshedOrder != null && refreshedOrder.getAssignedDriverId() != null) {
-                Long assignedDriverId = refreshedOrder.getAssignedDriverId();
-                log.info("✓ Driver {} accepted the order!", assignedDriverId);
-
-                return Optional.of(
-                        driverRepository.findById(assignedDriverId).orElse(null)
-                );
-            }
+        DriverCapacityWriter.DriverLoad load;
+        try {
+            load = dispatchTransactions.claimOrder(orderId, driverId);
+        } catch (RuntimeException e) {
+            openOfferRegistry.release(orderId, driverId);
+            throw e;
+        }
 
-            try {
-                Thread.sleep(2000); // Check every 2 seconds
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                log.error("Interrupted while waiting for acceptance", e);
-                break;
-            }
+        // Committed: update this node's view and wake up the dispatcher
+        driverAttributeIndex.updateLoad(load);
+        if (load.freeSlots() == 0) {
+            driverSpatialIndex.remove(driverId);
         }
+        acceptanceRegistry.complete(orderId, driverId);
 
-        log.warn("No driver accepted the order within 2 minutes.");
-        return Optional.empty();
+        log.info("========================================");
+        log.info("✓ Driver {} successfully accepted order {}", driverId, orderId);
+        log.info("========================================");
     }
 
     /**
-     * Finalizes driver assignment to order
-     *
-     * Updates:
-     * 1. order.assigned_driver_id = driverId
-     * 2. order.status = 'ASSIGNED'
-     * 3. driver.status = 'BUSY'
+     * Marks order as picked up from restaurant
+     * POST /api/drivers/{driverId}/pickup-order/{orderId}
      *
      * @param orderId Order ID
      * @param driverId Driver ID
      */
     @Transactional
-    public void assignDriverToOrderFinal(Long orderId, Long driverId) {
-        log.info("Finalizing driver assignment: order={}, driver={}", orderId, driverId);
+    public void markOrderPickedUp(Long orderId, Long driverId) {
+        log.info("Marking order {} as picked up by driver {}", orderId, driverId);
 
         Order order = orderRepository.findById(orderId)
                 .orElseThrow(() -> new RuntimeException("Order not found: " + orderId));
 
-        Driver driver = driverRepository.findById(driverId)
-                .orElseThrow(() -> new RuntimeException("Driver not found: " + driverId));
+        if (!driverId.equals(order.getAssignedDriverId())) {
+            throw new RuntimeException("Driver not assigned to this order");
+        }
 
-        // Update order
-        order.setAssignedDriverId(driverId);
-        order.setStatus("ASSIGNED");
-        orderRepository.save(order);
+        if (!"ASSIGNED".equals(order.getStatus())) {
+            log.warn("Order {} is in status {} but expected ASSIGNED", orderId, order.getStatus());
+        }
 
-        // Update driver status to BUSY
-        driver.setStatus("BUSY");
-        driverRepository.save(driver);
+        order.setStatus("PICKED_UP");
+        orderRepository.save(order);
 
-        log.info("✓ Driver {} successfully assigned to order {}", driverId, orderId);
-        log.info("  Order status: ASSIGNED");
-        log.info("  Driver status: BUSY");
+        log.info("✓ Order {} marked as picked up", orderId);
     }
 
     /**
-     * Called when driver accepts an order via SMS URL
-     * POST /api/drivers/{driverId}/accept-order/{orderId}
+     * Estimates how long the assigned driver needs to reach the restaurant
+     * GET /api/drivers/{driverId}/pickup-eta/{orderId}
      *
-     * Handles concurrent acceptance attempts - first driver wins
-     * Other drivers get "Order already assigned" error
+     * Uses the O(1) travel-time matrix when the trip is inside its grid and
+     * only falls back to exact routing (or straight-line distance) when not.
      *
      * @param orderId Order ID
      * @param driverId Driver ID
+     * @return Estimate and the tier that produced it
      */
-    @Transactional
-    public void driverAcceptOrder(Long orderId, Long driverId) {
-        log.info("========================================");
-        log.info("Driver {} attempting to accept order {}", driverId, orderId);
-        log.info("========================================");
-
+    @Transactional(readOnly = true)
+    public PickupEtaDTO estimatePickupEta(Long orderId, Long driverId) {
         Order order = orderRepository.findById(orderId)
                 .orElseThrow(() -> new RuntimeException("Order not found: " + orderId));
 
-        // Check if order already assigned (race condition protection)
-        if (order.getAssignedDriverId() != null) {
-            log.warn("Order {} already assigned to driver {}. Driver {} was too slow.",
-                    orderId, order.getAssignedDriverId(), driverId);
-            throw new RuntimeException("Order already assigned to another driver. Better luck next time!");
-        }
-
-        // Check if order is in correct status
-        if (!"ACCEPTED".equals(order.getStatus())) {
-            log.warn("Order {} is in status '{}', expected 'PENDING'", orderId, order.getStatus());
-            throw new RuntimeException("Order is not available for assignment. Current status: " + order.getStatus());
+        if (!driverId.equals(order.getAssignedDriverId())) {
+            throw new RuntimeException("Driver not assigned to this order");
         }
 
         Driver driver = driverRepository.findById(driverId)
                 .orElseThrow(() -> new RuntimeException("Driver not found: " + driverId));
-
-        if (!"AVAILABLE".equals(driver.getStatus())) {
-            log.warn("Driver {} is {}, not AVAILABLE", driverId, driver.getStatus());
-            throw new RuntimeException("Driver is not available. Current status: " + driver.getStatus());
+        Point from = driver.getCurrentLocation();
+        Point to = order.getRestaurant().getLocation();
+        if (from == null || to == null) {
+            throw new RuntimeException("Location of driver or restaurant unknown");
         }
 
-        // Assign driver to order
-        assignDriverToOrderFinal(orderId, driverId);
-
-        log.info("========================================");
-        log.info("✓ Driver {} successfully accepted order {}", driverId, orderId);
-        log.info("========================================");
+        TravelTimeEstimator.Estimate estimate = travelTimeEstimator.estimate(from.getY(), from.getX(), to.getY(), to.getX());
+        return PickupEtaDTO.builder()
+                .orderId(orderId)
+                .driverId(driverId)
+                .etaSeconds(Math.round(estimate.seconds()))
+                .source(estimate.source())
+                .build();
     }
 
     /**
-     * Marks order as picked up from restaurant
-     * POST /api/drivers/{driverId}/pickup-order/{orderId}
+     * Plans the order of a driver's drops, with ETAs
+     * GET /api/drivers/{driverId}/route
+     *
+     * While any order is still to be picked up the route starts at the
+     * restaurant (after the pickup leg from the driver's location), otherwise
+     * at the driver's location. Orders without drop-off coordinates come last,
+     * without an ETA.
      *
-     * @param orderId Order ID
      * @param driverId Driver ID
+     * @return Sequenced drops; empty if the driver carries no orders
      */
-    @Transactional
-    public void markOrderPickedUp(Long orderId, Long driverId) {
-        log.info("Marking order {} as picked up by driver {}", orderId, driverId);
-
-        Order order = orderRepository.findById(orderId)
-                .orElseThrow(() -> new RuntimeException("Order not found: " + orderId));
-
-        if (!driverId.equals(order.getAssignedDriverId())) {
-            throw new RuntimeException("Driver not assigned to this order");
+    @Transactional(readOnly = true)
+    public DeliveryRouteDTO planDeliveryRoute(Long driverId) {
+        Driver driver = driverRepository.findById(driverId)
+                .orElseThrow(() -> new RuntimeException("Driver not found: " + driverId));
+        List<Order> orders = orderRepository.findByAssignedDriverIdAndStatusIn(driverId, List.of("ASSIGNED", "PICKED_UP"));
+
+        Point driverLocation = driver.getCurrentLocation();
+        Order toPickUp = orders.stream().filter(order -> "ASSIGNED".equals(order.getStatus())).findFirst().orElse(null);
+        Point start;
+        Long pickupEtaSeconds = null;
+        if (toPickUp != null) {
+            start = toPickUp.getRestaurant().getLocation();
+            if (driverLocation != null && start != null) {
+                pickupEtaSeconds = Math.round(travelTimeEstimator.estimate(
+                        driverLocation.getY(), driverLocation.getX(), start.getY(), start.getX()).seconds());
+            }
+        } else {
+            start = driverLocation;
         }
 
-        if (!"ASSIGNED".equals(order.getStatus())) {
-            log.warn("Order {} is in status {} but expected ASSIGNED", orderId, order.getStatus());
+        List<Order> located = new ArrayList<>();
+        List<Order> unlocated = new ArrayList<>();
+        for (Order order : orders) {
+            if (start != null && order.getDeliveryLocation() != null) {
+                located.add(order);
+            } else {
+                unlocated.add(order);
+            }
         }
 
-        order.setStatus("PICKED_UP");
-        orderRepository.save(order);
+        List<DeliveryStopDTO> stops = new ArrayList<>(orders.size());
+        long offset = pickupEtaSeconds != null ? pickupEtaSeconds : 0;
+        long totalSeconds = offset;
+        if (!located.isEmpty()) {
+            double[] latitudes = new double[located.size()];
+            double[] longitudes = new double[located.size()];
+            for (int i = 0; i < located.size(); i++) {
+                latitudes[i] = located.get(i).getDeliveryLocation().getY();
+                longitudes[i] = located.get(i).getDeliveryLocation().getX();
+            }
+            DeliveryRoutePlanner.RoutePlan plan = deliveryRoutePlanner.plan(start.getY(), start.getX(), latitudes, longitudes);
+            for (int i = 0; i < plan.order().length; i++) {
+                stops.add(toStop(located.get(plan.order()[i]), offset + Math.round(plan.arrivalSeconds()[i])));
+            }
+            totalSeconds = offset + Math.round(plan.totalSeconds());
+        }
+        for (Order order : unlocated) {
+            stops.add(toStop(order, null));
+        }
 
-        log.info("✓ Order {} marked as picked up", orderId);
+        return DeliveryRouteDTO.builder()
+                .driverId(driverId)
+                .pickupEtaSeconds(pickupEtaSeconds)
+                .stops(stops)
+                .totalSeconds(totalSeconds)
+                .build();
     }
 
     /**
@@ -1195,9 +979,16 @@ public class DeliveryManagementService {
      * POST /api/drivers/{driverId}/deliver-order/{orderId}
      *
      * Updates:
-     * 1. order.status = 'DELIVERED'
+     * 1. order.status = 'DELIVERED', only from PICKED_UP (compare-and-set, see
+     *    OrderRepository.markDeliveredIfPickedUp)
      * 2. order.delivered_at = current timestamp
-     * 3. driver.status = 'AVAILABLE' (frees up driver)
+     * 3. driver.active_orders - 1, and driver.status = 'AVAILABLE' if the
+     *    driver was full (see DriverCapacityWriter)
+     * 4. once committed, the driver is offered the most urgent order waiting
+     *    in the dispatch backlog, if any (see DispatchBacklog)
+     *
+     * A repeated delivery (e.g. a retried request) changes nothing, so the
+     * driver's slot is released exactly once.
      *
      * @param orderId Order ID
      * @param driverId Driver ID
@@ -1206,66 +997,73 @@ public class DeliveryManagementService {
     public void markOrderDelivered(Long orderId, Long driverId) {
         log.info("Marking order {} as delivered by driver {}", orderId, driverId);
 
-        Order order = orderRepository.findById(orderId)
-                .orElseThrow(() -> new RuntimeException("Order not found: " + orderId));
-
-        if (!driverId.equals(order.getAssignedDriverId())) {
-            throw new RuntimeException("Driver not assigned to this order");
-        }
-
-        if (!"PICKED_UP".equals(order.getStatus())) {
-            log.warn("Order {} is in status {} but expected PICKED_UP", orderId, order.getStatus());
+        if (orderRepository.markDeliveredIfPickedUp(orderId, driverId, LocalDateTime.now()) == 0) {
+            Order order = orderRepository.findById(orderId)
+                    .orElseThrow(() -> new RuntimeException("Order not found: " + orderId));
+            if (!driverId.equals(order.getAssignedDriverId())) {
+                throw new RuntimeException("Driver not assigned to this order");
+            }
+            if ("DELIVERED".equals(order.getStatus())) {
+                log.info("Order {} was already delivered", orderId);
+                return;
+            }
+            throw new RuntimeException("Order cannot be delivered. Current status: " + order.getStatus());
         }
 
-        // Update order
-        order.setStatus("DELIVERED");
-        order.setDeliveredAt(LocalDateTime.now());
-        orderRepository.save(order);
-
-        // Free up driver for new orders
+        // Free up the order's slot for new orders
+        DriverCapacityWriter.DriverLoad load = driverCapacityWriter.releaseSlot(driverId)
+                .orElseThrow(() -> new RuntimeException("Driver not found: " + driverId));
         Driver driver = driverRepository.findById(driverId)
                 .orElseThrow(() -> new RuntimeException("Driver not found: " + driverId));
-        driver.setStatus("AVAILABLE");
-        driverRepository.save(driver);
+        afterCommit(() -> {
+            driverAttributeIndex.updateLoad(load);
+            if ("AVAILABLE".equals(load.status())) {
+                driverSpatialIndex.upsert(driver);
+                Point location = driver.getCurrentLocation();
+                if (location != null) {
+                    dispatchStateMachine.driverFreed(driverId, location.getY(), location.getX(), load.freeSlots());
+                }
+            }
+            if (load.activeOrders() == 0) {
+                driverScoreBoard.recordIdle(driverId);
+            }
+        });
 
         log.info("✓ Order {} delivered successfully", orderId);
-        log.info("  Driver {} is now AVAILABLE for new orders", driverId);
+        log.info("  Driver {} is {} carrying {}/{} orders", driverId, load.status(), load.activeOrders(), load.maxOrders());
+    }
+
+    private DeliveryStopDTO toStop(Order order, Long etaSeconds) {
+        return DeliveryStopDTO.builder()
+                .orderId(order.getId())
+                .deliveryAddress(order.getDeliveryAddress())
+                .customerName(order.getCustomerName())
+                .etaSeconds(etaSeconds)
+                .build();
     }
 
     /**
-     * Calculate distance between two points in kilometers
-     * Uses Haversine formula for great-circle distance
+     * Runs an action once the current transaction commits, or immediately
+     * when no transaction is active
      *
-     * Note: PostGIS ST_Distance with geography type is more accurate,
-     * but this is useful for application-level calculations
+     * Keeps in-memory state (e.g. the driver spatial index) from running ahead
+     * of a transaction that may still roll back.
      *
-     * @param point1 First point
-     * @param point2 Second point
-     * @return Distance in kilometers
+     * @param action Action to run
      */
-    private double calculateDistance(Point point1, Point point2) {
-        if (point1 == null || point2 == null) {
-            return Double.MAX_VALUE;
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
         }
-
-        // Haversine formula
-        double lat1 = point1.getY();
-        double lon1 = point1.getX();
-        double lat2 = point2.getY();
-        double lon2 = point2.getX();
-
-        double R = 6371; // Earth's radius in km
-        double dLat = Math.toRadians(lat2 - lat1);
-        double dLon = Math.toRadians(lon2 - lon1);
-
-        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2) +
-                Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) *
-                        Math.sin(dLon / 2) * Math.sin(dLon / 2);
-
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-
-        return R * c;
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
     }
+
 }
 
 
@@ -1287,7 +1085,7 @@ ORDER ACCEPTANCE & DRIVER ASSIGNMENT FLOW
    - Update order.status = 'ACCEPTED'
    - Set order.accepted_at = NOW()
    ↓
-   DeliveryManagementService.assignDriverToOrder() [ASYNC]
+   DeliveryManagementService.assignDriverToOrder() -> DispatchStateMachine.start() [NON-BLOCKING]
    ↓
 
 2. FETCH RESTAURANT LOCATION
@@ -1299,14 +1097,15 @@ ORDER ACCEPTANCE & DRIVER ASSIGNMENT FLOW
 
 3. FIND NEAREST DRIVERS (PostGIS Query)
    ↓
-   driverRepository.findNearestAvailableDrivers(lng, lat, 20)
+   driverRepository.findNearestCandidates(lng, lat, radiusMeters, 20)
    ↓
-   SQL: SELECT * FROM drivers
+   SQL: SELECT id, phone, name, distance_km FROM drivers
         WHERE is_active = true AND status = 'AVAILABLE'
-        ORDER BY ST_Distance(current_location, ST_MakePoint(lng, lat))
+          AND ST_DWithin(current_location::geography, point::geography, radiusMeters)
+        ORDER BY current_location::geography <-> point::geography   (GiST index KNN scan)
         LIMIT 20
    ↓
-   Returns: [Driver1, Driver2, ..., Driver20] (ordered by distance)
+   Returns: [Candidate1, Candidate2, ..., Candidate20] (ordered by distance)
    ↓
 
 4. NOTIFY DRIVERS (Batch 1)
@@ -1317,28 +1116,34 @@ ORDER ACCEPTANCE & DRIVER ASSIGNMENT FLOW
    - Send push notification (FCM/APNs)
    - Send SMS (Twilio)
    ↓
-   Wait for driver acceptance (30-60 seconds)
+   Order is OFFERED; an offer timeout is scheduled on the timing wheel (2 minutes)
    ↓
 
 5. DRIVER RESPONSE
    ↓
    If accepted:
      ↓
-     assignDriverToOrderFinal()
+     OpenOfferRegistry.tryClaim() - losers / expired / not offered rejected in memory
      ↓
-     - order.assigned_driver_id = driverId
-     - order.status = 'ASSIGNED'
-     - driver.status = 'BUSY'
+     DispatchTransactions.claimOrder()
      ↓
-     DONE ✓
+     - UPDATE orders SET assigned_driver_id = driverId, status = 'ASSIGNED'
+         WHERE assigned_driver_id IS NULL AND status = 'ACCEPTED'   (0 rows = too slow)
+     - DriverCapacityWriter.claimSlots(): one slot per order of the bundle
+         UPDATE drivers SET active_orders = active_orders + slots,
+                            status = 'BUSY' once active_orders reaches max_orders
+         WHERE status = 'AVAILABLE' AND active_orders + slots <= max_orders   (0 rows = rollback)
+     ↓
+     DONE ✓  (a driver with free slots stays AVAILABLE and can be offered more orders)
 
    If no acceptance:
      ↓
-     Fetch next 20 drivers (Batch 2)
+     Fetch next 20 drivers (Batch 2): after the (distance, id) cursor of batch 1,
+     excluding drivers already offered, radius widened by one step
      ↓
      Repeat steps 3-5
      ↓
-     Continue until driver assigned or max attempts (10 batches = 200 drivers)
+     Continue until driver assigned or app.delivery.max-waves reached
    ↓
 
 6. DRIVER PICKS UP ORDER
@@ -1352,9 +1157,15 @@ ORDER ACCEPTANCE & DRIVER ASSIGNMENT FLOW
    ↓
    POST /api/drivers/{driverId}/deliver-order/{orderId}
    ↓
-   - order.status = 'DELIVERED'
+   OrderRepository.markDeliveredIfPickedUp()
+   - order.status = 'DELIVERED' only WHERE status = 'PICKED_UP'   (0 rows = repeated delivery, no-op)
    - order.delivered_at = NOW()
-   - driver.status = 'AVAILABLE' (ready for next order)
+   ↓
+   DriverCapacityWriter.releaseSlot(), once per delivered order
+   - driver.active_orders - 1
+   - driver.status = 'AVAILABLE' if the driver was full (BUSY)
+   ↓
+   The freed driver is offered the most urgent order of the dispatch backlog
    ↓
    COMPLETE ✓
 
@@ -1364,7 +1175,7 @@ DATABASE STATE CHANGES
 
 Initial State:
 - order.status = 'PENDING'
-- driver.status = 'AVAILABLE'
+- driver.status = 'AVAILABLE', driver.active_orders = 0
 
 After Restaurant Accepts:
 - order.status = 'ACCEPTED'
@@ -1373,7 +1184,8 @@ After Restaurant Accepts:
 After Driver Assignment:
 - order.status = 'ASSIGNED'
 - order.assigned_driver_id = X
-- driver.status = 'BUSY'
+- driver.active_orders + 1 (+ 1 per stacked order)
+- driver.status = 'BUSY' only once active_orders = max_orders
 
 After Pickup:
 - order.status = 'PICKED_UP'
@@ -1381,7 +1193,8 @@ After Pickup:
 After Delivery:
 - order.status = 'DELIVERED'
 - order.delivered_at = timestamp
-- driver.status = 'AVAILABLE'
+- driver.active_orders - 1
+- driver.status = 'AVAILABLE' (if it was BUSY)
 
 
 POSTGIS QUERY DETAILS
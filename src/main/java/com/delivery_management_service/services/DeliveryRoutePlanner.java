@@ -0,0 +1,80 @@
+package com.delivery_management_service.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Plans the visiting order and ETAs of a driver's drops
+ *
+ * Travel times between all stops come from TravelTimeEstimator.quickSeconds
+ * (matrix, else straight line), so building the (n + 1)^2 cost matrix stays
+ * O(1) per pair; RouteSequencer then orders the drops, exactly up to
+ * routing.sequencer.exact-max-drops drops and by 2-opt / Or-opt above that.
+ */
+@Service
+@Slf4j
+public class DeliveryRoutePlanner {
+
+    /**
+     * @param order Drop indices in visiting order
+     * @param arrivalSeconds Seconds from the start until each drop of order is reached
+     */
+    public record RoutePlan(int[] order, double[] arrivalSeconds) {
+
+        public double totalSeconds() {
+            return arrivalSeconds.length == 0 ? 0 : arrivalSeconds[arrivalSeconds.length - 1];
+        }
+    }
+
+    private final TravelTimeEstimator travelTimeEstimator;
+    private final RouteSequencer routeSequencer;
+
+    public DeliveryRoutePlanner(TravelTimeEstimator travelTimeEstimator,
+                                @Value("${app.delivery.routing.sequencer.exact-max-drops:8}") int exactMaxDrops) {
+        this.travelTimeEstimator = travelTimeEstimator;
+        this.routeSequencer = new RouteSequencer(exactMaxDrops);
+    }
+
+    /**
+     * Orders drops to minimize the time until the last one
+     *
+     * @param startLatitude Where the trip starts, e.g. the restaurant
+     * @param startLongitude Where the trip starts
+     * @param dropLatitudes Drop-off latitudes
+     * @param dropLongitudes Drop-off longitudes
+     * @return Visiting order (indices into the drop arrays) and arrival times
+     */
+    public RoutePlan plan(double startLatitude, double startLongitude, double[] dropLatitudes, double[] dropLongitudes) {
+        int stops = dropLatitudes.length + 1;
+        double[] latitudes = new double[stops];
+        double[] longitudes = new double[stops];
+        latitudes[0] = startLatitude;
+        longitudes[0] = startLongitude;
+        System.arraycopy(dropLatitudes, 0, latitudes, 1, dropLatitudes.length);
+        System.arraycopy(dropLongitudes, 0, longitudes, 1, dropLongitudes.length);
+
+        double[] seconds = new double[stops * stops];
+        for (int from = 0; from < stops; from++) {
+            for (int to = 0; to < stops; to++) {
+                if (from != to) {
+                    seconds[from * stops + to] = travelTimeEstimator.quickSeconds(
+                            latitudes[from], longitudes[from], latitudes[to], longitudes[to]);
+                }
+            }
+        }
+
+        int[] sequence = routeSequencer.sequence(seconds, stops);
+        int[] order = new int[sequence.length];
+        double[] arrivalSeconds = new double[sequence.length];
+        int previous = 0;
+        double elapsed = 0;
+        for (int i = 0; i < sequence.length; i++) {
+            elapsed += seconds[previous * stops + sequence[i]];
+            arrivalSeconds[i] = elapsed;
+            order[i] = sequence[i] - 1;
+            previous = sequence[i];
+        }
+        return new RoutePlan(order, arrivalSeconds);
+    }
+}
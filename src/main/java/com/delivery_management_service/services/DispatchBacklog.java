@@ -0,0 +1,303 @@
+package com.delivery_management_service.services;
+
+import com.delivery_management_service.DTO.DispatchContext;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.ZoneId;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Orders waiting for a driver after their dispatch ran out of drivers, in
+ * priority order
+ *
+ * When supply runs out, DispatchStateMachine parks orders here instead of
+ * giving up on them; a driver who becomes AVAILABLE (a delivery frees a slot,
+ * presence brings it back online, it comes online for the first time) pulls
+ * the most urgent orders within reach right away, up to its free slots.
+ * Orders it cannot take (a bundle larger than its free slots, a large order
+ * for another vehicle type; see DriverRequirements) stay for the next driver.
+ *
+ * Priority weighs, per order:
+ * - age: minutes since the restaurant accepted it (backlog.age-weight per minute)
+ * - promised ETA: minutes past the latest dispatch time that still meets the
+ *   promise of backlog.promise-minutes after acceptance, i.e. the promise
+ *   minus the drive to the customer (backlog.eta-weight per minute)
+ * - value: totalAmount (backlog.value-weight per currency unit)
+ * Age and lateness grow by the same amount for every order as time passes, so
+ * the order of the backlog is fixed when an order enters it and a sorted set
+ * keeps it; no re-scoring while orders wait.
+ *
+ * Starvation protection: the age term alone eventually lifts every order
+ * above newcomers, and orders waiting longer than backlog.starvation-ms are
+ * served first regardless of priority, oldest first.
+ *
+ * Orders are bucketed by restaurant into cells of backlog.cell-size-deg, each
+ * sorted by priority and by age, so a driver only looks at the cells within
+ * its reach: the head of each that is actually in range, not every order
+ * waiting anywhere.
+ *
+ * In memory on the node that dispatches the order, like the dispatch itself.
+ *
+ * Exposed metrics:
+ * - dispatch.backlog.size    (gauge)   orders waiting for a driver
+ * - dispatch.backlog.starved (counter) orders served ahead of priority by starvation protection
+ */
+@Component
+@Slf4j
+public class DispatchBacklog {
+
+    /**
+     * An order taken for a freed driver
+     *
+     * @param slots Driver slots it takes, one per order of its bundle
+     */
+    public record Polled(long orderId, int slots) {
+    }
+
+    /**
+     * A waiting order
+     *
+     * @param priority Higher is served first; see the class comment
+     */
+    private record Entry(long orderId, double latitude, double longitude, long cell, long waitingSinceMillis,
+                         double priority, DriverRequirements.Requirement requirement) {
+    }
+
+    /**
+     * Orders of one grid cell, in both serving orders
+     */
+    private static final class Cell {
+        private final TreeSet<Entry> byPriority = new TreeSet<>(BY_PRIORITY);
+        private final TreeSet<Entry> byAge = new TreeSet<>(BY_AGE);
+    }
+
+    private static final Comparator<Entry> BY_PRIORITY = Comparator.comparingDouble(Entry::priority).reversed()
+            .thenComparingLong(Entry::waitingSinceMillis)
+            .thenComparingLong(Entry::orderId);
+
+    private static final Comparator<Entry> BY_AGE = Comparator.comparingLong(Entry::waitingSinceMillis)
+            .thenComparingLong(Entry::orderId);
+
+    private final TravelTimeEstimator travelTimeEstimator;
+    private final DriverRequirements driverRequirements;
+    private final DriverAttributeIndex driverAttributeIndex;
+    private final long promiseMillis;
+    private final double ageWeight;
+    private final double valueWeight;
+    private final double etaWeight;
+    private final long starvationMillis;
+    private final ZoneGrid grid;
+
+    // Guarded by lock
+    private final Map<Long, Entry> entries = new HashMap<>();
+    private final Map<Long, Cell> cells = new HashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Counter starvedCounter;
+
+    public DispatchBacklog(TravelTimeEstimator travelTimeEstimator,
+                           DriverRequirements driverRequirements,
+                           DriverAttributeIndex driverAttributeIndex,
+                           MeterRegistry meterRegistry,
+                           @Value("${app.delivery.backlog.promise-minutes:45}") long promiseMinutes,
+                           @Value("${app.delivery.backlog.age-weight:1.0}") double ageWeight,
+                           @Value("${app.delivery.backlog.value-weight:0.1}") double valueWeight,
+                           @Value("${app.delivery.backlog.eta-weight:1.0}") double etaWeight,
+                           @Value("${app.delivery.backlog.starvation-ms:600000}") long starvationMillis,
+                           @Value("${app.delivery.backlog.cell-size-deg:0.05}") double cellSizeDeg) {
+        this.travelTimeEstimator = travelTimeEstimator;
+        this.driverRequirements = driverRequirements;
+        this.driverAttributeIndex = driverAttributeIndex;
+        this.promiseMillis = TimeUnit.MINUTES.toMillis(promiseMinutes);
+        this.ageWeight = ageWeight;
+        this.valueWeight = valueWeight;
+        this.etaWeight = etaWeight;
+        this.starvationMillis = starvationMillis;
+        this.grid = new ZoneGrid(cellSizeDeg);
+
+        this.starvedCounter = Counter.builder("dispatch.backlog.starved")
+                .description("Orders served ahead of priority by starvation protection")
+                .register(meterRegistry);
+        Gauge.builder("dispatch.backlog.size", this, DispatchBacklog::size)
+                .description("Orders waiting for a driver")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Parks an order until a driver frees up; an order already waiting keeps
+     * its place
+     *
+     * @param context Dispatch context of the order (or bundle)
+     * @param startedAtMillis When its dispatch started, the age if the acceptance time is unknown
+     */
+    public void add(DispatchContext context, long startedAtMillis) {
+        long acceptedAtMillis = context.getAcceptedAt() == null ? startedAtMillis
+                : context.getAcceptedAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        long latestDispatchMillis = acceptedAtMillis + promiseMillis - driveMillis(context);
+        double amount = context.getTotalAmount() == null ? 0 : context.getTotalAmount().doubleValue();
+        // Scored at time 0: age and lateness would add the same minutes to every entry later on
+        double priority = valueWeight * amount
+                - ageWeight * minutes(acceptedAtMillis)
+                - etaWeight * minutes(latestDispatchMillis);
+
+        Entry entry = new Entry(context.getOrderId(), context.getLatitude(), context.getLongitude(),
+                grid.key(context.getLatitude(), context.getLongitude()), acceptedAtMillis, priority,
+                driverRequirements.of(context));
+        lock.lock();
+        try {
+            if (entries.putIfAbsent(entry.orderId(), entry) == null) {
+                Cell cell = cells.computeIfAbsent(entry.cell(), key -> new Cell());
+                cell.byPriority.add(entry);
+                cell.byAge.add(entry);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes an order out of the backlog, e.g. because it was cancelled
+     *
+     * @param orderId Order ID
+     * @return true if the order was waiting
+     */
+    public boolean remove(long orderId) {
+        lock.lock();
+        try {
+            Entry entry = entries.get(orderId);
+            if (entry == null) {
+                return false;
+            }
+            take(entry);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes the order a freed driver should be offered
+     *
+     * @param latitude Driver latitude
+     * @param longitude Driver longitude
+     * @param maxDistanceKm How far the driver may be from the restaurant
+     * @param driverId Driver ID, to check its vehicle type
+     * @param freeSlots Free order slots of the driver
+     * @return The starved or else highest-priority order within reach that
+     *         the driver can take, with the slots it takes; empty if none
+     */
+    public Optional<Polled> pollNear(double latitude, double longitude, double maxDistanceKm,
+                                 long driverId, int freeSlots) {
+        Driver driver = new Driver(driverId, latitude, longitude, maxDistanceKm, freeSlots);
+        long starvedBefore = System.currentTimeMillis() - starvationMillis;
+        lock.lock();
+        try {
+            if (entries.isEmpty()) {
+                return Optional.empty();
+            }
+            Entry starved = null;
+            Entry best = null;
+            for (Long key : grid.keysWithin(latitude, longitude, maxDistanceKm)) {
+                Cell cell = cells.get(key);
+                if (cell == null) {
+                    continue;
+                }
+                Entry oldest = firstFor(driver, cell.byAge.iterator(), starvedBefore);
+                if (oldest != null && (starved == null || BY_AGE.compare(oldest, starved) < 0)) {
+                    starved = oldest;
+                }
+                if (starved == null) {
+                    Entry first = firstFor(driver, cell.byPriority.iterator(), Long.MAX_VALUE);
+                    if (first != null && (best == null || BY_PRIORITY.compare(first, best) < 0)) {
+                        best = first;
+                    }
+                }
+            }
+            if (starved != null) {
+                starvedCounter.increment();
+                return Optional.of(take(starved));
+            }
+            return best == null ? Optional.empty() : Optional.of(take(best));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of orders waiting for a driver
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param waitingSinceAtMost Skip the rest once an entry waits since later than this
+     * @return First entry of the iteration within reach of the driver that it
+     *         can take, null if none
+     */
+    private Entry firstFor(Driver driver, Iterator<Entry> entries, long waitingSinceAtMost) {
+        while (entries.hasNext()) {
+            Entry entry = entries.next();
+            if (entry.waitingSinceMillis() > waitingSinceAtMost) {
+                return null;
+            }
+            if (entry.requirement().slots() <= driver.freeSlots()
+                    && withinReach(entry, driver.latitude(), driver.longitude(), driver.maxDistanceKm())
+                    && driverAttributeIndex.mayDrive(driver.driverId(), entry.requirement())) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private Polled take(Entry entry) {
+        entries.remove(entry.orderId());
+        Cell cell = cells.get(entry.cell());
+        cell.byPriority.remove(entry);
+        cell.byAge.remove(entry);
+        if (cell.byPriority.isEmpty()) {
+            cells.remove(entry.cell());
+        }
+        return new Polled(entry.orderId(), entry.requirement().slots());
+    }
+
+    private long driveMillis(DispatchContext context) {
+        if (context.getDeliveryLocation() == null) {
+            return 0;
+        }
+        double seconds = travelTimeEstimator.quickSeconds(context.getLatitude(), context.getLongitude(),
+                context.getDeliveryLocation().getY(), context.getDeliveryLocation().getX());
+        return (long) (seconds * 1000);
+    }
+
+    private static boolean withinReach(Entry entry, double latitude, double longitude, double maxDistanceKm) {
+        return DriverSpatialIndex.haversineKm(latitude, longitude, entry.latitude(), entry.longitude()) <= maxDistanceKm;
+    }
+
+    private static double minutes(long epochMillis) {
+        return epochMillis / 60_000.0;
+    }
+
+    /**
+     * The freed driver pulling from the backlog
+     */
+    private record Driver(long driverId, double latitude, double longitude, double maxDistanceKm, int freeSlots) {
+    }
+}
@@ -0,0 +1,739 @@
+package com.delivery_management_service.services;
+
+import com.delivery_management_service.DTO.DispatchContext;
+import com.delivery_management_service.DTO.DriverCandidate;
+import com.delivery_management_service.DTO.DriverNotificationResult;
+import com.delivery_management_service.config.HashedTimingWheel;
+import lombok.extern.slf4j.Slf4j;
+import org.locationtech.jts.geom.Point;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Non-blocking driver dispatch, modeled as an explicit state machine per order
+ *
+ * States:
+ *   SEARCHING   - looking for drivers for the next wave
+ *   OFFERED(n)  - wave n notified, waiting for a driver to accept
+ *   BACKLOGGED  - no driver left, waiting in the DispatchBacklog for one to free up
+ *   ASSIGNED    - a driver accepted (terminal)
+ *   UNASSIGNED  - all waves lapsed or no drivers found (terminal)
+ *   CANCELLED   - order cancelled while dispatching (terminal)
+ *   FAILED      - unexpected error (terminal)
+ *
+ * Transitions are driven by events instead of a thread sleeping per order:
+ *   start            -> SEARCHING -> OFFERED(1)
+ *   global match     -> SEARCHING -> OFFERED(1)       (GlobalOrderMatcher, if enabled)
+ *   driver accept    -> OFFERED(n) -> ASSIGNED        (OrderAcceptanceRegistry)
+ *   offer timeout    -> OFFERED(n) -> SEARCHING       (timing wheel)
+ *   next wave        -> SEARCHING -> OFFERED(n+1) | BACKLOGGED
+ *   driver freed     -> BACKLOGGED -> OFFERED(n+1)    (the freed driver only)
+ *   backlog timeout  -> BACKLOGGED -> UNASSIGNED      (after backlog.max-wait-ms)
+ *   cancellation     -> * -> CANCELLED
+ *
+ * Once backlogged, an order that is declined or finds no driver goes back to
+ * the backlog, keeping its place, until backlog.max-wait-ms after it first
+ * entered it. With backlog.max-wait-ms = 0 orders go UNASSIGNED right away.
+ *
+ * Each wave's size and offer timeout come from AcceptanceStatistics, which
+ * learns them per zone and hour from the offers and acceptances recorded here.
+ *
+ * A dispatch may carry a bundle of orders stacked by OrderStacker: drivers are
+ * offered the lead order, and accepting it assigns the whole bundle (see
+ * DispatchTransactions.claimOrder). Terminal states apply to every order of
+ * the bundle; cancelling a member just drops it, cancelling the lead restarts
+ * the rest as a new bundle.
+ *
+ * Events run as short tasks on the worker of the restaurant's zone (see
+ * ZoneDispatchWorkers), one at a time per zone, so dispatch state needs no
+ * locks and zones scale with cores; waiting costs one timing-wheel entry, not
+ * a thread. Events never block: loading the context, searching drivers,
+ * recording offers, the SMS wave and the final status writes run off the
+ * worker (callAsync), and their completion comes back as an event that
+ * re-checks the dispatch's state and wave before acting.
+ *
+ * Drivers are shared with other dispatches of this and neighbouring zones;
+ * they are arbitrated per driver by DriverOfferLeases and
+ * DispatchTransactions.claimOrder, and drivers leased away between a search
+ * and its wave are replaced (sharding.contention-retries).
+ */
+@Service
+@Slf4j
+public class DispatchStateMachine {
+
+    public enum State {
+        SEARCHING, OFFERED, BACKLOGGED, ASSIGNED, UNASSIGNED, CANCELLED, FAILED;
+
+        public boolean isTerminal() {
+            return this == ASSIGNED || this == UNASSIGNED || this == CANCELLED || this == FAILED;
+        }
+    }
+
+    private static final Duration WAVE_DELAY = Duration.ofSeconds(2);
+
+    private final DispatchTransactions dispatchTransactions;
+    private final DriverCandidateService driverCandidateService;
+    private final DriverWaveNotifier driverWaveNotifier;
+    private final OrderAcceptanceRegistry acceptanceRegistry;
+    private final OpenOfferRegistry openOfferRegistry;
+    private final DriverOfferLeases driverOfferLeases;
+    private final GlobalOrderMatcher globalOrderMatcher;
+    private final AcceptanceStatistics acceptanceStatistics;
+    private final OfferOutcomes offerOutcomes;
+    private final DispatchBacklog dispatchBacklog;
+    private final HashedTimingWheel timingWheel;
+    private final ZoneDispatchWorkers zoneDispatchWorkers;
+
+    private final Map<Long, Dispatch> dispatches = new ConcurrentHashMap<>();
+
+    @Value("${app.delivery.max-waves:5}")
+    private int maxWaves; // Maximum waves before the order goes to the backlog
+
+    @Value("${app.delivery.backlog.max-wait-ms:900000}")
+    private long backlogMaxWaitMillis; // How long an order waits in the backlog before it goes UNASSIGNED
+
+    @Value("${app.delivery.max-driver-distance-km:10}")
+    private double maxDriverDistanceKm;
+
+    @Value("${app.delivery.sharding.contention-retries:2}")
+    private int contentionRetries; // Searches for replacements of drivers leased by other dispatches, per wave
+
+    public DispatchStateMachine(DispatchTransactions dispatchTransactions,
+                                DriverCandidateService driverCandidateService,
+                                DriverWaveNotifier driverWaveNotifier,
+                                OrderAcceptanceRegistry acceptanceRegistry,
+                                OpenOfferRegistry openOfferRegistry,
+                                DriverOfferLeases driverOfferLeases,
+                                GlobalOrderMatcher globalOrderMatcher,
+                                AcceptanceStatistics acceptanceStatistics,
+                                OfferOutcomes offerOutcomes,
+                                DispatchBacklog dispatchBacklog,
+                                HashedTimingWheel timingWheel,
+                                ZoneDispatchWorkers zoneDispatchWorkers) {
+        this.dispatchTransactions = dispatchTransactions;
+        this.driverCandidateService = driverCandidateService;
+        this.driverWaveNotifier = driverWaveNotifier;
+        this.acceptanceRegistry = acceptanceRegistry;
+        this.openOfferRegistry = openOfferRegistry;
+        this.driverOfferLeases = driverOfferLeases;
+        this.globalOrderMatcher = globalOrderMatcher;
+        this.acceptanceStatistics = acceptanceStatistics;
+        this.offerOutcomes = offerOutcomes;
+        this.dispatchBacklog = dispatchBacklog;
+        this.timingWheel = timingWheel;
+        this.zoneDispatchWorkers = zoneDispatchWorkers;
+    }
+
+    /**
+     * Starts dispatching an order; returns immediately
+     *
+     * @param orderId Order ID
+     * @param restaurantId Restaurant ID
+     * @param restaurantLocation Restaurant coordinates, picks the zone worker; null if unknown
+     */
+    public void start(Long orderId, Long restaurantId, Point restaurantLocation) {
+        start(orderId, restaurantId, restaurantLocation, List.of());
+    }
+
+    /**
+     * Starts dispatching a bundle of orders from one restaurant as one offer;
+     * returns immediately
+     *
+     * @param orderId Lead order ID, the order drivers are offered
+     * @param restaurantId Restaurant ID
+     * @param restaurantLocation Restaurant coordinates, picks the zone worker; null if unknown
+     * @param memberOrderIds Orders stacked onto the lead, assigned together with it
+     */
+    public void start(Long orderId, Long restaurantId, Point restaurantLocation, List<Long> memberOrderIds) {
+        long zone = zoneDispatchWorkers.zoneOfRestaurant(restaurantLocation);
+        if (zone == ZoneDispatchWorkers.UNKNOWN_ZONE) {
+            log.warn("Restaurant {} of order {} has no location, dispatching in the shared unknown zone",
+                    restaurantId, orderId);
+        }
+        start(orderId, restaurantId, memberOrderIds, zone);
+    }
+
+    private void start(Long orderId, Long restaurantId, List<Long> memberOrderIds, long zone) {
+        Dispatch dispatch = new Dispatch(orderId, restaurantId, memberOrderIds, zone);
+        if (dispatches.putIfAbsent(orderId, dispatch) != null) {
+            log.warn("Dispatch for order {} already in flight, ignoring duplicate start", orderId);
+            return;
+        }
+        for (Long memberId : memberOrderIds) {
+            dispatches.putIfAbsent(memberId, dispatch);
+        }
+
+        log.info("Dispatch for order {} started: {}", orderId, dispatch.state);
+        acceptanceRegistry.register(orderId)
+                .thenAccept(driverId -> fire(dispatch, () -> onAccepted(dispatch, driverId)));
+        fire(dispatch, () -> searchNextWave(dispatch));
+    }
+
+    /**
+     * Cancels an in-flight dispatch, e.g. because the order was cancelled
+     *
+     * For a member of a bundle only that order leaves the bundle.
+     *
+     * @param orderId Order ID
+     * @return true if a dispatch was in flight
+     */
+    public boolean cancel(Long orderId) {
+        Dispatch dispatch = dispatches.get(orderId);
+        if (dispatch == null) {
+            return false;
+        }
+        if (dispatch.orderId.equals(orderId)) {
+            fire(dispatch, () -> onCancelled(dispatch));
+        } else {
+            fire(dispatch, () -> onMemberCancelled(dispatch, orderId));
+        }
+        return true;
+    }
+
+    /**
+     * Offers a driver who just became AVAILABLE the most urgent backlogged
+     * orders within reach, one per free slot
+     *
+     * Called on every transition to AVAILABLE: a delivery freeing a slot,
+     * presence restoring an evicted driver, a driver coming online.
+     *
+     * @param driverId Driver ID
+     * @param latitude Driver latitude
+     * @param longitude Driver longitude
+     * @param freeSlots Free order slots of the driver
+     */
+    public void driverFreed(long driverId, double latitude, double longitude, int freeSlots) {
+        int remainingSlots = freeSlots;
+        while (remainingSlots > 0) {
+            Optional<DispatchBacklog.Polled> polled = dispatchBacklog.pollNear(latitude, longitude,
+                    maxDriverDistanceKm, driverId, remainingSlots);
+            if (polled.isEmpty()) {
+                return;
+            }
+            Dispatch dispatch = dispatches.get(polled.get().orderId());
+            if (dispatch == null) {
+                continue;
+            }
+            // Slots as backlogged: the dispatch's own fields belong to its zone worker
+            remainingSlots -= polled.get().slots();
+            fire(dispatch, () -> onDriverFreed(dispatch, driverId));
+        }
+    }
+
+    /**
+     * @param orderId Order ID
+     * @return Current state of an in-flight dispatch, empty once it reached a terminal state
+     */
+    public Optional<State> getState(Long orderId) {
+        Dispatch dispatch = dispatches.get(orderId);
+        return dispatch == null ? Optional.empty() : Optional.of(dispatch.state);
+    }
+
+    /**
+     * @return number of orders currently being dispatched
+     */
+    public int inFlightCount() {
+        return dispatches.size();
+    }
+
+    // ------------------------------------------------------------------
+    // Event handlers (run on the zone's worker)
+    // ------------------------------------------------------------------
+
+    private void searchNextWave(Dispatch dispatch) {
+        if (dispatch.state != State.SEARCHING) {
+            return;
+        }
+
+        if (dispatch.context == null) {
+            // Short transaction off the worker; nothing stays open while we wait for drivers
+            List<Long> members = List.copyOf(dispatch.members);
+            callAsync(dispatch, () -> members.isEmpty()
+                            ? dispatchTransactions.loadContext(dispatch.orderId, dispatch.restaurantId)
+                            : dispatchTransactions.loadBundleContext(dispatch.orderId, dispatch.restaurantId, members),
+                    context -> onContextLoaded(dispatch, context));
+            return;
+        }
+
+        if (dispatch.wave == 0 && !dispatch.matchRequested && globalOrderMatcher.isEnabled()) {
+            // First wave waits for the next global matching round
+            dispatch.matchRequested = true;
+            globalOrderMatcher.submit(dispatch.context, dispatch.startedAtMillis,
+                    driverId -> fire(dispatch, () -> onMatched(dispatch, driverId)));
+            return;
+        }
+
+        if (dispatch.wave >= maxWaves) {
+            log.error("Exhausted all {} waves. No driver found for order {}", maxWaves, dispatch.orderId);
+            backlogOrFinish(dispatch);
+            return;
+        }
+
+        int wave = dispatch.wave + 1;
+        log.info("========================================");
+        log.info("Driver search wave {} for order {}", wave, dispatch.orderId);
+        log.info("========================================");
+
+        AcceptanceStatistics.WavePlan plan = acceptanceStatistics.plan(
+                dispatch.context.getLatitude(), dispatch.context.getLongitude());
+        long expiresAtMillis = System.currentTimeMillis() + plan.timeout().toMillis();
+        DispatchContext context = dispatch.context;
+        DriverSearchCursor cursor = dispatch.cursor;
+        callAsync(dispatch, () -> driverCandidateService.findNextWave(context, cursor, plan.size()),
+                drivers -> onCandidatesFound(dispatch, wave, plan.size(), expiresAtMillis,
+                        drivers, new ArrayList<>(), 0));
+    }
+
+    private void onContextLoaded(Dispatch dispatch, DispatchContext context) {
+        if (dispatch.state != State.SEARCHING || dispatch.context != null) {
+            return;
+        }
+
+        dispatch.context = context;
+        for (Long memberId : dispatch.members) {
+            if (!context.getBundledOrderIds().contains(memberId)) {
+                dispatches.remove(memberId, dispatch);
+            }
+        }
+        dispatch.members.retainAll(context.getBundledOrderIds());
+        dispatch.cursor = driverCandidateService.newCursor();
+        log.info("Restaurant location: lat={}, lng={}", context.getLatitude(), context.getLongitude());
+        searchNextWave(dispatch);
+    }
+
+    /**
+     * Leases the drivers a search found and offers them the wave
+     *
+     * Drivers another dispatch leased since the search (typically one of a
+     * neighbouring zone reaching into this one) are replaced by the next
+     * nearest ones, up to sharding.contention-retries searches, so contention
+     * costs a wave drivers only once the area runs out of them.
+     *
+     * @param leased Drivers of the wave leased by earlier searches
+     * @param retries Replacement searches so far
+     */
+    private void onCandidatesFound(Dispatch dispatch, int wave, int waveSize, long expiresAtMillis,
+                                   List<DriverCandidate> found, List<DriverCandidate> leased, int retries) {
+        if (dispatch.state != State.SEARCHING || dispatch.wave != wave - 1) {
+            return;
+        }
+        if (found.isEmpty() && leased.isEmpty()) {
+            log.warn("No more available drivers found for order: {}", dispatch.orderId);
+            backlogOrFinish(dispatch);
+            return;
+        }
+
+        List<DriverCandidate> granted = lease(dispatch, found, expiresAtMillis, true);
+        leased.addAll(granted);
+        int lost = found.size() - granted.size();
+        if (lost > 0 && leased.size() < waveSize && retries < contentionRetries) {
+            log.info("{} drivers of wave {} for order {} were leased by other dispatches, searching for replacements",
+                    lost, wave, dispatch.orderId);
+            DispatchContext context = dispatch.context;
+            DriverSearchCursor cursor = dispatch.cursor;
+            int missing = waveSize - leased.size();
+            callAsync(dispatch, () -> driverCandidateService.findReplacements(context, cursor, missing),
+                    more -> onCandidatesFound(dispatch, wave, waveSize, expiresAtMillis, more, leased, retries + 1));
+            return;
+        }
+
+        log.info("Found {} available drivers in wave {}", leased.size(), wave);
+        offerWave(dispatch, wave, leased, expiresAtMillis);
+    }
+
+    private void onMatched(Dispatch dispatch, Long driverId) {
+        if (dispatch.state != State.SEARCHING || dispatch.wave != 0) {
+            return;
+        }
+        if (driverId == null) {
+            log.info("No globally matched driver for order {}, searching the regular way", dispatch.orderId);
+            searchNextWave(dispatch);
+            return;
+        }
+
+        DispatchContext context = dispatch.context;
+        callAsync(dispatch, () -> driverCandidateService.findMatchedDriver(context, driverId), drivers -> {
+            if (dispatch.state != State.SEARCHING || dispatch.wave != 0) {
+                return;
+            }
+            if (drivers.isEmpty()) {
+                log.info("Globally matched driver {} is gone for order {}, searching the regular way",
+                        driverId, dispatch.orderId);
+                searchNextWave(dispatch);
+                return;
+            }
+
+            log.info("Order {} globally matched to driver {}", dispatch.orderId, driverId);
+            long expiresAtMillis = System.currentTimeMillis() + acceptanceStatistics.plan(
+                    dispatch.context.getLatitude(), dispatch.context.getLongitude()).timeout().toMillis();
+            offerWave(dispatch, 1, lease(dispatch, drivers, expiresAtMillis, false), expiresAtMillis);
+        });
+    }
+
+    /**
+     * Takes offer leases on drivers and moves the cursor past those leased
+     *
+     * @param keyset true if the drivers came from the distance-ordered search,
+     *               whose keyset moves past them; false for drivers picked
+     *               otherwise (global match, freed driver)
+     * @return The drivers that got a lease; the others stay ahead of the cursor
+     */
+    private List<DriverCandidate> lease(Dispatch dispatch, List<DriverCandidate> drivers, long expiresAtMillis,
+                                        boolean keyset) {
+        List<Long> driverIds = driverOfferLeases.acquire(dispatch.orderId,
+                drivers.stream().map(DriverCandidate::getId).collect(Collectors.toList()), expiresAtMillis);
+        List<DriverCandidate> leased = drivers;
+        List<DriverCandidate> notLeased = List.of();
+        if (driverIds.size() < drivers.size()) {
+            // Leased by concurrent orders since the search
+            Set<Long> granted = new HashSet<>(driverIds);
+            Map<Boolean, List<DriverCandidate>> split = drivers.stream()
+                    .collect(Collectors.partitioningBy(driver -> granted.contains(driver.getId())));
+            leased = split.get(true);
+            notLeased = split.get(false);
+        }
+        if (keyset) {
+            dispatch.cursor.advance(leased, notLeased);
+        } else {
+            dispatch.cursor.exclude(leased);
+        }
+        return leased;
+    }
+
+    /**
+     * Sends a wave of offers to leased drivers, then waits for acceptance
+     *
+     * Recording the offers and the SMS wave run off the worker; the worker
+     * only hears back once the wave is out.
+     */
+    private void offerWave(Dispatch dispatch, int wave, List<DriverCandidate> drivers, long expiresAtMillis) {
+        dispatch.wave = wave;
+        dispatch.state = State.OFFERED;
+        if (drivers.isEmpty()) {
+            log.warn("Every driver of wave {} for order {} was leased meanwhile", wave, dispatch.orderId);
+            onOfferTimeout(dispatch, wave);
+            return;
+        }
+
+        long offerTimeoutMillis = Math.max(0, expiresAtMillis - System.currentTimeMillis());
+        dispatch.timeout = timingWheel.schedule(
+                () -> fire(dispatch, () -> onOfferTimeout(dispatch, wave)),
+                offerTimeoutMillis, TimeUnit.MILLISECONDS);
+
+        List<Long> driverIds = drivers.stream().map(DriverCandidate::getId).collect(Collectors.toList());
+        DispatchContext context = dispatch.context;
+        callAsync(dispatch, () -> {
+            dispatchTransactions.recordOffers(dispatch.orderId, wave, driverIds,
+                    LocalDateTime.now().plus(Duration.ofMillis(offerTimeoutMillis)));
+            if (dispatch.state.isTerminal()) {
+                return 0;
+            }
+            // Open before the SMS go out, so the fastest driver can claim right away
+            openOfferRegistry.open(dispatch.orderId, driverIds, expiresAtMillis);
+
+            long sentAtMillis = System.currentTimeMillis();
+            List<DriverNotificationResult> results = driverWaveNotifier.sendWave(drivers, context);
+            List<Long> notifiedIds = new ArrayList<>(results.size());
+            for (DriverNotificationResult result : results) {
+                if (result.isSuccess()) {
+                    notifiedIds.add(result.getDriverId());
+                }
+            }
+            offerOutcomes.offered(dispatch.orderId, context.getLatitude(), context.getLongitude(),
+                    notifiedIds, sentAtMillis, expiresAtMillis);
+            return notifiedIds.size();
+        }, notified -> onWaveSent(dispatch, wave, notified, offerTimeoutMillis));
+    }
+
+    private void onWaveSent(Dispatch dispatch, int wave, int notified, long offerTimeoutMillis) {
+        if (dispatch.state != State.OFFERED || dispatch.wave != wave) {
+            return;
+        }
+        if (notified == 0) {
+            // Nobody heard about the order, don't wait out the offer timeout
+            log.warn("No driver could be notified about order {} in wave {}", dispatch.orderId, wave);
+            cancelTimeout(dispatch);
+            onOfferTimeout(dispatch, wave);
+            return;
+        }
+        log.info("Order {} is OFFERED (wave {}), waiting up to {} s for acceptance",
+                dispatch.orderId, wave, offerTimeoutMillis / 1000);
+    }
+
+    private void onOfferTimeout(Dispatch dispatch, int wave) {
+        if (dispatch.state != State.OFFERED || dispatch.wave != wave) {
+            return;
+        }
+
+        log.info("No driver accepted order {} in wave {}", dispatch.orderId, wave);
+        dispatch.state = State.SEARCHING;
+        dispatch.timeout = null;
+
+        if (dispatch.wave >= maxWaves || dispatch.backloggedAtMillis > 0) {
+            log.warn("No driver accepted order: {}", dispatch.orderId);
+            backlogOrFinish(dispatch);
+            return;
+        }
+
+        dispatch.timeout = timingWheel.schedule(
+                () -> fire(dispatch, () -> searchNextWave(dispatch)),
+                WAVE_DELAY.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private void onDriverFreed(Dispatch dispatch, long driverId) {
+        if (dispatch.state != State.BACKLOGGED) {
+            return;
+        }
+
+        DispatchContext context = dispatch.context;
+        callAsync(dispatch, () -> driverCandidateService.findMatchedDriver(context, driverId), drivers -> {
+            if (dispatch.state != State.BACKLOGGED) {
+                return;
+            }
+            if (drivers.isEmpty()) {
+                log.info("Freed driver {} cannot take backlogged order {}", driverId, dispatch.orderId);
+                backlogOrFinish(dispatch);
+                return;
+            }
+
+            cancelTimeout(dispatch);
+            log.info("Freed driver {} pulls order {} from the dispatch backlog", driverId, dispatch.orderId);
+            long expiresAtMillis = System.currentTimeMillis() + acceptanceStatistics.plan(
+                    dispatch.context.getLatitude(), dispatch.context.getLongitude()).timeout().toMillis();
+            offerWave(dispatch, dispatch.wave + 1, lease(dispatch, drivers, expiresAtMillis, false), expiresAtMillis);
+        });
+    }
+
+    private void onBacklogExpired(Dispatch dispatch) {
+        if (dispatch.state != State.BACKLOGGED) {
+            return;
+        }
+        log.warn("No driver freed up for order {} within {} s. Marking as UNASSIGNED",
+                dispatch.orderId, backlogMaxWaitMillis / 1000);
+        finishUnassigned(dispatch);
+    }
+
+    private void onAccepted(Dispatch dispatch, Long driverId) {
+        cancelTimeout(dispatch);
+        dispatch.state = State.ASSIGNED;
+        finish(dispatch);
+
+        write(dispatch, "finalize the assignment",
+                () -> dispatchTransactions.finalizeAssignment(dispatch.orderId, driverId), () -> { });
+        log.info("✓ Driver {} assigned to order {} (wave {})", driverId, dispatch.orderId, dispatch.wave);
+    }
+
+    private void onCancelled(Dispatch dispatch) {
+        cancelTimeout(dispatch);
+        dispatch.state = State.CANCELLED;
+        finish(dispatch);
+
+        log.info("Dispatch for order {} cancelled", dispatch.orderId);
+        if (dispatch.members.isEmpty()) {
+            write(dispatch, "expire the offers", () -> dispatchTransactions.expireOffers(dispatch.orderId), () -> { });
+            return;
+        }
+
+        // The bundle lost its lead: the next order leads the rest, once the old bundle is cleared
+        boolean bundled = dispatch.context != null;
+        Long lead = dispatch.members.get(0);
+        List<Long> rest = List.copyOf(dispatch.members.subList(1, dispatch.members.size()));
+        write(dispatch, "clear the bundle", () -> {
+            dispatchTransactions.expireOffers(dispatch.orderId);
+            if (bundled) {
+                dispatchTransactions.clearBundle(dispatch.orderId);
+            }
+        }, () -> {
+            log.info("Restarting bundle of order {} with lead order {}", dispatch.orderId, lead);
+            start(lead, dispatch.restaurantId, rest, dispatch.zone);
+        });
+    }
+
+    private void onMemberCancelled(Dispatch dispatch, Long orderId) {
+        // Cancelled orders are no longer ACCEPTED, so the bundle claim skips them
+        if (dispatch.members.remove(orderId)) {
+            dispatches.remove(orderId, dispatch);
+            log.info("Order {} left the bundle of order {}", orderId, dispatch.orderId);
+        }
+    }
+
+    /**
+     * Parks an order that ran out of drivers in the backlog, or marks it
+     * UNASSIGNED once it has waited there backlog.max-wait-ms
+     */
+    private void backlogOrFinish(Dispatch dispatch) {
+        long now = System.currentTimeMillis();
+        if (dispatch.backloggedAtMillis == 0) {
+            dispatch.backloggedAtMillis = now;
+        }
+        long remainingMillis = dispatch.backloggedAtMillis + backlogMaxWaitMillis - now;
+        if (remainingMillis <= 0 || dispatch.context == null) {
+            finishUnassigned(dispatch);
+            return;
+        }
+
+        cancelTimeout(dispatch);
+        dispatch.state = State.BACKLOGGED;
+        dispatchBacklog.add(dispatch.context, dispatch.startedAtMillis);
+        dispatch.timeout = timingWheel.schedule(
+                () -> fire(dispatch, () -> onBacklogExpired(dispatch)),
+                remainingMillis, TimeUnit.MILLISECONDS);
+        log.info("Order {} waits in the dispatch backlog for a driver to free up ({} orders waiting)",
+                dispatch.orderId, dispatchBacklog.size());
+    }
+
+    private void finishUnassigned(Dispatch dispatch) {
+        cancelTimeout(dispatch);
+        dispatch.state = State.UNASSIGNED;
+        finish(dispatch);
+
+        List<Long> members = List.copyOf(dispatch.members);
+        write(dispatch, "mark the order UNASSIGNED", () -> {
+            dispatchTransactions.markUnassigned(dispatch.orderId);
+            for (Long memberId : members) {
+                dispatchTransactions.markUnassigned(memberId);
+            }
+        }, () -> { });
+    }
+
+    private void finishFailed(Dispatch dispatch, Exception e) {
+        log.error("Error assigning driver to order {}: {}", dispatch.orderId, e.getMessage(), e);
+        cancelTimeout(dispatch);
+        dispatch.state = State.FAILED;
+        finish(dispatch);
+
+        // Update order status to indicate assignment failure
+        List<Long> members = List.copyOf(dispatch.members);
+        write(dispatch, "mark the order ASSIGNMENT_FAILED", () -> {
+            dispatchTransactions.markAssignmentFailed(dispatch.orderId);
+            for (Long memberId : members) {
+                dispatchTransactions.markAssignmentFailed(memberId);
+            }
+        }, () -> { });
+    }
+
+    // ------------------------------------------------------------------
+    // Plumbing
+    // ------------------------------------------------------------------
+
+    /**
+     * Runs an event for a dispatch on its zone's worker, serialized with the
+     * zone's other events; events for finished dispatches are dropped
+     */
+    private void fire(Dispatch dispatch, Runnable event) {
+        zoneDispatchWorkers.execute(dispatch.zone, () -> handle(dispatch, event));
+    }
+
+    /**
+     * Runs blocking work of a dispatch (queries, SMS) off its zone's worker;
+     * the continuation runs back on the worker as an event, dropped like any
+     * other once the dispatch finished, and a failure fails the dispatch
+     *
+     * The call must only read dispatch state captured before it, besides the
+     * volatile state.
+     */
+    private <T> void callAsync(Dispatch dispatch, Supplier<T> call, Consumer<T> continuation) {
+        zoneDispatchWorkers.callAsync(dispatch.zone, call, (result, error) -> handle(dispatch, () -> {
+            if (error != null) {
+                throw error;
+            }
+            continuation.accept(result);
+        }));
+    }
+
+    /**
+     * Writes the outcome of a finished dispatch off its zone's worker
+     *
+     * @param then Runs on the worker once the write succeeded
+     */
+    private void write(Dispatch dispatch, String description, Runnable write, Runnable then) {
+        zoneDispatchWorkers.callAsync(dispatch.zone, () -> {
+            write.run();
+            return null;
+        }, (result, error) -> {
+            if (error != null) {
+                log.error("Could not {} for order {}: {}", description, dispatch.orderId, error.getMessage(), error);
+                return;
+            }
+            then.run();
+        });
+    }
+
+    private void handle(Dispatch dispatch, Runnable event) {
+        if (dispatch.state.isTerminal()) {
+            return;
+        }
+        try {
+            event.run();
+        } catch (Exception e) {
+            try {
+                finishFailed(dispatch, e);
+            } catch (Exception inner) {
+                log.error("Could not mark order {} as ASSIGNMENT_FAILED: {}", dispatch.orderId, inner.getMessage());
+            }
+        }
+    }
+
+    private void cancelTimeout(Dispatch dispatch) {
+        if (dispatch.timeout != null) {
+            dispatch.timeout.cancel();
+            dispatch.timeout = null;
+        }
+    }
+
+    private void finish(Dispatch dispatch) {
+        dispatches.remove(dispatch.orderId, dispatch);
+        if (dispatch.backloggedAtMillis > 0) {
+            dispatchBacklog.remove(dispatch.orderId);
+        }
+        for (Long memberId : dispatch.members) {
+            dispatches.remove(memberId, dispatch);
+        }
+        acceptanceRegistry.unregister(dispatch.orderId);
+        openOfferRegistry.close(dispatch.orderId);
+        offerOutcomes.closed(dispatch.orderId); // Open offers of the losers are censored now
+        if (dispatch.cursor != null) {
+            driverOfferLeases.release(dispatch.orderId, dispatch.cursor.getOfferedDriverIds());
+        }
+    }
+
+    /**
+     * Per-order dispatch state; only touched by the worker of its zone
+     */
+    private static final class Dispatch {
+        private final Long orderId;
+        private final Long restaurantId;
+        private final List<Long> members;  // Orders stacked onto this one, empty if not a bundle
+        private final long zone;  // Zone of the restaurant, see ZoneDispatchWorkers
+        private final long startedAtMillis = System.currentTimeMillis();
+
+        private volatile State state = State.SEARCHING;
+        private int wave;
+        private boolean matchRequested;
+        private long backloggedAtMillis;  // When the order first entered the backlog, 0 if never
+        private DispatchContext context;
+        private DriverSearchCursor cursor;
+        private HashedTimingWheel.Timeout timeout;
+
+        private Dispatch(Long orderId, Long restaurantId, List<Long> members, long zone) {
+            this.orderId = orderId;
+            this.restaurantId = restaurantId;
+            this.members = new ArrayList<>(members);
+            this.zone = zone;
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package com.delivery_management_service.services;
+
+import com.delivery_management_service.DTO.DispatchContext;
+import com.delivery_management_service.models.Driver;
+import com.delivery_management_service.models.Order;
+import com.delivery_management_service.models.OrderOffer;
+import com.delivery_management_service.models.Restaurant;
+import com.delivery_management_service.repository.DriverCapacityWriter;
+import com.delivery_management_service.repository.DriverRepository;
+import com.delivery_management_service.repository.OrderOfferRepository;
+import com.delivery_management_service.repository.OrderRepository;
+import com.delivery_management_service.repository.RestaurantRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Short, separate transactions used by the dispatch flow
+ *
+ * A dispatch can wait minutes for a driver. Each step that touches the database
+ * runs in its own transaction here, so no connection stays checked out across
+ * those waits:
+ * 1. loadContext        - read order + restaurant into a detached DispatchContext
+ *    loadBundleContext  - same for a stacked bundle, tying its members to the lead
+ * 2. recordOffers       - persist the drivers notified in a wave
+ * 3. claimOrder         - conditional assignment when a driver accepts
+ *    finalizeAssignment - resolve the offers once a driver accepted
+ * 4. markUnassigned / markAssignmentFailed / expireOffers / clearBundle - terminal states
+ *
+ * Lives in its own bean so the @Transactional proxies apply (no self-invocation).
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DispatchTransactions {
+
+    private final OrderRepository orderRepository;
+    private final RestaurantRepository restaurantRepository;
+    private final OrderOfferRepository orderOfferRepository;
+    private final DriverRepository driverRepository;
+    private final DriverCapacityWriter driverCapacityWriter;
+    private final OrderAcceptanceListener acceptanceListener;
+
+    /**
+     * Loads the order and restaurant details needed for dispatch
+     *
+     * @param orderId Order ID
+     * @param restaurantId Restaurant ID
+     * @return Detached dispatch context
+     */
+    @Transactional(readOnly = true)
+    public DispatchContext loadContext(Long orderId, Long restaurantId) {
+        Restaurant restaurant = restaurantRepository.findById(restaurantId)
+                .orElseThrow(() -> new RuntimeException("Restaurant not found: " + restaurantId));
+
+        if (restaurant.getLocation() == null) {
+            log.error("Restaurant {} has no location coordinates", restaurantId);
+            throw new RuntimeException("Restaurant location not available");
+        }
+
+        Order order = orderRepository.findById(orderId)
+                .orElseThrow(() -> new RuntimeException("Order not found: " + orderId));
+
+        return DispatchContext.builder()
+                .orderId(order.getId())
+                .restaurantId(restaurantId)
+                .restaurantName(restaurant.getName())
+                .restaurantAddress(restaurant.getAddress())
+                .restaurantLocation(restaurant.getLocation())
+                .deliveryAddress(order.getDeliveryAddress())
+                .deliveryLocation(order.getDeliveryLocation())
+                .totalAmount(order.getTotalAmount())
+                .acceptedAt(order.getAcceptedAt())
+                .build();
+    }
+
+    /**
+     * Loads a stacked bundle and ties its members to the lead order
+     *
+     * Members that left ACCEPTED or got a driver since they were stacked
+     * (e.g. cancelled) are dropped from the bundle.
+     *
+     * @param orderId Lead order ID
+     * @param restaurantId Restaurant ID, shared by all orders of the bundle
+     * @param memberOrderIds Orders stacked onto the lead
+     * @return Detached dispatch context of the bundle
+     */
+    @Transactional
+    public DispatchContext loadBundleContext(Long orderId, Long restaurantId, List<Long> memberOrderIds) {
+        DispatchContext context = loadContext(orderId, restaurantId);
+
+        List<Order> members = new ArrayList<>(memberOrderIds.size());
+        List<Long> bundled = new ArrayList<>(memberOrderIds.size());
+        BigDecimal totalAmount = context.getTotalAmount();
+        for (Order member : orderRepository.findAllById(memberOrderIds)) {
+            if (!"ACCEPTED".equals(member.getStatus()) || member.getAssignedDriverId() != null
+                    || !restaurantId.equals(member.getRestaurantId())) {
+                log.info("Order {} is {}, leaving it out of bundle {}", member.getId(), member.getStatus(), orderId);
+                continue;
+            }
+            member.setBundleId(orderId);
+            members.add(member);
+            bundled.add(member.getId());
+            totalAmount = totalAmount.add(member.getTotalAmount());
+        }
+        orderRepository.saveAll(members);
+
+        context.setBundledOrderIds(bundled);
+        context.setTotalAmount(totalAmount);
+        log.info("Order {} leads a bundle of {} orders: {}", orderId, bundled.size() + 1, bundled);
+        return context;
+    }
+
+    /**
+     * Records the drivers notified in a wave
+     *
+     * @param orderId Order ID
+     * @param wave Wave number (1-based)
+     * @param driverIds Drivers offered the order
+     * @param expiresAt When the offers lapse if nobody accepts
+     */
+    @Transactional
+    public void recordOffers(Long orderId, int wave, List<Long> driverIds, LocalDateTime expiresAt) {
+        List<OrderOffer> offers = new ArrayList<>(driverIds.size());
+        for (Long driverId : driverIds) {
+            OrderOffer offer = new OrderOffer();
+            offer.setOrderId(orderId);
+            offer.setDriverId(driverId);
+            offer.setWave(wave);
+            offer.setExpiresAt(expiresAt);
+            offers.add(offer);
+        }
+        orderOfferRepository.saveAll(offers);
+    }
+
+    /**
+     * Assigns an order to the accepting driver if nobody beat them to it
+     *
+     * Two conditional statements, the affected row counts decide the winner:
+     * 1. orders:  assigned_driver_id = driverId, status = 'ASSIGNED'
+     *             WHERE assigned_driver_id IS NULL AND status = 'ACCEPTED'
+     * 2. drivers: active_orders += orders claimed (BUSY once full)
+     *             WHERE status = 'AVAILABLE' AND is_active AND enough free slots
+     *
+     * If the order leads a stacked bundle, its open members are assigned to the
+     * same driver between the two, so the driver wins the whole bundle or none
+     * of it, and the bundle takes one slot per order.
+     *
+     * If the driver update loses, the exception rolls back the order update and
+     * the order stays open for other drivers. Every acceptance locks the order
+     * row before the driver row, so two acceptances cannot deadlock.
+     *
+     * Also publishes the acceptance to other nodes (NOTIFY, delivered on commit).
+     *
+     * @param orderId Order ID
+     * @param driverId Accepting driver ID
+     * @return Driver's load after the claim
+     */
+    @Transactional
+    public DriverCapacityWriter.DriverLoad claimOrder(Long orderId, Long driverId) {
+        log.info("Finalizing driver assignment: order={}, driver={}", orderId, driverId);
+
+        if (orderRepository.assignDriverIfUnassigned(orderId, driverId) == 0) {
+            throw orderNotAssignable(orderId, driverId);
+        }
+        int members = orderRepository.assignBundleMembersIfUnassigned(orderId, driverId);
+
+        DriverCapacityWriter.DriverLoad load = driverCapacityWriter.claimSlots(driverId, 1 + members)
+                .orElseThrow(() -> driverNotAvailable(driverId, 1 + members));
+
+        acceptanceListener.publish(orderId, driverId);
+
+        log.info("✓ Driver {} successfully assigned to order {}", driverId, orderId);
+        if (members > 0) {
+            log.info("  Bundled orders: {}", members);
+        }
+        log.info("  Order status: ASSIGNED");
+        log.info("  Driver status: {} ({}/{} orders)", load.status(), load.activeOrders(), load.maxOrders());
+        return load;
+    }
+
+    /**
+     * Resolves the order's offers once a driver has accepted
+     *
+     * The assignment itself is written by claimOrder; this only closes
+     * out the wave so the losing offers stop counting as outstanding.
+     *
+     * @param orderId Order ID
+     * @param driverId Accepting driver ID
+     */
+    @Transactional
+    public void finalizeAssignment(Long orderId, Long driverId) {
+        int resolved = orderOfferRepository.resolveOffers(orderId, driverId);
+        log.info("Resolved {} offers for order {} (winner: driver {})", resolved, orderId, driverId);
+    }
+
+    /**
+     * Expires the order's open offers, e.g. when its dispatch was cancelled
+     *
+     * @param orderId Order ID
+     */
+    @Transactional
+    public void expireOffers(Long orderId) {
+        orderOfferRepository.expireOffers(orderId);
+    }
+
+    /**
+     * Takes the members out of a bundle, e.g. when its lead order was cancelled
+     *
+     * @param orderId Lead order ID
+     */
+    @Transactional
+    public void clearBundle(Long orderId) {
+        orderRepository.clearBundle(orderId);
+    }
+
+    /**
+     * Marks an order UNASSIGNED after all waves lapsed
+     *
+     * Skipped if a driver got assigned in the meantime (late acceptance).
+     *
+     * @param orderId Order ID
+     */
+    @Transactional
+    public void markUnassigned(Long orderId) {
+        markIfUnassigned(orderId, "UNASSIGNED");
+    }
+
+    /**
+     * Marks an order ASSIGNMENT_FAILED after an unexpected dispatch error
+     *
+     * Skipped if a driver got assigned in the meantime: its claim holds a
+     * slot for the order, so the order must keep reading as assigned.
+     *
+     * @param orderId Order ID
+     */
+    @Transactional
+    public void markAssignmentFailed(Long orderId) {
+        markIfUnassigned(orderId, "ASSIGNMENT_FAILED");
+    }
+
+    /**
+     * Conditional update, so a claim committing concurrently is never overwritten
+     */
+    private void markIfUnassigned(Long orderId, String status) {
+        orderOfferRepository.expireOffers(orderId);
+        if (orderRepository.markIfUnassigned(orderId, status) == 0) {
+            log.info("Order {} was assigned, cancelled or delivered meanwhile, not marking it {}", orderId, status);
+        }
+    }
+
+    /**
+     * Explains why the conditional order update matched no row
+     *
+     * Only runs on the losing path, so the winner never pays for the read.
+     */
+    private RuntimeException orderNotAssignable(Long orderId, Long driverId) {
+        Order order = orderRepository.findById(orderId).orElse(null);
+        if (order == null) {
+            return new RuntimeException("Order not found: " + orderId);
+        }
+
+        // Check if order already assigned (race condition protection)
+        if (order.getAssignedDriverId() != null) {
+            log.warn("Order {} already assigned to driver {}. Driver {} was too slow.",
+                    orderId, order.getAssignedDriverId(), driverId);
+            return new RuntimeException("Order already assigned to another driver. Better luck next time!");
+        }
+
+        log.warn("Order {} is in status '{}', expected 'ACCEPTED'", orderId, order.getStatus());
+        return new RuntimeException("Order is not available for assignment. Current status: " + order.getStatus());
+    }
+
+    /**
+     * Explains why the conditional driver update matched no row
+     */
+    private RuntimeException driverNotAvailable(Long driverId, int slots) {
+        Driver driver = driverRepository.findById(driverId).orElse(null);
+        if (driver == null) {
+            return new RuntimeException("Driver not found: " + driverId);
+        }
+
+        if ("AVAILABLE".equals(driver.getStatus()) && Boolean.TRUE.equals(driver.getIsActive())) {
+            log.warn("Driver {} carries {}/{} orders, no room for {} more",
+                    driverId, driver.getActiveOrders(), driver.getMaxOrders(), slots);
+            return new RuntimeException("Driver has no capacity for " + slots + " more orders. Current load: "
+                    + driver.getActiveOrders() + "/" + driver.getMaxOrders());
+        }
+
+        log.warn("Driver {} is {}, not AVAILABLE", driverId, driver.getStatus());
+        return new RuntimeException("Driver is not available. Current status: " + driver.getStatus());
+    }
+}
@@ -0,0 +1,403 @@
+package com.delivery_management_service.services;
+
+import com.delivery_management_service.DTO.DriverAttributes;
+import com.delivery_management_service.repository.DriverCapacityWriter;
+import com.delivery_management_service.repository.DriverRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongPredicate;
+
+/**
+ * In-memory bitmap index over the driver attributes matched on besides location
+ *
+ * One CompressedBitmap of driver IDs per attribute value:
+ * - active: is_active
+ * - status: AVAILABLE, BUSY, OFFLINE
+ * - vehicle type (upper case)
+ * - free slots: one bitmap per level "at least k free order slots", k = 1..8
+ * so "active, AVAILABLE, room for 2 orders, CAR" is three ANDs of a few
+ * thousand words for 100k drivers, and the candidate search checks the spatial
+ * result against it with one contains() per driver instead of SQL predicates.
+ *
+ * Rebuilt from the database every attributes.refresh-ms; kept current in
+ * between from the changes this node makes (capacity claims and releases,
+ * presence). The database snapshot of a rebuild is read outside the lock;
+ * changes made meanwhile are journaled and replayed onto it before it is
+ * swapped in, as in DriverSpatialIndex. Drivers registered since the last
+ * rebuild are loaded on their first location flush (addMissing), and until
+ * then are never excluded: only indexed drivers can fail a check. Candidates
+ * are still confirmed against the database, so a stale bit costs a wasted
+ * lookup, never a wrong offer.
+ *
+ * Exposed metrics:
+ * - driver.attributes.indexed (gauge) drivers in the index
+ */
+@Component
+@Slf4j
+public class DriverAttributeIndex {
+
+    static final int MAX_SLOT_LEVELS = 8;
+
+    /**
+     * Indexed attributes of one driver
+     */
+    private record Attributes(String vehicleType, boolean active, String status, int freeSlots) {
+
+        private static Attributes of(DriverAttributes row) {
+            return new Attributes(
+                    row.getVehicleType() == null ? null : row.getVehicleType().toUpperCase(Locale.ROOT),
+                    Boolean.TRUE.equals(row.getActive()),
+                    row.getStatus(),
+                    row.getFreeSlots() == null ? 0 : row.getFreeSlots());
+        }
+    }
+
+    /**
+     * A change made while a rebuild reads the database
+     *
+     * @param inserted Attributes of a driver loaded by addMissing, null for a status / slots update
+     * @param freeSlots New free slots, or -1 to keep the indexed ones
+     */
+    private record Mutation(long driverId, Attributes inserted, String status, int freeSlots) {
+    }
+
+    /**
+     * One generation of the index; replaced as a whole on rebuild
+     */
+    private static final class Bitmaps {
+        private final Map<Long, Attributes> drivers;
+        private final CompressedBitmap indexed = new CompressedBitmap();
+        private final CompressedBitmap active = new CompressedBitmap();
+        private final Map<String, CompressedBitmap> byStatus = new HashMap<>();
+        private final Map<String, CompressedBitmap> byVehicleType = new HashMap<>();
+        private final CompressedBitmap[] freeSlotsAtLeast = new CompressedBitmap[MAX_SLOT_LEVELS];
+
+        private Bitmaps(int expectedDrivers) {
+            this.drivers = new HashMap<>(expectedDrivers * 2);
+            for (int level = 0; level < MAX_SLOT_LEVELS; level++) {
+                freeSlotsAtLeast[level] = new CompressedBitmap();
+            }
+        }
+
+        private void put(long driverId, Attributes attributes) {
+            Attributes previous = drivers.put(driverId, attributes);
+            if (previous != null) {
+                unindex(driverId, previous);
+            }
+            index(driverId, attributes);
+        }
+
+        private void index(long driverId, Attributes attributes) {
+            indexed.add(driverId);
+            if (attributes.active()) {
+                active.add(driverId);
+            }
+            byStatus.computeIfAbsent(attributes.status(), s -> new CompressedBitmap()).add(driverId);
+            if (attributes.vehicleType() != null) {
+                byVehicleType.computeIfAbsent(attributes.vehicleType(), t -> new CompressedBitmap()).add(driverId);
+            }
+            for (int level = 0; level < Math.min(attributes.freeSlots(), MAX_SLOT_LEVELS); level++) {
+                freeSlotsAtLeast[level].add(driverId);
+            }
+        }
+
+        private void unindex(long driverId, Attributes attributes) {
+            active.remove(driverId);
+            remove(byStatus, attributes.status(), driverId);
+            remove(byVehicleType, attributes.vehicleType(), driverId);
+            for (int level = 0; level < Math.min(attributes.freeSlots(), MAX_SLOT_LEVELS); level++) {
+                freeSlotsAtLeast[level].remove(driverId);
+            }
+        }
+
+        private static <K> void remove(Map<K, CompressedBitmap> bitmaps, K key, long driverId) {
+            CompressedBitmap bitmap = key == null ? null : bitmaps.get(key);
+            if (bitmap != null) {
+                bitmap.remove(driverId);
+                if (bitmap.isEmpty()) {
+                    bitmaps.remove(key);
+                }
+            }
+        }
+    }
+
+    private final DriverRepository driverRepository;
+
+    // Bitmaps are not thread-safe: reads (and, contains) under the read lock, changes under the write lock
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private Bitmaps bitmaps = new Bitmaps(0);
+    private List<Mutation> journal; // Changes made while a rebuild reads the database, null otherwise
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+    private volatile boolean warm;
+
+    public DriverAttributeIndex(DriverRepository driverRepository,
+                                MeterRegistry meterRegistry) {
+        this.driverRepository = driverRepository;
+
+        Gauge.builder("driver.attributes.indexed", this, DriverAttributeIndex::size)
+                .description("Drivers in the attribute index")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return true once the index was built from the database
+     */
+    public boolean isWarm() {
+        return warm;
+    }
+
+    /**
+     * Rebuilds the index from the database and swaps it in atomically
+     */
+    @Scheduled(fixedDelayString = "${app.delivery.attributes.refresh-ms:60000}")
+    public void rebuild() {
+        rebuildLock.lock();
+        try {
+            rebuildFromDatabase();
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    private void rebuildFromDatabase() {
+        long start = System.nanoTime();
+        lock.writeLock().lock();
+        try {
+            journal = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        List<DriverAttributes> rows;
+        try {
+            rows = driverRepository.findAllAttributes();
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                journal = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+
+        Bitmaps rebuilt = new Bitmaps(rows.size());
+        for (DriverAttributes row : rows) {
+            rebuilt.put(row.getId(), Attributes.of(row));
+        }
+
+        int replayed;
+        lock.writeLock().lock();
+        try {
+            List<Mutation> changes = journal;
+            journal = null;
+            bitmaps = rebuilt;
+            for (Mutation change : changes) {
+                if (change.inserted() != null) {
+                    applyInsert(change.driverId(), change.inserted());
+                } else {
+                    applyUpdate(change.driverId(), change.status(), change.freeSlots());
+                }
+            }
+            replayed = changes.size();
+            warm = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.debug("Driver attribute index rebuilt: {} drivers, {} changes replayed ({} ms)",
+                rows.size(), replayed, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Records a driver's status and free slots as returned by a capacity write
+     *
+     * @param load Load after the write
+     */
+    public void updateLoad(DriverCapacityWriter.DriverLoad load) {
+        update(load.driverId(), load.status(), load.freeSlots());
+    }
+
+    /**
+     * Records a status change, e.g. a driver going OFFLINE
+     *
+     * @param driverId Driver ID
+     * @param status New status
+     */
+    public void updateStatus(long driverId, String status) {
+        update(driverId, status, -1);
+    }
+
+    /**
+     * Loads drivers the index does not know yet, e.g. registered since the
+     * last rebuild, so they are checked like every other driver
+     *
+     * @param driverIds Driver IDs, typically those of a location flush
+     * @param count Number of entries to use
+     */
+    public void addMissing(long[] driverIds, int count) {
+        List<Long> missing = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (int i = 0; i < count; i++) {
+                if (!bitmaps.drivers.containsKey(driverIds[i])) {
+                    missing.add(driverIds[i]);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+
+        List<DriverAttributes> rows = driverRepository.findAttributesByIds(missing);
+        lock.writeLock().lock();
+        try {
+            for (DriverAttributes row : rows) {
+                Attributes attributes = Attributes.of(row);
+                applyInsert(row.getId(), attributes);
+                if (journal != null) {
+                    journal.add(new Mutation(row.getId(), attributes, null, -1));
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.debug("Driver attribute index: {} new drivers loaded", rows.size());
+    }
+
+    /**
+     * Drivers that must not be offered a dispatch: indexed drivers that are
+     * not active, not AVAILABLE, short of free order slots or, if given,
+     * driving none of the vehicle types
+     *
+     * Drivers not in the index are never excluded; the database confirms them.
+     *
+     * @param slots Free order slots needed (above MAX_SLOT_LEVELS, only that many are checked)
+     * @param vehicleTypes Accepted vehicle types, empty for any
+     * @return Predicate over driver IDs, true for excluded drivers; a snapshot, safe to use without the lock
+     */
+    public LongPredicate ineligible(int slots, Collection<String> vehicleTypes) {
+        lock.readLock().lock();
+        try {
+            CompressedBitmap indexed = bitmaps.indexed.copy();
+            CompressedBitmap status = bitmaps.byStatus.get("AVAILABLE");
+            if (status == null) {
+                return indexed::contains;
+            }
+            int level = Math.max(1, Math.min(slots, MAX_SLOT_LEVELS));
+            CompressedBitmap eligible = bitmaps.active
+                    .and(status)
+                    .and(bitmaps.freeSlotsAtLeast[level - 1]);
+            if (!vehicleTypes.isEmpty()) {
+                CompressedBitmap vehicles = new CompressedBitmap();
+                for (String vehicleType : vehicleTypes) {
+                    CompressedBitmap bitmap = bitmaps.byVehicleType.get(vehicleType.toUpperCase(Locale.ROOT));
+                    if (bitmap != null) {
+                        vehicles = vehicles.or(bitmap);
+                    }
+                }
+                eligible = eligible.and(vehicles);
+            }
+            CompressedBitmap allowed = eligible;
+            return driverId -> indexed.contains(driverId) && !allowed.contains(driverId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param driverId Driver ID
+     * @param requirement Requirement of a dispatch
+     * @return false if the driver is indexed with a vehicle type the
+     *         requirement does not accept; true otherwise, unindexed drivers included
+     */
+    public boolean mayDrive(long driverId, DriverRequirements.Requirement requirement) {
+        if (requirement.anyVehicleType()) {
+            return true;
+        }
+        lock.readLock().lock();
+        try {
+            Attributes attributes = bitmaps.drivers.get(driverId);
+            return attributes == null || requirement.acceptsVehicleType(attributes.vehicleType());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param driverId Driver ID
+     * @return Free order slots if the driver is active and AVAILABLE, 0 if it is not, -1 if not indexed
+     */
+    public int availableSlots(long driverId) {
+        lock.readLock().lock();
+        try {
+            Attributes attributes = bitmaps.drivers.get(driverId);
+            if (attributes == null) {
+                return -1;
+            }
+            return attributes.active() && "AVAILABLE".equals(attributes.status()) ? attributes.freeSlots() : 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return number of drivers in the index
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return bitmaps.drivers.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param freeSlots New free slots, or -1 to keep the indexed ones
+     */
+    private void update(long driverId, String status, int freeSlots) {
+        lock.writeLock().lock();
+        try {
+            applyUpdate(driverId, status, freeSlots);
+            if (journal != null) {
+                journal.add(new Mutation(driverId, null, status, freeSlots));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void applyUpdate(long driverId, String status, int freeSlots) {
+        Attributes current = bitmaps.drivers.get(driverId);
+        if (current == null) {
+            return; // Not known yet (e.g. registered since the last rebuild), see addMissing
+        }
+        bitmaps.put(driverId, new Attributes(current.vehicleType(), current.active(), status,
+                freeSlots < 0 ? current.freeSlots() : freeSlots));
+    }
+
+    /**
+     * Adds a driver loaded by addMissing unless it is indexed by now, with
+     * attributes at least as fresh
+     */
+    private void applyInsert(long driverId, Attributes attributes) {
+        bitmaps.drivers.computeIfAbsent(driverId, id -> {
+            bitmaps.index(id, attributes);
+            return attributes;
+        });
+    }
+}
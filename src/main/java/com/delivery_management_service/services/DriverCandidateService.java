@@ -0,0 +1,285 @@
+package com.delivery_management_service.services;
+
+import com.delivery_management_service.DTO.DispatchContext;
+import com.delivery_management_service.DTO.DriverCandidate;
+import com.delivery_management_service.repository.DriverRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.LongPredicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Finds the drivers to offer an order to in a dispatch wave
+ *
+ * Uses the in-memory DriverSpatialIndex when it is warm and only falls back
+ * to the PostGIS KNN query while the index is cold. Either way candidates are
+ * slim DriverCandidate rows whose distance was computed by PostGIS.
+ *
+ * Waves page through drivers by distance (see DriverSearchCursor) within a
+ * radius that widens from search.initial-radius-km to max-driver-distance-km.
+ * Drivers without a free offer lease (see DriverOfferLeases) are skipped.
+ *
+ * On the in-memory path the scoring.pool-size nearest drivers are ranked by
+ * DriverScoreBoard (distance, acceptance likelihood, idle time) and the best
+ * make the wave. With a road graph loaded (TravelTimeRouter) the pool is the
+ * routing.candidates nearest drivers, ranked on road travel time instead of
+ * straight-line distance. With a travel-time matrix (TravelTimeEstimator) the
+ * whole scoring.pool-size pool gets O(1) matrix estimates first, and only the
+ * routing.candidates best of them are routed exactly. The PostGIS fallback
+ * keeps pure distance order.
+ *
+ * Drivers must meet the dispatch's DriverRequirements (free order slots,
+ * vehicle type). In memory they come from the DriverAttributeIndex bitmaps,
+ * intersected with the spatial result; the PostGIS fallback and the database
+ * confirmation of candidates check the same requirements in SQL.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DriverCandidateService {
+
+    // Sentinel for "no driver excluded": NOT IN () is not valid SQL
+    private static final List<Long> NO_EXCLUDED_DRIVERS = List.of(-1L);
+    // Sentinel for "any vehicle type": IN () is not valid SQL either
+    private static final List<String> ANY_VEHICLE_TYPE = List.of("");
+
+    private final DriverRepository driverRepository;
+    private final DriverSpatialIndex driverSpatialIndex;
+    private final DriverOfferLeases driverOfferLeases;
+    private final DriverScoreBoard driverScoreBoard;
+    private final TravelTimeRouter travelTimeRouter;
+    private final TravelTimeEstimator travelTimeEstimator;
+    private final DriverAttributeIndex driverAttributeIndex;
+    private final DriverRequirements driverRequirements;
+
+    @Value("${app.delivery.max-driver-distance-km:10}")
+    private double maxDriverDistanceKm;
+
+    @Value("${app.delivery.search.initial-radius-km:3}")
+    private double initialRadiusKm;
+
+    @Value("${app.delivery.search.radius-step-km:2}")
+    private double radiusStepKm;
+
+    @Value("${app.delivery.scoring.pool-size:100}")
+    private int rankingPoolSize;
+
+    @Value("${app.delivery.routing.candidates:50}")
+    private int routedPoolSize;
+
+    @Value("${app.delivery.routing.reference-speed-kmh:25}")
+    private double referenceSpeedKmh;
+
+    /**
+     * Starts the driver search of an order
+     *
+     * @return Cursor at the initial radius, before the nearest driver
+     */
+    public DriverSearchCursor newCursor() {
+        return new DriverSearchCursor(Math.min(initialRadiusKm, maxDriverDistanceKm));
+    }
+
+    /**
+     * Finds the drivers for the next wave of an order and widens its radius
+     *
+     * Each wave continues after the previous one (keyset on distance, id) and
+     * skips drivers already offered the order, so a later wave costs the same
+     * as the first. The radius widens by one step after every wave, and right
+     * away while a wave comes up empty, until max-driver-distance-km.
+     *
+     * The cursor is not advanced here: only drivers that get a lease are
+     * offered, and the caller advances it past those (DriverSearchCursor.advance).
+     *
+     * @param context Order and restaurant details
+     * @param cursor Search position of the order
+     * @param waveSize Maximum number of drivers, see AcceptanceStatistics
+     * @return Up to waveSize new candidates ordered by distance; empty once
+     *         no driver is left within max-driver-distance-km
+     */
+    public List<DriverCandidate> findNextWave(DispatchContext context, DriverSearchCursor cursor, int waveSize) {
+        List<DriverCandidate> candidates = findCandidates(context, cursor, waveSize);
+        while (candidates.isEmpty() && cursor.widen(radiusStepKm, maxDriverDistanceKm)) {
+            log.info("No new drivers for order {}, widening search radius to {} km",
+                    context.getOrderId(), cursor.getRadiusKm());
+            candidates = findCandidates(context, cursor, waveSize);
+        }
+
+        cursor.widen(radiusStepKm, maxDriverDistanceKm);
+        return candidates;
+    }
+
+    /**
+     * Finds more drivers for a wave whose drivers were partly leased by other
+     * dispatches between the search and the offer
+     *
+     * Searches after the cursor within its current radius; unlike
+     * findNextWave, it neither widens the radius nor moves the cursor.
+     *
+     * @param context Order and restaurant details
+     * @param cursor Search position of the order, advanced past the wave's leased drivers
+     * @param count Number of drivers missing from the wave
+     * @return Up to count new candidates ordered by distance
+     */
+    public List<DriverCandidate> findReplacements(DispatchContext context, DriverSearchCursor cursor, int count) {
+        return findCandidates(context, cursor, count);
+    }
+
+    /**
+     * Loads a driver picked by global matching as the order's first wave
+     *
+     * Once offered, the driver only joins the cursor's offered drivers
+     * (DriverSearchCursor.exclude); the keyset stays put, so later waves still
+     * start from the nearest driver.
+     *
+     * @param context Order and restaurant details
+     * @param driverId Matched driver ID
+     * @return The driver, or empty if it is no longer AVAILABLE or does not meet the requirements
+     */
+    public List<DriverCandidate> findMatchedDriver(DispatchContext context, long driverId) {
+        DriverRequirements.Requirement requirement = driverRequirements.of(context);
+        return driverRepository.findAvailableCandidatesByIds(List.of(driverId),
+                context.getLongitude(), context.getLatitude(), requirement.slots(),
+                requirement.anyVehicleType(), vehicleTypesParameter(requirement));
+    }
+
+    /**
+     * Finds the nearest AVAILABLE, active drivers within the cursor's radius
+     * that come after the cursor
+     *
+     * Indexed drivers are re-checked against the database, so a stale index
+     * entry never gets notified.
+     */
+    private List<DriverCandidate> findCandidates(DispatchContext context, DriverSearchCursor cursor, int limit) {
+        double longitude = context.getLongitude();
+        double latitude = context.getLatitude();
+        DriverRequirements.Requirement requirement = driverRequirements.of(context);
+        int slots = requirement.slots();
+
+        if (!driverSpatialIndex.isWarm()) {
+            log.info("Driver spatial index is cold, falling back to PostGIS query");
+            return driverRepository.findNearestCandidates(
+                    longitude,
+                    latitude,
+                    cursor.getRadiusKm() * 1000,
+                    cursor.getAfterDistanceMeters(),
+                    cursor.getAfterDriverId(),
+                    cursor.getOfferedDriverIds().isEmpty() ? NO_EXCLUDED_DRIVERS : cursor.getOfferedDriverIds(),
+                    driverOfferLeases.getMaxOffersPerDriver(),
+                    slots,
+                    requirement.anyVehicleType(),
+                    vehicleTypesParameter(requirement),
+                    limit
+            );
+        }
+
+        // In memory, skipping ineligible, offered and fully leased drivers is as cheap as a keyset
+        LongPredicate ineligible = driverAttributeIndex.isWarm()
+                ? driverAttributeIndex.ineligible(slots, requirement.vehicleTypes()) : driverId -> false;
+        boolean routed = travelTimeRouter.isAvailable();
+        boolean estimated = travelTimeEstimator.hasMatrix();
+        int poolSize = Math.max(limit, routed && !estimated ? routedPoolSize : rankingPoolSize);
+        List<DriverSpatialIndex.NearbyDriver> pool = driverSpatialIndex.findNearest(
+                latitude, longitude, poolSize, cursor.getRadiusKm(),
+                driverId -> ineligible.test(driverId)
+                        || cursor.isOffered(driverId) || driverOfferLeases.isSaturated(driverId));
+        if (routed || estimated) {
+            pool = withTravelTimes(pool, latitude, longitude, Math.max(limit, routedPoolSize));
+        }
+        List<Long> driverIds = driverScoreBoard.rank(pool, limit)
+                .stream()
+                .map(DriverSpatialIndex.NearbyDriver::driverId)
+                .collect(Collectors.toList());
+        if (driverIds.isEmpty()) {
+            return List.of();
+        }
+
+        Map<Long, DriverCandidate> candidatesById = driverRepository
+                .findAvailableCandidatesByIds(driverIds, longitude, latitude, slots,
+                        requirement.anyVehicleType(), vehicleTypesParameter(requirement)).stream()
+                .collect(Collectors.toMap(DriverCandidate::getId, Function.identity()));
+
+        List<DriverCandidate> candidates = new ArrayList<>(driverIds.size());
+        for (Long driverId : driverIds) {
+            DriverCandidate candidate = candidatesById.get(driverId);
+            if (candidate != null) {
+                candidates.add(candidate);
+            } else if (slots == 1 && requirement.anyVehicleType()) {
+                // Stale entry, e.g. status changed on another node since the last rebuild.
+                // A bundle or large order may just not suit a driver that can take others, so keep those.
+                driverSpatialIndex.remove(driverId);
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Replaces straight-line distances by travel time to the restaurant,
+     * expressed in kilometers at routing.reference-speed-kmh so the ranker
+     * weighs them like distances
+     *
+     * With a matrix every driver gets its O(1) estimate; with a road graph the
+     * routedLimit fastest drivers by estimate are then routed exactly and the
+     * rest are dropped. Drivers without any travel time keep their
+     * straight-line distance.
+     */
+    private List<DriverSpatialIndex.NearbyDriver> withTravelTimes(List<DriverSpatialIndex.NearbyDriver> pool,
+                                                                  double latitude, double longitude,
+                                                                  int routedLimit) {
+        int n = pool.size();
+        long[] driverIds = new long[n];
+        for (int i = 0; i < n; i++) {
+            driverIds[i] = pool.get(i).driverId();
+        }
+        double[] latitudes = new double[n];
+        double[] longitudes = new double[n];
+        driverSpatialIndex.locate(driverIds, latitudes, longitudes);
+
+        List<DriverSpatialIndex.NearbyDriver> estimated = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            double seconds = Double.isNaN(latitudes[i]) ? Double.NaN
+                    : travelTimeEstimator.matrixSeconds(latitudes[i], longitudes[i], latitude, longitude);
+            estimated.add(Double.isNaN(seconds) ? pool.get(i) : toNearbyDriver(driverIds[i], seconds));
+        }
+        if (!travelTimeRouter.isAvailable()) {
+            return estimated;
+        }
+
+        // Route exactly only the drivers the matrix says are fastest
+        int[] order = IntStream.range(0, n).boxed()
+                .sorted(Comparator.comparingDouble(i -> estimated.get(i).distanceKm()))
+                .limit(routedLimit)
+                .mapToInt(Integer::intValue)
+                .toArray();
+        double[] routedLatitudes = new double[order.length];
+        double[] routedLongitudes = new double[order.length];
+        for (int j = 0; j < order.length; j++) {
+            routedLatitudes[j] = latitudes[order[j]];
+            routedLongitudes[j] = longitudes[order[j]];
+        }
+        double[] seconds = travelTimeRouter.travelSecondsTo(latitude, longitude, routedLatitudes, routedLongitudes);
+
+        List<DriverSpatialIndex.NearbyDriver> routed = new ArrayList<>(order.length);
+        for (int j = 0; j < order.length; j++) {
+            int i = order[j];
+            routed.add(Double.isNaN(seconds[j]) ? estimated.get(i) : toNearbyDriver(driverIds[i], seconds[j]));
+        }
+        return routed;
+    }
+
+    private static List<String> vehicleTypesParameter(DriverRequirements.Requirement requirement) {
+        return requirement.anyVehicleType() ? ANY_VEHICLE_TYPE : requirement.vehicleTypes();
+    }
+
+    private DriverSpatialIndex.NearbyDriver toNearbyDriver(long driverId, double seconds) {
+        return new DriverSpatialIndex.NearbyDriver(driverId, seconds / 3600 * referenceSpeedKmh);
+    }
+}
@@ -0,0 +1,198 @@
+package com.delivery_management_service.services;
+
+import com.delivery_management_service.repository.DriverLocationWriter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Write-behind ingest of driver GPS pings
+ *
+ * Drivers ping every few seconds; writing each ping would mean one UPDATE per
+ * ping. Instead:
+ * 1. record() keeps only the latest fix per driver in memory (O(1), no I/O)
+ * 2. flush() runs every location-ingest.flush-ms, drains the latest fixes and
+ *    writes them with JDBC batch updates in one transaction
+ * 3. Drivers already in the DriverSpatialIndex are moved in the same pass,
+ *    and drivers the DriverAttributeIndex does not know yet are loaded into it
+ *
+ * Every ping is also a heartbeat for DriverPresenceTracker.
+ *
+ * A driver pinging many times between two flushes costs a single row update.
+ * Fixes are lost only if the node dies before the next flush, which the next
+ * ping repairs.
+ *
+ * Exposed metrics:
+ * - driver.location.pings     (counter) fixes received
+ * - driver.location.coalesced (counter) fixes replaced by a newer one before being written
+ * - driver.location.written   (counter) rows sent to the database
+ * - driver.location.pending   (gauge)   drivers waiting for the next flush
+ */
+@Service
+@Slf4j
+public class DriverLocationIngestService {
+
+    private final DriverLocationWriter locationWriter;
+    private final DriverSpatialIndex driverSpatialIndex;
+    private final DriverAttributeIndex driverAttributeIndex;
+    private final DriverPresenceTracker presenceTracker;
+
+    private final Map<Long, LocationFix> latestFixes = new ConcurrentHashMap<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    private final Counter pingCounter;
+    private final Counter coalescedCounter;
+    private final Counter writtenCounter;
+
+    @Value("${app.delivery.location-ingest.batch-size:1000}")
+    private int batchSize;
+
+    public DriverLocationIngestService(DriverLocationWriter locationWriter,
+                                       DriverSpatialIndex driverSpatialIndex,
+                                       DriverAttributeIndex driverAttributeIndex,
+                                       DriverPresenceTracker presenceTracker,
+                                       MeterRegistry meterRegistry) {
+        this.locationWriter = locationWriter;
+        this.driverSpatialIndex = driverSpatialIndex;
+        this.driverAttributeIndex = driverAttributeIndex;
+        this.presenceTracker = presenceTracker;
+        this.pingCounter = Counter.builder("driver.location.pings")
+                .description("Driver location fixes received")
+                .register(meterRegistry);
+        this.coalescedCounter = Counter.builder("driver.location.coalesced")
+                .description("Driver location fixes superseded before being written")
+                .register(meterRegistry);
+        this.writtenCounter = Counter.builder("driver.location.written")
+                .description("Driver location rows written")
+                .register(meterRegistry);
+        Gauge.builder("driver.location.pending", latestFixes, Map::size)
+                .description("Drivers with a location waiting for the next flush")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Records a driver's location fix; only the newest fix per driver is kept
+     *
+     * @param driverId Driver ID
+     * @param latitude Latitude
+     * @param longitude Longitude
+     * @param recordedAt When the fix was taken (epoch millis), null for now
+     */
+    public void record(long driverId, double latitude, double longitude, Long recordedAt) {
+        long now = System.currentTimeMillis();
+        // Clock skew on phones: never accept fixes from the future
+        long timestamp = recordedAt == null ? now : Math.min(recordedAt, now);
+
+        latestFixes.merge(driverId, new LocationFix(latitude, longitude, timestamp), this::coalesce);
+        presenceTracker.heartbeat(driverId, latitude, longitude);
+        pingCounter.increment();
+    }
+
+    /**
+     * Writes the latest fix of every driver that pinged since the last flush
+     */
+    @Scheduled(fixedDelayString = "${app.delivery.location-ingest.flush-ms:1000}")
+    public void flush() {
+        if (latestFixes.isEmpty() || !flushLock.tryLock()) {
+            return;
+        }
+        try {
+            int capacity = latestFixes.size() + 64;
+            long[] driverIds = new long[capacity];
+            double[] latitudes = new double[capacity];
+            double[] longitudes = new double[capacity];
+            long[] recordedAt = new long[capacity];
+            int count = 0;
+
+            // Remove-then-write: a ping arriving during the flush lands in the next one
+            Iterator<Map.Entry<Long, LocationFix>> iterator = latestFixes.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<Long, LocationFix> entry = iterator.next();
+                LocationFix fix = entry.getValue();
+                if (!latestFixes.remove(entry.getKey(), fix)) {
+                    continue; // Replaced meanwhile, the newer fix goes out next time
+                }
+                if (count == driverIds.length) {
+                    int grown = count * 2;
+                    driverIds = Arrays.copyOf(driverIds, grown);
+                    latitudes = Arrays.copyOf(latitudes, grown);
+                    longitudes = Arrays.copyOf(longitudes, grown);
+                    recordedAt = Arrays.copyOf(recordedAt, grown);
+                }
+                driverIds[count] = entry.getKey();
+                latitudes[count] = fix.latitude;
+                longitudes[count] = fix.longitude;
+                recordedAt[count] = fix.recordedAt;
+                count++;
+            }
+            if (count == 0) {
+                return;
+            }
+
+            long start = System.nanoTime();
+            try {
+                locationWriter.updateLocations(driverIds, latitudes, longitudes, recordedAt, count, batchSize);
+            } catch (RuntimeException e) {
+                log.error("Failed to write {} driver locations, retrying on next flush: {}", count, e.getMessage());
+                requeue(driverIds, latitudes, longitudes, recordedAt, count);
+                return;
+            }
+            writtenCounter.increment(count);
+            driverSpatialIndex.moveIndexed(driverIds, latitudes, longitudes, count);
+            driverAttributeIndex.addMissing(driverIds, count);
+
+            log.debug("Flushed {} driver locations in {} ms", count, (System.nanoTime() - start) / 1_000_000);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * @return number of drivers whose latest fix is not written yet
+     */
+    public int pendingCount() {
+        return latestFixes.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private void requeue(long[] driverIds, double[] latitudes, double[] longitudes, long[] recordedAt, int count) {
+        for (int i = 0; i < count; i++) {
+            // Not a coalesced ping: the fix was counted when it came in
+            latestFixes.merge(driverIds[i], new LocationFix(latitudes[i], longitudes[i], recordedAt[i]),
+                    DriverLocationIngestService::newer);
+        }
+    }
+
+    /**
+     * Merges an incoming ping into the pending fix of its driver
+     */
+    private LocationFix coalesce(LocationFix current, LocationFix incoming) {
+        coalescedCounter.increment();
+        return newer(current, incoming);
+    }
+
+    /**
+     * Keeps the newer of two fixes; an out-of-order ping never replaces a newer fix
+     */
+    private static LocationFix newer(LocationFix current, LocationFix incoming) {
+        return incoming.recordedAt >= current.recordedAt ? incoming : current;
+    }
+
+    private record LocationFix(double latitude, double longitude, long recordedAt) {
+    }
+}
@@ -0,0 +1,223 @@
+package com.delivery_management_service.services;
+
+import com.delivery_management_service.models.OrderOffer;
+import com.delivery_management_service.repository.OrderOfferRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-driver offer leases: how many orders a driver is being offered right now
+ *
+ * Several orders accepted within seconds at the same food court would
+ * otherwise all go to the same nearest drivers, each driver getting several
+ * SMS and accepting at most one. Each offer holds a lease on its driver until
+ * the offer expires or the order's dispatch ends, and a driver holds at most
+ * leases.max-offers-per-driver leases. The candidate search skips drivers
+ * without a free lease, so concurrent orders spread across the fleet.
+ *
+ * Leases live in memory (lock-free reads on the search path). The database
+ * mirror is the order_offers table: an OFFERED offer that has not expired is
+ * a lease. leases.refresh-ms reloads it, so leases survive restarts and
+ * leases taken on other nodes are honoured too; the PostGIS fallback query
+ * applies the same limit directly on order_offers.
+ *
+ * Exposed metrics:
+ * - driver.leases.drivers (gauge)   drivers holding at least one lease
+ * - driver.leases.denied  (counter) offers dropped because the driver had no free lease
+ */
+@Component
+@Slf4j
+public class DriverOfferLeases {
+
+    private static final Lease[] NO_LEASES = new Lease[0];
+    // Local leases this recent are kept on reload even if their offers are not committed yet
+    private static final long RELOAD_GRACE_MILLIS = 30_000;
+
+    private final OrderOfferRepository orderOfferRepository;
+    private final int maxOffersPerDriver;
+
+    // driverId -> leases, copy-on-write arrays replaced under compute()
+    private final Map<Long, Lease[]> leasesByDriver = new ConcurrentHashMap<>();
+
+    private final Counter deniedCounter;
+
+    public DriverOfferLeases(OrderOfferRepository orderOfferRepository,
+                             MeterRegistry meterRegistry,
+                             @Value("${app.delivery.leases.max-offers-per-driver:2}") int maxOffersPerDriver) {
+        this.orderOfferRepository = orderOfferRepository;
+        this.maxOffersPerDriver = maxOffersPerDriver;
+
+        this.deniedCounter = Counter.builder("driver.leases.denied")
+                .description("Offers dropped because the driver had no free lease")
+                .register(meterRegistry);
+        Gauge.builder("driver.leases.drivers", leasesByDriver, Map::size)
+                .description("Drivers holding at least one offer lease")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return Maximum outstanding offers per driver
+     */
+    public int getMaxOffersPerDriver() {
+        return maxOffersPerDriver;
+    }
+
+    /**
+     * @param driverId Driver ID
+     * @return true if the driver holds no free lease and should not be offered another order
+     */
+    public boolean isSaturated(long driverId) {
+        Lease[] leases = leasesByDriver.get(driverId);
+        if (leases == null || leases.length < maxOffersPerDriver) {
+            return false;
+        }
+        return live(leases, System.currentTimeMillis()).length >= maxOffersPerDriver;
+    }
+
+    /**
+     * Takes a lease on each driver of a wave
+     *
+     * @param orderId Order ID
+     * @param driverIds Drivers about to be offered the order
+     * @param expiresAtMillis Epoch millis at which the offers lapse
+     * @return The drivers that got a lease, in the given order; only they may be notified
+     */
+    public List<Long> acquire(long orderId, List<Long> driverIds, long expiresAtMillis) {
+        long now = System.currentTimeMillis();
+        List<Long> leased = new ArrayList<>(driverIds.size());
+        for (Long driverId : driverIds) {
+            boolean[] granted = new boolean[1];
+            leasesByDriver.compute(driverId, (id, current) -> {
+                Lease[] leases = live(current == null ? NO_LEASES : current, now);
+                if (indexOf(leases, orderId) >= 0) {
+                    granted[0] = true;
+                    return leases;
+                }
+                if (leases.length >= maxOffersPerDriver) {
+                    return leases.length == 0 ? null : leases;
+                }
+                granted[0] = true;
+                Lease[] grown = Arrays.copyOf(leases, leases.length + 1);
+                grown[leases.length] = new Lease(orderId, expiresAtMillis, now);
+                return grown;
+            });
+            if (granted[0]) {
+                leased.add(driverId);
+            }
+        }
+        if (leased.size() < driverIds.size()) {
+            deniedCounter.increment(driverIds.size() - leased.size());
+        }
+        return leased;
+    }
+
+    /**
+     * Returns an order's leases, once its dispatch is over
+     *
+     * @param orderId Order ID
+     * @param driverIds Drivers offered the order
+     */
+    public void release(long orderId, Collection<Long> driverIds) {
+        long now = System.currentTimeMillis();
+        for (Long driverId : driverIds) {
+            leasesByDriver.computeIfPresent(driverId, (id, current) -> {
+                Lease[] leases = live(current, now);
+                int index = indexOf(leases, orderId);
+                if (index >= 0) {
+                    Lease[] shrunk = new Lease[leases.length - 1];
+                    System.arraycopy(leases, 0, shrunk, 0, index);
+                    System.arraycopy(leases, index + 1, shrunk, index, leases.length - index - 1);
+                    leases = shrunk;
+                }
+                return leases.length == 0 ? null : leases;
+            });
+        }
+    }
+
+    /**
+     * Reloads the leases from the open offers in the database
+     *
+     * Leases of other nodes come in, leases released elsewhere go away, and
+     * expired leases are dropped. Local leases taken in the last
+     * RELOAD_GRACE_MILLIS are kept, their offers may not be committed yet.
+     */
+    @Scheduled(fixedDelayString = "${app.delivery.leases.refresh-ms:10000}")
+    public void reload() {
+        long now = System.currentTimeMillis();
+        List<OrderOffer> openOffers = orderOfferRepository.findByStatusAndExpiresAtAfter("OFFERED", LocalDateTime.now());
+
+        Map<Long, List<Lease>> stored = new HashMap<>();
+        for (OrderOffer offer : openOffers) {
+            long expiresAt = offer.getExpiresAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            stored.computeIfAbsent(offer.getDriverId(), id -> new ArrayList<>())
+                    .add(new Lease(offer.getOrderId(), expiresAt, 0));
+        }
+
+        Set<Long> driverIds = new HashSet<>(stored.keySet());
+        driverIds.addAll(leasesByDriver.keySet());
+        for (Long driverId : driverIds) {
+            List<Lease> reloaded = stored.getOrDefault(driverId, List.of());
+            leasesByDriver.compute(driverId, (id, current) -> {
+                List<Lease> merged = new ArrayList<>(reloaded);
+                for (Lease lease : current == null ? NO_LEASES : current) {
+                    if (now - lease.acquiredAtMillis() < RELOAD_GRACE_MILLIS
+                            && lease.expiresAtMillis() > now
+                            && merged.stream().noneMatch(l -> l.orderId() == lease.orderId())) {
+                        merged.add(lease);
+                    }
+                }
+                return merged.isEmpty() ? null : merged.toArray(NO_LEASES);
+            });
+        }
+        log.debug("Reloaded {} open offer leases for {} drivers", openOffers.size(), leasesByDriver.size());
+    }
+
+    private static Lease[] live(Lease[] leases, long now) {
+        int alive = 0;
+        for (Lease lease : leases) {
+            if (lease.expiresAtMillis() > now) {
+                alive++;
+            }
+        }
+        if (alive == leases.length) {
+            return leases;
+        }
+        Lease[] pruned = new Lease[alive];
+        int i = 0;
+        for (Lease lease : leases) {
+            if (lease.expiresAtMillis() > now) {
+                pruned[i++] = lease;
+            }
+        }
+        return pruned;
+    }
+
+    private static int indexOf(Lease[] leases, long orderId) {
+        for (int i = 0; i < leases.length; i++) {
+            if (leases[i].orderId() == orderId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private record Lease(long orderId, long expiresAtMillis, long acquiredAtMillis) {
+    }
+}
@@ -0,0 +1,290 @@
+package com.delivery_management_service.services;
+
+import com.delivery_management_service.config.HashedTimingWheel;
+import com.delivery_management_service.models.Driver;
+import com.delivery_management_service.repository.DriverPresenceWriter;
+import com.delivery_management_service.repository.DriverRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.locationtech.jts.geom.Point;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Driver presence: who is actually online, based on heartbeat age
+ *
+ * Every location ping is a heartbeat. Each tracked driver has one entry on a
+ * timing wheel, due when its heartbeat would be presence.ttl-seconds old:
+ * - heartbeat: only stores the time (and position) of the ping, O(1)
+ * - timeout fires: if a newer heartbeat came in, the entry is rescheduled for
+ *   the remaining time; otherwise the driver is stale, dropped from the
+ *   DriverSpatialIndex right away and queued to go OFFLINE
+ * - heartbeat from an untracked driver: tracked again; if presence itself
+ *   evicted it, queued to come back AVAILABLE. A driver who went OFFLINE some
+ *   other way (on purpose, by an operator) stays OFFLINE while it pings
+ *
+ * Drivers restored to AVAILABLE, and drivers coming online with free slots,
+ * pull waiting orders from the dispatch backlog (DispatchStateMachine.driverFreed).
+ *
+ * Status changes are written in bulk every presence.flush-ms, so the candidate
+ * search never has to filter on last_location_update: stale drivers simply are
+ * not AVAILABLE.
+ */
+@Service
+@Slf4j
+public class DriverPresenceTracker {
+
+    private final DriverRepository driverRepository;
+    private final DriverPresenceWriter presenceWriter;
+    private final DriverSpatialIndex driverSpatialIndex;
+    private final DriverAttributeIndex driverAttributeIndex;
+    private final DispatchStateMachine dispatchStateMachine;
+    private final HashedTimingWheel timingWheel;
+    private final long ttlMillis;
+
+    private final Map<Long, Presence> presences = new ConcurrentHashMap<>();
+    private final Queue<Long> staleDrivers = new ConcurrentLinkedQueue<>();
+    private final Queue<Presence> returningDrivers = new ConcurrentLinkedQueue<>();
+    // Came online without having been evicted; AVAILABLE ones may pull backlogged orders
+    private final Queue<Presence> arrivingDrivers = new ConcurrentLinkedQueue<>();
+    // Evicted by presence, OFFLINE or about to be: the only drivers a heartbeat brings back
+    private final Set<Long> evictedDrivers = ConcurrentHashMap.newKeySet();
+
+    private final Counter evictedCounter;
+    private final Counter restoredCounter;
+
+    public DriverPresenceTracker(DriverRepository driverRepository,
+                                 DriverPresenceWriter presenceWriter,
+                                 DriverSpatialIndex driverSpatialIndex,
+                                 DriverAttributeIndex driverAttributeIndex,
+                                 DispatchStateMachine dispatchStateMachine,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${app.delivery.presence.ttl-seconds:60}") long ttlSeconds) {
+        this.driverRepository = driverRepository;
+        this.presenceWriter = presenceWriter;
+        this.driverSpatialIndex = driverSpatialIndex;
+        this.driverAttributeIndex = driverAttributeIndex;
+        this.dispatchStateMachine = dispatchStateMachine;
+        this.ttlMillis = TimeUnit.SECONDS.toMillis(ttlSeconds);
+        // Expiry handlers are tiny, run them on the wheel thread itself
+        this.timingWheel = new HashedTimingWheel(
+                runnable -> {
+                    Thread thread = new Thread(runnable, "presence-timer");
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                Runnable::run,
+                1, TimeUnit.SECONDS,
+                512
+        );
+
+        this.evictedCounter = Counter.builder("driver.presence.evicted")
+                .description("Drivers marked OFFLINE after their heartbeat expired")
+                .register(meterRegistry);
+        this.restoredCounter = Counter.builder("driver.presence.restored")
+                .description("OFFLINE drivers brought back AVAILABLE by a new heartbeat")
+                .register(meterRegistry);
+        Gauge.builder("driver.presence.online", presences, Map::size)
+                .description("Drivers with a live heartbeat")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Starts tracking the AVAILABLE drivers already in the database, aged by
+     * their last_location_update, so drivers that went silent while the
+     * application was down are evicted too
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void trackAvailableDrivers() {
+        long now = System.currentTimeMillis();
+        List<Driver> drivers = driverRepository.findByStatusAndIsActiveTrue("AVAILABLE");
+        for (Driver driver : drivers) {
+            long lastSeen = driver.getLastLocationUpdate() == null ? 0
+                    : driver.getLastLocationUpdate().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            Point location = driver.getCurrentLocation();
+            Presence presence = new Presence(driver.getId(),
+                    location == null ? 0 : location.getY(),
+                    location == null ? 0 : location.getX(),
+                    Math.min(lastSeen, now));
+            if (presences.putIfAbsent(driver.getId(), presence) == null) {
+                schedule(presence, Math.max(0, presence.lastSeenMillis + ttlMillis - now));
+            }
+        }
+        log.info("Presence tracking started for {} available drivers (TTL {} s)", drivers.size(), ttlMillis / 1000);
+    }
+
+    /**
+     * Records a heartbeat (location ping) from a driver
+     *
+     * @param driverId Driver ID
+     * @param latitude Latitude of the ping
+     * @param longitude Longitude of the ping
+     */
+    public void heartbeat(long driverId, double latitude, double longitude) {
+        long now = System.currentTimeMillis();
+        Presence presence = presences.get(driverId);
+        if (presence != null) {
+            presence.latitude = latitude;
+            presence.longitude = longitude;
+            presence.lastSeenMillis = now;
+            return;
+        }
+
+        Presence created = new Presence(driverId, latitude, longitude, now);
+        if (presences.putIfAbsent(driverId, created) == null) {
+            schedule(created, ttlMillis);
+            if (evictedDrivers.contains(driverId)) {
+                // OFFLINE (or about to be) because presence evicted it: bring it back on the next flush
+                returningDrivers.add(created);
+            } else {
+                arrivingDrivers.add(created);
+            }
+        } else {
+            heartbeat(driverId, latitude, longitude);
+        }
+    }
+
+    /**
+     * @param driverId Driver ID
+     * @return true if the driver has a heartbeat younger than the TTL
+     */
+    public boolean isOnline(long driverId) {
+        return presences.containsKey(driverId);
+    }
+
+    /**
+     * Writes queued evictions (OFFLINE) and returns (AVAILABLE) in bulk
+     */
+    @Scheduled(fixedDelayString = "${app.delivery.presence.flush-ms:1000}")
+    public void flush() {
+        for (Presence presence : drain(arrivingDrivers)) {
+            // Not indexed yet (registered since the last rebuild): the backlog pull confirms it against the database
+            int slots = driverAttributeIndex.availableSlots(presence.driverId);
+            if (slots != 0 && presences.get(presence.driverId) == presence) {
+                dispatchStateMachine.driverFreed(presence.driverId, presence.latitude, presence.longitude,
+                        slots < 0 ? 1 : slots);
+            }
+        }
+
+        List<Long> stale = drain(staleDrivers);
+        if (!stale.isEmpty()) {
+            try {
+                List<Long> offline = presenceWriter.markOffline(stale);
+                offline.forEach(driverId -> driverAttributeIndex.updateStatus(driverId, "OFFLINE"));
+                // Not AVAILABLE when evicted (BUSY, already OFFLINE): presence did not take them offline
+                Set<Long> notEvicted = new HashSet<>(stale);
+                offline.forEach(notEvicted::remove);
+                evictedDrivers.removeAll(notEvicted);
+                evictedCounter.increment(offline.size());
+                log.info("Presence: {} stale drivers, {} marked OFFLINE", stale.size(), offline.size());
+            } catch (RuntimeException e) {
+                log.error("Failed to mark {} stale drivers OFFLINE, retrying next flush: {}", stale.size(), e.getMessage());
+                staleDrivers.addAll(stale);
+            }
+        }
+
+        List<Presence> returning = drain(returningDrivers);
+        if (!returning.isEmpty()) {
+            Map<Long, Presence> byId = new HashMap<>();
+            for (Presence presence : returning) {
+                byId.put(presence.driverId, presence);
+            }
+            List<Long> available;
+            try {
+                available = presenceWriter.markAvailable(byId.keySet());
+            } catch (RuntimeException e) {
+                log.error("Failed to restore {} drivers, retrying next flush: {}", byId.size(), e.getMessage());
+                returningDrivers.addAll(returning);
+                return;
+            }
+            for (Presence presence : byId.values()) {
+                // Restored, or changed by someone else since the eviction; kept if evicted again
+                if (presences.get(presence.driverId) == presence) {
+                    evictedDrivers.remove(presence.driverId);
+                }
+            }
+            for (Long driverId : available) {
+                driverAttributeIndex.updateStatus(driverId, "AVAILABLE");
+                Presence presence = byId.get(driverId);
+                // Only if still online: the driver may have gone stale again since
+                if (presences.get(driverId) == presence) {
+                    driverSpatialIndex.upsert(driverId, presence.latitude, presence.longitude);
+                    int slots = driverAttributeIndex.availableSlots(driverId);
+                    dispatchStateMachine.driverFreed(driverId, presence.latitude, presence.longitude,
+                            slots < 0 ? 1 : slots);
+                }
+            }
+            restoredCounter.increment(available.size());
+            if (!available.isEmpty()) {
+                log.info("Presence: {} drivers back online and AVAILABLE", available.size());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        timingWheel.stop();
+    }
+
+    private void schedule(Presence presence, long delayMillis) {
+        timingWheel.schedule(() -> onExpiry(presence), delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Runs on the wheel thread when a driver's heartbeat may have expired
+     */
+    private void onExpiry(Presence presence) {
+        long age = System.currentTimeMillis() - presence.lastSeenMillis;
+        if (age < ttlMillis) {
+            // Pinged since this entry was scheduled
+            schedule(presence, ttlMillis - age);
+            return;
+        }
+        if (presences.remove(presence.driverId, presence)) {
+            driverSpatialIndex.remove(presence.driverId);
+            evictedDrivers.add(presence.driverId);
+            staleDrivers.add(presence.driverId);
+        }
+    }
+
+    private static <T> List<T> drain(Queue<T> queue) {
+        List<T> drained = new ArrayList<>();
+        T item;
+        while ((item = queue.poll()) != null) {
+            drained.add(item);
+        }
+        return drained;
+    }
+
+    private static final class Presence {
+        private final long driverId;
+        private volatile double latitude;
+        private volatile double longitude;
+        private volatile long lastSeenMillis;
+
+        private Presence(long driverId, double latitude, double longitude, long lastSeenMillis) {
+            this.driverId = driverId;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.lastSeenMillis = lastSeenMillis;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.delivery_management_service.services;
+
+import com.delivery_management_service.DTO.DispatchContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * What a driver needs to take a dispatch
+ *
+ * - a free order slot per order: one, or the size of a stacked bundle
+ * - for orders worth matching.large-order-amount or more, one of
+ *   matching.large-order-vehicle-types
+ *
+ * The one place these rules live. Every driver search applies the result:
+ * the DriverAttributeIndex bitmaps on the in-memory path, SQL predicates on
+ * the PostGIS fallback and when confirming candidates, GlobalOrderMatcher and
+ * the DispatchBacklog pull.
+ */
+@Component
+public class DriverRequirements {
+
+    /**
+     * @param slots Free order slots needed
+     * @param vehicleTypes Accepted vehicle types (upper case), empty for any
+     */
+    public record Requirement(int slots, List<String> vehicleTypes) {
+
+        public boolean anyVehicleType() {
+            return vehicleTypes.isEmpty();
+        }
+
+        /**
+         * @param vehicleType A driver's vehicle type, any case, or null
+         * @return true if a driver with the vehicle type qualifies
+         */
+        public boolean acceptsVehicleType(String vehicleType) {
+            return anyVehicleType()
+                    || (vehicleType != null && vehicleTypes.contains(vehicleType.toUpperCase(Locale.ROOT)));
+        }
+    }
+
+    private final BigDecimal largeOrderAmount;
+    private final List<String> largeOrderVehicleTypes;
+
+    public DriverRequirements(@Value("${app.delivery.matching.large-order-amount:150}") BigDecimal largeOrderAmount,
+                              @Value("${app.delivery.matching.large-order-vehicle-types:CAR}") List<String> largeOrderVehicleTypes) {
+        this.largeOrderAmount = largeOrderAmount;
+        this.largeOrderVehicleTypes = largeOrderVehicleTypes.stream()
+                .map(String::trim)
+                .filter(type -> !type.isEmpty())
+                .map(type -> type.toUpperCase(Locale.ROOT))
+                .toList();
+    }
+
+    /**
+     * @param context Order (or bundle) being dispatched
+     * @return What a driver needs to take it
+     */
+    public Requirement of(DispatchContext context) {
+        int slots = 1 + context.getBundledOrderIds().size();
+        boolean large = context.getTotalAmount() != null && context.getTotalAmount().compareTo(largeOrderAmount) >= 0;
+        return new Requirement(slots, large ? largeOrderVehicleTypes : List.of());
+    }
+}
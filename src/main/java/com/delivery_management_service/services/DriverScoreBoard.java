@@ -0,0 +1,197 @@
+package com.delivery_management_service.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Per-driver acceptance behaviour, kept in memory and used to rank candidates
+ *
+ * For each driver:
+ * - offers, acceptances and total seconds-to-accept, exponentially decayed
+ *   with a half-life of scoring.half-life-hours, so a driver's recent
+ *   behaviour counts most
+ * - idle since: when the driver last finished a delivery. A driver not seen
+ *   finishing one yet, or not scored at all, counts as idle for the whole
+ *   scoring.idle-horizon-seconds: nothing says it just came off an order
+ *
+ * Offers and acceptances come from OfferOutcomes: every driver that tapped
+ * accept counts, not only the one that won the order. Both the acceptance
+ * rate and the mean seconds-to-accept are smoothed towards a prior, so a
+ * driver with little history neither tops nor sinks the ranking: the rate
+ * towards scoring.prior-acceptance-rate, the seconds towards the mean of all
+ * drivers (scoring.prior-accept-seconds until anyone has accepted).
+ *
+ * Updates are lock-free: every driver's counters are one immutable snapshot
+ * swapped by compare-and-set, decayed lazily to the time of the update.
+ *
+ * rank() scores a pool of nearby drivers with the CandidateRanker and keeps
+ * the best; scoring 500 candidates is one map lookup and a few flops each.
+ */
+@Component
+@Slf4j
+public class DriverScoreBoard {
+
+    private final CandidateRanker candidateRanker;
+    private final double halfLifeMillis;
+    private final double priorAcceptanceRate;
+    private final double priorOffers;
+    private final double priorAcceptSeconds;
+    private final double idleHorizonSeconds;
+
+    private final Map<Long, AtomicReference<DriverScore>> scores = new ConcurrentHashMap<>();
+    // Every driver's offers and acceptances together, for the seconds-to-accept prior
+    private final AtomicReference<DriverScore> population;
+
+    public DriverScoreBoard(CandidateRanker candidateRanker,
+                            @Value("${app.delivery.scoring.half-life-hours:24}") double halfLifeHours,
+                            @Value("${app.delivery.scoring.prior-acceptance-rate:0.3}") double priorAcceptanceRate,
+                            @Value("${app.delivery.scoring.prior-offers:5}") double priorOffers,
+                            @Value("${app.delivery.scoring.prior-accept-seconds:60}") double priorAcceptSeconds,
+                            @Value("${app.delivery.scoring.idle-horizon-seconds:1800}") double idleHorizonSeconds) {
+        this.candidateRanker = candidateRanker;
+        this.halfLifeMillis = halfLifeHours * 3_600_000;
+        this.priorAcceptanceRate = priorAcceptanceRate;
+        this.priorOffers = priorOffers;
+        this.priorAcceptSeconds = priorAcceptSeconds;
+        this.idleHorizonSeconds = idleHorizonSeconds;
+        long now = System.currentTimeMillis();
+        this.population = new AtomicReference<>(new DriverScore(0, 0, 0, now, now));
+    }
+
+    /**
+     * Records that a driver was notified of an order
+     *
+     * @param driverId Driver ID
+     */
+    public void recordOffer(long driverId) {
+        long now = System.currentTimeMillis();
+        score(driverId, now).updateAndGet(score -> score.decayTo(now, halfLifeMillis).withOffer());
+        population.updateAndGet(score -> score.decayTo(now, halfLifeMillis).withOffer());
+    }
+
+    /**
+     * Records that a driver accepted an order
+     *
+     * @param driverId Driver ID
+     * @param secondsToAccept Time from the offer to the acceptance
+     */
+    public void recordAcceptance(long driverId, double secondsToAccept) {
+        long now = System.currentTimeMillis();
+        score(driverId, now).updateAndGet(score -> score.decayTo(now, halfLifeMillis).withAcceptance(secondsToAccept));
+        population.updateAndGet(score -> score.decayTo(now, halfLifeMillis).withAcceptance(secondsToAccept));
+    }
+
+    /**
+     * Records that a driver is free again, e.g. after a delivery
+     *
+     * @param driverId Driver ID
+     */
+    public void recordIdle(long driverId) {
+        long now = System.currentTimeMillis();
+        score(driverId, now).updateAndGet(score -> score.withIdleSince(now));
+    }
+
+    /**
+     * Picks the best-scored drivers of a pool
+     *
+     * @param pool Nearby drivers, e.g. from DriverSpatialIndex.findNearest
+     * @param k Number of drivers to keep
+     * @return Up to k drivers, best score first
+     */
+    public List<DriverSpatialIndex.NearbyDriver> rank(List<DriverSpatialIndex.NearbyDriver> pool, int k) {
+        int n = pool.size();
+        if (n <= 1) {
+            return pool;
+        }
+
+        long now = System.currentTimeMillis();
+        // A driver's own acceptances weigh against as many prior ones as priorOffers offers bring
+        double priorAcceptances = priorAcceptanceRate * priorOffers;
+        double populationSeconds = populationAcceptSeconds();
+        double[] values = new double[n];
+        for (int i = 0; i < n; i++) {
+            DriverSpatialIndex.NearbyDriver driver = pool.get(i);
+            AtomicReference<DriverScore> ref = scores.get(driver.driverId());
+            DriverScore score = ref == null ? null : ref.get();
+            double acceptanceRate = priorAcceptanceRate;
+            double meanAcceptSeconds = populationSeconds;
+            double idleSeconds = idleHorizonSeconds;
+            if (score != null) {
+                double decay = score.decayFactor(now, halfLifeMillis);
+                double offers = score.offers() * decay;
+                double acceptances = score.acceptances() * decay;
+                // Acceptances of offers made by other nodes can outnumber the local offers
+                acceptanceRate = Math.min(1, (acceptances + priorAcceptances) / (offers + priorOffers));
+                meanAcceptSeconds = (score.acceptSeconds() * decay + populationSeconds * priorAcceptances)
+                        / (acceptances + priorAcceptances);
+                idleSeconds = (now - score.idleSinceMillis()) / 1000.0;
+            }
+            values[i] = candidateRanker.score(driver.distanceKm(), acceptanceRate, meanAcceptSeconds, idleSeconds);
+        }
+
+        // Partial selection: k is a wave (tens), the pool a few hundred
+        int keep = Math.min(k, n);
+        List<DriverSpatialIndex.NearbyDriver> ranked = new ArrayList<>(keep);
+        for (int picked = 0; picked < keep; picked++) {
+            int best = -1;
+            for (int i = 0; i < n; i++) {
+                if (values[i] != Double.NEGATIVE_INFINITY && (best < 0 || values[i] > values[best])) {
+                    best = i;
+                }
+            }
+            ranked.add(pool.get(best));
+            values[best] = Double.NEGATIVE_INFINITY;
+        }
+        return ranked;
+    }
+
+    /**
+     * @return Mean seconds-to-accept over all drivers, or the configured prior before any acceptance
+     */
+    private double populationAcceptSeconds() {
+        DriverScore all = population.get();
+        return all.acceptances() > 0 ? all.acceptSeconds() / all.acceptances() : priorAcceptSeconds;
+    }
+
+    private AtomicReference<DriverScore> score(long driverId, long now) {
+        long idleSince = now - (long) (idleHorizonSeconds * 1000);
+        return scores.computeIfAbsent(driverId, id -> new AtomicReference<>(new DriverScore(0, 0, 0, now, idleSince)));
+    }
+
+    /**
+     * Immutable, decayed counters of one driver as of updatedAtMillis
+     */
+    private record DriverScore(double offers, double acceptances, double acceptSeconds,
+                               long updatedAtMillis, long idleSinceMillis) {
+
+        double decayFactor(long now, double halfLifeMillis) {
+            long elapsed = now - updatedAtMillis;
+            return elapsed <= 0 ? 1 : Math.pow(0.5, elapsed / halfLifeMillis);
+        }
+
+        DriverScore decayTo(long now, double halfLifeMillis) {
+            double decay = decayFactor(now, halfLifeMillis);
+            return new DriverScore(offers * decay, acceptances * decay, acceptSeconds * decay,
+                    Math.max(now, updatedAtMillis), idleSinceMillis);
+        }
+
+        DriverScore withOffer() {
+            return new DriverScore(offers + 1, acceptances, acceptSeconds, updatedAtMillis, idleSinceMillis);
+        }
+
+        DriverScore withAcceptance(double seconds) {
+            return new DriverScore(offers, acceptances + 1, acceptSeconds + seconds, updatedAtMillis, idleSinceMillis);
+        }
+
+        DriverScore withIdleSince(long now) {
+            return new DriverScore(offers, acceptances, acceptSeconds, updatedAtMillis, now);
+        }
+    }
+}
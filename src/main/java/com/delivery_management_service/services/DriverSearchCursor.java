@@ -0,0 +1,112 @@
+package com.delivery_management_service.services;
+
+import com.delivery_management_service.DTO.DriverCandidate;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Position of an order's driver search between waves
+ *
+ * - (afterDistanceMeters, afterDriverId): keyset cursor, the next wave starts
+ *   right after the farthest driver of the previous one; the distance is kept
+ *   exactly as the query returned it
+ * - offeredDriverIds: drivers already offered the order, never offered again
+ *   (covers drivers that moved closer since their wave)
+ * - radiusKm: current search radius, widened wave by wave up to a cap
+ *
+ * Not thread-safe; owned by one dispatch and only changed by its zone's
+ * worker, or by the dispatch's one search in flight (which only widens it).
+ */
+public final class DriverSearchCursor {
+
+    private static final int NO_DRIVER = 0;
+
+    private double radiusKm;
+    private double afterDistanceMeters = -1;
+    private long afterDriverId = NO_DRIVER;
+    private final Set<Long> offeredDriverIds = new HashSet<>();
+
+    public DriverSearchCursor(double initialRadiusKm) {
+        this.radiusKm = initialRadiusKm;
+    }
+
+    public double getRadiusKm() {
+        return radiusKm;
+    }
+
+    public double getAfterDistanceMeters() {
+        return afterDistanceMeters;
+    }
+
+    public long getAfterDriverId() {
+        return afterDriverId;
+    }
+
+    public boolean isOffered(long driverId) {
+        return offeredDriverIds.contains(driverId);
+    }
+
+    public Collection<Long> getOfferedDriverIds() {
+        return offeredDriverIds;
+    }
+
+    /**
+     * Moves the cursor past the drivers a wave was actually offered to
+     *
+     * Candidates that got no lease were not offered: the keyset stops short of
+     * the nearest of them, so a later wave finds them again. Offered drivers
+     * beyond that point are skipped through offeredDriverIds instead.
+     *
+     * @param offered Candidates of the wave that were offered the order
+     * @param notOffered Candidates of the wave that were not (no free lease)
+     */
+    void advance(Collection<DriverCandidate> offered, Collection<DriverCandidate> notOffered) {
+        double limitMeters = Double.MAX_VALUE;
+        long limitDriverId = Long.MAX_VALUE;
+        for (DriverCandidate candidate : notOffered) {
+            if (isBefore(candidate.getDistanceMeters(), candidate.getId(), limitMeters, limitDriverId)) {
+                limitMeters = candidate.getDistanceMeters();
+                limitDriverId = candidate.getId();
+            }
+        }
+
+        for (DriverCandidate candidate : offered) {
+            offeredDriverIds.add(candidate.getId());
+            double distanceMeters = candidate.getDistanceMeters();
+            if (isBefore(afterDistanceMeters, afterDriverId, distanceMeters, candidate.getId())
+                    && isBefore(distanceMeters, candidate.getId(), limitMeters, limitDriverId)) {
+                afterDistanceMeters = distanceMeters;
+                afterDriverId = candidate.getId();
+            }
+        }
+    }
+
+    /**
+     * Marks drivers as offered without moving the keyset, for drivers that
+     * were not picked by distance order
+     */
+    void exclude(Collection<DriverCandidate> drivers) {
+        for (DriverCandidate driver : drivers) {
+            offeredDriverIds.add(driver.getId());
+        }
+    }
+
+    private static boolean isBefore(double distanceMeters, long driverId, double otherMeters, long otherDriverId) {
+        return distanceMeters < otherMeters || (distanceMeters == otherMeters && driverId < otherDriverId);
+    }
+
+    /**
+     * Widens the search radius by one step
+     *
+     * @return false if the radius was already at the cap
+     */
+    boolean widen(double stepKm, double maxRadiusKm) {
+        if (radiusKm >= maxRadiusKm) {
+            return false;
+        }
+        radiusKm = Math.min(maxRadiusKm, radiusKm + stepKm);
+        return true;
+    }
+}
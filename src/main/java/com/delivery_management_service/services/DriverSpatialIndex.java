@@ -0,0 +1,601 @@
+package com.delivery_management_service.services;
+
+import com.delivery_management_service.models.Driver;
+import com.delivery_management_service.repository.DriverRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.locationtech.jts.geom.Point;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongPredicate;
+
+/**
+ * In-memory spatial index of AVAILABLE, active drivers
+ *
+ * Drivers are bucketed into a uniform lat/lng grid. Each cell stores its
+ * drivers in parallel primitive arrays (ids, latitudes, longitudes), so a
+ * k-nearest lookup only touches the cells around the restaurant instead of
+ * sorting the whole drivers table in Postgres.
+ *
+ * Lifecycle:
+ * 1. Cold until the first full load from the database (ApplicationReadyEvent)
+ * 2. Kept in sync by DeliveryManagementService on status/location changes
+ * 3. Periodically rebuilt from the database to pick up changes made elsewhere
+ *
+ * The database snapshot of a rebuild is read outside the lock. Upserts, moves
+ * and removals made meanwhile are journaled and replayed onto the new snapshot
+ * before it is swapped in, so they are not lost until the next rebuild.
+ *
+ * While cold, callers should fall back to DriverRepository.findNearestAvailableDrivers
+ */
+@Component
+@Slf4j
+public class DriverSpatialIndex {
+
+    private static final double EARTH_RADIUS_KM = 6371;
+    private static final double KM_PER_DEGREE = Math.PI * EARTH_RADIUS_KM / 180;
+    private static final int INITIAL_CELL_CAPACITY = 8;
+
+    private final DriverRepository driverRepository;
+    private final boolean enabled;
+    private final double cellSizeDeg;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private Map<Long, Cell> cells = new HashMap<>();
+    private Map<Long, Long> driverCells = new HashMap<>(); // driverId -> cell key
+    private List<Mutation> journal; // Changes made while a rebuild reads the database, null otherwise
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+    private volatile boolean warm;
+
+    private enum MutationType { UPSERT, MOVE, REMOVE }
+
+    /**
+     * A change applied during a rebuild, replayed onto the rebuilt snapshot
+     */
+    private record Mutation(MutationType type, long driverId, double latitude, double longitude) {
+    }
+
+    public DriverSpatialIndex(DriverRepository driverRepository,
+                              @Value("${app.delivery.spatial-index.enabled:true}") boolean enabled,
+                              @Value("${app.delivery.spatial-index.cell-size-deg:0.01}") double cellSizeDeg) {
+        this.driverRepository = driverRepository;
+        this.enabled = enabled;
+        this.cellSizeDeg = cellSizeDeg;
+    }
+
+    /**
+     * A driver returned by a nearest-neighbour lookup
+     *
+     * @param driverId Driver ID
+     * @param distanceKm Great-circle distance to the query point in kilometers
+     */
+    public record NearbyDriver(long driverId, double distanceKm) {
+    }
+
+    /**
+     * @return true once the index has been loaded and can answer queries
+     */
+    public boolean isWarm() {
+        return enabled && warm;
+    }
+
+    /**
+     * Loads all AVAILABLE, active drivers once the application is up
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        rebuild();
+    }
+
+    /**
+     * Periodic full rebuild so drivers changed by other nodes are picked up
+     */
+    @Scheduled(fixedDelayString = "${app.delivery.spatial-index.refresh-ms:60000}",
+            initialDelayString = "${app.delivery.spatial-index.refresh-ms:60000}")
+    public void refresh() {
+        if (warm) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Rebuilds the index from the database and swaps it in atomically
+     */
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+
+        rebuildLock.lock();
+        try {
+            rebuildFromDatabase();
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    private void rebuildFromDatabase() {
+        long start = System.nanoTime();
+        lock.writeLock().lock();
+        try {
+            journal = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        List<Driver> drivers;
+        try {
+            drivers = driverRepository.findByStatusAndIsActiveTrue("AVAILABLE");
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                journal = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+
+        Map<Long, Cell> newCells = new HashMap<>();
+        Map<Long, Long> newDriverCells = new HashMap<>(drivers.size() * 2);
+        for (Driver driver : drivers) {
+            Point location = driver.getCurrentLocation();
+            if (location == null) {
+                continue;
+            }
+            long key = cellKey(location.getY(), location.getX());
+            newCells.computeIfAbsent(key, k -> new Cell())
+                    .add(driver.getId(), location.getY(), location.getX());
+            newDriverCells.put(driver.getId(), key);
+        }
+
+        int replayed;
+        lock.writeLock().lock();
+        try {
+            List<Mutation> changes = journal;
+            journal = null;
+            cells = newCells;
+            driverCells = newDriverCells;
+            for (Mutation change : changes) {
+                switch (change.type()) {
+                    case UPSERT -> applyUpsert(change.driverId(), change.latitude(), change.longitude());
+                    case MOVE -> applyMove(change.driverId(), change.latitude(), change.longitude());
+                    case REMOVE -> applyRemove(change.driverId());
+                }
+            }
+            replayed = changes.size();
+            warm = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        log.info("Driver spatial index rebuilt: {} drivers in {} cells, {} concurrent changes replayed ({} ms)",
+                newDriverCells.size(), newCells.size(), replayed, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Inserts or moves an available driver
+     *
+     * @param driverId Driver ID
+     * @param latitude Current latitude
+     * @param longitude Current longitude
+     */
+    public void upsert(long driverId, double latitude, double longitude) {
+        lock.writeLock().lock();
+        try {
+            applyUpsert(driverId, latitude, longitude);
+            record(MutationType.UPSERT, driverId, latitude, longitude);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Moves drivers that are already indexed; drivers not in the index (BUSY,
+     * OFFLINE) are ignored
+     *
+     * Takes the write lock once for the whole batch.
+     *
+     * @param driverIds Driver IDs
+     * @param latitudes Latitudes, parallel to driverIds
+     * @param longitudes Longitudes, parallel to driverIds
+     * @param count Number of entries to apply
+     */
+    public void moveIndexed(long[] driverIds, double[] latitudes, double[] longitudes, int count) {
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < count; i++) {
+                applyMove(driverIds[i], latitudes[i], longitudes[i]);
+                record(MutationType.MOVE, driverIds[i], latitudes[i], longitudes[i]);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Inserts or moves a driver using its current location, if it has one
+     *
+     * @param driver Driver entity
+     */
+    public void upsert(Driver driver) {
+        Point location = driver.getCurrentLocation();
+        if (location == null) {
+            remove(driver.getId());
+            return;
+        }
+        upsert(driver.getId(), location.getY(), location.getX());
+    }
+
+    /**
+     * Removes a driver that is no longer dispatchable (BUSY, OFFLINE, inactive)
+     *
+     * @param driverId Driver ID
+     */
+    public void remove(long driverId) {
+        lock.writeLock().lock();
+        try {
+            applyRemove(driverId);
+            record(MutationType.REMOVE, driverId, Double.NaN, Double.NaN);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Looks up the indexed positions of some drivers under one read lock
+     *
+     * @param driverIds Drivers to locate
+     * @param latitudes Filled with each driver's latitude, NaN if not indexed
+     * @param longitudes Filled with each driver's longitude, NaN if not indexed
+     */
+    public void locate(long[] driverIds, double[] latitudes, double[] longitudes) {
+        lock.readLock().lock();
+        try {
+            for (int i = 0; i < driverIds.length; i++) {
+                latitudes[i] = Double.NaN;
+                longitudes[i] = Double.NaN;
+                Long key = driverCells.get(driverIds[i]);
+                Cell cell = key == null ? null : cells.get(key);
+                int index = cell == null ? -1 : cell.indexOf(driverIds[i]);
+                if (index >= 0) {
+                    latitudes[i] = cell.lats[index];
+                    longitudes[i] = cell.lngs[index];
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return number of drivers currently indexed
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return driverCells.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the k nearest indexed drivers within a radius
+     *
+     * Scans grid cells in rings of increasing Chebyshev distance around the
+     * query cell and stops as soon as no unvisited cell can contain a driver
+     * closer than the current k-th best.
+     *
+     * @param latitude Query latitude
+     * @param longitude Query longitude
+     * @param k Maximum number of drivers to return
+     * @param maxRadiusKm Search radius in kilometers
+     * @return Drivers ordered by distance, nearest first
+     */
+    public List<NearbyDriver> findNearest(double latitude, double longitude, int k, double maxRadiusKm) {
+        return findNearest(latitude, longitude, k, maxRadiusKm, driverId -> false);
+    }
+
+    /**
+     * Finds the k nearest indexed drivers within a radius, skipping some drivers
+     *
+     * @param latitude Query latitude
+     * @param longitude Query longitude
+     * @param k Maximum number of drivers to return
+     * @param maxRadiusKm Search radius in kilometers
+     * @param exclude Drivers to skip, e.g. those already offered the order
+     * @return Drivers ordered by distance, nearest first
+     */
+    public List<NearbyDriver> findNearest(double latitude, double longitude, int k, double maxRadiusKm,
+                                          LongPredicate exclude) {
+        if (k <= 0) {
+            return List.of();
+        }
+
+        NearestHeap heap = new NearestHeap(k);
+        int centerX = cellX(longitude);
+        int centerY = cellY(latitude);
+
+        // Smallest extent of one cell in km around the query; longitude cells shrink towards the poles
+        double maxLatitude = Math.min(89.9, Math.abs(latitude) + maxRadiusKm / KM_PER_DEGREE);
+        double minCellKm = cellSizeDeg * KM_PER_DEGREE * Math.cos(Math.toRadians(maxLatitude));
+        int maxRing = (int) Math.ceil(maxRadiusKm / minCellKm) + 1;
+
+        lock.readLock().lock();
+        try {
+            long ringCells = (2L * maxRing + 1) * (2L * maxRing + 1);
+            if (ringCells > 4L * cells.size()) {
+                // Sparse index relative to the search area: scanning occupied cells is cheaper
+                for (Cell cell : cells.values()) {
+                    cell.collect(latitude, longitude, maxRadiusKm, exclude, heap);
+                }
+            } else {
+                for (int ring = 0; ring <= maxRing; ring++) {
+                    scanRing(centerX, centerY, ring, latitude, longitude, maxRadiusKm, exclude, heap);
+                    if (heap.isFull() && heap.worstDistance() <= ring * minCellKm) {
+                        break;
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        return heap.toSortedList();
+    }
+
+    private void scanRing(int centerX, int centerY, int ring, double latitude, double longitude,
+                          double maxRadiusKm, LongPredicate exclude, NearestHeap heap) {
+        if (ring == 0) {
+            visitCell(centerX, centerY, latitude, longitude, maxRadiusKm, exclude, heap);
+            return;
+        }
+        for (int dx = -ring; dx <= ring; dx++) {
+            visitCell(centerX + dx, centerY - ring, latitude, longitude, maxRadiusKm, exclude, heap);
+            visitCell(centerX + dx, centerY + ring, latitude, longitude, maxRadiusKm, exclude, heap);
+        }
+        for (int dy = -ring + 1; dy <= ring - 1; dy++) {
+            visitCell(centerX - ring, centerY + dy, latitude, longitude, maxRadiusKm, exclude, heap);
+            visitCell(centerX + ring, centerY + dy, latitude, longitude, maxRadiusKm, exclude, heap);
+        }
+    }
+
+    private void visitCell(int x, int y, double latitude, double longitude, double maxRadiusKm,
+                           LongPredicate exclude, NearestHeap heap) {
+        Cell cell = cells.get(packKey(x, y));
+        if (cell != null) {
+            cell.collect(latitude, longitude, maxRadiusKm, exclude, heap);
+        }
+    }
+
+    // Mutations of the current snapshot; callers hold the write lock
+
+    private void applyUpsert(long driverId, double latitude, double longitude) {
+        long key = cellKey(latitude, longitude);
+        Long previousKey = driverCells.get(driverId);
+        if (previousKey != null) {
+            Cell previous = cells.get(previousKey);
+            if (previousKey == key) {
+                previous.move(driverId, latitude, longitude);
+                return;
+            }
+            removeFromCell(previousKey, previous, driverId);
+        }
+        cells.computeIfAbsent(key, k -> new Cell()).add(driverId, latitude, longitude);
+        driverCells.put(driverId, key);
+    }
+
+    /**
+     * Like applyUpsert, for drivers already indexed only
+     */
+    private void applyMove(long driverId, double latitude, double longitude) {
+        if (driverCells.containsKey(driverId)) {
+            applyUpsert(driverId, latitude, longitude);
+        }
+    }
+
+    private void applyRemove(long driverId) {
+        Long key = driverCells.remove(driverId);
+        if (key != null) {
+            removeFromCell(key, cells.get(key), driverId);
+        }
+    }
+
+    private void record(MutationType type, long driverId, double latitude, double longitude) {
+        if (journal != null) {
+            journal.add(new Mutation(type, driverId, latitude, longitude));
+        }
+    }
+
+    private void removeFromCell(long key, Cell cell, long driverId) {
+        if (cell != null && cell.remove(driverId) && cell.size == 0) {
+            cells.remove(key);
+        }
+    }
+
+    private long cellKey(double latitude, double longitude) {
+        return packKey(cellX(longitude), cellY(latitude));
+    }
+
+    private int cellX(double longitude) {
+        return (int) Math.floor(longitude / cellSizeDeg);
+    }
+
+    private int cellY(double latitude) {
+        return (int) Math.floor(latitude / cellSizeDeg);
+    }
+
+    private static long packKey(int x, int y) {
+        return ((long) x << 32) | (y & 0xffffffffL);
+    }
+
+    /**
+     * Haversine great-circle distance in kilometers
+     */
+    static double haversineKm(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2) +
+                Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) *
+                        Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return EARTH_RADIUS_KM * 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    }
+
+    /**
+     * One grid cell: drivers stored in parallel primitive arrays
+     */
+    private static final class Cell {
+        private long[] ids = new long[INITIAL_CELL_CAPACITY];
+        private double[] lats = new double[INITIAL_CELL_CAPACITY];
+        private double[] lngs = new double[INITIAL_CELL_CAPACITY];
+        private int size;
+
+        void add(long driverId, double latitude, double longitude) {
+            if (size == ids.length) {
+                int capacity = size * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                lats = Arrays.copyOf(lats, capacity);
+                lngs = Arrays.copyOf(lngs, capacity);
+            }
+            ids[size] = driverId;
+            lats[size] = latitude;
+            lngs[size] = longitude;
+            size++;
+        }
+
+        void move(long driverId, double latitude, double longitude) {
+            int i = indexOf(driverId);
+            if (i >= 0) {
+                lats[i] = latitude;
+                lngs[i] = longitude;
+            }
+        }
+
+        boolean remove(long driverId) {
+            int i = indexOf(driverId);
+            if (i < 0) {
+                return false;
+            }
+            // Swap-remove keeps the arrays dense
+            size--;
+            ids[i] = ids[size];
+            lats[i] = lats[size];
+            lngs[i] = lngs[size];
+            return true;
+        }
+
+        void collect(double latitude, double longitude, double maxRadiusKm, LongPredicate exclude, NearestHeap heap) {
+            for (int i = 0; i < size; i++) {
+                if (exclude.test(ids[i])) {
+                    continue;
+                }
+                double distance = haversineKm(latitude, longitude, lats[i], lngs[i]);
+                if (distance <= maxRadiusKm) {
+                    heap.offer(ids[i], distance);
+                }
+            }
+        }
+
+        private int indexOf(long driverId) {
+            for (int i = 0; i < size; i++) {
+                if (ids[i] == driverId) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * Bounded max-heap on distance keeping the k nearest drivers seen so far
+     */
+    private static final class NearestHeap {
+        private final long[] ids;
+        private final double[] distances;
+        private int size;
+
+        NearestHeap(int capacity) {
+            ids = new long[capacity];
+            distances = new double[capacity];
+        }
+
+        boolean isFull() {
+            return size == ids.length;
+        }
+
+        double worstDistance() {
+            return distances[0];
+        }
+
+        void offer(long driverId, double distance) {
+            if (size < ids.length) {
+                ids[size] = driverId;
+                distances[size] = distance;
+                siftUp(size++);
+            } else if (distance < distances[0]) {
+                ids[0] = driverId;
+                distances[0] = distance;
+                siftDown(0);
+            }
+        }
+
+        List<NearbyDriver> toSortedList() {
+            List<NearbyDriver> result = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                result.add(new NearbyDriver(ids[i], distances[i]));
+            }
+            result.sort((a, b) -> Double.compare(a.distanceKm(), b.distanceKm()));
+            return result;
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (distances[parent] >= distances[i]) {
+                    return;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int left = 2 * i + 1;
+                int right = left + 1;
+                int largest = i;
+                if (left < size && distances[left] > distances[largest]) {
+                    largest = left;
+                }
+                if (right < size && distances[right] > distances[largest]) {
+                    largest = right;
+                }
+                if (largest == i) {
+                    return;
+                }
+                swap(i, largest);
+                i = largest;
+            }
+        }
+
+        private void swap(int a, int b) {
+            long id = ids[a];
+            ids[a] = ids[b];
+            ids[b] = id;
+            double distance = distances[a];
+            distances[a] = distances[b];
+            distances[b] = distance;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.delivery_management_service.services;
+
+import com.delivery_management_service.DTO.DispatchContext;
+import com.delivery_management_service.DTO.DriverCandidate;
+import com.delivery_management_service.DTO.DriverNotificationResult;
+import com.delivery_management_service.config.DispatchExecutorConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Notifies a wave of drivers about an order via SMS with acceptance URL
+ *
+ * Each SMS contains:
+ * - Order details (restaurant, distance, amount)
+ * - Direct acceptance URL
+ *
+ * The URL format: {baseUrl}/api/drivers/{driverId}/accept-order/{orderId}
+ *
+ * When driver clicks the URL, it automatically accepts the order.
+ * First driver to click gets the order.
+ *
+ * The SMS of a wave are sent concurrently on the SMS executor, so the whole
+ * wave goes out in roughly one Twilio round trip instead of one per driver.
+ * The executor bounds parallelism across all waves.
+ */
+@Service
+@Slf4j
+public class DriverWaveNotifier {
+
+    private final TwilioSmsService twilioSmsService;
+    private final Executor smsExecutor;
+
+    @Value("${app.delivery.base-url}")
+    private String baseUrl;
+
+    @Value("${app.delivery.sms.wave-timeout-ms:10000}")
+    private long waveTimeoutMs;
+
+    public DriverWaveNotifier(TwilioSmsService twilioSmsService,
+                              @Qualifier(DispatchExecutorConfig.SMS_EXECUTOR) Executor smsExecutor) {
+        this.twilioSmsService = twilioSmsService;
+        this.smsExecutor = smsExecutor;
+    }
+
+    /**
+     * Sends the order SMS with acceptance URL to every driver in the wave
+     *
+     * Returns once every SMS was sent, failed, or the wave timeout elapsed.
+     *
+     * @param drivers Drivers to notify
+     * @param context Order and restaurant details
+     * @return Per-driver results, in the order of drivers
+     */
+    public List<DriverNotificationResult> sendWave(List<DriverCandidate> drivers, DispatchContext context) {
+        log.info("========================================");
+        log.info("Sending SMS notifications to {} drivers", drivers.size());
+        log.info("========================================");
+
+        long waveStart = System.nanoTime();
+
+        List<CompletableFuture<DriverNotificationResult>> futures = new ArrayList<>(drivers.size());
+        for (DriverCandidate driver : drivers) {
+            CompletableFuture<DriverNotificationResult> future;
+            try {
+                future = CompletableFuture.supplyAsync(() -> notifyDriver(driver, context), smsExecutor);
+            } catch (RuntimeException e) {
+                // SMS executor saturated
+                future = CompletableFuture.completedFuture(failure(driver, e.getMessage(), 0));
+            }
+            futures.add(future);
+        }
+
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                    .get(waveTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.warn("SMS wave for order {} not complete after {} ms", context.getOrderId(), waveTimeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            // Individual failures are captured per driver below
+        }
+
+        List<DriverNotificationResult> results = new ArrayList<>(drivers.size());
+        for (int i = 0; i < drivers.size(); i++) {
+            results.add(futures.get(i).getNow(failure(drivers.get(i), "Timed out", waveTimeoutMs)));
+        }
+
+        long successCount = results.stream().filter(DriverNotificationResult::isSuccess).count();
+        long maxLatencyMs = results.stream().mapToLong(DriverNotificationResult::getLatencyMs).max().orElse(0);
+
+        log.info("========================================");
+        log.info("SMS Notification Summary:");
+        log.info("  Total drivers: {}", drivers.size());
+        log.info("  Successful: {}", successCount);
+        log.info("  Failed: {}", drivers.size() - successCount);
+        log.info("  Wave time: {} ms (slowest SMS: {} ms)",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - waveStart), maxLatencyMs);
+        log.info("========================================");
+
+        return results;
+    }
+
+    private DriverNotificationResult notifyDriver(DriverCandidate driver, DispatchContext context) {
+        long start = System.nanoTime();
+        try {
+            double distance = driver.getDistanceKm();
+
+            String acceptanceUrl = String.format(
+                    "%s/api/drivers/%d/accept-order/%d",
+                    baseUrl,
+                    driver.getId(),
+                    context.getOrderId()
+            );
+
+            log.info("Sending SMS to driver {}: {} ({}km away)",
+                    driver.getId(),
+                    driver.getName(),
+                    String.format("%.2f", distance));
+
+            String messageSid = twilioSmsService.sendOrderNotification(
+                    driver.getPhone(),
+                    driver.getId(),
+                    context.getOrderId(),
+                    context.getRestaurantName(),
+                    distance,
+                    context.getTotalAmount(),
+                    acceptanceUrl
+            );
+
+            long latencyMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            if (messageSid == null) {
+                log.error("  ✗ Failed to send SMS to {}", driver.getPhone());
+                return failure(driver, "SMS not sent", latencyMs);
+            }
+
+            log.info("  ✓ SMS sent successfully to {} - SID: {} ({} ms)", driver.getPhone(), messageSid, latencyMs);
+            return DriverNotificationResult.builder()
+                    .driverId(driver.getId())
+                    .messageSid(messageSid)
+                    .latencyMs(latencyMs)
+                    .build();
+
+        } catch (Exception e) {
+            log.error("  ✗ Error notifying driver {}: {}", driver.getId(), e.getMessage(), e);
+            return failure(driver, e.getMessage(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+    }
+
+    private DriverNotificationResult failure(DriverCandidate driver, String reason, long latencyMs) {
+        return DriverNotificationResult.builder()
+                .driverId(driver.getId())
+                .failure(reason)
+                .latencyMs(latencyMs)
+                .build();
+    }
+}
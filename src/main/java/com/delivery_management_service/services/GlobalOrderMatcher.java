@@ -0,0 +1,228 @@
+package com.delivery_management_service.services;
+
+import com.delivery_management_service.DTO.DispatchContext;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongPredicate;
+
+/**
+ * Batched global matching of orders waiting for their first driver
+ *
+ * Dispatching each order on its own lets two orders at neighbouring
+ * restaurants race for the same nearby drivers. With matching enabled,
+ * DispatchStateMachine submits every new dispatch here instead of searching
+ * right away, and every matching.interval-ms all submitted orders are matched
+ * against the indexed drivers at once:
+ * 1. candidate edges: the matching.candidates-per-order nearest drivers of each
+ *    order within max-driver-distance-km (DriverSpatialIndex) that have a free
+ *    offer lease and meet the order's DriverRequirements (DriverAttributeIndex)
+ * 2. cost of an edge: distance in meters
+ * 3. cost of leaving an order unmatched: matching.unmatched-cost-meters plus
+ *    matching.wait-cost-meters-per-second for every second it has waited, so
+ *    orders that waited longer win contested drivers
+ * 4. global min-cost assignment (SparseAssignmentSolver), each driver matched
+ *    to at most one order
+ *
+ * The matched driver is offered the order first; unmatched orders (and all
+ * orders while the index is cold) go straight to the regular wave search.
+ *
+ * Exposed metrics:
+ * - dispatch.matching.tick      (timer)   duration of one matching round
+ * - dispatch.matching.matched   (counter) orders matched to a driver
+ * - dispatch.matching.unmatched (counter) orders left to the regular search
+ * - dispatch.matching.pending   (gauge)   orders waiting for the next round
+ */
+@Service
+@Slf4j
+public class GlobalOrderMatcher {
+
+    private final DriverSpatialIndex driverSpatialIndex;
+    private final DriverOfferLeases driverOfferLeases;
+    private final DriverAttributeIndex driverAttributeIndex;
+    private final DriverRequirements driverRequirements;
+    private final boolean enabled;
+    private final int candidatesPerOrder;
+    private final double maxDriverDistanceKm;
+    private final long unmatchedCostMeters;
+    private final long waitCostMetersPerSecond;
+
+    private final Queue<MatchRequest> pending = new ConcurrentLinkedQueue<>();
+    // Only touched by the scheduler thread
+    private final SparseAssignmentSolver solver = new SparseAssignmentSolver();
+
+    private final Timer tickTimer;
+    private final Counter matchedCounter;
+    private final Counter unmatchedCounter;
+
+    public GlobalOrderMatcher(DriverSpatialIndex driverSpatialIndex,
+                              DriverOfferLeases driverOfferLeases,
+                              DriverAttributeIndex driverAttributeIndex,
+                              DriverRequirements driverRequirements,
+                              MeterRegistry meterRegistry,
+                              @Value("${app.delivery.matching.enabled:false}") boolean enabled,
+                              @Value("${app.delivery.matching.candidates-per-order:32}") int candidatesPerOrder,
+                              @Value("${app.delivery.max-driver-distance-km:10}") double maxDriverDistanceKm,
+                              @Value("${app.delivery.matching.unmatched-cost-meters:10000}") long unmatchedCostMeters,
+                              @Value("${app.delivery.matching.wait-cost-meters-per-second:10}") long waitCostMetersPerSecond) {
+        this.driverSpatialIndex = driverSpatialIndex;
+        this.driverOfferLeases = driverOfferLeases;
+        this.driverAttributeIndex = driverAttributeIndex;
+        this.driverRequirements = driverRequirements;
+        this.enabled = enabled;
+        this.candidatesPerOrder = candidatesPerOrder;
+        this.maxDriverDistanceKm = maxDriverDistanceKm;
+        this.unmatchedCostMeters = unmatchedCostMeters;
+        this.waitCostMetersPerSecond = waitCostMetersPerSecond;
+
+        this.tickTimer = Timer.builder("dispatch.matching.tick")
+                .description("Duration of one global matching round")
+                .register(meterRegistry);
+        this.matchedCounter = Counter.builder("dispatch.matching.matched")
+                .description("Orders matched to a driver by global matching")
+                .register(meterRegistry);
+        this.unmatchedCounter = Counter.builder("dispatch.matching.unmatched")
+                .description("Orders left to the regular wave search")
+                .register(meterRegistry);
+        Gauge.builder("dispatch.matching.pending", pending, Queue::size)
+                .description("Orders waiting for the next matching round")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return true if dispatches should go through global matching
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Queues an order for the next matching round
+     *
+     * @param context Order (or bundle) and restaurant details
+     * @param waitingSinceMillis When the order started waiting for a driver (epoch millis)
+     * @param onResult Called once with the matched driver ID, or null if unmatched
+     */
+    public void submit(DispatchContext context, long waitingSinceMillis, Consumer<Long> onResult) {
+        pending.add(new MatchRequest(context.getOrderId(), context.getLatitude(), context.getLongitude(),
+                driverRequirements.of(context), waitingSinceMillis, onResult));
+    }
+
+    /**
+     * Matches all orders submitted since the last round
+     */
+    @Scheduled(fixedDelayString = "${app.delivery.matching.interval-ms:500}")
+    public void matchPending() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<MatchRequest> requests = new ArrayList<>();
+        MatchRequest request;
+        while ((request = pending.poll()) != null) {
+            requests.add(request);
+        }
+
+        long[] matches;
+        if (driverSpatialIndex.isWarm()) {
+            long start = System.nanoTime();
+            matches = match(requests);
+            tickTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        } else {
+            log.info("Driver spatial index is cold, {} orders go to the regular search", requests.size());
+            matches = new long[requests.size()];
+        }
+
+        int matched = 0;
+        for (int i = 0; i < requests.size(); i++) {
+            Long driverId = matches[i] == 0 ? null : matches[i];
+            if (driverId != null) {
+                matched++;
+            }
+            try {
+                requests.get(i).onResult().accept(driverId);
+            } catch (RuntimeException e) {
+                log.error("Match callback for order {} failed: {}", requests.get(i).orderId(), e.getMessage(), e);
+            }
+        }
+        matchedCounter.increment(matched);
+        unmatchedCounter.increment(requests.size() - matched);
+        log.info("Global matching: {} orders, {} matched", requests.size(), matched);
+    }
+
+    /**
+     * Builds the sparse cost graph of a round and solves it
+     *
+     * @return Matched driver ID per request, 0 if unmatched
+     */
+    private long[] match(List<MatchRequest> requests) {
+        int rows = requests.size();
+        long now = System.currentTimeMillis();
+
+        int[] rowOffsets = new int[rows + 1];
+        int[] edgeColumns = new int[rows * candidatesPerOrder];
+        long[] edgeCosts = new long[rows * candidatesPerOrder];
+        long[] unassignedCosts = new long[rows];
+        Map<Long, Integer> columnsByDriver = new HashMap<>();
+        long[] columnDrivers = new long[Math.max(16, rows * 4)];
+        int edges = 0;
+        // Most orders of a round share a requirement (one slot, any vehicle), so one snapshot each
+        Map<DriverRequirements.Requirement, LongPredicate> ineligibleBy = new HashMap<>();
+        boolean attributesWarm = driverAttributeIndex.isWarm();
+
+        for (int row = 0; row < rows; row++) {
+            MatchRequest request = requests.get(row);
+            long waitedSeconds = Math.max(0, now - request.waitingSinceMillis()) / 1000;
+            unassignedCosts[row] = unmatchedCostMeters + waitedSeconds * waitCostMetersPerSecond;
+
+            LongPredicate ineligible = attributesWarm
+                    ? ineligibleBy.computeIfAbsent(request.requirement(),
+                            r -> driverAttributeIndex.ineligible(r.slots(), r.vehicleTypes()))
+                    : driverId -> false;
+            List<DriverSpatialIndex.NearbyDriver> nearby = driverSpatialIndex.findNearest(
+                    request.latitude(), request.longitude(), candidatesPerOrder, maxDriverDistanceKm,
+                    driverId -> ineligible.test(driverId) || driverOfferLeases.isSaturated(driverId));
+            for (DriverSpatialIndex.NearbyDriver driver : nearby) {
+                int column = columnsByDriver.computeIfAbsent(driver.driverId(), id -> columnsByDriver.size());
+                if (column == columnDrivers.length) {
+                    columnDrivers = Arrays.copyOf(columnDrivers, column * 2);
+                }
+                columnDrivers[column] = driver.driverId();
+                edgeColumns[edges] = column;
+                edgeCosts[edges] = Math.round(driver.distanceKm() * 1000);
+                edges++;
+            }
+            rowOffsets[row + 1] = edges;
+        }
+
+        int[] assignment = solver.solve(rows, columnsByDriver.size(), rowOffsets, edgeColumns, edgeCosts,
+                unassignedCosts);
+
+        long[] matches = new long[rows];
+        for (int row = 0; row < rows; row++) {
+            if (assignment[row] != SparseAssignmentSolver.UNASSIGNED) {
+                matches[row] = columnDrivers[assignment[row]];
+            }
+        }
+        return matches;
+    }
+
+    private record MatchRequest(long orderId, double latitude, double longitude,
+                                DriverRequirements.Requirement requirement, long waitingSinceMillis,
+                                Consumer<Long> onResult) {
+    }
+}
@@ -0,0 +1,152 @@
+package com.delivery_management_service.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Resolves every offer sent to a driver: accepted, or timed out
+ *
+ * Each notified driver decides on its own, so acceptance is measured per
+ * offer: every accept tap of an offered driver within its offer counts, the
+ * winner's and those of the drivers who lost the race alike. Counting only
+ * the winner would cap the acceptance rate at 1 / wave size.
+ *
+ * Offers nobody tapped are resolved as timed out once they expire (swept
+ * every adaptive-waves.sweep-ms). Once the order is won (or its dispatch ends
+ * otherwise) the open offers are censored: nobody can win it any more, so
+ * they are resolved at the time the order closed, not at the full offer
+ * timeout. Taps of losers until expiry still count as acceptances. Outcomes
+ * go to AcceptanceStatistics (per zone and hour) and DriverScoreBoard (per
+ * driver).
+ */
+@Component
+@Slf4j
+public class OfferOutcomes {
+
+    private final AcceptanceStatistics acceptanceStatistics;
+    private final DriverScoreBoard driverScoreBoard;
+
+    // Keeps a closed order without offers around for waves still going out when it closed
+    private static final long CLOSED_RETENTION_MS = 60_000;
+
+    private final Map<Long, OrderOffers> pending = new ConcurrentHashMap<>();
+
+    public OfferOutcomes(AcceptanceStatistics acceptanceStatistics, DriverScoreBoard driverScoreBoard) {
+        this.acceptanceStatistics = acceptanceStatistics;
+        this.driverScoreBoard = driverScoreBoard;
+    }
+
+    /**
+     * Records the drivers notified of an order in a wave
+     *
+     * @param orderId Order ID
+     * @param latitude Restaurant latitude
+     * @param longitude Restaurant longitude
+     * @param driverIds Drivers that received the offer
+     * @param sentAtMillis Epoch millis at which the wave went out
+     * @param expiresAtMillis Epoch millis at which the offers lapse
+     */
+    public void offered(long orderId, double latitude, double longitude, Collection<Long> driverIds,
+                        long sentAtMillis, long expiresAtMillis) {
+        pending.compute(orderId, (id, offers) -> {
+            OrderOffers orderOffers = offers != null ? offers : new OrderOffers();
+            for (Long driverId : driverIds) {
+                orderOffers.byDriver.put(driverId, new PendingOffer(latitude, longitude, sentAtMillis, expiresAtMillis));
+            }
+            return orderOffers;
+        });
+        for (Long driverId : driverIds) {
+            driverScoreBoard.recordOffer(driverId);
+        }
+    }
+
+    /**
+     * Records a driver tapping accept, whether or not it wins the order
+     *
+     * Taps of drivers that were not offered the order (or not by this node),
+     * repeated taps and taps after the offer expired are ignored.
+     *
+     * @param orderId Order ID
+     * @param driverId Accepting driver ID
+     */
+    public void accepted(long orderId, long driverId) {
+        long now = System.currentTimeMillis();
+        OrderOffers offers = pending.get(orderId);
+        PendingOffer offer = offers != null ? offers.byDriver.get(driverId) : null;
+        if (offer == null || now > offer.expiresAtMillis() || !offers.byDriver.remove(driverId, offer)) {
+            return;
+        }
+        Duration latency = Duration.ofMillis(now - offer.sentAtMillis());
+        acceptanceStatistics.recordAccepted(offer.latitude(), offer.longitude(), latency);
+        driverScoreBoard.recordAcceptance(driverId, latency.toMillis() / 1000.0);
+    }
+
+    /**
+     * Closes an order's offers, e.g. because a driver won it
+     *
+     * Offers not accepted by their expiry are then censored at this moment
+     * instead of timing out at the full offer timeout. Closing again keeps
+     * the first close time.
+     *
+     * @param orderId Order ID
+     */
+    public void closed(long orderId) {
+        long now = System.currentTimeMillis();
+        OrderOffers offers = pending.computeIfAbsent(orderId, id -> new OrderOffers());
+        offers.closedAtMillis.compareAndSet(0L, now);
+    }
+
+    /**
+     * Resolves expired offers nobody accepted as timed out, or as censored
+     * when their order closed before they expired
+     */
+    @Scheduled(fixedDelayString = "${app.delivery.adaptive-waves.sweep-ms:5000}")
+    public void expire() {
+        long now = System.currentTimeMillis();
+        int timedOut = 0;
+        for (Map.Entry<Long, OrderOffers> orderEntry : pending.entrySet()) {
+            OrderOffers offers = orderEntry.getValue();
+            long closedAtMillis = offers.closedAtMillis.get();
+            for (Map.Entry<Long, PendingOffer> entry : offers.byDriver.entrySet()) {
+                PendingOffer offer = entry.getValue();
+                if (now > offer.expiresAtMillis() && offers.byDriver.remove(entry.getKey(), offer)) {
+                    long resolvedAtMillis = closedAtMillis > 0
+                            ? Math.min(closedAtMillis, offer.expiresAtMillis())
+                            : offer.expiresAtMillis();
+                    acceptanceStatistics.recordTimedOut(offer.latitude(), offer.longitude(),
+                            Duration.ofMillis(Math.max(resolvedAtMillis - offer.sentAtMillis(), 0)));
+                    timedOut++;
+                }
+            }
+            // Serialized with offered() on the same order, so no offer is dropped with the entry
+            pending.computeIfPresent(orderEntry.getKey(), (id, current) -> current.byDriver.isEmpty()
+                    && (current.closedAtMillis.get() == 0 || now - current.closedAtMillis.get() > CLOSED_RETENTION_MS)
+                    ? null : current);
+        }
+        if (timedOut > 0) {
+            log.debug("{} offers timed out without an acceptance", timedOut);
+        }
+    }
+
+    /**
+     * @return Offers neither accepted nor expired yet
+     */
+    public int pendingCount() {
+        return pending.values().stream().mapToInt(offers -> offers.byDriver.size()).sum();
+    }
+
+    private static final class OrderOffers {
+        final Map<Long, PendingOffer> byDriver = new ConcurrentHashMap<>();
+        final AtomicLong closedAtMillis = new AtomicLong(); // 0 while the order can still be won
+    }
+
+    private record PendingOffer(double latitude, double longitude, long sentAtMillis, long expiresAtMillis) {
+    }
+}
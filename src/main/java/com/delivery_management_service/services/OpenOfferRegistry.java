@@ -0,0 +1,150 @@
+package com.delivery_management_service.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process registry of open driver offers, keyed by order
+ *
+ * Every SMS wave sends the same order to many drivers, and all but one of
+ * their acceptances lose. The dispatcher registers the drivers of each wave
+ * here, and acceptances first claim the order in memory. Only the claimant
+ * goes on to the database; drivers who lost, whose offer expired or who were
+ * never offered the order are turned away without touching Postgres.
+ *
+ * The database stays the source of truth: a claim only grants the right to
+ * attempt the conditional assignment, and is released if that fails. Orders
+ * this node does not know about (dispatched by another node, or before a
+ * restart) are reported as UNKNOWN_ORDER and fall through to the database.
+ *
+ * Closing an order leaves a tombstone until its last offer would have expired,
+ * so drivers tapping accept after the winner are still rejected in memory
+ * (ALREADY_CLAIMED, or EXPIRED if nobody won). Tombstones are purged every
+ * offers.sweep-ms.
+ */
+@Component
+@Slf4j
+public class OpenOfferRegistry {
+
+    public enum ClaimResult {
+        CLAIMED,
+        UNKNOWN_ORDER,
+        ALREADY_CLAIMED,
+        NOT_OFFERED,
+        EXPIRED
+    }
+
+    private static final long NO_CLAIMANT = 0L;
+
+    private final Map<Long, OpenOffers> offersByOrder = new ConcurrentHashMap<>();
+
+    /**
+     * Opens offers of an order to a wave of drivers
+     *
+     * @param orderId Order ID
+     * @param driverIds Drivers notified in the wave
+     * @param expiresAtMillis Epoch millis after which the wave's offers lapse
+     */
+    public void open(Long orderId, Collection<Long> driverIds, long expiresAtMillis) {
+        // A tombstone of an earlier dispatch of the order is replaced, not reopened
+        OpenOffers offers = offersByOrder.compute(orderId,
+                (id, current) -> current == null || current.closed ? new OpenOffers() : current);
+        for (Long driverId : driverIds) {
+            offers.expiresAtByDriver.put(driverId, expiresAtMillis);
+        }
+        offers.lastExpiryMillis.accumulateAndGet(expiresAtMillis, Math::max);
+    }
+
+    /**
+     * Atomically claims an order for a driver
+     *
+     * @param orderId Order ID
+     * @param driverId Accepting driver ID
+     * @return CLAIMED or UNKNOWN_ORDER if the driver should proceed to the database,
+     *         otherwise the reason the acceptance is rejected
+     */
+    public ClaimResult tryClaim(Long orderId, Long driverId) {
+        OpenOffers offers = offersByOrder.get(orderId);
+        if (offers == null) {
+            return ClaimResult.UNKNOWN_ORDER;
+        }
+
+        long now = System.currentTimeMillis();
+        if (offers.closed && now > offers.lastExpiryMillis.get()) {
+            offersByOrder.remove(orderId, offers);
+            return ClaimResult.UNKNOWN_ORDER;
+        }
+
+        Long expiresAt = offers.expiresAtByDriver.get(driverId);
+        if (expiresAt == null) {
+            return ClaimResult.NOT_OFFERED;
+        }
+        if (offers.closed) {
+            // Dispatch finished: nobody can win any more
+            return offers.claimant.get() != NO_CLAIMANT ? ClaimResult.ALREADY_CLAIMED : ClaimResult.EXPIRED;
+        }
+        if (now > expiresAt) {
+            return ClaimResult.EXPIRED;
+        }
+        if (!offers.claimant.compareAndSet(NO_CLAIMANT, driverId)) {
+            return ClaimResult.ALREADY_CLAIMED;
+        }
+        return ClaimResult.CLAIMED;
+    }
+
+    /**
+     * Gives up a claim after the database assignment failed, so another
+     * driver can still win the order
+     *
+     * @param orderId Order ID
+     * @param driverId Driver that held the claim
+     */
+    public void release(Long orderId, Long driverId) {
+        OpenOffers offers = offersByOrder.get(orderId);
+        if (offers != null && offers.claimant.compareAndSet(driverId, NO_CLAIMANT)) {
+            log.debug("Released claim of driver {} on order {}", driverId, orderId);
+        }
+    }
+
+    /**
+     * Closes an order once its dispatch finished; it is forgotten once its
+     * last offer would have expired
+     *
+     * @param orderId Order ID
+     */
+    public void close(Long orderId) {
+        OpenOffers offers = offersByOrder.get(orderId);
+        if (offers != null) {
+            offers.closed = true;
+        }
+    }
+
+    /**
+     * Forgets closed orders whose offers have all expired
+     */
+    @Scheduled(fixedDelayString = "${app.delivery.offers.sweep-ms:60000}")
+    public void purgeClosed() {
+        long now = System.currentTimeMillis();
+        offersByOrder.values().removeIf(offers -> offers.closed && now > offers.lastExpiryMillis.get());
+    }
+
+    /**
+     * @return number of orders tracked, including closed ones not purged yet
+     */
+    public int size() {
+        return offersByOrder.size();
+    }
+
+    private static final class OpenOffers {
+        private final Map<Long, Long> expiresAtByDriver = new ConcurrentHashMap<>();
+        private final AtomicLong claimant = new AtomicLong(NO_CLAIMANT);
+        private final AtomicLong lastExpiryMillis = new AtomicLong();
+        private volatile boolean closed;
+    }
+}
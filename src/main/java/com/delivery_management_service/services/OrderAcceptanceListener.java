@@ -0,0 +1,134 @@
+package com.delivery_management_service.services;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Statement;
+
+/**
+ * Cross-node backstop for order acceptance wakeups
+ *
+ * driverAcceptOrder may run on a different node than the dispatcher waiting for
+ * the order. The accepting transaction publishes a Postgres NOTIFY on the
+ * order_accepted channel (delivered only if it commits), and every node LISTENs
+ * on a dedicated connection and forwards the payload to OrderAcceptanceRegistry.
+ *
+ * Payload format: "{orderId}:{driverId}"
+ */
+@Component
+@Slf4j
+public class OrderAcceptanceListener {
+
+    static final String CHANNEL = "order_accepted";
+
+    private static final int POLL_TIMEOUT_MS = 5000;
+    private static final long RECONNECT_DELAY_MS = 5000;
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final OrderAcceptanceRegistry acceptanceRegistry;
+    private final boolean enabled;
+
+    private volatile boolean running;
+    private Thread listenerThread;
+
+    public OrderAcceptanceListener(DataSource dataSource,
+                                   JdbcTemplate jdbcTemplate,
+                                   OrderAcceptanceRegistry acceptanceRegistry,
+                                   @Value("${app.delivery.acceptance-listener.enabled:true}") boolean enabled) {
+        this.dataSource = dataSource;
+        this.jdbcTemplate = jdbcTemplate;
+        this.acceptanceRegistry = acceptanceRegistry;
+        this.enabled = enabled;
+    }
+
+    /**
+     * Publishes an acceptance to all nodes
+     *
+     * Must be called inside the accepting transaction: Postgres only delivers
+     * the notification when that transaction commits.
+     *
+     * @param orderId Order ID
+     * @param driverId Accepting driver ID
+     */
+    public void publish(Long orderId, Long driverId) {
+        if (!enabled) {
+            return;
+        }
+        jdbcTemplate.queryForList("SELECT pg_notify(?, ?)", CHANNEL, orderId + ":" + driverId);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            log.info("Order acceptance listener is DISABLED");
+            return;
+        }
+        running = true;
+        listenerThread = new Thread(this::listenLoop, "order-acceptance-listener");
+        listenerThread.setDaemon(true);
+        listenerThread.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (listenerThread != null) {
+            listenerThread.interrupt();
+        }
+    }
+
+    private void listenLoop() {
+        while (running) {
+            try (Connection connection = dataSource.getConnection();
+                 Statement statement = connection.createStatement()) {
+                connection.setAutoCommit(true);
+                statement.execute("LISTEN " + CHANNEL);
+                log.info("Listening for order acceptances on channel '{}'", CHANNEL);
+
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(POLL_TIMEOUT_MS);
+                    if (notifications == null) {
+                        continue;
+                    }
+                    for (PGNotification notification : notifications) {
+                        handle(notification.getParameter());
+                    }
+                }
+            } catch (Exception e) {
+                if (!running) {
+                    return;
+                }
+                log.error("Order acceptance listener failed, reconnecting in {} ms: {}",
+                        RECONNECT_DELAY_MS, e.getMessage());
+                try {
+                    Thread.sleep(RECONNECT_DELAY_MS);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void handle(String payload) {
+        try {
+            int separator = payload.indexOf(':');
+            Long orderId = Long.valueOf(payload.substring(0, separator));
+            Long driverId = Long.valueOf(payload.substring(separator + 1));
+            acceptanceRegistry.complete(orderId, driverId);
+        } catch (RuntimeException e) {
+            log.warn("Ignoring malformed order acceptance notification '{}'", payload);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.delivery_management_service.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-order acceptance registry
+ *
+ * DispatchStateMachine registers a future for an order when its dispatch starts
+ * and turns its completion into an accept event, instead of polling the orders
+ * table. The future is completed with the accepting driver's ID:
+ * - locally, right after driverAcceptOrder commits
+ * - from other nodes, by OrderAcceptanceListener (Postgres LISTEN/NOTIFY)
+ *
+ * Completing an order nobody is waiting for is a no-op.
+ */
+@Component
+@Slf4j
+public class OrderAcceptanceRegistry {
+
+    private final Map<Long, CompletableFuture<Long>> pending = new ConcurrentHashMap<>();
+
+    /**
+     * Registers interest in an order's acceptance
+     *
+     * @param orderId Order ID
+     * @return Future completed with the accepting driver's ID
+     */
+    public CompletableFuture<Long> register(Long orderId) {
+        return pending.computeIfAbsent(orderId, id -> new CompletableFuture<>());
+    }
+
+    /**
+     * Wakes up the dispatcher waiting for this order, if any
+     *
+     * @param orderId Order ID
+     * @param driverId Accepting driver ID
+     * @return true if a waiting dispatcher was woken up
+     */
+    public boolean complete(Long orderId, Long driverId) {
+        CompletableFuture<Long> future = pending.get(orderId);
+        if (future == null) {
+            return false;
+        }
+        log.debug("Acceptance of order {} by driver {} delivered to waiting dispatcher", orderId, driverId);
+        return future.complete(driverId);
+    }
+
+    /**
+     * Stops tracking an order once its dispatcher is done waiting
+     *
+     * @param orderId Order ID
+     */
+    public void unregister(Long orderId) {
+        pending.remove(orderId);
+    }
+}
@@ -12,6 +12,9 @@ import com.delivery_management_service.repository.OrderRepository;
 import com.delivery_management_service.repository.RestaurantRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.PrecisionModel;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -26,6 +29,8 @@ import java.util.stream.Collectors;
 @Slf4j
 public class OrderService {
 
+    private static final GeometryFactory WGS84 = new GeometryFactory(new PrecisionModel(), 4326);
+
     private final OrderRepository orderRepository;
     private final FoodItemRepository foodItemRepository;
     private final RestaurantRepository restaurantRepository;
@@ -53,6 +58,10 @@ public class OrderService {
         order.setCustomerName(request.getCustomerName());
         order.setCustomerPhone(request.getCustomerPhone());
         order.setDeliveryAddress(request.getDeliveryAddress());
+        if (request.getDeliveryLatitude() != null && request.getDeliveryLongitude() != null) {
+            order.setDeliveryLocation(WGS84.createPoint(
+                    new Coordinate(request.getDeliveryLongitude(), request.getDeliveryLatitude())));
+        }
         order.setStatus("PENDING");
 
         // Create order items and calculate total
@@ -0,0 +1,279 @@
+package com.delivery_management_service.services;
+
+import com.delivery_management_service.config.HashedTimingWheel;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.locationtech.jts.geom.Point;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Stacks accepted orders of one restaurant into bundles for one driver
+ *
+ * At peak a restaurant often accepts several orders within minutes, and
+ * dispatching each on its own sends a driver per order. With stacking
+ * enabled, an accepted order is held for up to stacking.hold-ms; orders the
+ * same restaurant accepts meanwhile join it, up to stacking.max-orders. When
+ * the window closes (or the bundle is full) the first order leads the bundle
+ * and DispatchStateMachine offers it to the restaurant's nearby drivers as a
+ * single offer. The driver who accepts it gets every order of the bundle in
+ * one transaction (see DispatchTransactions.claimOrder).
+ *
+ * Sharing a restaurant is not enough: two drops on opposite sides of it make
+ * a terrible bundle. An order only joins a stack if, with the drops ordered
+ * by DeliveryRoutePlanner, no drop of the bundle is reached later than
+ * stacking.max-detour-ratio times its direct trip from the restaurant.
+ * Otherwise it starts a stack of its own, so a restaurant can hold several.
+ * Orders without coordinates (restaurant or drop) cannot be checked and are
+ * dispatched alone; a ratio of 0 turns the check off.
+ *
+ * Held orders live in memory on the node that accepted them; a restart drops
+ * the hold, like any other in-flight dispatch.
+ *
+ * Exposed metrics:
+ * - dispatch.stacking.bundle.size (summary) orders per dispatched bundle
+ * - dispatch.stacking.detour.rejected (counter) stacks an order could not join
+ *   without over-long detours
+ */
+@Service
+@Slf4j
+public class OrderStacker {
+
+    private final DispatchStateMachine dispatchStateMachine;
+    private final HashedTimingWheel timingWheel;
+    private final DeliveryRoutePlanner deliveryRoutePlanner;
+    private final boolean enabled;
+    private final long holdMillis;
+    private final int maxOrders;
+    private final double maxDetourRatio;
+
+    // Guarded by lock; stacks of a restaurant oldest first
+    private final Map<Long, List<Stack>> stacksByRestaurant = new HashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final DistributionSummary bundleSize;
+    private final Counter detourRejected;
+
+    public OrderStacker(DispatchStateMachine dispatchStateMachine,
+                        HashedTimingWheel timingWheel,
+                        DeliveryRoutePlanner deliveryRoutePlanner,
+                        MeterRegistry meterRegistry,
+                        @Value("${app.delivery.stacking.enabled:false}") boolean enabled,
+                        @Value("${app.delivery.stacking.hold-ms:60000}") long holdMillis,
+                        @Value("${app.delivery.stacking.max-orders:3}") int maxOrders,
+                        @Value("${app.delivery.stacking.max-detour-ratio:1.5}") double maxDetourRatio) {
+        this.dispatchStateMachine = dispatchStateMachine;
+        this.timingWheel = timingWheel;
+        this.deliveryRoutePlanner = deliveryRoutePlanner;
+        this.enabled = enabled;
+        this.holdMillis = holdMillis;
+        this.maxOrders = Math.max(1, maxOrders);
+        this.maxDetourRatio = maxDetourRatio;
+
+        this.bundleSize = DistributionSummary.builder("dispatch.stacking.bundle.size")
+                .description("Orders per dispatched bundle")
+                .register(meterRegistry);
+        this.detourRejected = Counter.builder("dispatch.stacking.detour.rejected")
+                .description("Stacks an order could not join without over-long detours")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Holds an accepted order for stacking, or dispatches it right away when
+     * stacking is disabled or its detour cannot be bounded
+     *
+     * @param orderId Order ID
+     * @param restaurantId Restaurant ID
+     * @param restaurantLocation Restaurant coordinates, null if unknown
+     * @param dropLocation Drop-off coordinates, null if unknown
+     */
+    public void submit(Long orderId, Long restaurantId, Point restaurantLocation, Point dropLocation) {
+        boolean located = restaurantLocation != null && dropLocation != null;
+        if (!enabled || maxOrders == 1 || (maxDetourRatio > 0 && !located)) {
+            dispatchStateMachine.start(orderId, restaurantId, restaurantLocation);
+            return;
+        }
+
+        HeldOrder order = located
+                ? new HeldOrder(orderId, dropLocation.getY(), dropLocation.getX(),
+                        directSeconds(restaurantLocation, dropLocation))
+                : new HeldOrder(orderId, Double.NaN, Double.NaN, Double.NaN);
+        Stack full = null;
+        lock.lock();
+        try {
+            List<Stack> stacks = stacksByRestaurant.computeIfAbsent(restaurantId, id -> new ArrayList<>());
+            Stack stack = null;
+            for (Stack candidate : stacks) {
+                if (withinDetour(candidate, order)) {
+                    stack = candidate;
+                    break;
+                }
+                detourRejected.increment();
+            }
+            if (stack == null) {
+                Stack created = new Stack(restaurantId, restaurantLocation);
+                created.timeout = timingWheel.schedule(() -> release(created), holdMillis, TimeUnit.MILLISECONDS);
+                stacks.add(created);
+                stack = created;
+            }
+            stack.orders.add(order);
+            if (stack.orders.size() >= maxOrders) {
+                remove(stack);
+                stack.timeout.cancel();
+                full = stack;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (full != null) {
+            dispatch(full);
+        } else {
+            log.info("Holding order {} of restaurant {} for stacking", orderId, restaurantId);
+        }
+    }
+
+    /**
+     * Takes a held order out of its stack, e.g. because it was cancelled
+     *
+     * @param orderId Order ID
+     * @return true if the order was held here, false if it is already dispatching
+     */
+    public boolean cancel(Long orderId) {
+        lock.lock();
+        try {
+            for (List<Stack> stacks : stacksByRestaurant.values()) {
+                for (Stack stack : stacks) {
+                    if (stack.orders.removeIf(order -> order.orderId().equals(orderId))) {
+                        if (stack.orders.isEmpty()) {
+                            remove(stack);
+                            stack.timeout.cancel();
+                        }
+                        return true;
+                    }
+                }
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of orders held for stacking
+     */
+    public int heldCount() {
+        lock.lock();
+        try {
+            return stacksByRestaurant.values().stream()
+                    .flatMap(List::stream)
+                    .mapToInt(stack -> stack.orders.size())
+                    .sum();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(Stack stack) {
+        lock.lock();
+        try {
+            if (!remove(stack)) {
+                return; // Dispatched when it filled up, or emptied by cancellations
+            }
+        } finally {
+            lock.unlock();
+        }
+        dispatch(stack);
+    }
+
+    /**
+     * Takes a stack out of its restaurant's list; caller holds the lock
+     *
+     * @return false if it was no longer held
+     */
+    private boolean remove(Stack stack) {
+        List<Stack> stacks = stacksByRestaurant.get(stack.restaurantId);
+        if (stacks == null || !stacks.remove(stack)) {
+            return false;
+        }
+        if (stacks.isEmpty()) {
+            stacksByRestaurant.remove(stack.restaurantId);
+        }
+        return true;
+    }
+
+    /**
+     * Whether adding an order keeps every drop of the stack within
+     * maxDetourRatio of its direct trip, with the drops in planned order
+     */
+    private boolean withinDetour(Stack stack, HeldOrder order) {
+        if (maxDetourRatio <= 0) {
+            return true;
+        }
+        int drops = stack.orders.size() + 1;
+        double[] latitudes = new double[drops];
+        double[] longitudes = new double[drops];
+        for (int i = 0; i < drops - 1; i++) {
+            latitudes[i] = stack.orders.get(i).latitude();
+            longitudes[i] = stack.orders.get(i).longitude();
+        }
+        latitudes[drops - 1] = order.latitude();
+        longitudes[drops - 1] = order.longitude();
+
+        DeliveryRoutePlanner.RoutePlan plan = deliveryRoutePlanner.plan(
+                stack.restaurantLocation.getY(), stack.restaurantLocation.getX(), latitudes, longitudes);
+        for (int i = 0; i < drops; i++) {
+            int drop = plan.order()[i];
+            double direct = drop == drops - 1 ? order.directSeconds() : stack.orders.get(drop).directSeconds();
+            if (plan.arrivalSeconds()[i] > maxDetourRatio * direct) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private double directSeconds(Point restaurantLocation, Point dropLocation) {
+        return deliveryRoutePlanner.plan(restaurantLocation.getY(), restaurantLocation.getX(),
+                new double[]{dropLocation.getY()}, new double[]{dropLocation.getX()}).totalSeconds();
+    }
+
+    private void dispatch(Stack stack) {
+        List<Long> orderIds = stack.orders.stream().map(HeldOrder::orderId).toList();
+        bundleSize.record(orderIds.size());
+        if (orderIds.size() > 1) {
+            log.info("Dispatching orders {} of restaurant {} as one bundle", orderIds, stack.restaurantId);
+        }
+        dispatchStateMachine.start(orderIds.get(0), stack.restaurantId, stack.restaurantLocation,
+                List.copyOf(orderIds.subList(1, orderIds.size())));
+    }
+
+    /**
+     * Orders of one restaurant held together, oldest first
+     */
+    private static final class Stack {
+        private final Long restaurantId;
+        private final Point restaurantLocation;
+        private final List<HeldOrder> orders = new ArrayList<>();
+        private HashedTimingWheel.Timeout timeout;
+
+        private Stack(Long restaurantId, Point restaurantLocation) {
+            this.restaurantId = restaurantId;
+            this.restaurantLocation = restaurantLocation;
+        }
+    }
+
+    /**
+     * @param directSeconds Travel time from the restaurant straight to the drop
+     */
+    private record HeldOrder(Long orderId, double latitude, double longitude, double directSeconds) {
+    }
+}
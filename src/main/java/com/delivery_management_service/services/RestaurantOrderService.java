@@ -5,6 +5,7 @@ import com.delivery_management_service.repository.OrderRepository;
 import com.delivery_management_service.services.DeliveryManagementService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.locationtech.jts.geom.Point;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
@@ -43,7 +44,9 @@ public class RestaurantOrderService {
         // IMPORTANT: This happens AFTER the transaction commits
         // The @Async method will see the committed "ACCEPTED" status
         // Trigger delivery management
-        deliveryManagementService.assignDriverToOrder(orderId, order.getRestaurantId());
+        Point restaurantLocation = order.getRestaurant() != null ? order.getRestaurant().getLocation() : null;
+        deliveryManagementService.assignDriverToOrder(orderId, order.getRestaurantId(),
+                restaurantLocation, order.getDeliveryLocation());
         // Register callback to run AFTER transaction commits
 //        TransactionSynchronizationManager.registerSynchronization(
 //                new TransactionSynchronization() {
@@ -59,6 +62,27 @@ public class RestaurantOrderService {
 //        );
     }
 
+    /**
+     * Cancels an accepted order that has no driver yet and stops its dispatch
+     *
+     * One conditional UPDATE instead of read-modify-write, so a cancel cannot
+     * overwrite a driver's concurrent claim (DispatchTransactions.claimOrder).
+     */
+    @Transactional
+    public void cancelOrder(Long orderId) {
+        log.info("Restaurant cancelling order: {}", orderId);
+
+        if (orderRepository.cancelIfUnassigned(orderId) == 0) {
+            Order order = orderRepository.findById(orderId)
+                    .orElseThrow(() -> new RuntimeException("Order not found: " + orderId));
+            throw new RuntimeException("Order cannot be cancelled. Current status: " + order.getStatus());
+        }
+
+        deliveryManagementService.cancelDriverAssignment(orderId);
+
+        log.info("Order {} cancelled", orderId);
+    }
+
     @Transactional
     public void rejectOrder(Long orderId, String reason) {
         log.info("Restaurant rejecting order: {} with reason: {}", orderId, reason);
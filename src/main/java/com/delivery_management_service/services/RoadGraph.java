@@ -0,0 +1,591 @@
+package com.delivery_management_service.services;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Directed road graph with travel times, stored as CSR adjacency arrays
+ *
+ * Nodes are numbered 0..n-1 with their coordinates in two double arrays.
+ * Edges are kept twice, grouped by tail (forward searches) and by head
+ * (backward searches):
+ *   outOffsets[v] .. outOffsets[v + 1] - 1 index v's outgoing edges in
+ *   outTargets / outSeconds, and likewise inOffsets / inSources / inSeconds
+ * A uniform grid over the nodes (also CSR, keyed by cell) snaps coordinates
+ * to the nearest node.
+ *
+ * Queries:
+ * - travelSeconds(s, t): bidirectional A*. Both searches use the average of
+ *   the straight-line lower bounds to s and t (at the graph's top speed) as
+ *   potential, which keeps the two searches consistent with each other
+ * - travelSecondsTo(t, sources): one backward Dijkstra from t that stops once
+ *   every source is settled; ranking a wave of drivers costs one search
+ * - travelSecondsFrom(s, targets): the same forward from s
+ *
+ * Immutable once loaded. Search state (a few arrays of n entries) is borrowed
+ * from a pool of up to one per core and returned after each query: queries
+ * run on short-lived virtual threads, so per-thread state would be allocated
+ * anew for almost every query. Under more concurrent queries than that, the
+ * extra state is allocated for the query and dropped.
+ *
+ * File format (text, '#' comments):
+ *   nodes N
+ *   lat lng                  (N lines, node i on line i)
+ *   edges M
+ *   from to seconds          (M lines, one per direction of travel)
+ * Produced offline from an OSM extract: one node per junction, one edge per
+ * drivable way segment and direction, seconds = length / speed limit.
+ */
+public final class RoadGraph {
+
+    private static final double EARTH_RADIUS_M = 6_371_000;
+    private static final double CELL_SIZE_DEG = 0.01;
+    private static final int MAX_POOLED_SEARCH_SPACES = Runtime.getRuntime().availableProcessors();
+
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final int[] outOffsets;
+    private final int[] outTargets;
+    private final float[] outSeconds;
+    private final int[] inOffsets;
+    private final int[] inSources;
+    private final float[] inSeconds;
+    private final double maxSpeedMetersPerSecond;
+
+    private final long[] cellKeys;
+    private final int[] cellOffsets;
+    private final int[] cellNodes;
+
+    private final Queue<SearchSpace> searchSpaces = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooledSearchSpaces = new AtomicInteger();
+
+    private RoadGraph(double[] latitudes, double[] longitudes, int[] from, int[] to, float[] seconds) {
+        int n = latitudes.length;
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+
+        this.outOffsets = new int[n + 1];
+        this.outTargets = new int[from.length];
+        this.outSeconds = new float[from.length];
+        group(from, to, seconds, outOffsets, outTargets, outSeconds);
+        this.inOffsets = new int[n + 1];
+        this.inSources = new int[from.length];
+        this.inSeconds = new float[from.length];
+        group(to, from, seconds, inOffsets, inSources, inSeconds);
+
+        double maxSpeed = 1;
+        for (int e = 0; e < from.length; e++) {
+            double meters = distanceMeters(from[e], to[e]);
+            maxSpeed = Math.max(maxSpeed, meters / Math.max(seconds[e], 0.001));
+        }
+        this.maxSpeedMetersPerSecond = maxSpeed;
+
+        // Snapping grid: nodes sorted by cell key
+        long[] nodeCells = new long[n];
+        Integer[] order = new Integer[n];
+        for (int v = 0; v < n; v++) {
+            nodeCells[v] = cellKey(cellX(longitudes[v]), cellY(latitudes[v]));
+            order[v] = v;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(nodeCells[a], nodeCells[b]));
+        long[] keys = new long[n];
+        int[] offsets = new int[n + 1];
+        this.cellNodes = new int[n];
+        int cells = 0;
+        for (int i = 0; i < n; i++) {
+            int v = order[i];
+            cellNodes[i] = v;
+            if (cells == 0 || keys[cells - 1] != nodeCells[v]) {
+                keys[cells] = nodeCells[v];
+                offsets[cells] = i;
+                cells++;
+            }
+        }
+        offsets[cells] = n;
+        this.cellKeys = Arrays.copyOf(keys, cells);
+        this.cellOffsets = Arrays.copyOf(offsets, cells + 1);
+    }
+
+    /**
+     * Loads a graph file, see the class comment for the format
+     *
+     * @param file Graph file
+     * @return Loaded graph
+     * @throws IOException if the file cannot be read or is malformed
+     */
+    public static RoadGraph load(Path file) throws IOException {
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return read(reader);
+        }
+    }
+
+    /**
+     * Reads a graph, see the class comment for the format
+     *
+     * @param source Graph text
+     * @return Loaded graph
+     * @throws IOException if the text cannot be read or is malformed
+     */
+    public static RoadGraph read(Reader source) throws IOException {
+        BufferedReader reader = new BufferedReader(source);
+        int nodes = header(reader, "nodes");
+        double[] latitudes = new double[nodes];
+        double[] longitudes = new double[nodes];
+        for (int v = 0; v < nodes; v++) {
+            String[] fields = fields(reader, 2);
+            latitudes[v] = Double.parseDouble(fields[0]);
+            longitudes[v] = Double.parseDouble(fields[1]);
+        }
+
+        int edges = header(reader, "edges");
+        int[] from = new int[edges];
+        int[] to = new int[edges];
+        float[] seconds = new float[edges];
+        for (int e = 0; e < edges; e++) {
+            String[] fields = fields(reader, 3);
+            from[e] = Integer.parseInt(fields[0]);
+            to[e] = Integer.parseInt(fields[1]);
+            seconds[e] = Float.parseFloat(fields[2]);
+            if (from[e] < 0 || from[e] >= nodes || to[e] < 0 || to[e] >= nodes || seconds[e] < 0) {
+                throw new IOException("Invalid edge " + e + ": " + String.join(" ", fields));
+            }
+        }
+        return new RoadGraph(latitudes, longitudes, from, to, seconds);
+    }
+
+    public int nodeCount() {
+        return latitudes.length;
+    }
+
+    public int edgeCount() {
+        return outTargets.length;
+    }
+
+    /**
+     * Snaps a coordinate to the nearest node
+     *
+     * @param latitude Latitude
+     * @param longitude Longitude
+     * @param maxMeters Snapping radius
+     * @return Nearest node within maxMeters, or -1
+     */
+    public int nearestNode(double latitude, double longitude, double maxMeters) {
+        int centerX = cellX(longitude);
+        int centerY = cellY(latitude);
+        double cellMeters = CELL_SIZE_DEG * Math.PI * EARTH_RADIUS_M / 180
+                * Math.cos(Math.toRadians(Math.min(89, Math.abs(latitude))));
+        int maxRing = (int) Math.ceil(maxMeters / cellMeters) + 1;
+
+        int best = -1;
+        double bestMeters = maxMeters;
+        for (int ring = 0; ring <= maxRing; ring++) {
+            if (best >= 0 && bestMeters <= (ring - 1) * cellMeters) {
+                break; // No node in this ring can be nearer
+            }
+            for (int dx = -ring; dx <= ring; dx++) {
+                for (int dy = -ring; dy <= ring; dy++) {
+                    if (Math.max(Math.abs(dx), Math.abs(dy)) != ring) {
+                        continue;
+                    }
+                    int cell = Arrays.binarySearch(cellKeys, cellKey(centerX + dx, centerY + dy));
+                    if (cell < 0) {
+                        continue;
+                    }
+                    for (int i = cellOffsets[cell]; i < cellOffsets[cell + 1]; i++) {
+                        int v = cellNodes[i];
+                        double meters = distanceMeters(latitude, longitude, latitudes[v], longitudes[v]);
+                        if (meters <= bestMeters) {
+                            best = v;
+                            bestMeters = meters;
+                        }
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Shortest travel time between two nodes (bidirectional A*)
+     *
+     * @param source Start node
+     * @param target Destination node
+     * @return Travel time in seconds, or +Infinity if target is unreachable
+     */
+    public double travelSeconds(int source, int target) {
+        if (source == target) {
+            return 0;
+        }
+        SearchSpace space = borrowSearchSpace();
+        try {
+            return travelSeconds(space, source, target);
+        } finally {
+            returnSearchSpace(space);
+        }
+    }
+
+    private double travelSeconds(SearchSpace space, int source, int target) {
+        DistanceHeap forward = space.forwardHeap;
+        DistanceHeap backward = space.backwardHeap;
+
+        space.forwardDistance[source] = 0;
+        space.forwardStamp[source] = space.stamp;
+        forward.push(potential(source, source, target), source);
+        space.backwardDistance[target] = 0;
+        space.backwardStamp[target] = space.stamp;
+        backward.push(-potential(target, source, target), target);
+
+        double best = Double.POSITIVE_INFINITY;
+        while (!forward.isEmpty() && !backward.isEmpty()) {
+            if (forward.peekKey() + backward.peekKey() >= best) {
+                break;
+            }
+            if (forward.size() <= backward.size()) {
+                best = expand(space, forward, true, source, target, best);
+            } else {
+                best = expand(space, backward, false, source, target, best);
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Travel times from many nodes to one target (one backward Dijkstra)
+     *
+     * @param target Destination node
+     * @param sources Start nodes; negative entries are skipped
+     * @return Travel time in seconds per source, +Infinity if unreachable or skipped
+     */
+    public double[] travelSecondsTo(int target, int[] sources) {
+        SearchSpace space = borrowSearchSpace();
+        try {
+            return oneToMany(space, target, sources, false);
+        } finally {
+            returnSearchSpace(space);
+        }
+    }
+
+    /**
+     * Travel times from one node to many (one forward Dijkstra)
+     *
+     * @param source Start node
+     * @param targets Destination nodes; negative entries are skipped
+     * @return Travel time in seconds per target, +Infinity if unreachable or skipped
+     */
+    public double[] travelSecondsFrom(int source, int[] targets) {
+        SearchSpace space = borrowSearchSpace();
+        try {
+            return oneToMany(space, source, targets, true);
+        } finally {
+            returnSearchSpace(space);
+        }
+    }
+
+    /**
+     * Dijkstra from root along (forward) or against (backward) the edges,
+     * until every other node is settled
+     */
+    private double[] oneToMany(SearchSpace space, int root, int[] others, boolean forward) {
+        double[] result = new double[others.length];
+        Arrays.fill(result, Double.POSITIVE_INFINITY);
+        int[] offsets = forward ? outOffsets : inOffsets;
+        int[] neighbours = forward ? outTargets : inSources;
+        float[] seconds = forward ? outSeconds : inSeconds;
+
+        int stamp = space.stamp;
+        int pending = 0;
+        for (int other : others) {
+            if (other >= 0 && space.markStamp[other] != stamp) {
+                space.markStamp[other] = stamp;
+                pending++;
+            }
+        }
+
+        DistanceHeap heap = space.backwardHeap;
+        space.backwardDistance[root] = 0;
+        space.backwardStamp[root] = stamp;
+        heap.push(0, root);
+        while (pending > 0 && !heap.isEmpty()) {
+            double distance = heap.peekKey();
+            int v = heap.pop();
+            if (space.settledStamp[v] == stamp || distance > space.backwardDistance[v]) {
+                continue;
+            }
+            space.settledStamp[v] = stamp;
+            if (space.markStamp[v] == stamp) {
+                pending--;
+            }
+            for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                int u = neighbours[e];
+                double candidate = distance + seconds[e];
+                if (space.backwardStamp[u] != stamp || candidate < space.backwardDistance[u]) {
+                    space.backwardStamp[u] = stamp;
+                    space.backwardDistance[u] = candidate;
+                    heap.push(candidate, u);
+                }
+            }
+        }
+
+        for (int i = 0; i < others.length; i++) {
+            int other = others[i];
+            if (other >= 0 && space.settledStamp[other] == stamp) {
+                result[i] = space.backwardDistance[other];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return Reset search state, from the pool or new if the pool is empty
+     */
+    private SearchSpace borrowSearchSpace() {
+        SearchSpace space = searchSpaces.poll();
+        if (space == null) {
+            space = new SearchSpace(latitudes.length);
+        } else {
+            pooledSearchSpaces.decrementAndGet();
+        }
+        space.reset();
+        return space;
+    }
+
+    private void returnSearchSpace(SearchSpace space) {
+        if (pooledSearchSpaces.incrementAndGet() <= MAX_POOLED_SEARCH_SPACES) {
+            searchSpaces.offer(space);
+        } else {
+            pooledSearchSpaces.decrementAndGet();
+        }
+    }
+
+    /**
+     * Settles the next node of one direction and relaxes its edges
+     *
+     * @return Best source-target travel time found so far
+     */
+    private double expand(SearchSpace space, DistanceHeap heap, boolean forward, int source, int target,
+                          double best) {
+        int stamp = space.stamp;
+        double[] distance = forward ? space.forwardDistance : space.backwardDistance;
+        int[] distanceStamp = forward ? space.forwardStamp : space.backwardStamp;
+        int[] settled = forward ? space.settledStamp : space.backwardSettledStamp;
+        double[] otherDistance = forward ? space.backwardDistance : space.forwardDistance;
+        int[] otherStamp = forward ? space.backwardStamp : space.forwardStamp;
+        int[] offsets = forward ? outOffsets : inOffsets;
+        int[] neighbours = forward ? outTargets : inSources;
+        float[] seconds = forward ? outSeconds : inSeconds;
+
+        int v = heap.pop();
+        if (settled[v] == stamp) {
+            return best;
+        }
+        settled[v] = stamp;
+        double dv = distance[v];
+
+        for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+            int w = neighbours[e];
+            double candidate = dv + seconds[e];
+            if (distanceStamp[w] == stamp && candidate >= distance[w]) {
+                continue;
+            }
+            distanceStamp[w] = stamp;
+            distance[w] = candidate;
+            double potential = potential(w, source, target);
+            heap.push(forward ? candidate + potential : candidate - potential, w);
+            if (otherStamp[w] == stamp) {
+                best = Math.min(best, candidate + otherDistance[w]);
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Forward potential of a node: half the difference of its lower-bound
+     * travel times to the target and from the source (the backward potential
+     * is its negation)
+     */
+    private double potential(int v, int source, int target) {
+        double toTarget = distanceMeters(v, target) / maxSpeedMetersPerSecond;
+        double fromSource = distanceMeters(source, v) / maxSpeedMetersPerSecond;
+        return (toTarget - fromSource) / 2;
+    }
+
+    private double distanceMeters(int a, int b) {
+        return distanceMeters(latitudes[a], longitudes[a], latitudes[b], longitudes[b]);
+    }
+
+    private static double distanceMeters(double lat1, double lon1, double lat2, double lon2) {
+        return DriverSpatialIndex.haversineKm(lat1, lon1, lat2, lon2) * 1000;
+    }
+
+    private static void group(int[] keys, int[] values, float[] weights,
+                              int[] offsets, int[] groupedValues, float[] groupedWeights) {
+        for (int key : keys) {
+            offsets[key + 1]++;
+        }
+        for (int v = 0; v + 1 < offsets.length; v++) {
+            offsets[v + 1] += offsets[v];
+        }
+        int[] next = Arrays.copyOf(offsets, offsets.length - 1);
+        for (int e = 0; e < keys.length; e++) {
+            int slot = next[keys[e]]++;
+            groupedValues[slot] = values[e];
+            groupedWeights[slot] = weights[e];
+        }
+    }
+
+    private static int header(BufferedReader reader, String name) throws IOException {
+        String[] fields = fields(reader, 2);
+        if (!fields[0].equals(name)) {
+            throw new IOException("Expected '" + name + " <count>', got '" + String.join(" ", fields) + "'");
+        }
+        return Integer.parseInt(fields[1]);
+    }
+
+    private static String[] fields(BufferedReader reader, int count) throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.strip();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split("\\s+");
+            if (fields.length < count) {
+                throw new IOException("Expected " + count + " fields: '" + line + "'");
+            }
+            return fields;
+        }
+        throw new IOException("Unexpected end of road graph");
+    }
+
+    private static int cellX(double longitude) {
+        return (int) Math.floor(longitude / CELL_SIZE_DEG);
+    }
+
+    private static int cellY(double latitude) {
+        return (int) Math.floor(latitude / CELL_SIZE_DEG);
+    }
+
+    private static long cellKey(int x, int y) {
+        return ((long) x << 32) | (y & 0xffffffffL);
+    }
+
+    /**
+     * Search state of one query at a time; entries are valid only where their stamp matches
+     */
+    private static final class SearchSpace {
+        private final double[] forwardDistance;
+        private final double[] backwardDistance;
+        private final int[] forwardStamp;
+        private final int[] backwardStamp;
+        private final int[] settledStamp;
+        private final int[] backwardSettledStamp;
+        private final int[] markStamp;
+        private final DistanceHeap forwardHeap = new DistanceHeap();
+        private final DistanceHeap backwardHeap = new DistanceHeap();
+        private int stamp;
+
+        private SearchSpace(int nodes) {
+            forwardDistance = new double[nodes];
+            backwardDistance = new double[nodes];
+            forwardStamp = new int[nodes];
+            backwardStamp = new int[nodes];
+            settledStamp = new int[nodes];
+            backwardSettledStamp = new int[nodes];
+            markStamp = new int[nodes];
+        }
+
+        void reset() {
+            if (++stamp == 0) {
+                // Wrapped around: stale entries would match again
+                Arrays.fill(forwardStamp, 0);
+                Arrays.fill(backwardStamp, 0);
+                Arrays.fill(settledStamp, 0);
+                Arrays.fill(backwardSettledStamp, 0);
+                Arrays.fill(markStamp, 0);
+                stamp = 1;
+            }
+            forwardHeap.clear();
+            backwardHeap.clear();
+        }
+    }
+
+    /**
+     * Binary min-heap of (key, node) with lazy deletion
+     */
+    private static final class DistanceHeap {
+        private double[] keys = new double[64];
+        private int[] nodes = new int[64];
+        private int size;
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        int size() {
+            return size;
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        double peekKey() {
+            return keys[0];
+        }
+
+        void push(double key, int node) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                nodes = Arrays.copyOf(nodes, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (keys[parent] <= key) {
+                    break;
+                }
+                keys[i] = keys[parent];
+                nodes[i] = nodes[parent];
+                i = parent;
+            }
+            keys[i] = key;
+            nodes[i] = node;
+        }
+
+        int pop() {
+            int top = nodes[0];
+            size--;
+            if (size > 0) {
+                double key = keys[size];
+                int node = nodes[size];
+                int i = 0;
+                while (true) {
+                    int child = 2 * i + 1;
+                    if (child >= size) {
+                        break;
+                    }
+                    if (child + 1 < size && keys[child + 1] < keys[child]) {
+                        child++;
+                    }
+                    if (keys[child] >= key) {
+                        break;
+                    }
+                    keys[i] = keys[child];
+                    nodes[i] = nodes[child];
+                    i = child;
+                }
+                keys[i] = key;
+                nodes[i] = node;
+            }
+            return top;
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package com.delivery_management_service.services;
+
+import java.util.Arrays;
+
+/**
+ * Orders the drops of a multi-order trip to minimize total travel time
+ *
+ * Open path problem: start at stop 0 (the restaurant, or the driver once
+ * everything is picked up), visit every other stop once, end anywhere. Travel
+ * times may be asymmetric (one-way streets).
+ *
+ * - up to exactMaxDrops drops: exact dynamic program over subsets
+ *   (Held-Karp), O(2^n * n^2); 8 drops is ~16k steps, a few microseconds
+ * - above that: nearest-neighbour start, then 2-opt (segment reversal) and
+ *   Or-opt (moving runs of 1-3 drops) until neither improves the route
+ *
+ * Travel times are passed as a flattened matrix: seconds[from * stops + to].
+ *
+ * Stateless; safe to share between threads.
+ */
+public final class RouteSequencer {
+
+    private static final int MAX_OR_OPT_RUN = 3;
+    private static final double EPSILON = 1e-9;
+
+    private final int exactMaxDrops;
+
+    /**
+     * @param exactMaxDrops Largest number of drops solved exactly, at most 16
+     */
+    public RouteSequencer(int exactMaxDrops) {
+        this.exactMaxDrops = Math.max(0, Math.min(16, exactMaxDrops));
+    }
+
+    /**
+     * Finds a visiting order for the drops
+     *
+     * @param seconds Travel seconds between stops, seconds[from * stops + to]
+     * @param stops Number of stops including the start (stop 0)
+     * @return Stops 1 .. stops - 1 in visiting order
+     */
+    public int[] sequence(double[] seconds, int stops) {
+        if (seconds.length != stops * stops) {
+            throw new IllegalArgumentException("Expected " + stops * stops + " travel times, got " + seconds.length);
+        }
+        int drops = stops - 1;
+        if (drops <= 1) {
+            return drops == 1 ? new int[]{1} : new int[0];
+        }
+        if (drops <= exactMaxDrops) {
+            return exact(seconds, stops);
+        }
+        int[] path = nearestNeighbour(seconds, stops);
+        improve(path, seconds, stops);
+        int[] order = new int[drops];
+        System.arraycopy(path, 1, order, 0, drops);
+        return order;
+    }
+
+    /**
+     * Travel seconds of an open path starting at stop 0
+     *
+     * @param order Drops in visiting order
+     */
+    public static double duration(double[] seconds, int stops, int[] order) {
+        double total = 0;
+        int previous = 0;
+        for (int stop : order) {
+            total += seconds[previous * stops + stop];
+            previous = stop;
+        }
+        return total;
+    }
+
+    // ------------------------------------------------------------------
+    // Exact: Held-Karp over subsets of drops
+    // ------------------------------------------------------------------
+
+    private static int[] exact(double[] seconds, int stops) {
+        int drops = stops - 1;
+        int subsets = 1 << drops;
+        // best[mask * drops + j]: fastest path from 0 through mask, ending at drop j (bit j in mask)
+        double[] best = new double[subsets * drops];
+        byte[] previous = new byte[subsets * drops];
+        Arrays.fill(best, Double.POSITIVE_INFINITY);
+        for (int j = 0; j < drops; j++) {
+            best[(1 << j) * drops + j] = seconds[j + 1];
+            previous[(1 << j) * drops + j] = -1;
+        }
+
+        for (int mask = 1; mask < subsets; mask++) {
+            for (int j = 0; j < drops; j++) {
+                double here = best[mask * drops + j];
+                if (here == Double.POSITIVE_INFINITY) {
+                    continue;
+                }
+                int fromRow = (j + 1) * stops + 1;
+                int unvisited = ~mask & (subsets - 1);
+                while (unvisited != 0) {
+                    int k = Integer.numberOfTrailingZeros(unvisited);
+                    unvisited &= unvisited - 1;
+                    int next = (mask | (1 << k)) * drops + k;
+                    double candidate = here + seconds[fromRow + k];
+                    if (candidate < best[next]) {
+                        best[next] = candidate;
+                        previous[next] = (byte) j;
+                    }
+                }
+            }
+        }
+
+        int full = subsets - 1;
+        int last = 0;
+        for (int j = 1; j < drops; j++) {
+            if (best[full * drops + j] < best[full * drops + last]) {
+                last = j;
+            }
+        }
+        int[] order = new int[drops];
+        int mask = full;
+        for (int position = drops - 1; position >= 0; position--) {
+            order[position] = last + 1;
+            int before = previous[mask * drops + last];
+            mask &= ~(1 << last);
+            last = before;
+        }
+        return order;
+    }
+
+    // ------------------------------------------------------------------
+    // Heuristic: nearest neighbour + 2-opt + Or-opt
+    // ------------------------------------------------------------------
+
+    private static int[] nearestNeighbour(double[] seconds, int stops) {
+        int[] path = new int[stops];
+        boolean[] visited = new boolean[stops];
+        visited[0] = true;
+        for (int position = 1; position < stops; position++) {
+            int from = path[position - 1];
+            int nearest = -1;
+            for (int candidate = 1; candidate < stops; candidate++) {
+                if (!visited[candidate]
+                        && (nearest < 0 || seconds[from * stops + candidate] < seconds[from * stops + nearest])) {
+                    nearest = candidate;
+                }
+            }
+            path[position] = nearest;
+            visited[nearest] = true;
+        }
+        return path;
+    }
+
+    private static void improve(int[] path, double[] seconds, int stops) {
+        double[] forward = new double[stops];
+        double[] backward = new double[stops];
+        boolean improved = true;
+        while (improved) {
+            improved = twoOpt(path, seconds, stops, forward, backward) | orOpt(path, seconds, stops);
+        }
+    }
+
+    /**
+     * Reverses path[i..j] where that shortens the route; with asymmetric times
+     * the reversed segment's own cost changes too, so it is read from
+     * prefix sums in both directions
+     */
+    private static boolean twoOpt(int[] path, double[] seconds, int stops, double[] forward, double[] backward) {
+        int n = path.length;
+        boolean improvedAny = false;
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            for (int k = 1; k < n; k++) {
+                forward[k] = forward[k - 1] + seconds[path[k - 1] * stops + path[k]];
+                backward[k] = backward[k - 1] + seconds[path[k] * stops + path[k - 1]];
+            }
+            search:
+            for (int i = 1; i < n - 1; i++) {
+                for (int j = i + 1; j < n; j++) {
+                    double before = seconds[path[i - 1] * stops + path[i]] + (forward[j] - forward[i]);
+                    double after = seconds[path[i - 1] * stops + path[j]] + (backward[j] - backward[i]);
+                    if (j + 1 < n) {
+                        before += seconds[path[j] * stops + path[j + 1]];
+                        after += seconds[path[i] * stops + path[j + 1]];
+                    }
+                    if (after < before - EPSILON) {
+                        reverse(path, i, j);
+                        improved = true;
+                        improvedAny = true;
+                        break search;
+                    }
+                }
+            }
+        }
+        return improvedAny;
+    }
+
+    /**
+     * Moves a run of 1-3 consecutive drops to another position where that
+     * shortens the route
+     */
+    private static boolean orOpt(int[] path, double[] seconds, int stops) {
+        int n = path.length;
+        boolean improvedAny = false;
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            search:
+            for (int run = 1; run <= MAX_OR_OPT_RUN; run++) {
+                for (int i = 1; i + run <= n; i++) {
+                    int end = i + run - 1;
+                    int before = path[i - 1];
+                    int first = path[i];
+                    int last = path[end];
+                    boolean hasAfter = end + 1 < n;
+                    int after = hasAfter ? path[end + 1] : -1;
+
+                    double removed = seconds[before * stops + first] + (hasAfter
+                            ? seconds[last * stops + after] - seconds[before * stops + after] : 0);
+
+                    // Insert between path[p] and path[p + 1], outside the run
+                    for (int p = 0; p < n; p++) {
+                        if (p >= i - 1 && p <= end) {
+                            continue;
+                        }
+                        boolean hasNext = p + 1 < n;
+                        int prev = path[p];
+                        int next = hasNext ? path[p + 1] : -1;
+                        double added = seconds[prev * stops + first] + (hasNext
+                                ? seconds[last * stops + next] - seconds[prev * stops + next] : 0);
+                        if (added < removed - EPSILON) {
+                            moveRun(path, i, run, p);
+                            improved = true;
+                            improvedAny = true;
+                            break search;
+                        }
+                    }
+                }
+            }
+        }
+        return improvedAny;
+    }
+
+    private static void reverse(int[] path, int i, int j) {
+        while (i < j) {
+            int swap = path[i];
+            path[i++] = path[j];
+            path[j--] = swap;
+        }
+    }
+
+    /**
+     * Moves path[i .. i + run - 1] to right after path[p]
+     */
+    private static void moveRun(int[] path, int i, int run, int p) {
+        int[] segment = new int[run];
+        System.arraycopy(path, i, segment, 0, run);
+        if (p < i) {
+            // Shift path[p + 1 .. i - 1] right by run
+            System.arraycopy(path, p + 1, path, p + 1 + run, i - p - 1);
+            System.arraycopy(segment, 0, path, p + 1, run);
+        } else {
+            // Shift path[i + run .. p] left by run
+            System.arraycopy(path, i + run, path, i, p - i - run + 1);
+            System.arraycopy(segment, 0, path, p - run + 1, run);
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.delivery_management_service.services;
+
+import java.util.Arrays;
+
+/**
+ * Exact min-cost assignment of rows (orders) to columns (drivers) on a sparse
+ * cost graph
+ *
+ * Successive shortest augmenting paths (Hungarian method with potentials):
+ * every row runs one Dijkstra over the candidate edges, reduced costs stay
+ * non-negative thanks to the row/column potentials, and the search stops at
+ * the first free column it settles. Each row also owns a private "unassigned"
+ * column at a caller-given cost, so a row is left unassigned whenever every
+ * driver is more expensive than that - and a path always exists.
+ *
+ * The graph is passed in CSR form, all primitive arrays:
+ * - rowOffsets[r] .. rowOffsets[r + 1] - 1 index the edges of row r
+ * - edgeColumns[e], edgeCosts[e]: driver column and cost (>= 0) of edge e
+ * - unassignedCosts[r]: cost (>= 0) of leaving row r unassigned
+ *
+ * Cost is O(rows * E log E) in the worst case, in practice each Dijkstra only
+ * settles the few columns cheaper than the row's unassigned cost.
+ *
+ * Not thread-safe; scratch arrays are reused between solve() calls.
+ */
+public final class SparseAssignmentSolver {
+
+    public static final int UNASSIGNED = -1;
+
+    private long[] rowPotential = new long[0];
+    private long[] columnPotential = new long[0];
+    private int[] columnRow = new int[0];
+    private long[] distance = new long[0];
+    private int[] previousRow = new int[0];
+    private int[] visitStamp = new int[0];
+    private int[] settled = new int[0];
+    private int stamp;
+
+    private long[] heapKeys = new long[64];
+    private int[] heapColumns = new int[64];
+    private int heapSize;
+
+    /**
+     * Solves one assignment problem
+     *
+     * @param rows Number of rows (orders)
+     * @param columns Number of driver columns
+     * @param rowOffsets CSR row offsets, length rows + 1
+     * @param edgeColumns Driver column of each edge, in [0, columns)
+     * @param edgeCosts Cost of each edge, non-negative
+     * @param unassignedCosts Cost of leaving each row unassigned, non-negative
+     * @return Driver column per row, or UNASSIGNED
+     */
+    public int[] solve(int rows, int columns, int[] rowOffsets, int[] edgeColumns, long[] edgeCosts,
+                       long[] unassignedCosts) {
+        // Columns [columns, columns + rows) are the private "unassigned" columns
+        int totalColumns = columns + rows;
+        reset(rows, totalColumns);
+        int[] rowColumn = new int[rows];
+        Arrays.fill(rowColumn, UNASSIGNED);
+
+        for (int source = 0; source < rows; source++) {
+            augment(source, columns, rowOffsets, edgeColumns, edgeCosts, unassignedCosts, rowColumn);
+        }
+
+        for (int row = 0; row < rows; row++) {
+            if (rowColumn[row] >= columns) {
+                rowColumn[row] = UNASSIGNED;
+            }
+        }
+        return rowColumn;
+    }
+
+    /**
+     * Finds the shortest augmenting path from a free row and flips it
+     */
+    private void augment(int source, int columns, int[] rowOffsets, int[] edgeColumns, long[] edgeCosts,
+                         long[] unassignedCosts, int[] rowColumn) {
+        stamp++;
+        heapSize = 0;
+        int settledCount = 0;
+
+        relax(source, 0, columns, rowOffsets, edgeColumns, edgeCosts, unassignedCosts);
+
+        int sink = UNASSIGNED;
+        long sinkDistance = 0;
+        while (heapSize > 0) {
+            long key = heapKeys[0];
+            int column = heapColumns[0];
+            pop();
+            if (key != distance[column] || visitStamp[column] == -stamp) {
+                continue; // Stale heap entry
+            }
+            visitStamp[column] = -stamp; // Settled
+            settled[settledCount++] = column;
+
+            int matchedRow = columnRow[column];
+            if (matchedRow == UNASSIGNED) {
+                sink = column;
+                sinkDistance = key;
+                break;
+            }
+            // The matched edge has zero reduced cost: the row sits at the column's distance
+            relax(matchedRow, key, columns, rowOffsets, edgeColumns, edgeCosts, unassignedCosts);
+        }
+
+        // Potentials of settled nodes move by (distance - sinkDistance), the rest stays valid
+        rowPotential[source] -= sinkDistance;
+        for (int i = 0; i < settledCount; i++) {
+            int column = settled[i];
+            long shift = distance[column] - sinkDistance;
+            columnPotential[column] += shift;
+            int matchedRow = columnRow[column];
+            if (matchedRow != UNASSIGNED) {
+                rowPotential[matchedRow] += shift;
+            }
+        }
+
+        // Flip the alternating path back to the source
+        int column = sink;
+        while (true) {
+            int row = previousRow[column];
+            int nextColumn = rowColumn[row];
+            rowColumn[row] = column;
+            columnRow[column] = row;
+            if (row == source) {
+                return;
+            }
+            column = nextColumn;
+        }
+    }
+
+    private void relax(int row, long rowDistance, int columns, int[] rowOffsets, int[] edgeColumns,
+                       long[] edgeCosts, long[] unassignedCosts) {
+        for (int e = rowOffsets[row]; e < rowOffsets[row + 1]; e++) {
+            relaxEdge(row, edgeColumns[e], rowDistance, edgeCosts[e]);
+        }
+        relaxEdge(row, columns + row, rowDistance, unassignedCosts[row]);
+    }
+
+    private void relaxEdge(int row, int column, long rowDistance, long cost) {
+        if (visitStamp[column] == -stamp) {
+            return;
+        }
+        long reduced = cost + rowPotential[row] - columnPotential[column];
+        long candidate = rowDistance + reduced;
+        if (visitStamp[column] != stamp || candidate < distance[column]) {
+            visitStamp[column] = stamp;
+            distance[column] = candidate;
+            previousRow[column] = row;
+            push(candidate, column);
+        }
+    }
+
+    private void reset(int rows, int totalColumns) {
+        if (rowPotential.length < rows) {
+            rowPotential = new long[rows];
+        } else {
+            Arrays.fill(rowPotential, 0, rows, 0);
+        }
+        if (columnPotential.length < totalColumns) {
+            columnPotential = new long[totalColumns];
+            columnRow = new int[totalColumns];
+            distance = new long[totalColumns];
+            previousRow = new int[totalColumns];
+            visitStamp = new int[totalColumns];
+            settled = new int[totalColumns];
+            stamp = 0;
+        } else {
+            Arrays.fill(columnPotential, 0, totalColumns, 0);
+        }
+        Arrays.fill(columnRow, 0, totalColumns, UNASSIGNED);
+    }
+
+    // Binary min-heap on (key, column); stale entries are skipped on pop
+
+    private void push(long key, int column) {
+        if (heapSize == heapKeys.length) {
+            heapKeys = Arrays.copyOf(heapKeys, heapSize * 2);
+            heapColumns = Arrays.copyOf(heapColumns, heapSize * 2);
+        }
+        int i = heapSize++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heapKeys[parent] <= key) {
+                break;
+            }
+            heapKeys[i] = heapKeys[parent];
+            heapColumns[i] = heapColumns[parent];
+            i = parent;
+        }
+        heapKeys[i] = key;
+        heapColumns[i] = column;
+    }
+
+    private void pop() {
+        heapSize--;
+        if (heapSize == 0) {
+            return;
+        }
+        long key = heapKeys[heapSize];
+        int column = heapColumns[heapSize];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && heapKeys[child + 1] < heapKeys[child]) {
+                child++;
+            }
+            if (heapKeys[child] >= key) {
+                break;
+            }
+            heapKeys[i] = heapKeys[child];
+            heapColumns[i] = heapColumns[child];
+            i = child;
+        }
+        heapKeys[i] = key;
+        heapColumns[i] = column;
+    }
+}
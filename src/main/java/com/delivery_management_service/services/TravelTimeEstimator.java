@@ -0,0 +1,132 @@
+package com.delivery_management_service.services;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Travel-time estimates in tiers, cheapest first
+ *
+ * 1. MATRIX: O(1) lookup in the precomputed cell-to-cell TravelTimeMatrix
+ *    (eta-matrix.file, built offline by TravelTimeMatrixBuilder)
+ * 2. ROUTED: exact road search on the graph of TravelTimeRouter
+ * 3. STRAIGHT_LINE: haversine distance at routing.reference-speed-kmh
+ *
+ * The matrix file is re-mapped in the background every eta-matrix.refresh-ms
+ * when its modification time changes, so a rebuilt matrix is picked up without
+ * a restart. Lookups keep using the previous mapping until the new one is
+ * validated.
+ */
+@Component
+@Slf4j
+public class TravelTimeEstimator {
+
+    /**
+     * @param seconds Estimated travel time
+     * @param source MATRIX, ROUTED or STRAIGHT_LINE
+     */
+    public record Estimate(double seconds, String source) {
+    }
+
+    private final TravelTimeRouter travelTimeRouter;
+    private final String matrixFile;
+    private final double referenceSpeedKmh;
+
+    private volatile TravelTimeMatrix matrix;
+    private long matrixModifiedMillis = -1;
+
+    public TravelTimeEstimator(TravelTimeRouter travelTimeRouter,
+                               @Value("${app.delivery.eta-matrix.file:}") String matrixFile,
+                               @Value("${app.delivery.routing.reference-speed-kmh:25}") double referenceSpeedKmh) {
+        this.travelTimeRouter = travelTimeRouter;
+        this.matrixFile = matrixFile;
+        this.referenceSpeedKmh = referenceSpeedKmh;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (matrixFile == null || matrixFile.isBlank()) {
+            log.info("No travel-time matrix configured, estimates use the road graph or straight-line distance");
+            return;
+        }
+        refresh();
+    }
+
+    /**
+     * Maps the matrix file again if it changed since the last mapping
+     */
+    @Scheduled(fixedDelayString = "${app.delivery.eta-matrix.refresh-ms:300000}",
+            initialDelayString = "${app.delivery.eta-matrix.refresh-ms:300000}")
+    public void refresh() {
+        if (matrixFile == null || matrixFile.isBlank()) {
+            return;
+        }
+        Path file = Path.of(matrixFile);
+        try {
+            long modified = Files.getLastModifiedTime(file).toMillis();
+            if (modified == matrixModifiedMillis) {
+                return;
+            }
+            TravelTimeMatrix loaded = TravelTimeMatrix.open(file);
+            matrix = loaded;
+            matrixModifiedMillis = modified;
+            log.info("Mapped travel-time matrix {}: {} x {} cells", matrixFile, loaded.rows(), loaded.columns());
+        } catch (IOException | RuntimeException e) {
+            log.error("Could not map travel-time matrix {}, keeping {}: {}", matrixFile,
+                    matrix != null ? "the previous one" : "no matrix", e.getMessage());
+        }
+    }
+
+    /**
+     * @return true if a travel-time matrix is mapped
+     */
+    public boolean hasMatrix() {
+        return matrix != null;
+    }
+
+    /**
+     * O(1) travel time from the matrix only
+     *
+     * @return Seconds, or NaN without a matrix, outside its grid or unreachable
+     */
+    public double matrixSeconds(double fromLatitude, double fromLongitude, double toLatitude, double toLongitude) {
+        TravelTimeMatrix current = matrix;
+        return current == null ? Double.NaN
+                : current.estimateSeconds(fromLatitude, fromLongitude, toLatitude, toLongitude);
+    }
+
+    /**
+     * O(1) travel time that never routes: the matrix, else straight line at
+     * the reference speed; for callers that need many pairs at once
+     */
+    public double quickSeconds(double fromLatitude, double fromLongitude, double toLatitude, double toLongitude) {
+        double seconds = matrixSeconds(fromLatitude, fromLongitude, toLatitude, toLongitude);
+        if (!Double.isNaN(seconds)) {
+            return seconds;
+        }
+        return DriverSpatialIndex.haversineKm(fromLatitude, fromLongitude, toLatitude, toLongitude)
+                / referenceSpeedKmh * 3600;
+    }
+
+    /**
+     * Best available travel time, trying the matrix before any exact routing
+     */
+    public Estimate estimate(double fromLatitude, double fromLongitude, double toLatitude, double toLongitude) {
+        double seconds = matrixSeconds(fromLatitude, fromLongitude, toLatitude, toLongitude);
+        if (!Double.isNaN(seconds)) {
+            return new Estimate(seconds, "MATRIX");
+        }
+        seconds = travelTimeRouter.travelSeconds(fromLatitude, fromLongitude, toLatitude, toLongitude);
+        if (!Double.isNaN(seconds)) {
+            return new Estimate(seconds, "ROUTED");
+        }
+        double km = DriverSpatialIndex.haversineKm(fromLatitude, fromLongitude, toLatitude, toLongitude);
+        return new Estimate(km / referenceSpeedKmh * 3600, "STRAIGHT_LINE");
+    }
+}
@@ -0,0 +1,249 @@
+package com.delivery_management_service.services;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Precomputed travel times between the cells of a lat/lng grid, read from a
+ * memory-mapped file
+ *
+ * The service area is cut into rows x columns cells of cellSizeDeg; the file
+ * holds the road travel time from every cell center to every other as an
+ * unsigned 16-bit number of seconds, row-major by origin cell. A lookup is
+ * two cell computations and one absolute read from the mapping: O(1), no
+ * allocation, and the OS page cache shares the pages between processes.
+ *
+ * Large grids pass 2 GB (32,768 cells already do), more than one mapping can
+ * cover, so the file is mapped in segments of 1 GiB. Entries sit at even
+ * offsets and segments have an even size, so no entry straddles two.
+ *
+ * File layout (big-endian):
+ *   int    magic 'TTM1'
+ *   double minLatitude, minLongitude, cellSizeDeg
+ *   int    rows, columns
+ *   u16    seconds[cells * cells]   (UNREACHABLE = no route)
+ *
+ * Built offline by TravelTimeMatrixBuilder, streaming one origin row at a
+ * time through a Writer. Immutable; safe to share between threads (only
+ * absolute reads on the mapping).
+ */
+public final class TravelTimeMatrix {
+
+    static final int MAGIC = 0x54544D31; // "TTM1"
+    static final int HEADER_BYTES = 4 + 3 * 8 + 2 * 4;
+    static final int UNREACHABLE = 0xFFFF;
+    static final int MAX_SECONDS = UNREACHABLE - 1;
+    static final int DEFAULT_SEGMENT_BYTES = 1 << 30;
+
+    private final ByteBuffer[] segments;
+    private final int segmentBytes;
+    private final double minLatitude;
+    private final double minLongitude;
+    private final double cellSizeDeg;
+    private final int rows;
+    private final int columns;
+    private final long cellCount;
+
+    private TravelTimeMatrix(ByteBuffer[] segments, int segmentBytes, long size) throws IOException {
+        ByteBuffer first = segments.length == 0 ? ByteBuffer.allocate(0) : segments[0];
+        if (size < HEADER_BYTES || first.capacity() < HEADER_BYTES || first.getInt(0) != MAGIC) {
+            throw new IOException("Not a travel-time matrix file");
+        }
+        this.minLatitude = first.getDouble(4);
+        this.minLongitude = first.getDouble(12);
+        this.cellSizeDeg = first.getDouble(20);
+        this.rows = first.getInt(28);
+        this.columns = first.getInt(32);
+        this.cellCount = (long) rows * columns;
+        long expected = HEADER_BYTES + cellCount * cellCount * 2;
+        if (rows <= 0 || columns <= 0 || cellSizeDeg <= 0 || size != expected) {
+            throw new IOException("Corrupt travel-time matrix: " + rows + " x " + columns
+                    + " cells, " + size + " bytes, expected " + expected);
+        }
+        this.segments = segments;
+        this.segmentBytes = segmentBytes;
+    }
+
+    /**
+     * Maps a matrix file read-only, in 1 GiB segments
+     *
+     * @param file Matrix file
+     * @return Mapped matrix
+     * @throws IOException if the file cannot be mapped or is not a valid matrix
+     */
+    public static TravelTimeMatrix open(Path file) throws IOException {
+        return open(file, DEFAULT_SEGMENT_BYTES);
+    }
+
+    /**
+     * Maps a matrix file read-only
+     *
+     * @param file Matrix file
+     * @param segmentBytes Size of each mapping: even, at least the header size
+     * @return Mapped matrix
+     * @throws IOException if the file cannot be mapped or is not a valid matrix
+     */
+    public static TravelTimeMatrix open(Path file, int segmentBytes) throws IOException {
+        if (segmentBytes < HEADER_BYTES || segmentBytes % 2 != 0) {
+            throw new IllegalArgumentException("Segment size must be even and at least " + HEADER_BYTES);
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer[] segments = new ByteBuffer[(int) ((size + segmentBytes - 1) / segmentBytes)];
+            for (int i = 0; i < segments.length; i++) {
+                long position = (long) i * segmentBytes;
+                // Mappings stay valid after the channel is closed
+                MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(segmentBytes, size - position));
+                segments[i] = segment.order(ByteOrder.BIG_ENDIAN);
+            }
+            return new TravelTimeMatrix(segments, segmentBytes, size);
+        }
+    }
+
+    /**
+     * Starts writing a matrix file; rows are streamed, never held in memory
+     * all at once
+     *
+     * @param file Destination, replaced atomically on commit
+     * @param minLatitude Southern edge of the grid
+     * @param minLongitude Western edge of the grid
+     * @param cellSizeDeg Cell size in degrees
+     * @param rows Cells north-south
+     * @param columns Cells west-east
+     * @return Writer expecting rows * columns origin rows
+     * @throws IOException if the temp file cannot be created
+     */
+    public static Writer writer(Path file, double minLatitude, double minLongitude, double cellSizeDeg,
+                                int rows, int columns) throws IOException {
+        return new Writer(file, minLatitude, minLongitude, cellSizeDeg, rows, columns);
+    }
+
+    /**
+     * Estimated travel time between two coordinates
+     *
+     * @return Seconds between the two cells, NaN if either point is outside the
+     *         grid or there is no route
+     */
+    public double estimateSeconds(double fromLatitude, double fromLongitude, double toLatitude, double toLongitude) {
+        long from = cellOf(fromLatitude, fromLongitude);
+        long to = cellOf(toLatitude, toLongitude);
+        if (from < 0 || to < 0) {
+            return Double.NaN;
+        }
+        long offset = HEADER_BYTES + (from * cellCount + to) * 2;
+        int seconds = Short.toUnsignedInt(
+                segments[(int) (offset / segmentBytes)].getShort((int) (offset % segmentBytes)));
+        return seconds == UNREACHABLE ? Double.NaN : seconds;
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    public int columns() {
+        return columns;
+    }
+
+    private long cellOf(double latitude, double longitude) {
+        int row = (int) Math.floor((latitude - minLatitude) / cellSizeDeg);
+        int column = (int) Math.floor((longitude - minLongitude) / cellSizeDeg);
+        if (row < 0 || row >= rows || column < 0 || column >= columns) {
+            return -1;
+        }
+        return (long) row * columns + column;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Streams a matrix file one origin row at a time into a temp file, renamed
+     * over the destination on commit, so a running service never maps a
+     * half-written file. Closing without commit deletes the temp file.
+     */
+    public static final class Writer implements Closeable {
+
+        private final Path file;
+        private final Path temp;
+        private final FileChannel channel;
+        private final long cellCount;
+        private final ByteBuffer chunk = ByteBuffer.allocate(64 * 1024);
+        private long rowsWritten;
+        private boolean committed;
+
+        private Writer(Path file, double minLatitude, double minLongitude, double cellSizeDeg,
+                       int rows, int columns) throws IOException {
+            if (rows <= 0 || columns <= 0 || cellSizeDeg <= 0) {
+                throw new IllegalArgumentException("Empty grid: " + rows + " x " + columns + " cells of " + cellSizeDeg);
+            }
+            this.file = file.toAbsolutePath();
+            this.cellCount = (long) rows * columns;
+            this.temp = Files.createTempFile(this.file.getParent(), this.file.getFileName().toString(), ".tmp");
+            this.channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            chunk.putInt(MAGIC)
+                    .putDouble(minLatitude)
+                    .putDouble(minLongitude)
+                    .putDouble(cellSizeDeg)
+                    .putInt(rows)
+                    .putInt(columns);
+        }
+
+        /**
+         * Appends the travel times from the next origin cell
+         *
+         * @param seconds Seconds to every destination cell; NaN or infinite if unreachable
+         * @throws IOException if the row cannot be written
+         */
+        public void writeRow(double[] seconds) throws IOException {
+            if (seconds.length != cellCount || rowsWritten == cellCount) {
+                throw new IllegalArgumentException("Row " + rowsWritten + " of " + cellCount + " with "
+                        + seconds.length + " entries, expected " + cellCount);
+            }
+            for (double value : seconds) {
+                if (!chunk.hasRemaining()) {
+                    writeFully(channel, chunk.flip());
+                    chunk.clear();
+                }
+                int encoded = Double.isNaN(value) || Double.isInfinite(value) ? UNREACHABLE
+                        : (int) Math.min(MAX_SECONDS, Math.round(Math.max(0, value)));
+                chunk.putShort((short) encoded);
+            }
+            rowsWritten++;
+        }
+
+        /**
+         * Flushes the last rows and moves the file into place
+         *
+         * @throws IOException if rows are missing or the file cannot be moved
+         */
+        public void commit() throws IOException {
+            if (rowsWritten != cellCount) {
+                throw new IOException("Only " + rowsWritten + " of " + cellCount + " rows written");
+            }
+            writeFully(channel, chunk.flip());
+            channel.close();
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            committed = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!committed) {
+                channel.close();
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+}
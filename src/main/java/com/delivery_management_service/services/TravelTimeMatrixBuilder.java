@@ -0,0 +1,94 @@
+package com.delivery_management_service.services;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Offline tool that precomputes a TravelTimeMatrix from a RoadGraph file
+ *
+ * Each cell center is snapped to its nearest road node; then one forward
+ * Dijkstra per origin cell yields that cell's row, the travel time to every
+ * cell, which is streamed straight to the file. Memory is one row, never the
+ * whole matrix (a 100 x 100 grid would be 800 MB of doubles). Cells without
+ * a road within snapMeters are unreachable both ways. Cost is one graph
+ * search per cell, so a 100 x 100 grid is 10,000 searches: minutes for a
+ * city, done off the serving path. The output is written to a temp file and
+ * renamed, so a running service never maps a half-written file.
+ *
+ * Usage (from the packaged jar):
+ *   java -cp delivery_management_service.jar \
+ *        -Dloader.main=com.delivery_management_service.services.TravelTimeMatrixBuilder \
+ *        org.springframework.boot.loader.launch.PropertiesLauncher \
+ *        city.graph city.ttm minLat minLng maxLat maxLng cellSizeDeg [snapMeters]
+ */
+public final class TravelTimeMatrixBuilder {
+
+    private static final double DEFAULT_SNAP_METERS = 300;
+    // 65,536 cells make an 8 GiB file
+    private static final int MAX_CELLS = 1 << 16;
+
+    private TravelTimeMatrixBuilder() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 7 || args.length > 8) {
+            System.err.println("usage: TravelTimeMatrixBuilder <graph-file> <output-file> "
+                    + "<minLat> <minLng> <maxLat> <maxLng> <cellSizeDeg> [snapMeters]");
+            System.exit(2);
+        }
+        Path graphFile = Path.of(args[0]);
+        Path output = Path.of(args[1]);
+        double minLatitude = Double.parseDouble(args[2]);
+        double minLongitude = Double.parseDouble(args[3]);
+        double maxLatitude = Double.parseDouble(args[4]);
+        double maxLongitude = Double.parseDouble(args[5]);
+        double cellSizeDeg = Double.parseDouble(args[6]);
+        double snapMeters = args.length > 7 ? Double.parseDouble(args[7]) : DEFAULT_SNAP_METERS;
+
+        int rows = (int) Math.ceil((maxLatitude - minLatitude) / cellSizeDeg);
+        int columns = (int) Math.ceil((maxLongitude - minLongitude) / cellSizeDeg);
+        if (rows <= 0 || columns <= 0 || (long) rows * columns > MAX_CELLS) {
+            throw new IllegalArgumentException("Grid of " + rows + " x " + columns
+                    + " cells is empty or too large; use a coarser cell size");
+        }
+
+        long start = System.nanoTime();
+        RoadGraph graph = RoadGraph.load(graphFile);
+        try (TravelTimeMatrix.Writer writer = TravelTimeMatrix.writer(output, minLatitude, minLongitude,
+                cellSizeDeg, rows, columns)) {
+            build(graph, minLatitude, minLongitude, cellSizeDeg, rows, columns, snapMeters, writer);
+            writer.commit();
+        }
+        System.out.printf("Wrote %d x %d cell matrix to %s in %d ms%n",
+                rows, columns, output, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Streams the travel seconds from every cell to every cell, one origin row
+     * at a time, +Inf where unreachable
+     *
+     * @param writer Receives rows * columns rows, in cell order; not committed here
+     * @throws IOException if a row cannot be written
+     */
+    public static void build(RoadGraph graph, double minLatitude, double minLongitude, double cellSizeDeg,
+                             int rows, int columns, double snapMeters,
+                             TravelTimeMatrix.Writer writer) throws IOException {
+        int cells = rows * columns;
+        int[] nodes = new int[cells];
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                nodes[row * columns + column] = graph.nearestNode(
+                        minLatitude + (row + 0.5) * cellSizeDeg,
+                        minLongitude + (column + 0.5) * cellSizeDeg,
+                        snapMeters);
+            }
+        }
+
+        double[] unreachable = new double[cells];
+        Arrays.fill(unreachable, Double.POSITIVE_INFINITY);
+        for (int from = 0; from < cells; from++) {
+            writer.writeRow(nodes[from] < 0 ? unreachable : graph.travelSecondsFrom(nodes[from], nodes));
+        }
+    }
+}
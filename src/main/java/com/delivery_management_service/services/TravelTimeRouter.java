@@ -0,0 +1,108 @@
+package com.delivery_management_service.services;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Road travel times between coordinates, backed by a RoadGraph file
+ *
+ * Loaded from routing.graph-file at startup; without a file (or if it cannot
+ * be read) the router is unavailable and callers keep straight-line
+ * distances. Coordinates are snapped to the nearest road node within
+ * routing.snap-meters; points farther from any road have no travel time.
+ */
+@Component
+@Slf4j
+public class TravelTimeRouter {
+
+    private final String graphFile;
+    private final double snapMeters;
+
+    private volatile RoadGraph roadGraph;
+
+    public TravelTimeRouter(@Value("${app.delivery.routing.graph-file:}") String graphFile,
+                            @Value("${app.delivery.routing.snap-meters:300}") double snapMeters) {
+        this.graphFile = graphFile;
+        this.snapMeters = snapMeters;
+    }
+
+    @PostConstruct
+    public void load() {
+        if (graphFile == null || graphFile.isBlank()) {
+            log.info("No road graph configured, driver ranking uses straight-line distance");
+            return;
+        }
+        try {
+            long start = System.nanoTime();
+            roadGraph = RoadGraph.load(Path.of(graphFile));
+            log.info("Loaded road graph {}: {} nodes, {} edges in {} ms", graphFile,
+                    roadGraph.nodeCount(), roadGraph.edgeCount(), (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException | RuntimeException e) {
+            log.error("Could not load road graph {}, using straight-line distance: {}", graphFile, e.getMessage());
+        }
+    }
+
+    /**
+     * @return true if a road graph is loaded
+     */
+    public boolean isAvailable() {
+        return roadGraph != null;
+    }
+
+    /**
+     * Travel time between two coordinates
+     *
+     * @return Seconds, or NaN if unavailable, off-road or unreachable
+     */
+    public double travelSeconds(double fromLatitude, double fromLongitude, double toLatitude, double toLongitude) {
+        RoadGraph graph = roadGraph;
+        if (graph == null) {
+            return Double.NaN;
+        }
+        int source = graph.nearestNode(fromLatitude, fromLongitude, snapMeters);
+        int target = graph.nearestNode(toLatitude, toLongitude, snapMeters);
+        if (source < 0 || target < 0) {
+            return Double.NaN;
+        }
+        double seconds = graph.travelSeconds(source, target);
+        return Double.isInfinite(seconds) ? Double.NaN : seconds;
+    }
+
+    /**
+     * Travel times from many coordinates (e.g. drivers) to one (e.g. a restaurant)
+     *
+     * @return Seconds per origin, NaN where unavailable, off-road or unreachable
+     */
+    public double[] travelSecondsTo(double toLatitude, double toLongitude,
+                                    double[] fromLatitudes, double[] fromLongitudes) {
+        double[] seconds = new double[fromLatitudes.length];
+        Arrays.fill(seconds, Double.NaN);
+        RoadGraph graph = roadGraph;
+        if (graph == null) {
+            return seconds;
+        }
+        int target = graph.nearestNode(toLatitude, toLongitude, snapMeters);
+        if (target < 0) {
+            return seconds;
+        }
+
+        int[] sources = new int[fromLatitudes.length];
+        for (int i = 0; i < sources.length; i++) {
+            sources[i] = Double.isNaN(fromLatitudes[i]) ? -1
+                    : graph.nearestNode(fromLatitudes[i], fromLongitudes[i], snapMeters);
+        }
+        double[] travel = graph.travelSecondsTo(target, sources);
+        for (int i = 0; i < travel.length; i++) {
+            if (!Double.isInfinite(travel[i])) {
+                seconds[i] = travel[i];
+            }
+        }
+        return seconds;
+    }
+}
@@ -0,0 +1,49 @@
+package com.delivery_management_service.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Default candidate ranking: a weighted sum of normalized terms
+ *
+ *   score = acceptance * acceptanceRate
+ *         + speed      * (1 - min(1, meanAcceptSeconds / speed-horizon))
+ *         + idle       * min(1, idleSeconds / idle-horizon)
+ *         - distance   * distanceKm
+ *
+ * With the defaults one kilometer costs as much as a 50 point difference
+ * in acceptance rate, and a driver idle for the whole idle horizon gains
+ * about half a kilometer on one who just finished a delivery.
+ */
+@Component
+public class WeightedCandidateRanker implements CandidateRanker {
+
+    private final double distanceWeight;
+    private final double acceptanceWeight;
+    private final double speedWeight;
+    private final double idleWeight;
+    private final double speedHorizonSeconds;
+    private final double idleHorizonSeconds;
+
+    public WeightedCandidateRanker(@Value("${app.delivery.scoring.weights.distance-per-km:1.0}") double distanceWeight,
+                                   @Value("${app.delivery.scoring.weights.acceptance:2.0}") double acceptanceWeight,
+                                   @Value("${app.delivery.scoring.weights.speed:0.5}") double speedWeight,
+                                   @Value("${app.delivery.scoring.weights.idle:0.5}") double idleWeight,
+                                   @Value("${app.delivery.scoring.speed-horizon-seconds:120}") double speedHorizonSeconds,
+                                   @Value("${app.delivery.scoring.idle-horizon-seconds:1800}") double idleHorizonSeconds) {
+        this.distanceWeight = distanceWeight;
+        this.acceptanceWeight = acceptanceWeight;
+        this.speedWeight = speedWeight;
+        this.idleWeight = idleWeight;
+        this.speedHorizonSeconds = speedHorizonSeconds;
+        this.idleHorizonSeconds = idleHorizonSeconds;
+    }
+
+    @Override
+    public double score(double distanceKm, double acceptanceRate, double meanAcceptSeconds, double idleSeconds) {
+        return acceptanceWeight * acceptanceRate
+                + speedWeight * (1 - Math.min(1, meanAcceptSeconds / speedHorizonSeconds))
+                + idleWeight * Math.min(1, idleSeconds / idleHorizonSeconds)
+                - distanceWeight * distanceKm;
+    }
+}
@@ -0,0 +1,221 @@
+package com.delivery_management_service.services;
+
+import com.delivery_management_service.config.DispatchExecutorConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.locationtech.jts.geom.Point;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Single-writer dispatch workers, one per geographic zone
+ *
+ * Zones are cells of sharding.zone-size-deg, derived from the restaurant
+ * location. Every dispatch belongs to its restaurant's zone, and all of its
+ * events run on that zone's worker: a queue drained by at most one task at a
+ * time on the dispatch executor. A zone's dispatch state is therefore only
+ * ever touched by one thread at a time, without locks, while different
+ * zones run in parallel on the executor's carrier threads (one per core).
+ * A worker yields after WORKER_BATCH events so a busy zone cannot starve the
+ * others.
+ *
+ * Events only touch memory. Blocking work (queries, SMS waves) goes through
+ * callAsync: it runs on the dispatch executor, off the worker, and its
+ * outcome comes back to the zone as another event, so a slow query or SMS
+ * provider never holds up the other dispatches of the zone.
+ *
+ * Back-pressure: when the dispatch executor refuses a worker or a call, it
+ * is handed off again every sharding.retry-ms from a separate scheduler
+ * thread until the executor takes it. Nothing runs on the submitting
+ * thread, and nothing is dropped.
+ *
+ * Drivers are not partitioned: a search reads drivers wherever they are,
+ * and with zones much smaller than a search radius most searches reach into
+ * neighbouring zones, whose workers may be offering the same drivers at the
+ * same moment. Shared drivers are arbitrated per driver: DriverOfferLeases
+ * takes leases atomically, DispatchStateMachine replaces drivers leased by
+ * another dispatch before its wave goes out, and the conditional updates of
+ * DispatchTransactions.claimOrder decide the winner of an accept.
+ *
+ * The zone comes from the restaurant location the caller already holds, so
+ * picking a worker never queries the database on the caller's thread.
+ * Dispatches of restaurants without a location share UNKNOWN_ZONE.
+ *
+ * Exposed metrics:
+ * - dispatch.zones.workers          (gauge)   zones that had a dispatch so far
+ * - dispatch.zones.handoff.retried  (counter) hand-offs refused by the saturated dispatch executor and retried
+ * - dispatch.zones.unknown          (counter) dispatches placed in UNKNOWN_ZONE for lack of a restaurant location
+ */
+@Component
+@Slf4j
+public class ZoneDispatchWorkers {
+
+    /** Zone of dispatches whose restaurant has no location; loading their context fails anyway */
+    public static final long UNKNOWN_ZONE = Long.MIN_VALUE;
+
+    private static final int WORKER_BATCH = 64;
+
+    private final Executor dispatchExecutor;
+    private final ZoneGrid grid;
+    private final long retryMillis;
+
+    private final Map<Long, Worker> workers = new ConcurrentHashMap<>();
+    // Only re-submits refused hand-offs; never runs dispatch work itself
+    private final ScheduledExecutorService retryScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "dispatch-handoff-retry");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Counter retriedCounter;
+    private final Counter unknownZoneCounter;
+
+    public ZoneDispatchWorkers(@Qualifier(DispatchExecutorConfig.DISPATCH_EXECUTOR) Executor dispatchExecutor,
+                               MeterRegistry meterRegistry,
+                               @Value("${app.delivery.sharding.zone-size-deg:0.02}") double zoneSizeDeg,
+                               @Value("${app.delivery.sharding.retry-ms:50}") long retryMillis) {
+        this.dispatchExecutor = dispatchExecutor;
+        this.grid = new ZoneGrid(zoneSizeDeg);
+        this.retryMillis = retryMillis;
+
+        this.retriedCounter = Counter.builder("dispatch.zones.handoff.retried")
+                .description("Hand-offs refused by the saturated dispatch executor and retried")
+                .register(meterRegistry);
+        this.unknownZoneCounter = Counter.builder("dispatch.zones.unknown")
+                .description("Dispatches placed in the shared unknown zone for lack of a restaurant location")
+                .register(meterRegistry);
+        Gauge.builder("dispatch.zones.workers", workers, Map::size)
+                .description("Zones that had a dispatch so far")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs a task on the zone's worker, after the tasks queued there before it
+     *
+     * @param zone Zone key, see zoneOf
+     * @param task Task; exceptions are logged and do not stop the worker
+     */
+    public void execute(long zone, Runnable task) {
+        workers.computeIfAbsent(zone, Worker::new).submit(task);
+    }
+
+    /**
+     * Runs blocking work off the zone's worker and posts its outcome back to
+     * the zone as an event
+     *
+     * @param zone Zone key, see zoneOf
+     * @param call Blocking work, e.g. a query or an SMS wave; runs on the dispatch executor
+     * @param onComplete Runs on the zone's worker with the result, or with null and the failure
+     */
+    public <T> void callAsync(long zone, Supplier<T> call, BiConsumer<T, RuntimeException> onComplete) {
+        handOff(() -> {
+            T result;
+            try {
+                result = call.get();
+            } catch (RuntimeException e) {
+                execute(zone, () -> onComplete.accept(null, e));
+                return;
+            }
+            execute(zone, () -> onComplete.accept(result, null));
+        });
+    }
+
+    /**
+     * @param restaurantLocation Restaurant coordinates, null if unknown
+     * @return Zone of the restaurant, UNKNOWN_ZONE if it has no location
+     */
+    public long zoneOfRestaurant(Point restaurantLocation) {
+        if (restaurantLocation == null) {
+            unknownZoneCounter.increment();
+            return UNKNOWN_ZONE;
+        }
+        return zoneOf(restaurantLocation.getY(), restaurantLocation.getX());
+    }
+
+    /**
+     * @return Key of the sharding.zone-size-deg grid cell containing the point
+     */
+    public long zoneOf(double latitude, double longitude) {
+        return grid.key(latitude, longitude);
+    }
+
+    @PreDestroy
+    public void stop() {
+        retryScheduler.shutdownNow();
+    }
+
+    /**
+     * Hands a task to the dispatch executor; while it is saturated, tries
+     * again every sharding.retry-ms instead of running the task here
+     */
+    private void handOff(Runnable task) {
+        try {
+            dispatchExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            retriedCounter.increment();
+            log.warn("Dispatch executor saturated, handing off again in {} ms", retryMillis);
+            try {
+                retryScheduler.schedule(() -> handOff(task), retryMillis, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException stopped) {
+                log.warn("Shutting down, dropped a dispatch task");
+            }
+        }
+    }
+
+    /**
+     * Queue of one zone, drained by at most one task at a time
+     */
+    private final class Worker implements Runnable {
+        private final long zone;
+        private final Queue<Runnable> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        private Worker(long zone) {
+            this.zone = zone;
+        }
+
+        private void submit(Runnable task) {
+            queue.add(task);
+            if (scheduled.compareAndSet(false, true)) {
+                handOff(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            for (int i = 0; i < WORKER_BATCH; i++) {
+                Runnable task = queue.poll();
+                if (task == null) {
+                    break;
+                }
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    log.error("Dispatch task of zone {} failed: {}", zone, e.getMessage(), e);
+                }
+            }
+            scheduled.set(false);
+            // Yield between batches: the rest of the queue runs as a new task
+            if (!queue.isEmpty() && scheduled.compareAndSet(false, true)) {
+                handOff(this);
+            }
+        }
+    }
+}
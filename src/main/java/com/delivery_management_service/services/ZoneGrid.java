@@ -0,0 +1,80 @@
+package com.delivery_management_service.services;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Square grid of sizeDeg x sizeDeg cells over latitude / longitude
+ *
+ * A cell's key packs its column (from -180 degrees longitude) into the high
+ * 32 bits and its row (from -90 degrees latitude) into the low ones. Keys are
+ * only comparable between grids of the same size.
+ *
+ * Immutable; safe to share between threads.
+ */
+public final class ZoneGrid {
+
+    private static final double KM_PER_DEGREE_LATITUDE = 111.32;
+
+    private final double sizeDeg;
+
+    public ZoneGrid(double sizeDeg) {
+        if (!(sizeDeg > 0)) {
+            throw new IllegalArgumentException("Zone size must be positive: " + sizeDeg);
+        }
+        this.sizeDeg = sizeDeg;
+    }
+
+    /**
+     * @return Key of the cell containing the point
+     */
+    public long key(double latitude, double longitude) {
+        return key(column(longitude), row(latitude));
+    }
+
+    /**
+     * Cells overlapping the box around a circle; a superset of the cells the
+     * circle touches
+     *
+     * @param latitude Center latitude
+     * @param longitude Center longitude
+     * @param radiusKm Radius
+     * @return Cell keys, the center's cell included
+     */
+    public List<Long> keysWithin(double latitude, double longitude, double radiusKm) {
+        double latitudeDelta = radiusKm / KM_PER_DEGREE_LATITUDE;
+        double cos = Math.cos(Math.toRadians(Math.min(89, Math.abs(latitude) + latitudeDelta)));
+        double longitudeDelta = Math.min(180, radiusKm / (KM_PER_DEGREE_LATITUDE * cos));
+
+        long minColumn = column(longitude - longitudeDelta);
+        long maxColumn = column(longitude + longitudeDelta);
+        long minRow = row(latitude - latitudeDelta);
+        long maxRow = row(latitude + latitudeDelta);
+        List<Long> keys = new ArrayList<>((int) ((maxColumn - minColumn + 1) * (maxRow - minRow + 1)));
+        for (long column = minColumn; column <= maxColumn; column++) {
+            for (long row = minRow; row <= maxRow; row++) {
+                keys.add(key(column, row));
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * @return Cell size in degrees
+     */
+    public double sizeDeg() {
+        return sizeDeg;
+    }
+
+    private long column(double longitude) {
+        return (long) Math.floor((longitude + 180) / sizeDeg);
+    }
+
+    private long row(double latitude) {
+        return (long) Math.floor((latitude + 90) / sizeDeg);
+    }
+
+    private static long key(long column, long row) {
+        return column << 32 | row;
+    }
+}
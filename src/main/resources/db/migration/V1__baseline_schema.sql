@@ -0,0 +1,79 @@
+-- Baseline schema, matching what spring.jpa.hibernate.ddl-auto=update used to create.
+-- Databases created that way are baselined at version 1 (spring.flyway.baseline-on-migrate),
+-- so this script only runs against empty databases.
+
+CREATE EXTENSION IF NOT EXISTS postgis;
+
+CREATE TABLE restaurants (
+    id          BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    name        VARCHAR(255) NOT NULL,
+    address     VARCHAR(255) NOT NULL,
+    phone       VARCHAR(255),
+    email       VARCHAR(255),
+    description VARCHAR(255),
+    is_active   BOOLEAN      NOT NULL,
+    location    geometry(Point, 4326)
+);
+
+CREATE TABLE drivers (
+    id                   BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    name                 VARCHAR(255) NOT NULL,
+    phone                VARCHAR(20)  NOT NULL UNIQUE,
+    email                VARCHAR(255),
+    vehicle_type         VARCHAR(100),
+    vehicle_number       VARCHAR(50),
+    status               VARCHAR(50)  NOT NULL,
+    is_active            BOOLEAN      NOT NULL,
+    current_location     geometry(Point, 4326),
+    last_location_update TIMESTAMP(6)
+);
+
+CREATE TABLE food_items (
+    id                       BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    restaurant_id            BIGINT         NOT NULL REFERENCES restaurants (id),
+    name                     VARCHAR(255)   NOT NULL,
+    description              TEXT,
+    price                    NUMERIC(10, 2) NOT NULL,
+    category                 VARCHAR(50),
+    image_url                VARCHAR(500),
+    is_vegetarian            BOOLEAN        NOT NULL,
+    is_available             BOOLEAN        NOT NULL,
+    preparation_time_minutes INTEGER,
+    created_at               TIMESTAMP(6)   NOT NULL,
+    updated_at               TIMESTAMP(6)
+);
+
+CREATE TABLE orders (
+    id                 BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    restaurant_id      BIGINT         NOT NULL REFERENCES restaurants (id),
+    customer_name      VARCHAR(255)   NOT NULL,
+    customer_phone     VARCHAR(20)    NOT NULL,
+    delivery_address   VARCHAR(500)   NOT NULL,
+    total_amount       NUMERIC(10, 2) NOT NULL,
+    status             VARCHAR(50)    NOT NULL,
+    created_at         TIMESTAMP(6)   NOT NULL,
+    accepted_at        TIMESTAMP(6),
+    delivered_at       TIMESTAMP(6),
+    assigned_driver_id BIGINT REFERENCES drivers (id)
+);
+
+CREATE TABLE order_items (
+    id                   BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    order_id             BIGINT         NOT NULL REFERENCES orders (id),
+    food_item_id         BIGINT         NOT NULL REFERENCES food_items (id),
+    item_name            VARCHAR(255)   NOT NULL,
+    quantity             INTEGER        NOT NULL,
+    unit_price           NUMERIC(10, 2) NOT NULL,
+    total_price          NUMERIC(10, 2) NOT NULL,
+    special_instructions TEXT
+);
+
+CREATE TABLE order_offers (
+    id         BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    order_id   BIGINT       NOT NULL,
+    driver_id  BIGINT       NOT NULL,
+    wave       INTEGER      NOT NULL,
+    status     VARCHAR(50)  NOT NULL,
+    offered_at TIMESTAMP(6) NOT NULL,
+    expires_at TIMESTAMP(6) NOT NULL
+);
@@ -0,0 +1,20 @@
+-- Indexes ddl-auto never created.
+
+-- Spatial: GiST on the geometry columns
+CREATE INDEX IF NOT EXISTS idx_drivers_current_location ON drivers USING GIST (current_location);
+CREATE INDEX IF NOT EXISTS idx_restaurants_location ON restaurants USING GIST (location);
+
+-- Driver candidate search (DriverRepository.NEAREST_CANDIDATES_SQL): KNN and ST_DWithin run on
+-- geography, and only over available, active drivers. Partial, so the index stays small and
+-- busy/offline drivers are never visited.
+CREATE INDEX IF NOT EXISTS idx_drivers_available_location_geog
+    ON drivers USING GIST ((current_location::geography))
+    WHERE status = 'AVAILABLE' AND is_active;
+
+-- OrderRepository finders
+CREATE INDEX IF NOT EXISTS idx_orders_restaurant_id ON orders (restaurant_id);
+CREATE INDEX IF NOT EXISTS idx_orders_status ON orders (status);
+CREATE INDEX IF NOT EXISTS idx_orders_assigned_driver_id ON orders (assigned_driver_id);
+
+-- OrderOfferRepository: offers are resolved / expired per order
+CREATE INDEX IF NOT EXISTS idx_order_offers_order_id ON order_offers (order_id);
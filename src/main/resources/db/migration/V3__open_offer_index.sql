@@ -0,0 +1,6 @@
+-- Open offers per driver: the offer-lease check of the candidate search
+-- (DriverRepository.NEAREST_CANDIDATES_SQL) and the lease reload of DriverOfferLeases.
+-- Partial, so resolved and expired offers never weigh on it.
+CREATE INDEX IF NOT EXISTS idx_order_offers_open_by_driver
+    ON order_offers (driver_id, expires_at)
+    WHERE status = 'OFFERED';
@@ -0,0 +1,8 @@
+-- Order stacking: orders offered to one driver as a bundle point at the bundle's lead order.
+-- The lead's claim (DispatchTransactions.claimOrder) assigns the members in the same transaction.
+ALTER TABLE orders ADD COLUMN IF NOT EXISTS bundle_id BIGINT REFERENCES orders (id);
+
+-- Partial, so unbundled orders never weigh on it
+CREATE INDEX IF NOT EXISTS idx_orders_bundle_id
+    ON orders (bundle_id)
+    WHERE bundle_id IS NOT NULL;
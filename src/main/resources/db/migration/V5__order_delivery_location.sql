@@ -0,0 +1,3 @@
+-- Drop-off coordinates, used to sequence the drops of a stacked bundle (DeliveryRoutePlanner).
+-- Optional: orders placed without coordinates keep working and are visited last.
+ALTER TABLE orders ADD COLUMN IF NOT EXISTS delivery_location geometry(Point, 4326);
@@ -0,0 +1,45 @@
+-- Driver capacity: how many orders a driver can carry at once, by vehicle type, and how many
+-- they carry now. status stays the summary every partial index and query filters on:
+-- AVAILABLE while a slot is free, BUSY once the driver is full.
+CREATE TABLE IF NOT EXISTS vehicle_capacities (
+    vehicle_type VARCHAR(100) PRIMARY KEY,
+    max_orders   INTEGER      NOT NULL CHECK (max_orders > 0)
+);
+
+INSERT INTO vehicle_capacities (vehicle_type, max_orders) VALUES
+    ('BICYCLE', 3),
+    ('BIKE', 3),
+    ('SCOOTER', 2),
+    ('MOTORCYCLE', 2),
+    ('CAR', 4)
+ON CONFLICT (vehicle_type) DO NOTHING;
+
+ALTER TABLE drivers ADD COLUMN IF NOT EXISTS max_orders INTEGER NOT NULL DEFAULT 1;
+ALTER TABLE drivers ADD COLUMN IF NOT EXISTS active_orders INTEGER NOT NULL DEFAULT 0;
+
+-- max_orders follows vehicle_type; unknown vehicle types carry one order
+CREATE OR REPLACE FUNCTION drivers_set_max_orders() RETURNS trigger AS $$
+BEGIN
+    NEW.max_orders := COALESCE(
+            (SELECT v.max_orders FROM vehicle_capacities v WHERE v.vehicle_type = UPPER(NEW.vehicle_type)), 1);
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS drivers_max_orders ON drivers;
+CREATE TRIGGER drivers_max_orders
+    BEFORE INSERT OR UPDATE OF vehicle_type ON drivers
+    FOR EACH ROW EXECUTE FUNCTION drivers_set_max_orders();
+
+-- Backfill from the orders drivers carry today
+UPDATE drivers d
+SET max_orders    = COALESCE((SELECT v.max_orders FROM vehicle_capacities v
+                              WHERE v.vehicle_type = UPPER(d.vehicle_type)), 1),
+    active_orders = (SELECT count(*) FROM orders o
+                     WHERE o.assigned_driver_id = d.id AND o.status IN ('ASSIGNED', 'PICKED_UP'));
+
+UPDATE drivers
+SET status = CASE WHEN active_orders >= max_orders THEN 'BUSY' ELSE 'AVAILABLE' END
+WHERE status IN ('AVAILABLE', 'BUSY');
+
+ALTER TABLE drivers ADD CONSTRAINT drivers_active_orders_non_negative CHECK (active_orders >= 0);
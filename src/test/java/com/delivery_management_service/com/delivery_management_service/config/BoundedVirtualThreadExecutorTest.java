@@ -0,0 +1,102 @@
+package com.delivery_management_service.com.delivery_management_service.config;
+
+import com.delivery_management_service.config.BoundedVirtualThreadExecutor;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BoundedVirtualThreadExecutorTest {
+
+    @Test
+    void runsAtMostMaxConcurrencyTasksAndQueuesTheRest() throws Exception {
+        BoundedVirtualThreadExecutor executor = new BoundedVirtualThreadExecutor(
+                Executors.defaultThreadFactory(), 2, 10);
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(6);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+
+        for (int i = 0; i < 6; i++) {
+            executor.execute(() -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+                done.countDown();
+            });
+        }
+
+        assertEquals(2, executor.getActiveCount());
+        assertEquals(4, executor.getQueuedCount());
+        // getActiveCount counts a task before its body runs: wait until both bodies are in
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(2, maxRunning.get());
+        assertEquals(0, executor.getQueuedCount());
+    }
+
+    @Test
+    void rejectsBeyondQueueCapacity() throws Exception {
+        BoundedVirtualThreadExecutor executor = new BoundedVirtualThreadExecutor(
+                Executors.defaultThreadFactory(), 1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(2);
+        Runnable blocking = () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            done.countDown();
+        };
+
+        executor.execute(blocking);
+        executor.execute(blocking);
+        assertThrows(RejectedExecutionException.class, () -> executor.execute(blocking));
+        assertEquals(1, executor.getRejectedCount());
+        assertEquals(1, executor.getQueuedCount());
+
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS), "queued task runs once the slot frees up");
+    }
+
+    @Test
+    void tasksQueuedWhileTheLastThreadExitsStillRun() throws Exception {
+        // One slot and many producers: tasks keep landing in the queue just as the running thread drains it
+        BoundedVirtualThreadExecutor executor = new BoundedVirtualThreadExecutor(
+                Executors.defaultThreadFactory(), 1, 1_000_000);
+        int producers = 4;
+        int tasksPerProducer = 20_000;
+        CountDownLatch done = new CountDownLatch(producers * tasksPerProducer);
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            threads[p] = new Thread(() -> {
+                for (int i = 0; i < tasksPerProducer; i++) {
+                    executor.execute(done::countDown);
+                }
+            });
+            threads[p].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS), done.getCount() + " tasks stranded in the queue");
+        assertEquals(0, executor.getQueuedCount());
+        assertEquals(0, executor.getRejectedCount());
+    }
+}
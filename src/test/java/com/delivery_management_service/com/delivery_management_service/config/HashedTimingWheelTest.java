@@ -0,0 +1,84 @@
+package com.delivery_management_service.com.delivery_management_service.config;
+
+import com.delivery_management_service.config.HashedTimingWheel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HashedTimingWheelTest {
+
+    // 10 ms ticks, 8 buckets: one revolution is 80 ms
+    private final HashedTimingWheel wheel = new HashedTimingWheel(
+            Executors.defaultThreadFactory(), Runnable::run, 10, TimeUnit.MILLISECONDS, 8);
+
+    @AfterEach
+    void tearDown() {
+        wheel.stop();
+    }
+
+    @Test
+    void firesAfterTheDelayNotBefore() throws Exception {
+        long scheduledAt = System.nanoTime();
+        AtomicLong firedAfterMillis = new AtomicLong();
+        CountDownLatch fired = new CountDownLatch(1);
+
+        HashedTimingWheel.Timeout timeout = wheel.schedule(() -> {
+            firedAfterMillis.set(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - scheduledAt));
+            fired.countDown();
+        }, 50, TimeUnit.MILLISECONDS);
+
+        assertEquals(1, wheel.pendingTimeouts());
+        assertTrue(fired.await(2, TimeUnit.SECONDS));
+        assertTrue(firedAfterMillis.get() >= 50, "fired after " + firedAfterMillis.get() + " ms");
+        assertTrue(timeout.isExpired());
+        assertEquals(0, wheel.pendingTimeouts());
+    }
+
+    @Test
+    void delaysLongerThanOneRevolutionWaitTheirRounds() throws Exception {
+        long scheduledAt = System.nanoTime();
+        AtomicLong firedAfterMillis = new AtomicLong();
+        CountDownLatch fired = new CountDownLatch(1);
+
+        wheel.schedule(() -> {
+            firedAfterMillis.set(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - scheduledAt));
+            fired.countDown();
+        }, 250, TimeUnit.MILLISECONDS);
+
+        assertTrue(fired.await(2, TimeUnit.SECONDS));
+        assertTrue(firedAfterMillis.get() >= 250, "fired after " + firedAfterMillis.get() + " ms");
+    }
+
+    @Test
+    void cancelledTimeoutsNeverFire() throws Exception {
+        CountDownLatch fired = new CountDownLatch(1);
+        CountDownLatch marker = new CountDownLatch(1);
+
+        HashedTimingWheel.Timeout timeout = wheel.schedule(fired::countDown, 30, TimeUnit.MILLISECONDS);
+        wheel.schedule(marker::countDown, 60, TimeUnit.MILLISECONDS);
+
+        assertTrue(timeout.cancel());
+        assertFalse(timeout.cancel(), "second cancel is a no-op");
+        assertEquals(1, wheel.pendingTimeouts());
+
+        assertTrue(marker.await(2, TimeUnit.SECONDS));
+        assertFalse(fired.await(50, TimeUnit.MILLISECONDS));
+        assertTrue(timeout.isCancelled());
+        assertEquals(0, wheel.pendingTimeouts());
+    }
+
+    @Test
+    void rejectsWheelSizesThatAreNotPowersOfTwo() {
+        assertThrows(IllegalArgumentException.class, () -> new HashedTimingWheel(
+                Executors.defaultThreadFactory(), Runnable::run, 10, TimeUnit.MILLISECONDS, 6));
+    }
+}
@@ -0,0 +1,192 @@
+package com.delivery_management_service.com.delivery_management_service.repository;
+
+import com.delivery_management_service.repository.DriverRepository;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs DriverRepository.NEAREST_CANDIDATES_SQL against a real PostGIS, migrated
+ * with the application's Flyway scripts, and checks with EXPLAIN that it is
+ * answered from the partial GiST index, not a sequential scan.
+ *
+ * Skipped when Docker is not available.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class DriverCandidateQueryExplainTest {
+
+    // Partial GiST index from V2__spatial_and_lookup_indexes.sql
+    private static final String GIST_INDEX = "idx_drivers_available_location_geog";
+
+    // Restaurant in Manhattan
+    private static final double LNG = -73.985;
+    private static final double LAT = 40.748;
+
+    // Restaurant in Boston with 30 drivers on one spot: all at the same distance
+    private static final double TIED_LNG = -71.06;
+    private static final double TIED_LAT = 42.36;
+    private static final int TIED_DRIVERS = 30;
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGIS = new PostgreSQLContainer<>(
+            DockerImageName.parse("postgis/postgis:16-3.4").asCompatibleSubstituteFor("postgres"));
+
+    private static NamedParameterJdbcTemplate jdbc;
+
+    @BeforeAll
+    static void createDrivers() {
+        jdbc = new NamedParameterJdbcTemplate(new DriverManagerDataSource(
+                POSTGIS.getJdbcUrl(), POSTGIS.getUsername(), POSTGIS.getPassword()));
+        JdbcTemplate template = jdbc.getJdbcTemplate();
+
+        // Schema and indexes exactly as the application's migrations create them
+        Flyway.configure()
+                .dataSource(POSTGIS.getJdbcUrl(), POSTGIS.getUsername(), POSTGIS.getPassword())
+                .load()
+                .migrate();
+
+        // 50k drivers spread deterministically over ~50 x 55 km around New York, every 5th one BUSY
+        template.update("INSERT INTO drivers (name, phone, status, is_active, current_location) " +
+                "SELECT 'Driver ' || g, '+1' || lpad(g::text, 10, '0'), " +
+                "CASE WHEN g % 5 = 0 THEN 'BUSY' ELSE 'AVAILABLE' END, true, " +
+                "ST_SetSRID(ST_MakePoint(-74.25 + ((g * 7919) % 10007) / 10007.0 * 0.6, " +
+                "                        40.50 + ((g * 104729) % 10009) / 10009.0 * 0.5), 4326) " +
+                "FROM generate_series(1, 50000) g");
+        template.update("INSERT INTO drivers (name, phone, status, is_active, current_location) " +
+                "SELECT 'Tied Driver ' || g, '+2' || lpad(g::text, 10, '0'), 'AVAILABLE', true, " +
+                "ST_SetSRID(ST_MakePoint(?, ?), 4326) FROM generate_series(1, ?) g",
+                TIED_LNG + 0.001, TIED_LAT, TIED_DRIVERS);
+        template.execute("ANALYZE drivers");
+    }
+
+    @Test
+    void nearestCandidatesQueryUsesGistIndex() {
+        List<String> plan = jdbc.queryForList(
+                "EXPLAIN " + DriverRepository.NEAREST_CANDIDATES_SQL, params(5_000, 20), String.class);
+        String planText = String.join("\n", plan);
+
+        assertTrue(planText.contains("Index Scan using " + GIST_INDEX), planText);
+        assertTrue(planText.contains("Order By"), "KNN ordering should be answered by the index:\n" + planText);
+        assertFalse(planText.contains("Seq Scan"), planText);
+        // The id tie-break may add an incremental sort within equal distances, never a full sort
+        assertFalse(planText.replace("Incremental Sort", "").contains("Sort"),
+                "no separate sort of all rows:\n" + planText);
+    }
+
+    @Test
+    void nearestCandidatesAreAvailableWithinRadiusAndNearestFirst() {
+        List<Map<String, Object>> rows = jdbc.queryForList(DriverRepository.NEAREST_CANDIDATES_SQL, params(2_000, 20));
+
+        assertEquals(20, rows.size());
+        double previousKm = 0;
+        for (Map<String, Object> row : rows) {
+            long id = ((Number) row.get("id")).longValue();
+            double distanceKm = ((Number) row.get("distanceKm")).doubleValue();
+
+            assertTrue(id % 5 != 0, "BUSY driver " + id + " returned");
+            assertTrue(distanceKm <= 2.0, "driver " + id + " is " + distanceKm + " km away");
+            assertTrue(distanceKm >= previousKm, "not ordered by distance at driver " + id);
+            previousKm = distanceKm;
+        }
+    }
+
+    @Test
+    void nextWaveQueryUsesGistIndex() {
+        List<String> plan = jdbc.queryForList("EXPLAIN " + DriverRepository.NEAREST_CANDIDATES_SQL,
+                params(5_000, 1_234.5, 42, List.of(1L, 2L, 3L), 20), String.class);
+        String planText = String.join("\n", plan);
+
+        assertTrue(planText.contains("Index Scan using " + GIST_INDEX), planText);
+        assertFalse(planText.contains("Seq Scan"), planText);
+    }
+
+    @Test
+    void nextWaveContinuesAfterTheCursorWithoutRepeats() {
+        List<Map<String, Object>> first = jdbc.queryForList(DriverRepository.NEAREST_CANDIDATES_SQL, params(5_000, 20));
+        Map<String, Object> last = first.get(first.size() - 1);
+        List<Long> offered = first.stream().map(row -> ((Number) row.get("id")).longValue()).toList();
+
+        List<Map<String, Object>> second = jdbc.queryForList(DriverRepository.NEAREST_CANDIDATES_SQL, params(5_000,
+                ((Number) last.get("distanceMeters")).doubleValue(), ((Number) last.get("id")).longValue(), offered, 20));
+
+        assertEquals(20, second.size());
+        double lastKm = ((Number) last.get("distanceKm")).doubleValue();
+        for (Map<String, Object> row : second) {
+            long id = ((Number) row.get("id")).longValue();
+            assertFalse(offered.contains(id), "driver " + id + " offered twice");
+            assertTrue(((Number) row.get("distanceKm")).doubleValue() >= lastKm, "driver " + id + " before the cursor");
+        }
+    }
+
+    @Test
+    void pagesThroughTiedDistancesWithoutGapsOrRepeats() {
+        Set<Long> seen = new HashSet<>();
+        double afterMeters = -1;
+        long afterId = 0;
+        for (int page = 0; page < 5; page++) {
+            List<Map<String, Object>> rows = jdbc.queryForList(DriverRepository.NEAREST_CANDIDATES_SQL,
+                    params(TIED_LNG, TIED_LAT, 1_000, afterMeters, afterId, List.of(-1L), 7));
+            for (Map<String, Object> row : rows) {
+                assertTrue(seen.add(((Number) row.get("id")).longValue()), "driver repeated: " + row);
+            }
+            if (rows.isEmpty()) {
+                break;
+            }
+            Map<String, Object> last = rows.get(rows.size() - 1);
+            // Cursor carries the distance exactly as returned, no km round trip
+            afterMeters = ((Number) last.get("distanceMeters")).doubleValue();
+            afterId = ((Number) last.get("id")).longValue();
+        }
+
+        assertEquals(TIED_DRIVERS, seen.size());
+    }
+
+    @Test
+    void radiusBoundsTheResult() {
+        List<Map<String, Object>> rows = jdbc.queryForList(DriverRepository.NEAREST_CANDIDATES_SQL, params(50, 20));
+
+        assertTrue(rows.size() < 20, "only drivers within 50 m should be returned, got " + rows.size());
+    }
+
+    private static MapSqlParameterSource params(double radiusMeters, int limit) {
+        return params(radiusMeters, -1, 0, List.of(-1L), limit);
+    }
+
+    private static MapSqlParameterSource params(double radiusMeters, double afterMeters, long afterId,
+                                                List<Long> excludedIds, int limit) {
+        return params(LNG, LAT, radiusMeters, afterMeters, afterId, excludedIds, limit);
+    }
+
+    private static MapSqlParameterSource params(double lng, double lat, double radiusMeters, double afterMeters,
+                                                long afterId, List<Long> excludedIds, int limit) {
+        return new MapSqlParameterSource()
+                .addValue("lng", lng)
+                .addValue("lat", lat)
+                .addValue("radiusMeters", radiusMeters)
+                .addValue("afterMeters", afterMeters)
+                .addValue("afterId", afterId)
+                .addValue("excludedIds", excludedIds)
+                .addValue("maxOffersPerDriver", 2)
+                .addValue("slots", 1)
+                .addValue("anyVehicleType", true)
+                .addValue("vehicleTypes", List.of(""))
+                .addValue("limit", limit);
+    }
+}
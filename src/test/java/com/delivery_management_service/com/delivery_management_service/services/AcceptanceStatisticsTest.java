@@ -0,0 +1,100 @@
+package com.delivery_management_service.com.delivery_management_service.services;
+
+import com.delivery_management_service.services.AcceptanceStatistics;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AcceptanceStatisticsTest {
+
+    private static final double LAT = 40.7306;
+    private static final double LNG = -73.935;
+
+    // Target 0.9, timeout at the 90th percentile, waves of 3..20, timeouts of 5..120 s, 10 samples
+    private AcceptanceStatistics statistics(double exploreFraction) {
+        return new AcceptanceStatistics(true, 0.05, 0.9, 0.9, 3, 20, 5, 120, 10, exploreFraction);
+    }
+
+    @Test
+    void fixedPlanUntilEnoughSamples() {
+        AcceptanceStatistics statistics = statistics(0);
+        accepted(statistics, 5, 5);
+
+        assertEquals(new AcceptanceStatistics.WavePlan(20, Duration.ofSeconds(120)), statistics.plan(LAT, LNG));
+    }
+
+    @Test
+    void sizesWavesFromThePerOfferAcceptanceRate() {
+        AcceptanceStatistics statistics = statistics(0);
+        // Every offered driver decides on its own: 20 of 100 accept, all within 5 s
+        accepted(statistics, 20, 5);
+        timedOut(statistics, 80, 30);
+
+        AcceptanceStatistics.WavePlan plan = statistics.plan(LAT, LNG);
+
+        assertEquals(Duration.ofSeconds(6), plan.timeout());
+        // p = 0.2: ceil(log(0.1) / log(0.8)) = 11 drivers
+        assertEquals(11, plan.size());
+    }
+
+    @Test
+    void likelyAcceptanceNeedsFewerDrivers() {
+        AcceptanceStatistics statistics = statistics(0);
+        accepted(statistics, 60, 5);
+        timedOut(statistics, 40, 30);
+
+        // p = 0.6: ceil(log(0.1) / log(0.4)) = 3
+        assertEquals(3, statistics.plan(LAT, LNG).size());
+    }
+
+    @Test
+    void timedOutOffersAreCensoredNotIgnored() {
+        AcceptanceStatistics statistics = statistics(0);
+        // Most waves timed out at 30 s: nothing is known about those drivers after 30 s
+        accepted(statistics, 90, 10);
+        timedOut(statistics, 810, 30);
+        // Waves that waited the full 120 s show late acceptances too
+        accepted(statistics, 10, 10);
+        accepted(statistics, 10, 60);
+        timedOut(statistics, 80, 120);
+
+        AcceptanceStatistics.WavePlan plan = statistics.plan(LAT, LNG);
+
+        // Acceptances alone would put the 90th percentile at 11 s. Censored:
+        // F(11) = 0.1 and F(61) = 1 - 0.9 * 8 / 9 = 0.2, so 90% of F(120) takes 61 s
+        assertEquals(Duration.ofSeconds(61), plan.timeout());
+        // p = F(61) = 0.2
+        assertEquals(11, plan.size());
+    }
+
+    @Test
+    void explorationWaitsTheFullTimeout() {
+        AcceptanceStatistics statistics = statistics(1);
+        accepted(statistics, 20, 5);
+        timedOut(statistics, 80, 30);
+
+        assertEquals(Duration.ofSeconds(120), statistics.plan(LAT, LNG).timeout());
+    }
+
+    @Test
+    void nobodyAcceptingKeepsTheLargestWaves() {
+        AcceptanceStatistics statistics = statistics(0);
+        timedOut(statistics, 100, 30);
+
+        assertEquals(new AcceptanceStatistics.WavePlan(20, Duration.ofSeconds(120)), statistics.plan(LAT, LNG));
+    }
+
+    private static void accepted(AcceptanceStatistics statistics, int offers, long latencySeconds) {
+        for (int i = 0; i < offers; i++) {
+            statistics.recordAccepted(LAT, LNG, Duration.ofSeconds(latencySeconds));
+        }
+    }
+
+    private static void timedOut(AcceptanceStatistics statistics, int offers, long timeoutSeconds) {
+        for (int i = 0; i < offers; i++) {
+            statistics.recordTimedOut(LAT, LNG, Duration.ofSeconds(timeoutSeconds));
+        }
+    }
+}
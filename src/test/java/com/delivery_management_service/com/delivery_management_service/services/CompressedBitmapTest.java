@@ -0,0 +1,85 @@
+package com.delivery_management_service.com.delivery_management_service.services;
+
+import com.delivery_management_service.services.CompressedBitmap;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompressedBitmapTest {
+
+    @Test
+    void matchesAReferenceSetAcrossSparseAndDenseContainers() {
+        Random random = new Random(42);
+        Set<Long> expectedA = new TreeSet<>();
+        Set<Long> expectedB = new TreeSet<>();
+        CompressedBitmap a = new CompressedBitmap();
+        CompressedBitmap b = new CompressedBitmap();
+        // Dense first 65k IDs (bitmap containers), sparse tail up to 2^32 - 1 (array containers)
+        for (int i = 0; i < 30_000; i++) {
+            long dense = random.nextInt(65_536);
+            long sparse = (long) (random.nextDouble() * 0xFFFF_FFFFL);
+            long other = random.nextBoolean() ? dense : sparse;
+            a.add(dense);
+            expectedA.add(dense);
+            b.add(other);
+            expectedB.add(other);
+        }
+
+        Set<Long> and = new TreeSet<>(expectedA);
+        and.retainAll(expectedB);
+        Set<Long> or = new TreeSet<>(expectedA);
+        or.addAll(expectedB);
+
+        assertEquals(expectedA, toSet(a));
+        assertEquals(and, toSet(a.and(b)));
+        assertEquals(or, toSet(a.or(b)));
+        assertEquals(or.size(), a.or(b).cardinality());
+        assertEquals(expectedA, toSet(a), "and/or leave their inputs alone");
+    }
+
+    @Test
+    void removingShrinksBackAndDropsEmptyContainers() {
+        CompressedBitmap bitmap = new CompressedBitmap();
+        for (long id = 0; id < 10_000; id++) {
+            bitmap.add(id);
+        }
+        bitmap.add(1L << 20);
+        for (long id = 0; id < 9_990; id++) {
+            bitmap.remove(id);
+        }
+        bitmap.remove(1L << 20);
+
+        assertEquals(10, bitmap.cardinality());
+        assertTrue(bitmap.contains(9_995));
+        assertFalse(bitmap.contains(5));
+        assertFalse(bitmap.contains(1L << 20));
+        for (long id = 9_990; id < 10_000; id++) {
+            bitmap.remove(id);
+        }
+        assertTrue(bitmap.isEmpty());
+    }
+
+    @Test
+    void rejectsValuesOutsideUnsigned32Bits() {
+        CompressedBitmap bitmap = new CompressedBitmap();
+        bitmap.add(0xFFFF_FFFFL);
+
+        assertTrue(bitmap.contains(0xFFFF_FFFFL));
+        assertFalse(bitmap.contains(-1));
+        assertFalse(bitmap.contains(1L << 32));
+        assertThrows(IllegalArgumentException.class, () -> bitmap.add(1L << 32));
+    }
+
+    private static Set<Long> toSet(CompressedBitmap bitmap) {
+        Set<Long> values = new TreeSet<>();
+        bitmap.forEach(values::add);
+        return values;
+    }
+}
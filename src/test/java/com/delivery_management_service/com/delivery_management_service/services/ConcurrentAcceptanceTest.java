@@ -0,0 +1,173 @@
+package com.delivery_management_service.com.delivery_management_service.services;
+
+import com.delivery_management_service.services.DeliveryManagementService;
+import com.delivery_management_service.services.DriverAttributeIndex;
+import com.delivery_management_service.services.DriverSpatialIndex;
+import com.delivery_management_service.services.DriverWaveNotifier;
+import com.delivery_management_service.services.OpenOfferRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Races many drivers accepting the same order against PostGIS, migrated with
+ * the application's Flyway scripts.
+ *
+ * All acceptances are released together behind a start gate. Exactly one
+ * driver may win: the order ends up ASSIGNED once, only the winner holds a
+ * slot in active_orders and every other driver is rejected. Covered both with
+ * the offers open in this node's OpenOfferRegistry and for an order this node
+ * does not know about, where every acceptance reaches the database.
+ *
+ * Skipped when Docker is not available.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+@SpringBootTest(properties = {
+        "app.twilio.account-sid=test",
+        "app.twilio.auth-token=test",
+        "app.twilio.from-phone=+15550000000",
+        "app.twilio.enabled=false",
+        "app.delivery.acceptance-listener.enabled=false"
+})
+class ConcurrentAcceptanceTest {
+
+    private static final int DRIVERS = 16;
+    private static final double LNG = -73.935;
+    private static final double LAT = 40.7306;
+    private static final AtomicInteger PHONES = new AtomicInteger(); // drivers.phone is unique across tests
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGIS = new PostgreSQLContainer<>(
+            DockerImageName.parse("postgis/postgis:16-3.4").asCompatibleSubstituteFor("postgres"));
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", POSTGIS::getJdbcUrl);
+        registry.add("spring.datasource.username", POSTGIS::getUsername);
+        registry.add("spring.datasource.password", POSTGIS::getPassword);
+    }
+
+    @MockitoBean
+    private DriverWaveNotifier driverWaveNotifier;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DeliveryManagementService deliveryManagementService;
+
+    @Autowired
+    private OpenOfferRegistry openOfferRegistry;
+
+    @Autowired
+    private DriverSpatialIndex driverSpatialIndex;
+
+    @Autowired
+    private DriverAttributeIndex driverAttributeIndex;
+
+    private long orderId;
+    private final List<Long> driverIds = new ArrayList<>();
+
+    @BeforeEach
+    void seed() {
+        long restaurantId = jdbcTemplate.queryForObject("INSERT INTO restaurants (name, address, is_active, location) " +
+                "VALUES ('Pizza Palace', '1 Main St', true, ST_SetSRID(ST_MakePoint(?, ?), 4326)) RETURNING id",
+                Long.class, LNG, LAT);
+        for (int i = 0; i < DRIVERS; i++) {
+            driverIds.add(jdbcTemplate.queryForObject("INSERT INTO drivers (name, phone, vehicle_type, status, " +
+                    "is_active, current_location) VALUES ('Test Driver', ?, 'CAR', 'AVAILABLE', true, " +
+                    "ST_SetSRID(ST_MakePoint(?, ?), 4326)) RETURNING id",
+                    Long.class, String.format("+1555%07d", PHONES.incrementAndGet()), LNG + 0.001 * i, LAT));
+        }
+        orderId = jdbcTemplate.queryForObject("INSERT INTO orders (restaurant_id, customer_name, " +
+                "customer_phone, delivery_address, total_amount, status, created_at, accepted_at) " +
+                "VALUES (?, 'Customer', '+15551234567', '123 Main St', 45.98, 'ACCEPTED', now(), now()) " +
+                "RETURNING id", Long.class, restaurantId);
+        driverSpatialIndex.rebuild();
+        driverAttributeIndex.rebuild();
+    }
+
+    @Test
+    void oneDriverWinsAnOrderOfferedToAll() throws Exception {
+        openOfferRegistry.open(orderId, driverIds, System.currentTimeMillis() + 60_000);
+
+        assertExactlyOneWinner(raceAcceptances());
+    }
+
+    @Test
+    void oneDriverWinsAnOrderUnknownToThisNode() throws Exception {
+        // No offers registered: every acceptance falls through to the conditional assignment
+        assertExactlyOneWinner(raceAcceptances());
+    }
+
+    private int raceAcceptances() throws Exception {
+        CountDownLatch ready = new CountDownLatch(DRIVERS);
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(DRIVERS);
+        try {
+            List<Future<Boolean>> accepted = new ArrayList<>();
+            for (Long driverId : driverIds) {
+                accepted.add(executor.submit(() -> {
+                    ready.countDown();
+                    start.await();
+                    try {
+                        deliveryManagementService.driverAcceptOrder(orderId, driverId);
+                        return true;
+                    } catch (RuntimeException e) {
+                        return false;
+                    }
+                }));
+            }
+            assertTrue(ready.await(10, TimeUnit.SECONDS));
+            start.countDown();
+
+            int rejected = 0;
+            for (Future<Boolean> result : accepted) {
+                if (!result.get(30, TimeUnit.SECONDS)) {
+                    rejected++;
+                }
+            }
+            return rejected;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void assertExactlyOneWinner(int rejected) {
+        assertEquals(DRIVERS - 1, rejected, "rejected acceptances");
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM orders WHERE id = ? AND status = 'ASSIGNED'", Integer.class, orderId));
+
+        Long winner = jdbcTemplate.queryForObject(
+                "SELECT assigned_driver_id FROM orders WHERE id = ?", Long.class, orderId);
+        assertTrue(driverIds.contains(winner));
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT active_orders FROM drivers WHERE id = ?", Integer.class, winner));
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT sum(active_orders) FROM drivers WHERE id IN (" +
+                        driverIds.stream().map(String::valueOf).collect(Collectors.joining(", ")) + ")",
+                Integer.class));
+    }
+}
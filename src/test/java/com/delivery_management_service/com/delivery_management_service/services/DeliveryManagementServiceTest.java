@@ -0,0 +1,90 @@
+package com.delivery_management_service.com.delivery_management_service.services;
+
+import com.delivery_management_service.models.Driver;
+import com.delivery_management_service.models.Order;
+import com.delivery_management_service.repository.DriverCapacityWriter;
+import com.delivery_management_service.repository.DriverRepository;
+import com.delivery_management_service.repository.OrderRepository;
+import com.delivery_management_service.services.DeliveryManagementService;
+import com.delivery_management_service.services.DeliveryRoutePlanner;
+import com.delivery_management_service.services.DispatchStateMachine;
+import com.delivery_management_service.services.DispatchTransactions;
+import com.delivery_management_service.services.DriverAttributeIndex;
+import com.delivery_management_service.services.DriverScoreBoard;
+import com.delivery_management_service.services.DriverSpatialIndex;
+import com.delivery_management_service.services.OfferOutcomes;
+import com.delivery_management_service.services.OpenOfferRegistry;
+import com.delivery_management_service.services.OrderAcceptanceRegistry;
+import com.delivery_management_service.services.OrderStacker;
+import com.delivery_management_service.services.TravelTimeEstimator;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Delivering an order releases the driver's slot exactly once, however often
+ * the delivery is repeated.
+ */
+class DeliveryManagementServiceTest {
+
+    private final DriverRepository driverRepository = mock(DriverRepository.class);
+    private final OrderRepository orderRepository = mock(OrderRepository.class);
+    private final DriverCapacityWriter driverCapacityWriter = mock(DriverCapacityWriter.class);
+    private final DeliveryManagementService service = new DeliveryManagementService(driverRepository,
+            orderRepository, mock(DriverSpatialIndex.class), mock(OrderAcceptanceRegistry.class),
+            mock(OpenOfferRegistry.class), mock(OfferOutcomes.class), mock(DispatchTransactions.class),
+            mock(DispatchStateMachine.class), mock(OrderStacker.class), mock(DriverScoreBoard.class),
+            mock(TravelTimeEstimator.class), mock(DeliveryRoutePlanner.class), driverCapacityWriter,
+            mock(DriverAttributeIndex.class));
+
+    @Test
+    void repeatedDeliveryReleasesTheSlotOnce() {
+        when(orderRepository.markDeliveredIfPickedUp(eq(100L), eq(7L), any())).thenReturn(1, 0);
+        when(orderRepository.findById(100L)).thenReturn(Optional.of(order(7L, "DELIVERED")));
+        when(driverCapacityWriter.releaseSlot(7L))
+                .thenReturn(Optional.of(new DriverCapacityWriter.DriverLoad(7L, 0, 3, "AVAILABLE")));
+        when(driverRepository.findById(7L)).thenReturn(Optional.of(new Driver()));
+
+        service.markOrderDelivered(100L, 7L);
+        service.markOrderDelivered(100L, 7L);
+
+        verify(orderRepository, times(2)).markDeliveredIfPickedUp(eq(100L), eq(7L), any());
+        verify(driverCapacityWriter, times(1)).releaseSlot(7L);
+    }
+
+    @Test
+    void orderNotPickedUpIsNotDelivered() {
+        when(orderRepository.markDeliveredIfPickedUp(eq(100L), eq(7L), any())).thenReturn(0);
+        when(orderRepository.findById(100L)).thenReturn(Optional.of(order(7L, "ASSIGNED")));
+
+        assertThrows(RuntimeException.class, () -> service.markOrderDelivered(100L, 7L));
+        verify(driverCapacityWriter, never()).releaseSlot(anyLong());
+    }
+
+    @Test
+    void otherDriversOrderIsRejected() {
+        when(orderRepository.markDeliveredIfPickedUp(eq(100L), eq(8L), any())).thenReturn(0);
+        when(orderRepository.findById(100L)).thenReturn(Optional.of(order(7L, "PICKED_UP")));
+
+        assertThrows(RuntimeException.class, () -> service.markOrderDelivered(100L, 8L));
+        verify(driverCapacityWriter, never()).releaseSlot(anyLong());
+    }
+
+    private static Order order(Long driverId, String status) {
+        Order order = new Order();
+        order.setId(100L);
+        order.setAssignedDriverId(driverId);
+        order.setStatus(status);
+        return order;
+    }
+}
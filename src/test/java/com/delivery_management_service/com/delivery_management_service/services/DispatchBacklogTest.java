@@ -0,0 +1,133 @@
+package com.delivery_management_service.com.delivery_management_service.services;
+
+import com.delivery_management_service.DTO.DispatchContext;
+import com.delivery_management_service.DTO.DriverAttributes;
+import com.delivery_management_service.repository.DriverRepository;
+import com.delivery_management_service.services.DispatchBacklog;
+import com.delivery_management_service.services.DriverAttributeIndex;
+import com.delivery_management_service.services.DriverRequirements;
+import com.delivery_management_service.services.TravelTimeEstimator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.PrecisionModel;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class DispatchBacklogTest {
+
+    private static final GeometryFactory GEOMETRY_FACTORY = new GeometryFactory(new PrecisionModel(), 4326);
+    private static final double LAT = 40.7306;
+    private static final double LNG = -73.935;
+    private static final long DRIVER = 7;
+
+    private final DriverRepository driverRepository = mock(DriverRepository.class);
+    private final DriverAttributeIndex driverAttributeIndex =
+            new DriverAttributeIndex(driverRepository, new SimpleMeterRegistry());
+    private final DispatchBacklog backlog = new DispatchBacklog(mock(TravelTimeEstimator.class),
+            new DriverRequirements(new BigDecimal("150"), List.of("CAR")), driverAttributeIndex,
+            new SimpleMeterRegistry(), 45, 1.0, 0.1, 1.0, 600_000, 0.05);
+
+    @Test
+    void olderAndMoreValuableOrdersComeFirst() {
+        // Same promise for all: a minute since acceptance counts for age and for lateness, 100 in value for 10
+        backlog.add(order(1, LAT, LNG, "20.00", 2), 0);   // 2 + 2 + 2 = 6
+        backlog.add(order(2, LAT, LNG, "20.00", 8), 0);   // 8 + 8 + 2 = 18
+        backlog.add(order(3, LAT, LNG, "120.00", 0), 0);  // 0 + 0 + 12 = 12
+
+        assertEquals(Optional.of(2L), orderNear(LAT, LNG, 10, DRIVER, 1));
+        assertEquals(Optional.of(3L), orderNear(LAT, LNG, 10, DRIVER, 1));
+        assertEquals(Optional.of(1L), orderNear(LAT, LNG, 10, DRIVER, 1));
+        assertTrue(orderNear(LAT, LNG, 10, DRIVER, 1).isEmpty());
+    }
+
+    @Test
+    void starvedOrdersGoFirstRegardlessOfValue() {
+        backlog.add(order(1, LAT, LNG, "5.00", 11), 0);
+        backlog.add(order(2, LAT, LNG, "5000.00", 1), 0);
+
+        assertEquals(Optional.of(1L), orderNear(LAT, LNG, 10, DRIVER, 1));
+        assertEquals(Optional.of(2L), orderNear(LAT, LNG, 10, DRIVER, 1));
+    }
+
+    @Test
+    void onlyOrdersWithinReachOfTheDriverArePulled() {
+        backlog.add(order(1, LAT + 0.5, LNG, "50.00", 5), 0); // ~55 km north
+        backlog.add(order(2, LAT, LNG, "10.00", 1), 0);
+
+        assertEquals(Optional.of(2L), orderNear(LAT, LNG, 10, DRIVER, 1));
+        assertTrue(orderNear(LAT, LNG, 10, DRIVER, 1).isEmpty());
+        assertTrue(backlog.remove(1));
+        assertEquals(0, backlog.size());
+    }
+
+    @Test
+    void driverPullsFromNeighbouringCellsOnly() {
+        // Cells of 0.05 degrees: the driver's cell, the next one east (~4 km away), and ~110 km north
+        backlog.add(order(1, LAT, LNG, "10.00", 1), 0);
+        backlog.add(order(2, LAT, LNG + 0.05, "90.00", 1), 0);
+        backlog.add(order(3, LAT + 1, LNG, "500.00", 1), 0);
+
+        assertEquals(Optional.of(2L), orderNear(LAT, LNG, 10, DRIVER, 1));
+        assertEquals(Optional.of(1L), orderNear(LAT, LNG, 10, DRIVER, 1));
+        assertTrue(orderNear(LAT, LNG, 10, DRIVER, 1).isEmpty());
+        assertEquals(Optional.of(3L), orderNear(LAT + 1, LNG, 10, DRIVER, 1));
+        assertEquals(0, backlog.size());
+    }
+
+    @Test
+    void ordersTheDriverCannotTakeWaitForTheNextOne() {
+        List<DriverAttributes> drivers = List.of(attributes(DRIVER, "BIKE"), attributes(8, "CAR"));
+        when(driverRepository.findAllAttributes()).thenReturn(drivers);
+        driverAttributeIndex.rebuild();
+        backlog.add(order(1, LAT, LNG, "400.00", 5), 0);  // Large order: cars only
+        DispatchContext bundle = order(2, LAT, LNG, "40.00", 3);
+        bundle.setBundledOrderIds(List.of(3L));
+        backlog.add(bundle, 0);                           // Two slots
+        backlog.add(order(4, LAT, LNG, "20.00", 1), 0);
+
+        assertEquals(Optional.of(4L), orderNear(LAT, LNG, 10, DRIVER, 1));
+        assertTrue(orderNear(LAT, LNG, 10, DRIVER, 1).isEmpty());
+        assertEquals(Optional.of(new DispatchBacklog.Polled(2, 2)), backlog.pollNear(LAT, LNG, 10, DRIVER, 2));
+        assertEquals(Optional.of(1L), orderNear(LAT, LNG, 10, 8, 1));
+        // Drivers not indexed yet are not held back; the database confirms them
+        backlog.add(order(5, LAT, LNG, "400.00", 1), 0);
+        assertEquals(Optional.of(5L), orderNear(LAT, LNG, 10, 99, 1));
+    }
+
+    private Optional<Long> orderNear(double latitude, double longitude, double maxDistanceKm,
+                                     long driverId, int freeSlots) {
+        return backlog.pollNear(latitude, longitude, maxDistanceKm, driverId, freeSlots)
+                .map(DispatchBacklog.Polled::orderId);
+    }
+
+    private static DriverAttributes attributes(long driverId, String vehicleType) {
+        DriverAttributes attributes = mock(DriverAttributes.class);
+        when(attributes.getId()).thenReturn(driverId);
+        when(attributes.getVehicleType()).thenReturn(vehicleType);
+        when(attributes.getActive()).thenReturn(true);
+        when(attributes.getStatus()).thenReturn("AVAILABLE");
+        when(attributes.getFreeSlots()).thenReturn(3);
+        return attributes;
+    }
+
+    private static DispatchContext order(long orderId, double latitude, double longitude,
+                                         String totalAmount, int acceptedMinutesAgo) {
+        return DispatchContext.builder()
+                .orderId(orderId)
+                .restaurantId(1L)
+                .restaurantLocation(GEOMETRY_FACTORY.createPoint(new Coordinate(longitude, latitude)))
+                .totalAmount(new BigDecimal(totalAmount))
+                .acceptedAt(LocalDateTime.now().minusMinutes(acceptedMinutesAgo))
+                .build();
+    }
+}
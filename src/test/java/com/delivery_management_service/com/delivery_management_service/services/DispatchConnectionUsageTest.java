@@ -0,0 +1,167 @@
+package com.delivery_management_service.com.delivery_management_service.services;
+
+import com.delivery_management_service.DTO.DriverCandidate;
+import com.delivery_management_service.DTO.DriverNotificationResult;
+import com.delivery_management_service.services.DeliveryManagementService;
+import com.delivery_management_service.services.DispatchStateMachine;
+import com.delivery_management_service.services.DriverAttributeIndex;
+import com.delivery_management_service.services.DriverSpatialIndex;
+import com.delivery_management_service.services.DriverWaveNotifier;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.PrecisionModel;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+/**
+ * Measures real connection checkouts of the dispatch flow against PostGIS,
+ * migrated with the application's Flyway scripts, through the Hikari pool MXBean.
+ *
+ * 40 dispatches share a pool of 4 connections with a 2 s checkout timeout: if
+ * a dispatch kept its connection while waiting for drivers, the later ones
+ * could not even load their context. Once all of them wait for an accept, no
+ * connection is checked out and nobody waits for one. Only the SMS gateway
+ * is mocked.
+ *
+ * Skipped when Docker is not available.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+@SpringBootTest(properties = {
+        "app.twilio.account-sid=test",
+        "app.twilio.auth-token=test",
+        "app.twilio.from-phone=+15550000000",
+        "app.twilio.enabled=false",
+        "app.delivery.acceptance-listener.enabled=false", // Holds a connection of its own for LISTEN
+        "app.delivery.leases.max-offers-per-driver=1000", // One driver is offered every order
+        "spring.datasource.hikari.maximum-pool-size=4",
+        "spring.datasource.hikari.connection-timeout=2000"
+})
+class DispatchConnectionUsageTest {
+
+    private static final int CONCURRENT_DISPATCHES = 40;
+    private static final double LNG = -73.935;
+    private static final double LAT = 40.7306;
+    private static final Point RESTAURANT = new GeometryFactory(new PrecisionModel(), 4326)
+            .createPoint(new Coordinate(LNG, LAT));
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGIS = new PostgreSQLContainer<>(
+            DockerImageName.parse("postgis/postgis:16-3.4").asCompatibleSubstituteFor("postgres"));
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", POSTGIS::getJdbcUrl);
+        registry.add("spring.datasource.username", POSTGIS::getUsername);
+        registry.add("spring.datasource.password", POSTGIS::getPassword);
+    }
+
+    @MockitoBean
+    private DriverWaveNotifier driverWaveNotifier;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DispatchStateMachine dispatchStateMachine;
+
+    @Autowired
+    private DeliveryManagementService deliveryManagementService;
+
+    @Autowired
+    private DriverSpatialIndex driverSpatialIndex;
+
+    @Autowired
+    private DriverAttributeIndex driverAttributeIndex;
+
+    private final CountDownLatch wavesSent = new CountDownLatch(CONCURRENT_DISPATCHES);
+    private long restaurantId;
+    private long driverId;
+    private final List<Long> orderIds = new ArrayList<>();
+
+    @BeforeEach
+    void seed() {
+        restaurantId = jdbcTemplate.queryForObject("INSERT INTO restaurants (name, address, is_active, location) " +
+                "VALUES ('Pizza Palace', '1 Main St', true, ST_SetSRID(ST_MakePoint(?, ?), 4326)) RETURNING id",
+                Long.class, LNG, LAT);
+        driverId = jdbcTemplate.queryForObject("INSERT INTO drivers (name, phone, vehicle_type, status, is_active, " +
+                "current_location) VALUES ('Test Driver', '+15550000007', 'CAR', 'AVAILABLE', true, " +
+                "ST_SetSRID(ST_MakePoint(?, ?), 4326)) RETURNING id", Long.class, LNG + 0.005, LAT);
+        for (int i = 0; i < CONCURRENT_DISPATCHES; i++) {
+            orderIds.add(jdbcTemplate.queryForObject("INSERT INTO orders (restaurant_id, customer_name, " +
+                    "customer_phone, delivery_address, total_amount, status, created_at, accepted_at) " +
+                    "VALUES (?, 'Customer', '+15551234567', '123 Main St', 45.98, 'ACCEPTED', now(), now()) " +
+                    "RETURNING id", Long.class, restaurantId));
+        }
+        driverSpatialIndex.rebuild();
+        driverAttributeIndex.rebuild();
+
+        when(driverWaveNotifier.sendWave(any(), any())).thenAnswer(invocation -> {
+            wavesSent.countDown();
+            List<DriverCandidate> drivers = invocation.getArgument(0);
+            return drivers.stream()
+                    .map(driver -> DriverNotificationResult.builder()
+                            .driverId(driver.getId()).messageSid("SM-test").build())
+                    .toList();
+        });
+    }
+
+    @Test
+    void waitingDispatchesHoldNoConnections() throws Exception {
+        HikariPoolMXBean pool = dataSource.unwrap(HikariDataSource.class).getHikariPoolMXBean();
+
+        for (Long orderId : orderIds) {
+            dispatchStateMachine.start(orderId, restaurantId, RESTAURANT);
+        }
+        assertTrue(wavesSent.await(30, TimeUnit.SECONDS), "all dispatches should reach OFFERED on 4 connections");
+        for (Long orderId : orderIds) {
+            assertEquals(DispatchStateMachine.State.OFFERED, dispatchStateMachine.getState(orderId).orElseThrow());
+        }
+
+        // Waiting for drivers: background jobs may borrow a connection briefly, dispatches none
+        int idleSamples = 0;
+        for (int sample = 0; sample < 50; sample++) {
+            assertEquals(0, pool.getThreadsAwaitingConnection(), "threads waiting for a connection");
+            if (pool.getActiveConnections() == 0) {
+                idleSamples++;
+            }
+            Thread.sleep(20);
+        }
+        assertTrue(idleSamples >= 45, "connections checked out while dispatches wait: idle in "
+                + idleSamples + " of 50 samples");
+
+        deliveryManagementService.driverAcceptOrder(orderIds.get(0), driverId);
+
+        assertEquals("ASSIGNED", jdbcTemplate.queryForObject(
+                "SELECT status FROM orders WHERE id = ?", String.class, orderIds.get(0)));
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT active_orders FROM drivers WHERE id = ?", Integer.class, driverId));
+        assertEquals(0, pool.getThreadsAwaitingConnection());
+    }
+}
@@ -0,0 +1,197 @@
+package com.delivery_management_service.com.delivery_management_service.services;
+
+import com.delivery_management_service.DTO.DispatchContext;
+import com.delivery_management_service.DTO.DriverCandidate;
+import com.delivery_management_service.DTO.DriverNotificationResult;
+import com.delivery_management_service.config.HashedTimingWheel;
+import com.delivery_management_service.repository.OrderOfferRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import com.delivery_management_service.services.AcceptanceStatistics;
+import com.delivery_management_service.services.DispatchBacklog;
+import com.delivery_management_service.services.DispatchStateMachine;
+import com.delivery_management_service.services.DispatchTransactions;
+import com.delivery_management_service.services.DriverCandidateService;
+import com.delivery_management_service.services.DriverOfferLeases;
+import com.delivery_management_service.services.DriverSearchCursor;
+import com.delivery_management_service.services.DriverScoreBoard;
+import com.delivery_management_service.services.DriverWaveNotifier;
+import com.delivery_management_service.services.GlobalOrderMatcher;
+import com.delivery_management_service.services.OfferOutcomes;
+import com.delivery_management_service.services.OpenOfferRegistry;
+import com.delivery_management_service.services.OrderAcceptanceRegistry;
+import com.delivery_management_service.services.ZoneDispatchWorkers;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.PrecisionModel;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Drives 500 concurrent dispatches through the state machine with mocked
+ * collaborators: all reach OFFERED, wait on the timing wheel without a thread
+ * each, and are assigned once their drivers accept. Real connection usage is
+ * measured by DispatchConnectionUsageTest.
+ */
+@ExtendWith(MockitoExtension.class)
+class DispatchStateMachineConcurrencyTest {
+
+    private static final int CONCURRENT_DISPATCHES = 500;
+    private static final long DRIVER_ID = 7L;
+
+    private static final GeometryFactory GEOMETRY_FACTORY = new GeometryFactory(new PrecisionModel(), 4326);
+
+    @Mock
+    private DispatchTransactions dispatchTransactions;
+
+    @Mock
+    private DriverCandidateService driverCandidateService;
+
+    @Mock
+    private DriverWaveNotifier driverWaveNotifier;
+
+    @Mock
+    private OrderOfferRepository orderOfferRepository;
+
+    @Mock
+    private GlobalOrderMatcher globalOrderMatcher; // disabled: every dispatch searches right away
+
+    @Mock
+    private AcceptanceStatistics acceptanceStatistics;
+
+    @Mock
+    private DriverScoreBoard driverScoreBoard;
+
+    @Mock
+    private DispatchBacklog dispatchBacklog;
+
+    private final OrderAcceptanceRegistry acceptanceRegistry = new OrderAcceptanceRegistry();
+
+    private ExecutorService dispatchExecutor;
+    private HashedTimingWheel timingWheel;
+    private DispatchStateMachine dispatchStateMachine;
+
+    private final CountDownLatch wavesSent = new CountDownLatch(CONCURRENT_DISPATCHES);
+
+    @BeforeEach
+    void setUp() {
+        dispatchExecutor = Executors.newCachedThreadPool();
+        timingWheel = new HashedTimingWheel(Executors.defaultThreadFactory(), dispatchExecutor,
+                100, TimeUnit.MILLISECONDS, 512);
+        dispatchStateMachine = new DispatchStateMachine(dispatchTransactions, driverCandidateService,
+                driverWaveNotifier, acceptanceRegistry, new OpenOfferRegistry(),
+                // Every dispatch offers the same driver: lease cap high enough for all of them
+                new DriverOfferLeases(orderOfferRepository, new SimpleMeterRegistry(), CONCURRENT_DISPATCHES),
+                globalOrderMatcher, acceptanceStatistics, new OfferOutcomes(acceptanceStatistics, driverScoreBoard),
+                dispatchBacklog, timingWheel,
+                new ZoneDispatchWorkers(dispatchExecutor, new SimpleMeterRegistry(), 0.2, 50));
+        ReflectionTestUtils.setField(dispatchStateMachine, "maxWaves", 1);
+
+        DriverCandidate driver = new TestCandidate(DRIVER_ID, "+15550000007", "Test Driver", 0.5);
+
+        when(dispatchTransactions.loadContext(anyLong(), anyLong())).thenAnswer(invocation ->
+                DispatchContext.builder()
+                        .orderId(invocation.getArgument(0))
+                        .restaurantId(invocation.getArgument(1))
+                        .restaurantName("Pizza Palace")
+                        .restaurantLocation(GEOMETRY_FACTORY.createPoint(new Coordinate(-73.935, 40.7306)))
+                        .deliveryAddress("123 Main St")
+                        .totalAmount(new BigDecimal("45.98"))
+                        .build());
+        when(acceptanceStatistics.plan(anyDouble(), anyDouble()))
+                .thenReturn(new AcceptanceStatistics.WavePlan(20, Duration.ofMinutes(2)));
+        when(driverCandidateService.newCursor()).thenAnswer(invocation -> new DriverSearchCursor(3));
+        when(driverCandidateService.findNextWave(any(), any(), anyInt()))
+                .thenAnswer(invocation -> List.of(driver));
+        doAnswer(invocation -> null)
+                .when(dispatchTransactions).recordOffers(anyLong(), anyInt(), any(), any());
+        doAnswer(invocation -> null)
+                .when(dispatchTransactions).finalizeAssignment(anyLong(), anyLong());
+        when(driverWaveNotifier.sendWave(any(), any())).thenAnswer(invocation -> {
+            wavesSent.countDown();
+            return List.of(DriverNotificationResult.builder().driverId(DRIVER_ID).messageSid("SM-test").build());
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        timingWheel.stop();
+        dispatchExecutor.shutdownNow();
+    }
+
+    @Test
+    void concurrentDispatchesWaitWithoutThreadsAndAssign() throws Exception {
+        for (long orderId = 1; orderId <= CONCURRENT_DISPATCHES; orderId++) {
+            dispatchStateMachine.start(orderId, 1L, null); // No location: every dispatch shares one zone worker
+        }
+
+        assertTrue(wavesSent.await(30, TimeUnit.SECONDS), "all dispatches should reach OFFERED");
+
+        // All 500 dispatches are now waiting for a driver
+        assertEquals(CONCURRENT_DISPATCHES, dispatchStateMachine.inFlightCount());
+        assertEquals(CONCURRENT_DISPATCHES, timingWheel.pendingTimeouts());
+        assertEquals(DispatchStateMachine.State.OFFERED, dispatchStateMachine.getState(1L).orElseThrow());
+        verify(dispatchTransactions, never()).finalizeAssignment(anyLong(), anyLong());
+
+        for (long orderId = 1; orderId <= CONCURRENT_DISPATCHES; orderId++) {
+            assertTrue(acceptanceRegistry.complete(orderId, DRIVER_ID), "dispatch waiting for order " + orderId);
+        }
+
+        verify(dispatchTransactions, timeout(30_000).times(CONCURRENT_DISPATCHES)).finalizeAssignment(anyLong(), anyLong());
+        verify(dispatchTransactions, never()).markUnassigned(anyLong());
+        verify(dispatchTransactions, never()).markAssignmentFailed(anyLong());
+        assertEquals(0, dispatchStateMachine.inFlightCount());
+        assertEquals(0, timingWheel.pendingTimeouts());
+    }
+
+    private record TestCandidate(Long id, String phone, String name, Double distanceKm) implements DriverCandidate {
+        @Override
+        public Long getId() {
+            return id;
+        }
+
+        @Override
+        public String getPhone() {
+            return phone;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public Double getDistanceKm() {
+            return distanceKm;
+        }
+
+        @Override
+        public Double getDistanceMeters() {
+            return distanceKm * 1000;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.delivery_management_service.com.delivery_management_service.services;
+
+import com.delivery_management_service.DTO.DriverAttributes;
+import com.delivery_management_service.repository.DriverRepository;
+import com.delivery_management_service.services.DriverAttributeIndex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.function.LongPredicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class DriverAttributeIndexTest {
+
+    private final DriverRepository driverRepository = mock(DriverRepository.class);
+    private final DriverAttributeIndex index = new DriverAttributeIndex(driverRepository, new SimpleMeterRegistry());
+
+    @Test
+    void changesDuringARebuildAreReplayedOntoIt() {
+        List<DriverAttributes> snapshot = List.of(attributes(1, "BIKE", "AVAILABLE"));
+        when(driverRepository.findAllAttributes()).thenAnswer(invocation -> {
+            index.updateStatus(1, "BUSY"); // Lands while the snapshot is read
+            return snapshot;
+        });
+
+        index.rebuild();
+
+        assertEquals(0, index.availableSlots(1));
+        assertTrue(index.ineligible(1, List.of()).test(1));
+    }
+
+    @Test
+    void driversMissingFromTheLastRebuildAreNotExcludedAndGetLoaded() {
+        List<DriverAttributes> snapshot = List.of(attributes(1, "BIKE", "AVAILABLE"));
+        List<DriverAttributes> registered = List.of(attributes(2, "BIKE", "AVAILABLE"));
+        when(driverRepository.findAllAttributes()).thenReturn(snapshot);
+        when(driverRepository.findAttributesByIds(anyCollection())).thenReturn(registered);
+        index.rebuild();
+
+        LongPredicate carsOnly = index.ineligible(1, List.of("CAR"));
+        assertTrue(carsOnly.test(1));
+        assertFalse(carsOnly.test(2), "unknown drivers are left to the database check");
+
+        index.addMissing(new long[]{1, 2}, 2);
+
+        assertTrue(index.ineligible(1, List.of("CAR")).test(2));
+        assertFalse(index.ineligible(1, List.of("bike")).test(2));
+        assertEquals(2, index.size());
+    }
+
+    private static DriverAttributes attributes(long driverId, String vehicleType, String status) {
+        DriverAttributes attributes = mock(DriverAttributes.class);
+        when(attributes.getId()).thenReturn(driverId);
+        when(attributes.getVehicleType()).thenReturn(vehicleType);
+        when(attributes.getActive()).thenReturn(true);
+        when(attributes.getStatus()).thenReturn(status);
+        when(attributes.getFreeSlots()).thenReturn(2);
+        return attributes;
+    }
+}
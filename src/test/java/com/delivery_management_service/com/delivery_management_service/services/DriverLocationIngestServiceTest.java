@@ -0,0 +1,158 @@
+package com.delivery_management_service.com.delivery_management_service.services;
+
+import com.delivery_management_service.repository.DriverLocationWriter;
+import com.delivery_management_service.repository.DriverPresenceWriter;
+import com.delivery_management_service.repository.DriverRepository;
+import com.delivery_management_service.services.DispatchStateMachine;
+import com.delivery_management_service.services.DriverAttributeIndex;
+import com.delivery_management_service.services.DriverLocationIngestService;
+import com.delivery_management_service.services.DriverPresenceTracker;
+import com.delivery_management_service.services.DriverSpatialIndex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Coalescing, flushing and requeueing of driver pings, and a throughput floor
+ * for record() at the 50k pings/s ingest target.
+ */
+class DriverLocationIngestServiceTest {
+
+    private final DriverLocationWriter locationWriter = mock(DriverLocationWriter.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    // Real tracker: its heartbeat is part of the per-ping cost the throughput test measures
+    private final DriverPresenceTracker presenceTracker = new DriverPresenceTracker(mock(DriverRepository.class),
+            mock(DriverPresenceWriter.class), mock(DriverSpatialIndex.class), mock(DriverAttributeIndex.class),
+            mock(DispatchStateMachine.class), new SimpleMeterRegistry(), 60);
+    private final DriverLocationIngestService ingest = new DriverLocationIngestService(locationWriter,
+            mock(DriverSpatialIndex.class), mock(DriverAttributeIndex.class), presenceTracker, meterRegistry);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(ingest, "batchSize", 1000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        presenceTracker.stop();
+    }
+
+    @Test
+    void flushWritesOnlyTheNewestFixPerDriver() {
+        ingest.record(1, 40.0, -73.0, 1_000L);
+        ingest.record(1, 40.1, -73.1, 3_000L);
+        ingest.record(1, 40.2, -73.2, 2_000L); // Out of order: older than the pending fix
+        ingest.record(2, 41.0, -74.0, 1_000L);
+
+        ingest.flush();
+
+        Map<Long, double[]> written = captureWrite(2);
+        assertEquals(40.1, written.get(1L)[0]);
+        assertEquals(3_000, (long) written.get(1L)[2]);
+        assertEquals(41.0, written.get(2L)[0]);
+        assertEquals(4, counter("driver.location.pings"));
+        assertEquals(2, counter("driver.location.coalesced"));
+        assertEquals(2, counter("driver.location.written"));
+        assertEquals(0, ingest.pendingCount());
+    }
+
+    @Test
+    void failedFlushRequeuesWithoutCountingCoalescedPings() {
+        ingest.record(1, 40.0, -73.0, 1_000L);
+        ingest.record(2, 41.0, -74.0, 1_000L);
+        doThrow(new RuntimeException("connection refused")).when(locationWriter)
+                .updateLocations(any(), any(), any(), any(), anyInt(), anyInt());
+
+        ingest.flush();
+
+        assertEquals(2, ingest.pendingCount());
+        assertEquals(0, counter("driver.location.coalesced"));
+        assertEquals(0, counter("driver.location.written"));
+    }
+
+    @Test
+    void requeuedFixNeverReplacesANewerPing() {
+        ingest.record(1, 40.0, -73.0, 1_000L);
+        doThrow(new RuntimeException("connection refused")).doNothing().when(locationWriter)
+                .updateLocations(any(), any(), any(), any(), anyInt(), anyInt());
+        ingest.flush();
+        ingest.record(1, 40.5, -73.5, 2_000L); // Newer than the requeued fix
+
+        ingest.flush();
+
+        Map<Long, double[]> written = captureWrite(1);
+        assertEquals(40.5, written.get(1L)[0]);
+        assertEquals(1, counter("driver.location.coalesced"), "only the second ping coalesced");
+    }
+
+    @Test
+    void recordSustainsFiftyThousandPingsPerSecond() throws Exception {
+        int threads = 4;
+        int pingsPerThread = 100_000;
+        ping(threads, pingsPerThread); // Warm-up: JIT and map growth
+
+        long start = System.nanoTime();
+        ping(threads, pingsPerThread);
+        double seconds = (System.nanoTime() - start) / (double) TimeUnit.SECONDS.toNanos(1);
+
+        double pingsPerSecond = threads * pingsPerThread / seconds;
+        assertTrue(pingsPerSecond > 50_000, "record() sustained " + (long) pingsPerSecond + " pings/s");
+        assertEquals(20_000, ingest.pendingCount());
+    }
+
+    private void ping(int threads, int pingsPerThread) throws InterruptedException {
+        Thread[] pingers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int offset = t;
+            pingers[t] = new Thread(() -> {
+                for (int i = 0; i < pingsPerThread; i++) {
+                    long driverId = (i * threads + offset) % 20_000;
+                    ingest.record(driverId, 40 + i * 1e-6, -73 - i * 1e-6, null);
+                }
+            });
+            pingers[t].start();
+        }
+        for (Thread pinger : pingers) {
+            pinger.join();
+        }
+    }
+
+    /**
+     * @return Written fixes by driver: latitude, longitude, recordedAt
+     */
+    private Map<Long, double[]> captureWrite(int expectedCount) {
+        ArgumentCaptor<long[]> driverIds = ArgumentCaptor.forClass(long[].class);
+        ArgumentCaptor<double[]> latitudes = ArgumentCaptor.forClass(double[].class);
+        ArgumentCaptor<double[]> longitudes = ArgumentCaptor.forClass(double[].class);
+        ArgumentCaptor<long[]> recordedAt = ArgumentCaptor.forClass(long[].class);
+        verify(locationWriter, org.mockito.Mockito.atLeastOnce()).updateLocations(driverIds.capture(),
+                latitudes.capture(), longitudes.capture(), recordedAt.capture(), eq(expectedCount), anyInt());
+
+        Map<Long, double[]> written = new HashMap<>();
+        for (int i = 0; i < expectedCount; i++) {
+            written.put(driverIds.getValue()[i], new double[]{
+                    latitudes.getValue()[i], longitudes.getValue()[i], recordedAt.getValue()[i]});
+        }
+        return written;
+    }
+
+    private double counter(String name) {
+        return meterRegistry.counter(name).count();
+    }
+}
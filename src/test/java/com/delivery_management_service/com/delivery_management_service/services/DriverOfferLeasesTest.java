@@ -0,0 +1,113 @@
+package com.delivery_management_service.com.delivery_management_service.services;
+
+import com.delivery_management_service.models.OrderOffer;
+import com.delivery_management_service.repository.OrderOfferRepository;
+import com.delivery_management_service.services.DriverOfferLeases;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class DriverOfferLeasesTest {
+
+    private final OrderOfferRepository orderOfferRepository = mock(OrderOfferRepository.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final DriverOfferLeases leases = new DriverOfferLeases(orderOfferRepository, meterRegistry, 2);
+
+    @Test
+    void acquireGrantsUpToMaxOffersPerDriver() {
+        long expiresAt = System.currentTimeMillis() + 60_000;
+
+        assertEquals(List.of(1L, 2L), leases.acquire(100, List.of(1L, 2L), expiresAt));
+        assertEquals(List.of(1L), leases.acquire(101, List.of(1L), expiresAt));
+        assertTrue(leases.isSaturated(1));
+        assertFalse(leases.isSaturated(2));
+
+        assertEquals(List.of(2L), leases.acquire(102, List.of(1L, 2L), expiresAt));
+        assertEquals(List.of(1L), leases.acquire(100, List.of(1L), expiresAt), "same order is granted again");
+        assertEquals(1, meterRegistry.counter("driver.leases.denied").count());
+    }
+
+    @Test
+    void concurrentOrdersNeverOverleaseADriver() throws Exception {
+        long expiresAt = System.currentTimeMillis() + 60_000;
+        int orders = 64;
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger granted = new AtomicInteger();
+        Thread[] threads = new Thread[orders];
+        for (int i = 0; i < orders; i++) {
+            long orderId = i;
+            threads[i] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                granted.addAndGet(leases.acquire(orderId, List.of(7L), expiresAt).size());
+            });
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(2, granted.get());
+        assertEquals(orders - 2, meterRegistry.counter("driver.leases.denied").count());
+    }
+
+    @Test
+    void releaseFreesTheLease() {
+        long expiresAt = System.currentTimeMillis() + 60_000;
+        leases.acquire(100, List.of(1L), expiresAt);
+        leases.acquire(101, List.of(1L), expiresAt);
+
+        leases.release(100, List.of(1L));
+
+        assertFalse(leases.isSaturated(1));
+        assertEquals(List.of(1L), leases.acquire(102, List.of(1L), expiresAt));
+    }
+
+    @Test
+    void expiredLeasesNoLongerCount() throws Exception {
+        long now = System.currentTimeMillis();
+        leases.acquire(100, List.of(1L), now + 50);
+        leases.acquire(101, List.of(1L), now + 50);
+        assertTrue(leases.isSaturated(1));
+
+        Thread.sleep(100);
+
+        assertFalse(leases.isSaturated(1));
+        assertEquals(List.of(1L), leases.acquire(102, List.of(1L), System.currentTimeMillis() + 60_000));
+    }
+
+    @Test
+    void reloadTakesLeasesFromOpenOffers() {
+        when(orderOfferRepository.findByStatusAndExpiresAtAfter(eq("OFFERED"), any())).thenReturn(List.of(
+                offer(200, 1), offer(201, 1)));
+
+        leases.reload();
+
+        assertTrue(leases.isSaturated(1));
+        assertTrue(leases.acquire(100, List.of(1L), System.currentTimeMillis() + 60_000).isEmpty());
+    }
+
+    private static OrderOffer offer(long orderId, long driverId) {
+        OrderOffer offer = new OrderOffer();
+        offer.setOrderId(orderId);
+        offer.setDriverId(driverId);
+        offer.setExpiresAt(LocalDateTime.now().plusMinutes(1));
+        return offer;
+    }
+}
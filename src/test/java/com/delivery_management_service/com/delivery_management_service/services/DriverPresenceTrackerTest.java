@@ -0,0 +1,153 @@
+package com.delivery_management_service.com.delivery_management_service.services;
+
+import com.delivery_management_service.repository.DriverPresenceWriter;
+import com.delivery_management_service.repository.DriverRepository;
+import com.delivery_management_service.services.DispatchStateMachine;
+import com.delivery_management_service.services.DriverAttributeIndex;
+import com.delivery_management_service.services.DriverPresenceTracker;
+import com.delivery_management_service.services.DriverSpatialIndex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Heartbeat expiry, rescheduling on pings and restoring evicted drivers.
+ * Runs with a 1 s TTL on the tracker's own 1 s timing wheel.
+ */
+class DriverPresenceTrackerTest {
+
+    private static final double LAT = 40.7306;
+    private static final double LNG = -73.935;
+
+    private final DriverPresenceWriter presenceWriter = mock(DriverPresenceWriter.class);
+    private final DriverSpatialIndex driverSpatialIndex = mock(DriverSpatialIndex.class);
+    private final DriverAttributeIndex driverAttributeIndex = mock(DriverAttributeIndex.class);
+    private final DispatchStateMachine dispatchStateMachine = mock(DispatchStateMachine.class);
+    private final DriverPresenceTracker tracker = new DriverPresenceTracker(mock(DriverRepository.class),
+            presenceWriter, driverSpatialIndex, driverAttributeIndex, dispatchStateMachine,
+            new SimpleMeterRegistry(), 1);
+
+    @AfterEach
+    void tearDown() {
+        tracker.stop();
+    }
+
+    @Test
+    void silentDriverExpiresAndGoesOffline() throws Exception {
+        when(presenceWriter.markOffline(anyCollection())).thenReturn(List.of(1L));
+        tracker.heartbeat(1, LAT, LNG);
+        assertTrue(tracker.isOnline(1));
+
+        awaitOffline(1);
+        tracker.flush();
+
+        verify(driverSpatialIndex).remove(1);
+        verify(presenceWriter).markOffline(List.of(1L));
+        verify(driverAttributeIndex).updateStatus(1, "OFFLINE");
+    }
+
+    @Test
+    void pingsRescheduleTheExpiry() throws Exception {
+        tracker.heartbeat(1, LAT, LNG);
+
+        // Three TTLs of regular pings: every expiry finds a newer heartbeat
+        long until = System.currentTimeMillis() + 3_000;
+        while (System.currentTimeMillis() < until) {
+            tracker.heartbeat(1, LAT, LNG);
+            assertTrue(tracker.isOnline(1));
+            Thread.sleep(200);
+        }
+        verify(driverSpatialIndex, never()).remove(1);
+
+        awaitOffline(1);
+    }
+
+    @Test
+    void evictedDriverIsRestoredByItsNextPing() throws Exception {
+        when(presenceWriter.markOffline(anyCollection())).thenReturn(List.of(1L));
+        when(presenceWriter.markAvailable(anyCollection())).thenReturn(List.of(1L));
+        tracker.heartbeat(1, LAT, LNG);
+        awaitOffline(1);
+        tracker.flush();
+
+        tracker.heartbeat(1, LAT + 0.01, LNG);
+        tracker.flush();
+
+        verify(presenceWriter).markAvailable(Set.of(1L));
+        verify(driverAttributeIndex).updateStatus(1, "AVAILABLE");
+        verify(driverSpatialIndex).upsert(1, LAT + 0.01, LNG);
+    }
+
+    @Test
+    void restoredDriverPullsBackloggedOrdersUpToItsFreeSlots() throws Exception {
+        when(presenceWriter.markOffline(anyCollection())).thenReturn(List.of(1L));
+        when(presenceWriter.markAvailable(anyCollection())).thenReturn(List.of(1L));
+        when(driverAttributeIndex.availableSlots(1)).thenReturn(2);
+        tracker.heartbeat(1, LAT, LNG);
+        awaitOffline(1);
+        tracker.flush();
+
+        tracker.heartbeat(1, LAT, LNG);
+        tracker.flush();
+
+        verify(dispatchStateMachine).driverFreed(1, LAT, LNG, 2);
+    }
+
+    @Test
+    void driverComingOnlineAvailablePullsBackloggedOrders() {
+        when(driverAttributeIndex.availableSlots(1)).thenReturn(3);
+        when(driverAttributeIndex.availableSlots(2)).thenReturn(0);
+        tracker.heartbeat(1, LAT, LNG);
+        tracker.heartbeat(2, LAT, LNG);
+        tracker.flush();
+
+        verify(dispatchStateMachine).driverFreed(1, LAT, LNG, 3);
+        verify(dispatchStateMachine, never()).driverFreed(eq(2L), anyDouble(), anyDouble(), anyInt());
+    }
+
+    @Test
+    void driverOfflineOnPurposeIsNotRestoredByPings() {
+        // Never tracked: OFFLINE at startup, or set OFFLINE by an operator
+        tracker.heartbeat(1, LAT, LNG);
+        tracker.flush();
+
+        verify(presenceWriter, never()).markAvailable(any());
+    }
+
+    @Test
+    void driverThatWasNotAvailableWhenEvictedIsNotRestored() throws Exception {
+        // BUSY (full) when its heartbeat expired: markOffline leaves it alone
+        when(presenceWriter.markOffline(anyCollection())).thenReturn(List.of());
+        tracker.heartbeat(1, LAT, LNG);
+        awaitOffline(1);
+        tracker.flush();
+
+        tracker.heartbeat(1, LAT, LNG);
+        tracker.flush();
+
+        verify(presenceWriter, never()).markAvailable(any());
+    }
+
+    private void awaitOffline(long driverId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (tracker.isOnline(driverId) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertFalse(tracker.isOnline(driverId), "driver " + driverId + " should have expired");
+    }
+}
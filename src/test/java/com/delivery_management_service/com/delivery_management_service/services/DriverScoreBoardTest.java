@@ -0,0 +1,113 @@
+package com.delivery_management_service.com.delivery_management_service.services;
+
+import com.delivery_management_service.services.DriverScoreBoard;
+import com.delivery_management_service.services.DriverSpatialIndex;
+import com.delivery_management_service.services.WeightedCandidateRanker;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Ranking picks reliable drivers over marginally nearer ones, and scoring a
+ * 500-driver pool stays well under a millisecond.
+ */
+class DriverScoreBoardTest {
+
+    private final DriverScoreBoard scoreBoard = new DriverScoreBoard(
+            new WeightedCandidateRanker(1.0, 2.0, 0.5, 0.5, 120, 1800), 24, 0.3, 5, 60, 1800);
+
+    @Test
+    void prefersDriverThatAcceptsOverSlightlyNearerDriverThatIgnores() {
+        for (int i = 0; i < 20; i++) {
+            scoreBoard.recordOffer(1);
+            scoreBoard.recordOffer(2);
+            scoreBoard.recordAcceptance(2, 15);
+        }
+
+        List<DriverSpatialIndex.NearbyDriver> ranked = scoreBoard.rank(List.of(
+                new DriverSpatialIndex.NearbyDriver(1, 1.0),
+                new DriverSpatialIndex.NearbyDriver(2, 1.3),
+                new DriverSpatialIndex.NearbyDriver(3, 5.0)), 2);
+
+        assertEquals(2, ranked.size());
+        assertEquals(2, ranked.get(0).driverId());
+        assertEquals(1, ranked.get(1).driverId());
+    }
+
+    @Test
+    void unknownDriversGetThePopulationMeanAcceptTime() {
+        Map<Long, Double> meanAcceptSeconds = new HashMap<>();
+        // Distance carries the driver ID through to the ranker
+        DriverScoreBoard recording = new DriverScoreBoard((distanceKm, acceptanceRate, seconds, idleSeconds) -> {
+            meanAcceptSeconds.put((long) distanceKm, seconds);
+            return 0;
+        }, 24, 0.3, 5, 60, 1800);
+        List<DriverSpatialIndex.NearbyDriver> pool = List.of(
+                new DriverSpatialIndex.NearbyDriver(1, 1), new DriverSpatialIndex.NearbyDriver(2, 2));
+
+        recording.rank(pool, 2);
+        assertEquals(60, meanAcceptSeconds.get(1L), 1e-9, "configured prior before anyone accepted");
+
+        for (long driverId = 10; driverId < 20; driverId++) {
+            recording.recordOffer(driverId);
+            recording.recordAcceptance(driverId, 90);
+        }
+        recording.recordOffer(2);
+        recording.recordAcceptance(2, 10);
+        recording.rank(pool, 2);
+
+        // Population: 10 acceptances at 90 s and one at 10 s
+        double populationSeconds = (10 * 90 + 10) / 11.0;
+        assertEquals(populationSeconds, meanAcceptSeconds.get(1L), 1e-6, "unknown driver, not the fastest");
+        // One fast acceptance against 1.5 prior ones at the population mean
+        assertEquals((10 + 1.5 * populationSeconds) / 2.5, meanAcceptSeconds.get(2L), 1e-6);
+    }
+
+    @Test
+    void driversNotSeenFinishingADeliveryCountAsIdleForTheWholeHorizon() {
+        Map<Long, Double> idleSeconds = new HashMap<>();
+        DriverScoreBoard recording = new DriverScoreBoard((distanceKm, acceptanceRate, seconds, idle) -> {
+            idleSeconds.put((long) distanceKm, idle);
+            return 0;
+        }, 24, 0.3, 5, 60, 1800);
+        recording.recordOffer(2);  // Scored, never finished a delivery here
+        recording.recordIdle(3);   // Just finished one
+
+        recording.rank(List.of(new DriverSpatialIndex.NearbyDriver(1, 1), new DriverSpatialIndex.NearbyDriver(2, 2),
+                new DriverSpatialIndex.NearbyDriver(3, 3)), 3);
+
+        assertEquals(1800, idleSeconds.get(1L), 1e-9, "unknown driver");
+        assertTrue(idleSeconds.get(2L) >= 1800);
+        assertTrue(idleSeconds.get(3L) < 5);
+    }
+
+    @Test
+    void ranksFiveHundredCandidatesWellUnderAMillisecond() {
+        List<DriverSpatialIndex.NearbyDriver> pool = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            pool.add(new DriverSpatialIndex.NearbyDriver(i, i * 0.01));
+            scoreBoard.recordOffer(i);
+            if (i % 3 == 0) {
+                scoreBoard.recordAcceptance(i, i % 60);
+            }
+        }
+
+        int rounds = 2_000;
+        for (int i = 0; i < rounds; i++) {
+            scoreBoard.rank(pool, 20); // warm-up
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            scoreBoard.rank(pool, 20);
+        }
+        long averageMicros = (System.nanoTime() - start) / rounds / 1_000;
+
+        assertTrue(averageMicros < 500, "ranking 500 candidates took " + averageMicros + " us");
+    }
+}
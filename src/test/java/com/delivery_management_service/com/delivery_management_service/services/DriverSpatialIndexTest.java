@@ -0,0 +1,91 @@
+package com.delivery_management_service.com.delivery_management_service.services;
+
+import com.delivery_management_service.models.Driver;
+import com.delivery_management_service.repository.DriverRepository;
+import com.delivery_management_service.services.DriverSpatialIndex;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.PrecisionModel;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class DriverSpatialIndexTest {
+
+    private static final GeometryFactory GEOMETRY_FACTORY = new GeometryFactory(new PrecisionModel(), 4326);
+    private static final double LAT = 40.7306;
+    private static final double LNG = -73.935;
+
+    private final DriverRepository driverRepository = mock(DriverRepository.class);
+    private final DriverSpatialIndex index = new DriverSpatialIndex(driverRepository, true, 0.01);
+
+    @Test
+    void nearestReturnsClosestDriversInRadius() {
+        index.upsert(1, LAT + 0.02, LNG);   // ~2.2 km
+        index.upsert(2, LAT + 0.001, LNG);  // ~0.1 km
+        index.upsert(3, LAT + 0.01, LNG);   // ~1.1 km
+        index.upsert(4, LAT + 0.5, LNG);    // ~55 km, outside the radius
+
+        List<DriverSpatialIndex.NearbyDriver> nearest = index.findNearest(LAT, LNG, 2, 10);
+
+        assertEquals(List.of(2L, 3L), nearest.stream().map(DriverSpatialIndex.NearbyDriver::driverId).toList());
+        assertEquals(0.11, nearest.get(0).distanceKm(), 0.01);
+        assertEquals(3, index.findNearest(LAT, LNG, 10, 10).size());
+    }
+
+    @Test
+    void upsertMovesAndRemoveDrops() {
+        index.upsert(1, LAT, LNG);
+        index.upsert(1, LAT + 0.2, LNG); // Moves to another cell
+
+        assertEquals(1, index.size());
+        assertTrue(index.findNearest(LAT, LNG, 5, 5).isEmpty());
+        assertEquals(1, index.findNearest(LAT + 0.2, LNG, 5, 5).size());
+
+        index.remove(1);
+        assertEquals(0, index.size());
+        assertTrue(index.findNearest(LAT + 0.2, LNG, 5, 5).isEmpty());
+    }
+
+    @Test
+    void moveIndexedIgnoresDriversNotInTheIndex() {
+        index.upsert(1, LAT, LNG);
+
+        index.moveIndexed(new long[]{1, 2}, new double[]{LAT + 0.01, LAT}, new double[]{LNG, LNG}, 2);
+
+        assertEquals(1, index.size());
+        assertEquals(1.11, index.findNearest(LAT, LNG, 1, 5).get(0).distanceKm(), 0.01);
+    }
+
+    @Test
+    void rebuildReplaysChangesMadeWhileReadingTheDatabase() {
+        index.upsert(1, LAT, LNG);
+        index.upsert(2, LAT, LNG);
+        when(driverRepository.findByStatusAndIsActiveTrue("AVAILABLE")).thenAnswer(invocation -> {
+            // Snapshot taken before these changes commit: still has 1 and 2, lacks 3
+            index.remove(1);
+            index.upsert(3, LAT, LNG);
+            index.moveIndexed(new long[]{2}, new double[]{LAT + 0.01}, new double[]{LNG}, 1);
+            return List.of(driver(1, LAT, LNG), driver(2, LAT, LNG));
+        });
+
+        index.rebuild();
+
+        assertTrue(index.isWarm());
+        List<DriverSpatialIndex.NearbyDriver> nearest = index.findNearest(LAT, LNG, 10, 10);
+        assertEquals(List.of(3L, 2L), nearest.stream().map(DriverSpatialIndex.NearbyDriver::driverId).toList());
+        assertEquals(1.11, nearest.get(1).distanceKm(), 0.01);
+    }
+
+    private static Driver driver(long id, double latitude, double longitude) {
+        Driver driver = new Driver();
+        driver.setId(id);
+        driver.setCurrentLocation(GEOMETRY_FACTORY.createPoint(new Coordinate(longitude, latitude)));
+        return driver;
+    }
+}
@@ -0,0 +1,118 @@
+package com.delivery_management_service.com.delivery_management_service.services;
+
+import com.delivery_management_service.DTO.DispatchContext;
+import com.delivery_management_service.DTO.DriverCandidate;
+import com.delivery_management_service.DTO.DriverNotificationResult;
+import com.delivery_management_service.config.BoundedVirtualThreadExecutor;
+import com.delivery_management_service.services.DriverWaveNotifier;
+import com.delivery_management_service.services.TwilioSmsService;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class DriverWaveNotifierTest {
+
+    private static final int MAX_PARALLELISM = 3;
+
+    private final TwilioSmsService twilioSmsService = mock(TwilioSmsService.class);
+    private final DriverWaveNotifier notifier = new DriverWaveNotifier(twilioSmsService,
+            new BoundedVirtualThreadExecutor(Thread.ofVirtual().name("sms-test-", 0).factory(), MAX_PARALLELISM, 100));
+
+    private final DispatchContext context = DispatchContext.builder()
+            .orderId(7L).restaurantId(1L).restaurantName("Pizza Palace").totalAmount(new BigDecimal("45.98"))
+            .build();
+
+    @Test
+    void slowGatewayStaysWithinTheParallelismBoundAndFailuresArePerDriver() {
+        ReflectionTestUtils.setField(notifier, "baseUrl", "http://localhost:8080");
+        ReflectionTestUtils.setField(notifier, "waveTimeoutMs", 10_000L);
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        when(twilioSmsService.sendOrderNotification(anyString(), anyLong(), anyLong(), anyString(), anyDouble(),
+                any(), anyString())).thenAnswer(invocation -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(50);
+                long driverId = invocation.getArgument(1);
+                if (driverId == 4) {
+                    throw new IllegalStateException("Twilio unavailable");
+                }
+                return driverId == 5 ? null : "SM" + driverId;
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        });
+
+        List<DriverCandidate> drivers = drivers(9);
+        List<DriverNotificationResult> results = notifier.sendWave(drivers, context);
+
+        assertTrue(maxInFlight.get() <= MAX_PARALLELISM, "SMS in flight at once: " + maxInFlight.get());
+        assertEquals(9, results.size());
+        for (int i = 0; i < drivers.size(); i++) {
+            assertEquals(drivers.get(i).getId(), results.get(i).getDriverId());
+        }
+        assertEquals("Twilio unavailable", results.get(3).getFailure());
+        assertEquals("SMS not sent", results.get(4).getFailure());
+        assertEquals(7, results.stream().filter(DriverNotificationResult::isSuccess).count());
+        assertNull(results.get(0).getFailure());
+    }
+
+    @Test
+    void waveReturnsAfterTheTimeoutWhenAnSmsHangs() {
+        ReflectionTestUtils.setField(notifier, "baseUrl", "http://localhost:8080");
+        ReflectionTestUtils.setField(notifier, "waveTimeoutMs", 200L);
+        CountDownLatch gatewayHangs = new CountDownLatch(1);
+        when(twilioSmsService.sendOrderNotification(anyString(), anyLong(), anyLong(), anyString(), anyDouble(),
+                any(), anyString())).thenAnswer(invocation -> {
+            long driverId = invocation.getArgument(1);
+            if (driverId == 2) {
+                gatewayHangs.await();
+            }
+            return "SM" + driverId;
+        });
+
+        try {
+            long start = System.nanoTime();
+            List<DriverNotificationResult> results = notifier.sendWave(drivers(3), context);
+            long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            assertTrue(elapsedMs >= 200 && elapsedMs < 2_000, "wave returned after " + elapsedMs + " ms");
+            assertTrue(results.get(0).isSuccess());
+            assertFalse(results.get(1).isSuccess());
+            assertEquals("Timed out", results.get(1).getFailure());
+            assertTrue(results.get(2).isSuccess());
+        } finally {
+            gatewayHangs.countDown();
+        }
+    }
+
+    private static List<DriverCandidate> drivers(int count) {
+        return LongStream.rangeClosed(1, count).mapToObj(DriverWaveNotifierTest::driver).toList();
+    }
+
+    private static DriverCandidate driver(long driverId) {
+        DriverCandidate driver = mock(DriverCandidate.class);
+        when(driver.getId()).thenReturn(driverId);
+        when(driver.getPhone()).thenReturn("+1555000000" + driverId);
+        when(driver.getName()).thenReturn("Driver " + driverId);
+        when(driver.getDistanceKm()).thenReturn(1.5);
+        return driver;
+    }
+}
@@ -0,0 +1,84 @@
+package com.delivery_management_service.com.delivery_management_service.services;
+
+import com.delivery_management_service.services.AcceptanceStatistics;
+import com.delivery_management_service.services.DriverScoreBoard;
+import com.delivery_management_service.services.OfferOutcomes;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class OfferOutcomesTest {
+
+    private static final double LAT = 40.7306;
+    private static final double LNG = -73.935;
+
+    private final AcceptanceStatistics acceptanceStatistics = mock(AcceptanceStatistics.class);
+    private final DriverScoreBoard driverScoreBoard = mock(DriverScoreBoard.class);
+    private final OfferOutcomes outcomes = new OfferOutcomes(acceptanceStatistics, driverScoreBoard);
+
+    @Test
+    void everyAcceptingDriverCountsNotJustTheWinner() {
+        long now = System.currentTimeMillis();
+        outcomes.offered(100, LAT, LNG, List.of(1L, 2L, 3L), now, now + 60_000);
+
+        outcomes.accepted(100, 1); // Wins the order
+        outcomes.accepted(100, 2); // Loses the race, still accepted the offer
+        outcomes.accepted(100, 2); // Repeated tap
+        outcomes.accepted(100, 9); // Never offered
+
+        verify(acceptanceStatistics, times(2)).recordAccepted(eq(LAT), eq(LNG), any());
+        verify(driverScoreBoard, times(3)).recordOffer(anyLong());
+        verify(driverScoreBoard).recordAcceptance(eq(1L), anyDouble());
+        verify(driverScoreBoard).recordAcceptance(eq(2L), anyDouble());
+        verify(driverScoreBoard, never()).recordAcceptance(eq(3L), anyDouble());
+        assertEquals(1, outcomes.pendingCount());
+    }
+
+    @Test
+    void expiredOffersResolveAsTimedOutAtTheirTimeout() throws Exception {
+        long now = System.currentTimeMillis();
+        outcomes.offered(100, LAT, LNG, List.of(1L, 2L), now, now + 50);
+        outcomes.offered(101, LAT, LNG, List.of(3L), now, now + 60_000);
+        Thread.sleep(100);
+
+        outcomes.accepted(100, 1); // Too late: the offer had lapsed
+        outcomes.expire();
+
+        verify(acceptanceStatistics, never()).recordAccepted(anyDouble(), anyDouble(), any());
+        verify(acceptanceStatistics, times(2)).recordTimedOut(LAT, LNG, Duration.ofMillis(50));
+        assertEquals(1, outcomes.pendingCount());
+    }
+
+    @Test
+    void openOffersOfAWonOrderAreCensoredWhenItCloses() throws Exception {
+        long now = System.currentTimeMillis();
+        outcomes.offered(100, LAT, LNG, List.of(1L, 2L, 3L), now - 1_000, now + 50);
+
+        outcomes.accepted(100, 1); // Wins the order
+        long closedAt = System.currentTimeMillis();
+        outcomes.closed(100);
+        outcomes.accepted(100, 2); // Lost the race, but tapped within the offer
+        Thread.sleep(100);
+        outcomes.expire();
+
+        ArgumentCaptor<Duration> censoredAt = ArgumentCaptor.forClass(Duration.class);
+        verify(acceptanceStatistics).recordTimedOut(eq(LAT), eq(LNG), censoredAt.capture());
+        assertTrue(censoredAt.getValue().toMillis() >= closedAt - (now - 1_000)
+                && censoredAt.getValue().toMillis() < 1_050, "censored after " + censoredAt.getValue());
+        verify(acceptanceStatistics, times(2)).recordAccepted(eq(LAT), eq(LNG), any());
+        assertEquals(0, outcomes.pendingCount());
+    }
+}
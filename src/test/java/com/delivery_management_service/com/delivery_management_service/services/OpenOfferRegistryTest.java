@@ -0,0 +1,91 @@
+package com.delivery_management_service.com.delivery_management_service.services;
+
+import com.delivery_management_service.services.OpenOfferRegistry;
+import com.delivery_management_service.services.OpenOfferRegistry.ClaimResult;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class OpenOfferRegistryTest {
+
+    private static final long ORDER = 1L;
+
+    private final OpenOfferRegistry registry = new OpenOfferRegistry();
+    private final long inOneMinute = System.currentTimeMillis() + 60_000;
+
+    @Test
+    void firstOfferedDriverClaimsAndTheOthersLose() {
+        registry.open(ORDER, List.of(10L, 11L), inOneMinute);
+
+        assertEquals(ClaimResult.CLAIMED, registry.tryClaim(ORDER, 10L));
+        assertEquals(ClaimResult.ALREADY_CLAIMED, registry.tryClaim(ORDER, 11L));
+        assertEquals(ClaimResult.NOT_OFFERED, registry.tryClaim(ORDER, 12L));
+        assertEquals(ClaimResult.UNKNOWN_ORDER, registry.tryClaim(2L, 10L));
+    }
+
+    @Test
+    void releasedClaimLetsAnotherDriverWin() {
+        registry.open(ORDER, List.of(10L, 11L), inOneMinute);
+        registry.tryClaim(ORDER, 10L);
+
+        registry.release(ORDER, 10L);
+
+        assertEquals(ClaimResult.CLAIMED, registry.tryClaim(ORDER, 11L));
+    }
+
+    @Test
+    void expiredOffersAreRejected() {
+        registry.open(ORDER, List.of(10L), System.currentTimeMillis() - 1);
+
+        assertEquals(ClaimResult.EXPIRED, registry.tryClaim(ORDER, 10L));
+    }
+
+    @Test
+    void lateAcceptsAfterCloseAreRejectedInMemory() {
+        registry.open(ORDER, List.of(10L, 11L), inOneMinute);
+        registry.tryClaim(ORDER, 10L);
+
+        registry.close(ORDER);
+
+        assertEquals(ClaimResult.ALREADY_CLAIMED, registry.tryClaim(ORDER, 11L));
+        assertEquals(ClaimResult.ALREADY_CLAIMED, registry.tryClaim(ORDER, 10L));
+        assertEquals(ClaimResult.NOT_OFFERED, registry.tryClaim(ORDER, 12L));
+        assertEquals(1, registry.size());
+    }
+
+    @Test
+    void closedWithoutWinnerReportsExpired() {
+        registry.open(ORDER, List.of(10L), inOneMinute);
+
+        registry.close(ORDER);
+
+        assertEquals(ClaimResult.EXPIRED, registry.tryClaim(ORDER, 10L));
+    }
+
+    @Test
+    void tombstonesAreForgottenOnceTheirOffersExpired() {
+        registry.open(ORDER, List.of(10L), System.currentTimeMillis() - 1);
+        registry.open(2L, List.of(10L), inOneMinute);
+        registry.close(ORDER);
+        registry.close(2L);
+
+        registry.purgeClosed();
+
+        assertEquals(1, registry.size());
+        assertEquals(ClaimResult.UNKNOWN_ORDER, registry.tryClaim(ORDER, 10L));
+    }
+
+    @Test
+    void reopeningAClosedOrderStartsAFreshDispatch() {
+        registry.open(ORDER, List.of(10L), inOneMinute);
+        registry.tryClaim(ORDER, 10L);
+        registry.close(ORDER);
+
+        registry.open(ORDER, List.of(11L), inOneMinute);
+
+        assertEquals(ClaimResult.CLAIMED, registry.tryClaim(ORDER, 11L));
+        assertEquals(ClaimResult.NOT_OFFERED, registry.tryClaim(ORDER, 10L));
+    }
+}
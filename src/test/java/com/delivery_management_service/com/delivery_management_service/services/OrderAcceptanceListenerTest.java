@@ -0,0 +1,64 @@
+package com.delivery_management_service.com.delivery_management_service.services;
+
+import com.delivery_management_service.services.OrderAcceptanceListener;
+import com.delivery_management_service.services.OrderAcceptanceRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OrderAcceptanceListenerTest {
+
+    private final DataSource dataSource = mock(DataSource.class);
+    private final OrderAcceptanceRegistry registry = new OrderAcceptanceRegistry();
+    private final OrderAcceptanceListener listener =
+            new OrderAcceptanceListener(dataSource, mock(JdbcTemplate.class), registry, true);
+
+    @AfterEach
+    void stop() {
+        listener.stop();
+    }
+
+    @Test
+    void malformedPayloadsAreIgnoredAndTheNextOnesStillDelivered() throws Exception {
+        PGNotification[] firstPoll = {notification("garbage"), notification("12:not-a-driver"), notification("")};
+        PGNotification[] secondPoll = {notification("7:34")};
+        PGConnection pgConnection = mock(PGConnection.class);
+        when(pgConnection.getNotifications(anyInt())).thenReturn(firstPoll, secondPoll, null);
+        Connection connection = mock(Connection.class);
+        Statement statement = mock(Statement.class);
+        when(connection.createStatement()).thenReturn(statement);
+        when(connection.unwrap(PGConnection.class)).thenReturn(pgConnection);
+        when(dataSource.getConnection()).thenReturn(connection);
+
+        CompletableFuture<Long> order7 = registry.register(7L);
+        CompletableFuture<Long> order12 = registry.register(12L);
+        listener.start();
+
+        assertEquals(34L, order7.get(5, TimeUnit.SECONDS));
+        assertFalse(order12.isDone());
+        verify(statement).execute("LISTEN order_accepted");
+        verify(dataSource, times(1)).getConnection(); // Same connection: the loop survived the bad payloads
+    }
+
+    private static PGNotification notification(String payload) {
+        PGNotification notification = mock(PGNotification.class);
+        when(notification.getParameter()).thenReturn(payload);
+        return notification;
+    }
+}
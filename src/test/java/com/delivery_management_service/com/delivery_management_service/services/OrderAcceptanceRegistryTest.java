@@ -0,0 +1,42 @@
+package com.delivery_management_service.com.delivery_management_service.services;
+
+import com.delivery_management_service.services.OrderAcceptanceRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OrderAcceptanceRegistryTest {
+
+    private final OrderAcceptanceRegistry registry = new OrderAcceptanceRegistry();
+
+    @Test
+    void completeWakesUpTheWaitingDispatcher() throws Exception {
+        CompletableFuture<Long> acceptance = registry.register(1L);
+        CompletableFuture<Long> woken = acceptance.thenApplyAsync(driverId -> driverId);
+
+        assertTrue(registry.complete(1L, 42L));
+
+        assertEquals(42L, woken.get(5, TimeUnit.SECONDS));
+        assertFalse(registry.complete(1L, 43L), "the first acceptance wins");
+        assertEquals(42L, acceptance.join());
+    }
+
+    @Test
+    void completingAnOrderNobodyWaitsForIsANoOp() {
+        CompletableFuture<Long> acceptance = registry.register(1L);
+        assertSame(acceptance, registry.register(1L));
+
+        assertFalse(registry.complete(2L, 42L));
+        assertFalse(acceptance.isDone());
+
+        registry.unregister(1L);
+        assertFalse(registry.complete(1L, 42L));
+        assertFalse(acceptance.isDone());
+    }
+}
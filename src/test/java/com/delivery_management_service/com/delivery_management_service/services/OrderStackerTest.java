@@ -0,0 +1,114 @@
+package com.delivery_management_service.com.delivery_management_service.services;
+
+import com.delivery_management_service.config.HashedTimingWheel;
+import com.delivery_management_service.services.DeliveryRoutePlanner;
+import com.delivery_management_service.services.DispatchStateMachine;
+import com.delivery_management_service.services.OrderStacker;
+import com.delivery_management_service.services.TravelTimeEstimator;
+import com.delivery_management_service.services.TravelTimeRouter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Point;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Orders of one restaurant are held together and dispatched as one bundle
+ * when the bundle fills up or the hold window closes, as long as no drop
+ * takes more than 1.5x its direct trip. Travel times are straight-line.
+ */
+class OrderStackerTest {
+
+    private static final GeometryFactory GEOMETRY = new GeometryFactory();
+    private static final Point RESTAURANT = point(40.730, -73.990);
+    // About 2 km north, 2.2 km north and 2 km south of the restaurant
+    private static final Point NORTH = point(40.748, -73.990);
+    private static final Point FURTHER_NORTH = point(40.750, -73.990);
+    private static final Point SOUTH = point(40.712, -73.990);
+
+    private final DispatchStateMachine dispatchStateMachine = mock(DispatchStateMachine.class);
+    private final HashedTimingWheel timingWheel = new HashedTimingWheel(Executors.defaultThreadFactory(),
+            Runnable::run, 50, TimeUnit.MILLISECONDS, 64);
+    private final DeliveryRoutePlanner deliveryRoutePlanner = new DeliveryRoutePlanner(
+            new TravelTimeEstimator(mock(TravelTimeRouter.class), "", 25), 8);
+    private final OrderStacker orderStacker = new OrderStacker(dispatchStateMachine, timingWheel,
+            deliveryRoutePlanner, new SimpleMeterRegistry(), true, 500, 3, 1.5);
+
+    @AfterEach
+    void tearDown() {
+        timingWheel.stop();
+    }
+
+    @Test
+    void fullBundleIsDispatchedRightAway() {
+        orderStacker.submit(1L, 10L, RESTAURANT, NORTH);
+        orderStacker.submit(2L, 20L, RESTAURANT, NORTH);
+        orderStacker.submit(3L, 10L, RESTAURANT, FURTHER_NORTH);
+        orderStacker.submit(4L, 10L, RESTAURANT, NORTH);
+
+        verify(dispatchStateMachine).start(1L, 10L, RESTAURANT, List.of(3L, 4L));
+        assertEquals(1, orderStacker.heldCount());
+    }
+
+    @Test
+    void holdWindowReleasesWhatWasStacked() {
+        orderStacker.submit(1L, 10L, RESTAURANT, NORTH);
+        orderStacker.submit(2L, 10L, RESTAURANT, FURTHER_NORTH);
+
+        verify(dispatchStateMachine, never()).start(anyLong(), anyLong(), any(), anyList());
+        verify(dispatchStateMachine, timeout(2_000)).start(1L, 10L, RESTAURANT, List.of(2L));
+        assertEquals(0, orderStacker.heldCount());
+    }
+
+    @Test
+    void cancelledOrderLeavesItsStack() {
+        orderStacker.submit(1L, 10L, RESTAURANT, NORTH);
+        orderStacker.submit(2L, 10L, RESTAURANT, FURTHER_NORTH);
+
+        assertTrue(orderStacker.cancel(1L));
+        assertFalse(orderStacker.cancel(99L));
+
+        verify(dispatchStateMachine, timeout(2_000)).start(2L, 10L, RESTAURANT, List.of());
+    }
+
+    @Test
+    void dropsOnOppositeSidesAreNotStacked() {
+        orderStacker.submit(1L, 10L, RESTAURANT, NORTH);
+        // Either order of the two drops makes the second one three times its direct trip
+        orderStacker.submit(2L, 10L, RESTAURANT, SOUTH);
+        orderStacker.submit(3L, 10L, RESTAURANT, FURTHER_NORTH);
+
+        assertEquals(3, orderStacker.heldCount());
+        verify(dispatchStateMachine, timeout(2_000)).start(1L, 10L, RESTAURANT, List.of(3L));
+        verify(dispatchStateMachine, timeout(2_000)).start(2L, 10L, RESTAURANT, List.of());
+    }
+
+    @Test
+    void orderWithoutDropLocationIsDispatchedAlone() {
+        orderStacker.submit(1L, 10L, RESTAURANT, NORTH);
+        orderStacker.submit(2L, 10L, RESTAURANT, null);
+
+        verify(dispatchStateMachine).start(2L, 10L, RESTAURANT);
+        assertEquals(1, orderStacker.heldCount());
+    }
+
+    private static Point point(double latitude, double longitude) {
+        return GEOMETRY.createPoint(new Coordinate(longitude, latitude));
+    }
+}
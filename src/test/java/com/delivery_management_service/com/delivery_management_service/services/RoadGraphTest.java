@@ -0,0 +1,142 @@
+package com.delivery_management_service.com.delivery_management_service.services;
+
+import com.delivery_management_service.services.RoadGraph;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Routes on the bundled river-city fixture: an 8 x 8 street grid split by a
+ * river with a single bridge on its northern edge (see the file header).
+ */
+class RoadGraphTest {
+
+    private static final int COLUMNS = 8;
+
+    private static RoadGraph graph;
+
+    @BeforeAll
+    static void loadFixture() throws IOException {
+        try (Reader reader = new InputStreamReader(Objects.requireNonNull(
+                RoadGraphTest.class.getResourceAsStream("/routing/river-city.graph")), StandardCharsets.UTF_8)) {
+            graph = RoadGraph.read(reader);
+        }
+    }
+
+    @Test
+    void loadsFixture() {
+        assertEquals(64, graph.nodeCount());
+        assertEquals(210, graph.edgeCount());
+    }
+
+    @Test
+    void driverAcrossTheRiverIsFartherThanItLooks() {
+        int restaurant = node(0, 4);
+        int acrossRiver = node(0, 3);   // one block away as the crow flies
+        int sameBank = node(2, 6);      // four blocks away, no bridge needed
+
+        double[] seconds = graph.travelSecondsTo(restaurant, new int[]{acrossRiver, sameBank});
+
+        assertTrue(seconds[1] < seconds[0],
+                "same-bank driver should be faster: " + seconds[1] + " s vs " + seconds[0] + " s");
+        // Across the river means driving up to the bridge and back: 14 blocks north-south plus one east-west
+        assertTrue(seconds[0] > 600, "detour over the bridge should take over 10 minutes, got " + seconds[0]);
+    }
+
+    @Test
+    void bidirectionalAStarAgreesWithDijkstraOnEveryPair() {
+        int n = graph.nodeCount();
+        int[] all = new int[n];
+        for (int v = 0; v < n; v++) {
+            all[v] = v;
+        }
+        for (int target = 0; target < n; target++) {
+            double[] expected = graph.travelSecondsTo(target, all);
+            for (int source = 0; source < n; source++) {
+                assertEquals(expected[source], graph.travelSeconds(source, target), 0.01,
+                        "travel time " + source + " -> " + target);
+            }
+        }
+    }
+
+    @Test
+    void forwardOneToManyAgreesWithBackward() {
+        int n = graph.nodeCount();
+        int[] all = new int[n];
+        for (int v = 0; v < n; v++) {
+            all[v] = v;
+        }
+        for (int source = 0; source < n; source++) {
+            double[] forward = graph.travelSecondsFrom(source, all);
+            for (int target = 0; target < n; target++) {
+                assertEquals(graph.travelSecondsTo(target, new int[]{source})[0], forward[target], 0.01,
+                        "travel time " + source + " -> " + target);
+            }
+        }
+    }
+
+    @Test
+    void concurrentQueriesOnVirtualThreadsShareSearchStateSafely() throws Exception {
+        int n = graph.nodeCount();
+        double[][] expected = new double[n][];
+        for (int target = 0; target < n; target++) {
+            expected[target] = new double[n];
+            for (int source = 0; source < n; source++) {
+                expected[target][source] = graph.travelSeconds(source, target);
+            }
+        }
+
+        // Far more concurrent queries than pooled search spaces, one virtual thread each
+        AtomicInteger mismatches = new AtomicInteger();
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        for (int query = 0; query < 20_000; query++) {
+            int source = query % n;
+            int target = (query / n) % n;
+            executor.execute(() -> {
+                if (Math.abs(graph.travelSeconds(source, target) - expected[target][source]) > 0.01) {
+                    mismatches.incrementAndGet();
+                }
+            });
+        }
+        executor.shutdown();
+
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+        assertEquals(0, mismatches.get());
+    }
+
+    @Test
+    void prefersTheArterial() {
+        // Straight up the 80 km/h west edge: 7 blocks of ~445 m
+        double seconds = graph.travelSeconds(node(0, 0), node(7, 0));
+        assertEquals(7 * 445 / (80 / 3.6), seconds, 3.0);
+    }
+
+    @Test
+    void snapsToNearestNodeWithinRadius() {
+        assertEquals(node(3, 5), graph.nearestNode(40.7121, -73.9799, 200));
+        assertEquals(-1, graph.nearestNode(40.80, -73.90, 200));
+    }
+
+    @Test
+    void rejectsMalformedGraph() {
+        assertThrows(IOException.class, () -> RoadGraph.read(new StringReader("nodes 1\n0 0\nedges 1\n0 5 10\n")));
+    }
+
+    private static int node(int row, int column) {
+        return row * COLUMNS + column;
+    }
+}
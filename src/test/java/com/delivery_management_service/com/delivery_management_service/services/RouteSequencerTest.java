@@ -0,0 +1,145 @@
+package com.delivery_management_service.com.delivery_management_service.services;
+
+import com.delivery_management_service.services.RouteSequencer;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Exact sequencing matches brute force, the 2-opt / Or-opt path stays close
+ * to it, and eight drops sequence well under a millisecond.
+ */
+class RouteSequencerTest {
+
+    private final RouteSequencer sequencer = new RouteSequencer(8);
+
+    @Test
+    void exactSequenceMatchesBruteForceOnAsymmetricTimes() {
+        Random random = new Random(21);
+        for (int round = 0; round < 20; round++) {
+            int stops = 8;
+            double[] seconds = randomAsymmetric(random, stops);
+
+            int[] order = sequencer.sequence(seconds, stops);
+
+            assertEquals(bruteForce(seconds, stops), RouteSequencer.duration(seconds, stops, order), 1e-6);
+        }
+    }
+
+    @Test
+    void heuristicStaysCloseToOptimal() {
+        Random random = new Random(7);
+        RouteSequencer heuristicOnly = new RouteSequencer(0);
+        double worstRatio = 1;
+        for (int round = 0; round < 20; round++) {
+            int stops = 9;
+            double[] seconds = euclidean(random, stops);
+
+            double optimal = RouteSequencer.duration(seconds, stops, sequencer.sequence(seconds, stops));
+            double heuristic = RouteSequencer.duration(seconds, stops, heuristicOnly.sequence(seconds, stops));
+
+            assertTrue(heuristic >= optimal - 1e-6);
+            worstRatio = Math.max(worstRatio, heuristic / optimal);
+        }
+        assertTrue(worstRatio < 1.15, "2-opt / Or-opt up to " + worstRatio + "x the optimum");
+    }
+
+    @Test
+    void untanglesDropsAlongAStreet() {
+        // Start at one end of a street, drops listed out of order: visit them end to end
+        double[] positions = {0, 5, 1, 4, 2, 3, 9, 7, 8, 6, 10, 12, 11};
+        int stops = positions.length;
+        double[] seconds = new double[stops * stops];
+        for (int from = 0; from < stops; from++) {
+            for (int to = 0; to < stops; to++) {
+                seconds[from * stops + to] = 60 * Math.abs(positions[from] - positions[to]);
+            }
+        }
+
+        int[] order = sequencer.sequence(seconds, stops);
+
+        assertArrayEquals(new int[]{2, 4, 5, 3, 1, 9, 7, 8, 6, 10, 12, 11}, order);
+        assertEquals(12 * 60, RouteSequencer.duration(seconds, stops, order), 1e-6);
+    }
+
+    @Test
+    void sequencesEightDropsWellUnderAMillisecond() {
+        Random random = new Random(3);
+        double[][] instances = new double[100][];
+        for (int i = 0; i < instances.length; i++) {
+            instances[i] = euclidean(random, 9);
+        }
+
+        int rounds = 2_000;
+        for (int i = 0; i < rounds; i++) {
+            sequencer.sequence(instances[i % instances.length], 9); // warm-up
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            sequencer.sequence(instances[i % instances.length], 9);
+        }
+        long averageMicros = (System.nanoTime() - start) / rounds / 1_000;
+
+        assertTrue(averageMicros < 500, "sequencing 8 drops took " + averageMicros + " us");
+    }
+
+    private static double[] randomAsymmetric(Random random, int stops) {
+        double[] seconds = new double[stops * stops];
+        for (int i = 0; i < seconds.length; i++) {
+            seconds[i] = i / stops == i % stops ? 0 : 60 + random.nextInt(900);
+        }
+        return seconds;
+    }
+
+    private static double[] euclidean(Random random, int stops) {
+        double[] x = new double[stops];
+        double[] y = new double[stops];
+        for (int i = 0; i < stops; i++) {
+            x[i] = random.nextDouble() * 5_000;
+            y[i] = random.nextDouble() * 5_000;
+        }
+        double[] seconds = new double[stops * stops];
+        for (int from = 0; from < stops; from++) {
+            for (int to = 0; to < stops; to++) {
+                seconds[from * stops + to] = Math.hypot(x[from] - x[to], y[from] - y[to]) / 7;
+            }
+        }
+        return seconds;
+    }
+
+    private static double bruteForce(double[] seconds, int stops) {
+        int[] order = new int[stops - 1];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i + 1;
+        }
+        double best = Double.POSITIVE_INFINITY;
+        do {
+            best = Math.min(best, RouteSequencer.duration(seconds, stops, order));
+        } while (nextPermutation(order));
+        return best;
+    }
+
+    private static boolean nextPermutation(int[] values) {
+        int i = values.length - 2;
+        while (i >= 0 && values[i] >= values[i + 1]) {
+            i--;
+        }
+        if (i < 0) {
+            return false;
+        }
+        int j = values.length - 1;
+        while (values[j] <= values[i]) {
+            j--;
+        }
+        int swap = values[i];
+        values[i] = values[j];
+        values[j] = swap;
+        Arrays.sort(values, i + 1, values.length);
+        return true;
+    }
+}
@@ -0,0 +1,125 @@
+package com.delivery_management_service.com.delivery_management_service.services;
+
+import com.delivery_management_service.services.SparseAssignmentSolver;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the sparse min-cost assignment against brute force on small graphs
+ * and that a 2k orders x 10k drivers round stays well within a matching tick.
+ */
+class SparseAssignmentSolverTest {
+
+    @Test
+    void matchesBruteForceOptimum() {
+        Random random = new Random(42);
+        SparseAssignmentSolver solver = new SparseAssignmentSolver();
+
+        for (int round = 0; round < 300; round++) {
+            int rows = 1 + random.nextInt(5);
+            int columns = 1 + random.nextInt(6);
+            long[][] costs = new long[rows][columns]; // -1: no edge
+            int[] rowOffsets = new int[rows + 1];
+            int[] edgeColumns = new int[rows * columns];
+            long[] edgeCosts = new long[rows * columns];
+            long[] unassignedCosts = new long[rows];
+            int edges = 0;
+            for (int r = 0; r < rows; r++) {
+                unassignedCosts[r] = random.nextInt(200);
+                for (int c = 0; c < columns; c++) {
+                    costs[r][c] = random.nextInt(3) == 0 ? -1 : random.nextInt(150);
+                    if (costs[r][c] >= 0) {
+                        edgeColumns[edges] = c;
+                        edgeCosts[edges] = costs[r][c];
+                        edges++;
+                    }
+                }
+                rowOffsets[r + 1] = edges;
+            }
+
+            int[] assignment = solver.solve(rows, columns, rowOffsets, edgeColumns, edgeCosts, unassignedCosts);
+
+            boolean[] used = new boolean[columns];
+            long total = 0;
+            for (int r = 0; r < rows; r++) {
+                int c = assignment[r];
+                if (c == SparseAssignmentSolver.UNASSIGNED) {
+                    total += unassignedCosts[r];
+                } else {
+                    assertTrue(costs[r][c] >= 0, "assigned along a missing edge");
+                    assertTrue(!used[c], "column assigned twice");
+                    used[c] = true;
+                    total += costs[r][c];
+                }
+            }
+            assertEquals(bruteForce(0, costs, unassignedCosts, new boolean[columns]), total);
+        }
+    }
+
+    @Test
+    void solvesTwoThousandOrdersAgainstTenThousandDrivers() {
+        int rows = 2_000;
+        int columns = 10_000;
+        int perRow = 32;
+        Random random = new Random(7);
+
+        // Orders and drivers on a 10 km square, edges to the 32 nearest-ish drivers of a neighbourhood
+        double[] driverX = new double[columns];
+        double[] driverY = new double[columns];
+        for (int c = 0; c < columns; c++) {
+            driverX[c] = random.nextDouble() * 10_000;
+            driverY[c] = random.nextDouble() * 10_000;
+        }
+        int[] rowOffsets = new int[rows + 1];
+        int[] edgeColumns = new int[rows * perRow];
+        long[] edgeCosts = new long[rows * perRow];
+        long[] unassignedCosts = new long[rows];
+        int edges = 0;
+        for (int r = 0; r < rows; r++) {
+            double x = random.nextDouble() * 10_000;
+            double y = random.nextDouble() * 10_000;
+            unassignedCosts[r] = 10_000 + random.nextInt(3_000);
+            for (int i = 0; i < perRow; i++) {
+                int c = random.nextInt(columns);
+                edgeColumns[edges] = c;
+                edgeCosts[edges] = Math.round(Math.hypot(driverX[c] - x, driverY[c] - y));
+                edges++;
+            }
+            rowOffsets[r + 1] = edges;
+        }
+
+        SparseAssignmentSolver solver = new SparseAssignmentSolver();
+        solver.solve(rows, columns, rowOffsets, edgeColumns, edgeCosts, unassignedCosts); // warm-up
+        long start = System.nanoTime();
+        int[] assignment = solver.solve(rows, columns, rowOffsets, edgeColumns, edgeCosts, unassignedCosts);
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        boolean[] used = new boolean[columns];
+        for (int c : assignment) {
+            if (c != SparseAssignmentSolver.UNASSIGNED) {
+                assertTrue(!used[c], "column assigned twice");
+                used[c] = true;
+            }
+        }
+        assertTrue(elapsedMs < 500, "2k x 10k round took " + elapsedMs + " ms");
+    }
+
+    private static long bruteForce(int row, long[][] costs, long[] unassignedCosts, boolean[] used) {
+        if (row == costs.length) {
+            return 0;
+        }
+        long best = unassignedCosts[row] + bruteForce(row + 1, costs, unassignedCosts, used);
+        for (int c = 0; c < used.length; c++) {
+            if (!used[c] && costs[row][c] >= 0) {
+                used[c] = true;
+                best = Math.min(best, costs[row][c] + bruteForce(row + 1, costs, unassignedCosts, used));
+                used[c] = false;
+            }
+        }
+        return best;
+    }
+}
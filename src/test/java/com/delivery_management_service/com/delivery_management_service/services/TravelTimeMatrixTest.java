@@ -0,0 +1,120 @@
+package com.delivery_management_service.com.delivery_management_service.services;
+
+import com.delivery_management_service.services.RoadGraph;
+import com.delivery_management_service.services.TravelTimeMatrix;
+import com.delivery_management_service.services.TravelTimeMatrixBuilder;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Objects;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Builds a matrix over the river-city fixture with one cell per street
+ * corner and checks lookups against exact routing.
+ */
+class TravelTimeMatrixTest {
+
+    private static final double MIN_LATITUDE = 40.698;
+    private static final double MIN_LONGITUDE = -74.002;
+    private static final double CELL_SIZE_DEG = 0.004;
+    private static final int CELLS_PER_SIDE = 8;
+
+    @TempDir
+    static Path directory;
+
+    private static RoadGraph graph;
+    private static Path file;
+    private static TravelTimeMatrix matrix;
+
+    @BeforeAll
+    static void buildMatrix() throws IOException {
+        try (Reader reader = new InputStreamReader(Objects.requireNonNull(
+                TravelTimeMatrixTest.class.getResourceAsStream("/routing/river-city.graph")), StandardCharsets.UTF_8)) {
+            graph = RoadGraph.read(reader);
+        }
+        file = directory.resolve("river-city.ttm");
+        try (TravelTimeMatrix.Writer writer = TravelTimeMatrix.writer(file, MIN_LATITUDE, MIN_LONGITUDE,
+                CELL_SIZE_DEG, CELLS_PER_SIDE, CELLS_PER_SIDE)) {
+            TravelTimeMatrixBuilder.build(graph, MIN_LATITUDE, MIN_LONGITUDE, CELL_SIZE_DEG,
+                    CELLS_PER_SIDE, CELLS_PER_SIDE, 300, writer);
+            writer.commit();
+        }
+        matrix = TravelTimeMatrix.open(file);
+    }
+
+    @Test
+    void lookupsMatchExactRoutingBetweenCorners() {
+        for (int from = 0; from < graph.nodeCount(); from += 5) {
+            for (int to = 0; to < graph.nodeCount(); to += 3) {
+                double expected = graph.travelSeconds(from, to);
+                double estimate = matrix.estimateSeconds(latitude(from), longitude(from), latitude(to), longitude(to));
+                assertEquals(expected, estimate, 0.5, "travel time " + from + " -> " + to);
+            }
+        }
+    }
+
+    @Test
+    void segmentedMappingReadsTheSameAsOneMapping() throws IOException {
+        // 64-byte segments: the header and most rows span several mappings
+        TravelTimeMatrix segmented = TravelTimeMatrix.open(file, 64);
+        for (int from = 0; from < graph.nodeCount(); from++) {
+            for (int to = 0; to < graph.nodeCount(); to++) {
+                assertEquals(matrix.estimateSeconds(latitude(from), longitude(from), latitude(to), longitude(to)),
+                        segmented.estimateSeconds(latitude(from), longitude(from), latitude(to), longitude(to)),
+                        "travel time " + from + " -> " + to);
+            }
+        }
+    }
+
+    @Test
+    void uncommittedWriterLeavesNoFile() throws IOException {
+        Path partial = directory.resolve("partial.ttm");
+        try (TravelTimeMatrix.Writer writer = TravelTimeMatrix.writer(partial, MIN_LATITUDE, MIN_LONGITUDE,
+                CELL_SIZE_DEG, 1, 2)) {
+            writer.writeRow(new double[]{0, 60});
+            assertThrows(IOException.class, writer::commit);
+        }
+        assertFalse(Files.exists(partial));
+        try (var leftovers = Files.list(directory)) {
+            assertTrue(leftovers.noneMatch(path -> path.getFileName().toString().endsWith(".tmp")));
+        }
+    }
+
+    @Test
+    void keepsTheRiverDetour() {
+        // One block apart as the crow flies, but only connected over the northern bridge
+        double seconds = matrix.estimateSeconds(40.7001, -73.9881, 40.7001, -73.9841);
+        assertTrue(seconds > 600, "detour over the bridge should take over 10 minutes, got " + seconds);
+    }
+
+    @Test
+    void outsideTheGridHasNoEstimate() {
+        assertTrue(Double.isNaN(matrix.estimateSeconds(40.70, -74.00, 40.80, -73.90)));
+    }
+
+    @Test
+    void rejectsFileThatIsNotAMatrix() throws IOException {
+        Path file = Files.writeString(directory.resolve("not-a-matrix.ttm"), "nodes 1\n");
+        assertThrows(IOException.class, () -> TravelTimeMatrix.open(file));
+    }
+
+    private static double latitude(int node) {
+        return 40.700 + (node / CELLS_PER_SIDE) * CELL_SIZE_DEG;
+    }
+
+    private static double longitude(int node) {
+        return -74.000 + (node % CELLS_PER_SIDE) * CELL_SIZE_DEG;
+    }
+}
@@ -0,0 +1,150 @@
+package com.delivery_management_service.com.delivery_management_service.services;
+
+import com.delivery_management_service.services.ZoneDispatchWorkers;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Point;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ZoneDispatchWorkersTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(8);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ZoneDispatchWorkers workers = new ZoneDispatchWorkers(executor, meterRegistry, 0.02, 10);
+
+    @AfterEach
+    void tearDown() {
+        workers.stop();
+        executor.shutdownNow();
+    }
+
+    @Test
+    void tasksOfOneZoneRunOneAtATimeInOrder() throws Exception {
+        long zone = workers.zoneOf(40.7306, -73.935);
+        int tasks = 1000;
+        List<Integer> order = new ArrayList<>(); // Deliberately unsynchronized: one writer per zone
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(tasks);
+
+        for (int i = 0; i < tasks; i++) {
+            int task = i;
+            workers.execute(zone, () -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                order.add(task);
+                running.decrementAndGet();
+                done.countDown();
+            });
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(1, maxRunning.get());
+        for (int i = 0; i < tasks; i++) {
+            assertEquals(i, order.get(i));
+        }
+    }
+
+    @Test
+    void zonesRunInParallel() throws Exception {
+        CountDownLatch bothStarted = new CountDownLatch(2);
+        CountDownLatch done = new CountDownLatch(2);
+        Runnable task = () -> {
+            bothStarted.countDown();
+            try {
+                if (bothStarted.await(5, TimeUnit.SECONDS)) {
+                    done.countDown();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+
+        workers.execute(workers.zoneOf(40.7306, -73.935), task);
+        workers.execute(workers.zoneOf(51.5072, -0.1276), task);
+
+        assertTrue(done.await(10, TimeUnit.SECONDS), "a blocked zone must not hold up another");
+    }
+
+    @Test
+    void blockingCallsRunOffTheWorkerAndCompleteOnIt() throws Exception {
+        long zone = workers.zoneOf(40.7306, -73.935);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch otherTaskRan = new CountDownLatch(1);
+        CountDownLatch completed = new CountDownLatch(1);
+        List<String> events = new ArrayList<>(); // Only touched on the zone's worker
+
+        workers.callAsync(zone, () -> {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "sent";
+        }, (result, error) -> {
+            events.add(result);
+            completed.countDown();
+        });
+        workers.execute(zone, () -> {
+            events.add("other");
+            otherTaskRan.countDown();
+        });
+
+        assertTrue(otherTaskRan.await(5, TimeUnit.SECONDS), "a blocked call must not hold up the zone");
+        release.countDown();
+        assertTrue(completed.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of("other", "sent"), events);
+    }
+
+    @Test
+    void restaurantZoneComesFromItsLocationAndMissingOnesAreCounted() {
+        Point restaurant = new GeometryFactory().createPoint(new Coordinate(-73.935, 40.7306));
+
+        assertEquals(workers.zoneOf(40.7306, -73.935), workers.zoneOfRestaurant(restaurant));
+        assertEquals(ZoneDispatchWorkers.UNKNOWN_ZONE, workers.zoneOfRestaurant(null));
+        assertEquals(1.0, meterRegistry.counter("dispatch.zones.unknown").count());
+    }
+
+    @Test
+    void saturatedExecutorIsRetriedInsteadOfDrainedOnTheCaller() throws Exception {
+        AtomicInteger refusals = new AtomicInteger(3);
+        Executor saturated = task -> {
+            if (refusals.getAndDecrement() > 0) {
+                throw new RejectedExecutionException("saturated");
+            }
+            executor.execute(task);
+        };
+        ZoneDispatchWorkers backedOff = new ZoneDispatchWorkers(saturated, new SimpleMeterRegistry(), 0.02, 10);
+        Thread caller = Thread.currentThread();
+        CountDownLatch ran = new CountDownLatch(1);
+        AtomicInteger ranOnCaller = new AtomicInteger();
+
+        try {
+            backedOff.execute(backedOff.zoneOf(40.7306, -73.935), () -> {
+                if (Thread.currentThread() == caller) {
+                    ranOnCaller.incrementAndGet();
+                }
+                ran.countDown();
+            });
+
+            assertTrue(ran.await(5, TimeUnit.SECONDS), "refused tasks are handed off again, not dropped");
+            assertEquals(0, ranOnCaller.get());
+        } finally {
+            backedOff.stop();
+        }
+    }
+}